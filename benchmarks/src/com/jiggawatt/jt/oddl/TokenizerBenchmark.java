@@ -0,0 +1,66 @@
+/*
+ * Jiggatech OpenDDL Parser
+ *
+ * Copyright (c) 2019 Nikita Leonidov
+ *
+ * MIT License
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.jiggawatt.jt.oddl;
+
+import com.jiggawatt.jt.oddl.bench.Counters;
+import com.jiggawatt.jt.oddl.bench.Input;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@link ODDLTokenizer} on its own. This class lives in the parser's package because the tokenizer is not
+ * public.
+ *
+ * @author Nikita Leonidov
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TokenizerBenchmark {
+
+    @Benchmark
+    public void tokenize(Input input, Counters counters, Blackhole bh) throws IOException, ODDLParseException {
+        try {
+            ODDLTokenizer tokenizer = new ODDLTokenizer(input.open());
+            long n = 0;
+            ODDLToken token;
+            while (!(token = tokenizer.read()).isEOF()) {
+                bh.consume(token);
+                n++;
+            }
+            counters.tokens += n;
+            counters.bytes  += input.length();
+        } finally {
+            input.close();
+        }
+    }
+}
@@ -0,0 +1,138 @@
+/*
+ * Jiggatech OpenDDL Parser
+ *
+ * Copyright (c) 2019 Nikita Leonidov
+ *
+ * MIT License
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.jiggawatt.jt.oddl.bench;
+
+import com.jiggawatt.jt.oddl.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * A listener that feeds every token it receives to a {@link Blackhole} and counts events.
+ *
+ * @author Nikita Leonidov
+ */
+final class BlackholeListener implements ODDLListener<Void> {
+
+    private final Blackhole bh;
+    private long count;
+
+    BlackholeListener(Blackhole bh) {
+        this.bh = bh;
+    }
+
+    long count() {
+        return count;
+    }
+
+    @Override
+    public void begin() {
+    }
+
+    @Override
+    public Void end(int row, int col) {
+        return null;
+    }
+
+    @Override
+    public void value(BoolToken value) {
+        bh.consume(value);
+        count++;
+    }
+
+    @Override
+    public void value(IntToken value) {
+        bh.consume(value);
+        count++;
+    }
+
+    @Override
+    public void value(FloatToken value) {
+        bh.consume(value);
+        count++;
+    }
+
+    @Override
+    public void value(StringToken value) {
+        bh.consume(value);
+        count++;
+    }
+
+    @Override
+    public void value(RefToken value) {
+        bh.consume(value);
+        count++;
+    }
+
+    @Override
+    public void value(DataTypeToken value) {
+        bh.consume(value);
+        count++;
+    }
+
+    @Override
+    public void beginListStructure(DataTypeToken dataType, NameToken name) {
+        bh.consume(dataType);
+        count++;
+    }
+
+    @Override
+    public void endListStructure(DataTypeToken dataType, NameToken name) {
+        count++;
+    }
+
+    @Override
+    public void beginArrayListStructure(DataTypeToken dataType, int subarraySize, NameToken name) {
+        bh.consume(dataType);
+        count++;
+    }
+
+    @Override
+    public void endArrayListStructure(DataTypeToken dataType, int subarraySize, NameToken name) {
+        count++;
+    }
+
+    @Override
+    public void beginSubArray(DataTypeToken dataType, int subarraySize) {
+        count++;
+    }
+
+    @Override
+    public void endSubArray(DataTypeToken dataType, int subarraySize) {
+        count++;
+    }
+
+    @Override
+    public void beginCustomStructure(IdentifierToken identifier, NameToken name, PropertyMap properties) {
+        bh.consume(identifier);
+        bh.consume(properties);
+        count++;
+    }
+
+    @Override
+    public void endCustomStructure(IdentifierToken identifier, NameToken name, PropertyMap properties) {
+        count++;
+    }
+}
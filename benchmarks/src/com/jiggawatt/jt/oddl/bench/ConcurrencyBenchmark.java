@@ -0,0 +1,140 @@
+/*
+ * Jiggatech OpenDDL Parser
+ *
+ * Copyright (c) 2019 Nikita Leonidov
+ *
+ * MIT License
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package com.jiggawatt.jt.oddl.bench;
+
+import com.jiggawatt.jt.oddl.*;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Parses <tt>documents</tt> small documents at once, one task per document, on a fixed pool of platform threads or
+ * on a virtual thread per task. Each block read from a document's reader blocks for <tt>latency</tt> microseconds,
+ * standing in for network or disk I/O, so with enough latency the score shows how far each kind of thread scales when
+ * most parses are waiting. The <tt>VIRTUAL</tt> executor needs Java 21 or later.
+ *
+ * @author Nikita Leonidov
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ConcurrencyBenchmark {
+
+    public enum Threads {
+        /** a fixed pool with one platform thread per processor */
+        POOL,
+        /** a virtual thread per task */
+        VIRTUAL
+    }
+
+    @Param
+    public Threads threads;
+
+    @Param("4096")
+    public int documents;
+
+    /** approximate size of each document, in bytes */
+    @Param("16384")
+    public int size;
+
+    /** time each block read blocks for, in microseconds */
+    @Param({"0", "200"})
+    public int latency;
+
+    private String          text;
+    private ExecutorService executor;
+
+    @Setup(Level.Trial)
+    public void setUp() throws ReflectiveOperationException {
+        text = Shape.MIXED.generate(size);
+        if (threads == Threads.POOL) {
+            executor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+        } else {
+            executor = (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Benchmark
+    public void parse(Counters counters, Blackhole bh) throws InterruptedException, ExecutionException {
+        List<Future<Long>> results = new ArrayList<>(documents);
+        for (int i=0; i<documents; i++) {
+            results.add(executor.submit(() -> {
+                BlackholeListener listener = new BlackholeListener(bh);
+                new ODDLReader(new SlowReader(text, latency)).read(listener);
+                return listener.count();
+            }));
+        }
+        for (Future<Long> f : results) {
+            counters.tokens += f.get();
+        }
+        counters.bytes += (long) documents * text.length();
+    }
+
+    /** a reader that blocks before every block read */
+    private static final class SlowReader extends Reader {
+        private final StringReader in;
+        private final long         nanos;
+
+        SlowReader(String text, int micros) {
+            this.in    = new StringReader(text);
+            this.nanos = TimeUnit.MICROSECONDS.toNanos(micros);
+        }
+
+        @Override
+        public int read(char[] cbuf, int off, int len) throws IOException {
+            if (nanos > 0) {
+                LockSupport.parkNanos(nanos);
+            }
+            return in.read(cbuf, off, len);
+        }
+
+        @Override
+        public void close() {
+            in.close();
+        }
+    }
+}
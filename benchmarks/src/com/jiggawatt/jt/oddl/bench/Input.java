@@ -0,0 +1,125 @@
+/*
+ * Jiggatech OpenDDL Parser
+ *
+ * Copyright (c) 2019 Nikita Leonidov
+ *
+ * MIT License
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.jiggawatt.jt.oddl.bench;
+
+import com.jiggawatt.jt.oddl.ODDLInputStream;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * A benchmark input document, generated once per trial and opened once per invocation from the configured source.
+ *
+ * @author Nikita Leonidov
+ */
+@State(Scope.Benchmark)
+public class Input {
+
+    public enum Source {
+        /** characters from a {@link StringReader} */
+        STRING,
+        /** UTF-8 bytes from a {@link ByteArrayInputStream} */
+        STREAM,
+        /** UTF-8 bytes from a temporary file */
+        FILE
+    }
+
+    @Param
+    public Shape shape;
+
+    @Param
+    public Source source;
+
+    /** approximate document size, in bytes */
+    @Param("4194304")
+    public int size;
+
+    private String text;
+    private byte[] bytes;
+    private Path   file;
+
+    /** file stream opened by the current invocation */
+    private InputStream opened;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        text  = shape.generate(size);
+        bytes = text.getBytes(StandardCharsets.UTF_8);
+
+        if (source == Source.FILE) {
+            file = Files.createTempFile("jt-oddl-bench", ".oddl");
+            Files.write(file, bytes);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        if (file != null) {
+            Files.delete(file);
+        }
+    }
+
+    /**
+     * @return a new stream over the input document; callers must call {@link #close()} once done with it
+     * @throws IOException when an IO exception occurs
+     */
+    public ODDLInputStream open() throws IOException {
+        switch (source) {
+            case STRING:
+                return new ODDLInputStream(new StringReader(text));
+            case STREAM:
+                return new ODDLInputStream(new ByteArrayInputStream(bytes));
+            default:
+                opened = Files.newInputStream(file);
+                return new ODDLInputStream(opened);
+        }
+    }
+
+    /**
+     * Closes the file opened by the last call to {@link #open()}, if any.
+     * @throws IOException when an IO exception occurs
+     */
+    public void close() throws IOException {
+        if (opened != null) {
+            opened.close();
+            opened = null;
+        }
+    }
+
+    /**
+     * @return the size of the input document in UTF-8 bytes
+     */
+    public int length() {
+        return bytes.length;
+    }
+}
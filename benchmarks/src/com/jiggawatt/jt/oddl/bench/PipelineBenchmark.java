@@ -0,0 +1,110 @@
+/*
+ * Jiggatech OpenDDL Parser
+ *
+ * Copyright (c) 2019 Nikita Leonidov
+ *
+ * MIT License
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.jiggawatt.jt.oddl.bench;
+
+import com.jiggawatt.jt.oddl.*;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares {@link ODDLReader#read(ODDLListener)} with {@link ODDLReader#readPipelined(ODDLListener)} for a listener
+ * that spends <tt>work</tt> units of CPU time, as defined by {@link Blackhole#consumeCPU(long)}, on every value.
+ *
+ * @author Nikita Leonidov
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PipelineBenchmark {
+
+    @Param({"0", "32", "128"})
+    public int work;
+
+    @Benchmark
+    public void serial(Input input, Counters counters, Blackhole bh) throws IOException, ODDLParseException, ODDLFormatException {
+        BusyListener listener = new BusyListener(bh, work);
+        try {
+            new ODDLReader(input.open()).read(listener);
+        } finally {
+            input.close();
+        }
+        counters.tokens += listener.count;
+        counters.bytes  += input.length();
+    }
+
+    @Benchmark
+    public void pipelined(Input input, Counters counters, Blackhole bh) throws IOException, ODDLParseException, ODDLFormatException {
+        BusyListener listener = new BusyListener(bh, work);
+        try {
+            new ODDLReader(input.open()).readPipelined(listener);
+        } finally {
+            input.close();
+        }
+        counters.tokens += listener.count;
+        counters.bytes  += input.length();
+    }
+
+    private static final class BusyListener implements ODDLListener<Void> {
+        private final Blackhole bh;
+        private final int       work;
+        private long count;
+
+        BusyListener(Blackhole bh, int work) {
+            this.bh   = bh;
+            this.work = work;
+        }
+
+        private void consume(Object value) {
+            bh.consume(value);
+            Blackhole.consumeCPU(work);
+            count++;
+        }
+
+        @Override public void begin() {}
+        @Override public Void end(int row, int col) { return null; }
+        @Override public void value(BoolToken value) { consume(value); }
+        @Override public void value(IntToken value) { consume(value); }
+        @Override public void value(FloatToken value) { consume(value); }
+        @Override public void value(StringToken value) { consume(value); }
+        @Override public void value(RefToken value) { consume(value); }
+        @Override public void value(DataTypeToken value) { consume(value); }
+        @Override public void beginListStructure(DataTypeToken dataType, NameToken name) { consume(dataType); }
+        @Override public void endListStructure(DataTypeToken dataType, NameToken name) {}
+        @Override public void beginArrayListStructure(DataTypeToken dataType, int subarraySize, NameToken name) { consume(dataType); }
+        @Override public void endArrayListStructure(DataTypeToken dataType, int subarraySize, NameToken name) {}
+        @Override public void beginSubArray(DataTypeToken dataType, int subarraySize) {}
+        @Override public void endSubArray(DataTypeToken dataType, int subarraySize) {}
+        @Override public void beginCustomStructure(IdentifierToken identifier, NameToken name, PropertyMap properties) { consume(identifier); }
+        @Override public void endCustomStructure(IdentifierToken identifier, NameToken name, PropertyMap properties) {}
+    }
+}
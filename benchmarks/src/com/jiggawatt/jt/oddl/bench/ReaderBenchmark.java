@@ -0,0 +1,138 @@
+/*
+ * Jiggatech OpenDDL Parser
+ *
+ * Copyright (c) 2019 Nikita Leonidov
+ *
+ * MIT License
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.jiggawatt.jt.oddl.bench;
+
+import com.jiggawatt.jt.oddl.*;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@link ODDLReader} with listeners of increasing cost: one that discards every event, a
+ * {@link ReferenceResolver} in front of it, and an {@link ODDLWriter} that formats the document again. The
+ * <tt>validate</tt> benchmark measures {@link ODDLReader#validate()}, which makes no events at all, for comparison.
+ *
+ * @author Nikita Leonidov
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ReaderBenchmark {
+
+    @Benchmark
+    public void discard(Input input, Counters counters, Blackhole bh) throws IOException, ODDLParseException, ODDLFormatException {
+        BlackholeListener listener = new BlackholeListener(bh);
+        read(input, counters, listener, listener);
+    }
+
+    @Benchmark
+    public void validate(Input input, Counters counters, Blackhole bh) throws IOException {
+        try {
+            bh.consume(new ODDLReader(input.open()).validate());
+            counters.bytes += input.length();
+        } finally {
+            input.close();
+        }
+    }
+
+    @Benchmark
+    public void resolve(Input input, Counters counters, Blackhole bh) throws IOException, ODDLParseException, ODDLFormatException {
+        BlackholeListener listener = new BlackholeListener(bh);
+        read(input, counters, new ReferenceResolver<>(listener), listener);
+    }
+
+    @Benchmark
+    public void rewrite(Input input, Counters counters, Blackhole bh) throws IOException, ODDLParseException, ODDLFormatException {
+        BlackholeListener listener = new BlackholeListener(bh);
+        try (ODDLWriter out = new ODDLWriter(new DiscardingOutputStream(bh))) {
+            read(input, counters, new MulticastCounter(listener, out.asListener()), listener);
+        }
+    }
+
+    private static void read(Input input, Counters counters, ODDLListener<?> listener, BlackholeListener events) throws IOException, ODDLParseException, ODDLFormatException {
+        try {
+            new ODDLReader(input.open()).read(listener);
+            counters.tokens += events.count();
+            counters.bytes  += input.length();
+        } finally {
+            input.close();
+        }
+    }
+
+    /**
+     * Passes events to a counting listener and then to the listener under test.
+     */
+    private static final class MulticastCounter implements ODDLListener<Void> {
+        private final ODDLListener<?> a;
+        private final ODDLListener<?> b;
+
+        MulticastCounter(ODDLListener<?> a, ODDLListener<?> b) {
+            this.a = a;
+            this.b = b;
+        }
+
+        @Override public void begin() throws ODDLFormatException { a.begin(); b.begin(); }
+        @Override public Void end(int row, int col) throws ODDLFormatException { a.end(row, col); b.end(row, col); return null; }
+        @Override public void value(BoolToken value) throws ODDLFormatException { a.value(value); b.value(value); }
+        @Override public void value(IntToken value) throws ODDLFormatException { a.value(value); b.value(value); }
+        @Override public void value(FloatToken value) throws ODDLFormatException { a.value(value); b.value(value); }
+        @Override public void value(StringToken value) throws ODDLFormatException { a.value(value); b.value(value); }
+        @Override public void value(RefToken value) throws ODDLFormatException { a.value(value); b.value(value); }
+        @Override public void value(DataTypeToken value) throws ODDLFormatException { a.value(value); b.value(value); }
+        @Override public void beginListStructure(DataTypeToken dataType, NameToken name) throws ODDLFormatException { a.beginListStructure(dataType, name); b.beginListStructure(dataType, name); }
+        @Override public void endListStructure(DataTypeToken dataType, NameToken name) throws ODDLFormatException { a.endListStructure(dataType, name); b.endListStructure(dataType, name); }
+        @Override public void beginArrayListStructure(DataTypeToken dataType, int subarraySize, NameToken name) throws ODDLFormatException { a.beginArrayListStructure(dataType, subarraySize, name); b.beginArrayListStructure(dataType, subarraySize, name); }
+        @Override public void endArrayListStructure(DataTypeToken dataType, int subarraySize, NameToken name) throws ODDLFormatException { a.endArrayListStructure(dataType, subarraySize, name); b.endArrayListStructure(dataType, subarraySize, name); }
+        @Override public void beginSubArray(DataTypeToken dataType, int subarraySize) throws ODDLFormatException { a.beginSubArray(dataType, subarraySize); b.beginSubArray(dataType, subarraySize); }
+        @Override public void endSubArray(DataTypeToken dataType, int subarraySize) throws ODDLFormatException { a.endSubArray(dataType, subarraySize); b.endSubArray(dataType, subarraySize); }
+        @Override public void beginCustomStructure(IdentifierToken identifier, NameToken name, PropertyMap properties) throws ODDLFormatException { a.beginCustomStructure(identifier, name, properties); b.beginCustomStructure(identifier, name, properties); }
+        @Override public void endCustomStructure(IdentifierToken identifier, NameToken name, PropertyMap properties) throws ODDLFormatException { a.endCustomStructure(identifier, name, properties); b.endCustomStructure(identifier, name, properties); }
+    }
+
+    private static final class DiscardingOutputStream extends OutputStream {
+        private final Blackhole bh;
+
+        DiscardingOutputStream(Blackhole bh) {
+            this.bh = bh;
+        }
+
+        @Override
+        public void write(int b) {
+            bh.consume(b);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            bh.consume(b);
+        }
+    }
+}
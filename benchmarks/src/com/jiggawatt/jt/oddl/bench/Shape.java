@@ -0,0 +1,172 @@
+/*
+ * Jiggatech OpenDDL Parser
+ *
+ * Copyright (c) 2019 Nikita Leonidov
+ *
+ * MIT License
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.jiggawatt.jt.oddl.bench;
+
+import com.jiggawatt.jt.oddl.CorpusGenerator;
+import com.jiggawatt.jt.oddl.IntToken;
+
+import java.util.EnumSet;
+import java.util.Random;
+
+/**
+ * Kinds of benchmark input. Most shapes append one repeating unit of a document, repeated until the document
+ * reaches the requested size.
+ *
+ * @author Nikita Leonidov
+ */
+public enum Shape {
+
+    /** a float-heavy vertex array, as in OpenGEX <tt>VertexArray</tt> structures */
+    VERTICES {
+        @Override
+        String generate(int size) {
+            return repeat(size, (sb, rnd) -> {
+                sb.append("VertexArray (attrib = \"position\")\n{\n\tfloat[3]\n\t{\n");
+                for (int i=0; i<256; i++) {
+                    sb.append(i == 0 ? "\t\t{" : ",\n\t\t{")
+                      .append(rnd.nextFloat()*200 - 100).append(", ")
+                      .append(rnd.nextFloat()*200 - 100).append(", ")
+                      .append(rnd.nextFloat()*200 - 100).append('}');
+                }
+                sb.append("\n\t}\n}\n");
+            });
+        }
+    },
+
+    /** an int index array, as in OpenGEX <tt>IndexArray</tt> structures */
+    INDICES {
+        @Override
+        String generate(int size) {
+            return repeat(size, (sb, rnd) -> {
+                sb.append("IndexArray\n{\n\tu32[3]\n\t{\n");
+                for (int i=0; i<256; i++) {
+                    sb.append(i == 0 ? "\t\t{" : ",\n\t\t{")
+                      .append(rnd.nextInt(65536)).append(", ")
+                      .append(rnd.nextInt(65536)).append(", ")
+                      .append(rnd.nextInt(65536)).append('}');
+                }
+                sb.append("\n\t}\n}\n");
+            });
+        }
+    },
+
+    /** many small custom structures with properties and references */
+    STRUCTURES {
+        @Override
+        String generate(int size) {
+            return repeat(size, (sb, rnd) -> {
+                int id = rnd.nextInt(1_000_000);
+                sb.append("Node $node").append(id)
+                  .append(" (visible = ").append(rnd.nextBoolean())
+                  .append(", weight = ").append(rnd.nextFloat())
+                  .append(", layer = ").append(rnd.nextInt(32))
+                  .append(", kind = \"mesh\")\n{\n")
+                  .append("\tName {string {\"node").append(id).append("\"}}\n")
+                  .append("\tTransform %xf {float[16] {{1, 0, 0, 0, 0, 1, 0, 0, 0, 0, 1, 0, 0, 0, 0, 1}}}\n")
+                  .append("\tObjectRef {ref {$geometry").append(rnd.nextInt(100)).append("}}\n")
+                  .append("}\n");
+            });
+        }
+    },
+
+    /** long string literals with escapes */
+    STRINGS {
+        @Override
+        String generate(int size) {
+            return repeat(size, (sb, rnd) -> {
+                sb.append("Metadata\n{\n\tstring\n\t{\n\t\t\"");
+                for (int i=0; i<4096; i++) {
+                    int c = rnd.nextInt(64);
+                    if (c == 0) {
+                        sb.append("\\n");
+                    } else if (c == 1) {
+                        sb.append("\\\"");
+                    } else {
+                        sb.append((char) ('a' + c % 26));
+                    }
+                }
+                sb.append("\"\n\t}\n}\n");
+            });
+        }
+    },
+
+    /** small structures buried in line and block comments */
+    COMMENTS {
+        @Override
+        String generate(int size) {
+            return repeat(size, (sb, rnd) -> {
+                sb.append("/*\n * ");
+                for (int i=0; i<16; i++) {
+                    sb.append("block comment text ").append(rnd.nextInt());
+                }
+                sb.append("\n */\n");
+                for (int i=0; i<8; i++) {
+                    sb.append("// line comment ").append(rnd.nextLong()).append('\n');
+                }
+                sb.append("Param (key = \"value\") {int32 {").append(rnd.nextInt()).append("}} // trailing\n");
+            });
+        }
+    },
+
+    /** a mix of everything, produced by {@link CorpusGenerator} with all literal formats enabled */
+    MIXED {
+        @Override
+        String generate(int size) {
+            return new CorpusGenerator(ordinal())
+                .setSize(size)
+                .setCommentDensity(0.05)
+                .setIntFormats(EnumSet.allOf(IntToken.Format.class))
+                .setDigitSeparators(true)
+                .generate();
+        }
+    };
+
+    /**
+     * @param size approximate document size
+     * @return a document of this shape
+     */
+    abstract String generate(int size);
+
+    /**
+     * Appends one unit of a document to a builder.
+     */
+    private interface Unit {
+        void append(StringBuilder sb, Random rnd);
+    }
+
+    /**
+     * @return a document of the given unit, repeated until the document reaches <tt>size</tt>
+     */
+    String repeat(int size, Unit unit) {
+        Random rnd = new Random(ordinal());
+        StringBuilder sb = new StringBuilder(size + 8192);
+        while (sb.length() < size) {
+            unit.append(sb, rnd);
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,227 @@
+/*
+ * Jiggatech OpenDDL Parser
+ *
+ * Copyright (c) 2019 Nikita Leonidov
+ *
+ * MIT License
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.jiggawatt.jt.oddl;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+/**
+ * Emits Java Flight Recorder events for parsing phases. This is the Java 11 version of the class, packaged under
+ * <tt>META-INF/versions/11</tt>; it falls back to doing nothing when the <tt>jdk.jfr</tt> module is not readable,
+ * e.g. in a modular application that does not resolve it.
+ * <p>
+ * Every <tt>begin</tt> method returns an event that has begun timing, or <tt>null</tt> if the event is disabled, so a
+ * disabled event costs one flag check and no allocation. The matching <tt>end</tt> method accepts <tt>null</tt>.
+ *
+ * @author Nikita Leonidov
+ */
+final class ODDLEvents {
+
+    private static final boolean AVAILABLE = ModuleLayer.boot().findModule("jdk.jfr")
+            .map(ODDLEvents.class.getModule()::canRead)
+            .orElse(false);
+
+    private ODDLEvents() {
+    }
+
+    // document
+    //==================================================================================================================
+    static Object beginDocument() {
+        if (!AVAILABLE || !Types.DOCUMENT.isEnabled()) {
+            return null;
+        }
+        DocumentEvent ret = new DocumentEvent();
+        ret.begin();
+        return ret;
+    }
+
+    static void endDocument(Object event, long characters, long bytes) {
+        if (event == null) {
+            return;
+        }
+        DocumentEvent e = (DocumentEvent) event;
+        e.end();
+        if (e.shouldCommit()) {
+            e.characters = characters;
+            e.bytes      = bytes;
+            e.commit();
+        }
+    }
+
+    // top-level structures
+    //==================================================================================================================
+    static Object beginStructure() {
+        if (!AVAILABLE || !Types.STRUCTURE.isEnabled()) {
+            return null;
+        }
+        StructureEvent ret = new StructureEvent();
+        ret.begin();
+        return ret;
+    }
+
+    static void endStructure(Object event, ODDLToken head, NameToken name) {
+        if (event == null) {
+            return;
+        }
+        StructureEvent e = (StructureEvent) event;
+        e.end();
+        if (e.shouldCommit()) {
+            e.identifier = head.getText();
+            e.name       = name == null ? null : name.getText();
+            e.commit();
+        }
+    }
+
+    // data lists
+    //==================================================================================================================
+    static Object beginDataList() {
+        if (!AVAILABLE || !Types.DATA_LIST.isEnabled()) {
+            return null;
+        }
+        DataListEvent ret = new DataListEvent();
+        ret.begin();
+        return ret;
+    }
+
+    static void endDataList(Object event, DataTypeToken dataType, int subarraySize, int count) {
+        if (event == null) {
+            return;
+        }
+        DataListEvent e = (DataListEvent) event;
+        e.end();
+        if (e.shouldCommit()) {
+            e.dataType     = dataType.getText();
+            e.subarraySize = subarraySize;
+            e.elements     = count;
+            e.commit();
+        }
+    }
+
+    // input
+    //==================================================================================================================
+    static Object beginRead() {
+        if (!AVAILABLE || !Types.READ.isEnabled()) {
+            return null;
+        }
+        ReadEvent ret = new ReadEvent();
+        ret.begin();
+        return ret;
+    }
+
+    static void endRead(Object event, int characters, long bytes) {
+        if (event == null) {
+            return;
+        }
+        ReadEvent e = (ReadEvent) event;
+        e.end();
+        if (e.shouldCommit()) {
+            e.characters = characters;
+            e.bytes      = bytes;
+            e.commit();
+        }
+    }
+
+    // event types
+    //==================================================================================================================
+    /** only initialized once {@link #AVAILABLE} is known to be true */
+    private static final class Types {
+        static final EventType DOCUMENT  = EventType.getEventType(DocumentEvent.class);
+        static final EventType STRUCTURE = EventType.getEventType(StructureEvent.class);
+        static final EventType DATA_LIST = EventType.getEventType(DataListEvent.class);
+        static final EventType READ      = EventType.getEventType(ReadEvent.class);
+    }
+
+    @Name("com.jiggawatt.jt.oddl.Document")
+    @Label("OpenDDL Document")
+    @Description("An ODDLReader parsed a document")
+    @Category("OpenDDL")
+    static final class DocumentEvent extends Event {
+        @Label("Characters")
+        long characters;
+
+        @Label("Bytes")
+        @Description("Bytes read from the input stream, or -1 if the reader was created from a java.io.Reader")
+        @DataAmount
+        long bytes;
+    }
+
+    @Name("com.jiggawatt.jt.oddl.Structure")
+    @Label("OpenDDL Top-Level Structure")
+    @Description("An ODDLReader parsed a top-level structure and all of its substructures")
+    @Category("OpenDDL")
+    @Threshold("1 ms")
+    @StackTrace(false)
+    static final class StructureEvent extends Event {
+        @Label("Identifier")
+        @Description("The identifier of a custom structure, or the data type of a list")
+        String identifier;
+
+        @Label("Name")
+        String name;
+    }
+
+    @Name("com.jiggawatt.jt.oddl.DataList")
+    @Label("OpenDDL Data List")
+    @Description("An ODDLReader parsed a data list or data array list")
+    @Category("OpenDDL")
+    @Threshold("1 ms")
+    @StackTrace(false)
+    static final class DataListEvent extends Event {
+        @Label("Data Type")
+        String dataType;
+
+        @Label("Subarray Size")
+        @Description("The subarray size of a data array list, or -1 for a data list")
+        int subarraySize;
+
+        @Label("Elements")
+        int elements;
+    }
+
+    @Name("com.jiggawatt.jt.oddl.InputRead")
+    @Label("OpenDDL Input Read")
+    @Description("An ODDLInputStream refilled its buffer from the underlying input stream or reader")
+    @Category("OpenDDL")
+    @Threshold("10 ms")
+    static final class ReadEvent extends Event {
+        @Label("Characters Read")
+        @Description("Characters read into the buffer, or -1 at the end of the input")
+        int characters;
+
+        @Label("Bytes Read")
+        @Description("Bytes read from the input stream, or -1 if the stream was created from a java.io.Reader")
+        @DataAmount
+        long bytes;
+    }
+}
@@ -0,0 +1,5 @@
+module com.jiggawatt.jt.oddl {
+    requires java.base;
+    requires static jdk.jfr;
+    exports com.jiggawatt.jt.oddl;
+}
\ No newline at end of file
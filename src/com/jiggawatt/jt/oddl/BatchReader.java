@@ -0,0 +1,235 @@
+/*
+ * Jiggatech OpenDDL Parser
+ *
+ * Copyright (c) 2019 Nikita Leonidov
+ *
+ * MIT License
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package com.jiggawatt.jt.oddl;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Parses many text files concurrently, each with a fresh listener from a supplier. Files are read largest first: a
+ * fixed number of workers repeatedly take the next file from the size-ordered batch, so that a worker that finishes a
+ * short file early moves on to the next one instead of idling, and the largest files do not end up running alone at
+ * the end of the batch.
+ * <p>
+ * A failure to open or parse one file does not stop the batch; it is recorded in the {@link BatchResult} along with the
+ * results of the other files and aggregate throughput figures:
+ * <pre>
+ * {@code
+ * BatchResult<Scene> batch = new BatchReader<>(SceneListener::new).read(paths);
+ * for (Map.Entry<Path, Exception> e : batch.getFailures().entrySet()) {
+ *     log.warn("cannot load " + e.getKey(), e.getValue());
+ * }
+ * }
+ * </pre>
+ * Workers run on {@link ForkJoinPool#commonPool()} by default, with one worker per processor. Files are read with
+ * blocking I/O, so when they are not already cached it may pay to set a larger {@link #setParallelism(int) parallelism}
+ * along with an executor that can run that many workers at once, such as one starting a virtual thread per task.
+ * <p>
+ * A batch reader may be reused, and may run several batches at once, as long as its settings do not change meanwhile.
+ *
+ * @param <T> the type of result produced by the listeners
+ *
+ * @author Nikita Leonidov
+ */
+public final class BatchReader<T> {
+
+    private final Supplier<? extends ODDLListener<? extends T>> listeners;
+
+    private Executor    executor    = ForkJoinPool.commonPool();
+    private int         parallelism = Runtime.getRuntime().availableProcessors();
+    private ODDLMetrics metrics     = ODDLMetrics.NONE;
+
+    /**
+     * @param listeners supplies a new listener for each file; called concurrently from the worker threads
+     */
+    public BatchReader(Supplier<? extends ODDLListener<? extends T>> listeners) {
+        this.listeners = requireNonNull(listeners, "listeners");
+    }
+
+    /**
+     * Sets the executor that runs the workers. The thread calling {@link #read(Collection)} always runs one of the
+     * workers itself; the others are submitted to the executor, and if it rejects them the calling thread does their
+     * work too.
+     * @param executor the executor to run workers on; may not be null
+     * @return this batch reader
+     */
+    public BatchReader<T> setExecutor(Executor executor) {
+        this.executor = requireNonNull(executor, "executor");
+        return this;
+    }
+
+    /**
+     * Sets the number of files read at once. The default is the number of available processors.
+     * @param parallelism the maximum number of workers per batch; must be positive
+     * @return this batch reader
+     */
+    public BatchReader<T> setParallelism(int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("parallelism: " + parallelism);
+        }
+        this.parallelism = parallelism;
+        return this;
+    }
+
+    /**
+     * Sets the sink to which every file's reader reports parse metrics. Since files are read concurrently, the sink
+     * must be thread-safe, like {@link ODDLMetricsRecorder}.
+     * @param metrics a metrics sink; may not be null
+     * @return this batch reader
+     */
+    public BatchReader<T> setMetrics(ODDLMetrics metrics) {
+        this.metrics = requireNonNull(metrics, "metrics");
+        return this;
+    }
+
+    /**
+     * Parses all given files, returning once every file has been read or has failed. A path given more than once is
+     * read once, so that every path has exactly one result or failure.
+     * @param paths the files to read
+     * @return the results and failures of all files, and statistics for the batch
+     */
+    public BatchResult<T> read(Collection<? extends Path> paths) {
+        return new Batch(new LinkedHashSet<>(paths).toArray(new Path[0])).run();
+    }
+
+    // batch
+    //==================================================================================================================
+    private final class Batch {
+        final Path[]      paths;
+        final long[]      sizes;
+        final Object[]    results;
+        final Exception[] failures;
+        final long[]      nanos;
+
+        /** indices into {@link #paths}, largest file first */
+        Integer[] order;
+
+        final AtomicInteger next = new AtomicInteger();
+        CountDownLatch      done;
+
+        volatile Throwable fatal;
+
+        Batch(Path[] paths) {
+            this.paths    = paths;
+            this.sizes    = new long[paths.length];
+            this.results  = new Object[paths.length];
+            this.failures = new Exception[paths.length];
+            this.nanos    = new long[paths.length];
+        }
+
+        BatchResult<T> run() {
+            final long start = System.nanoTime();
+            final int  n     = paths.length;
+
+            order = new Integer[n];
+            for (int i=0; i<n; i++) {
+                order[i] = i;
+                try {
+                    sizes[i] = Files.size(requireNonNull(paths[i], "path"));
+                } catch (IOException e) {
+                    // fails again, and is recorded, when the worker opens the file
+                    sizes[i] = -1;
+                }
+            }
+            Arrays.sort(order, (a, b) -> Long.compare(sizes[b], sizes[a]));
+
+            final int workers = Math.max(1, Math.min(parallelism, n));
+            done = new CountDownLatch(workers);
+            for (int i=1; i<workers; i++) {
+                try {
+                    executor.execute(this::work);
+                } catch (RejectedExecutionException e) {
+                    done.countDown();
+                }
+            }
+            work();
+            await();
+
+            final Throwable e = fatal;
+            if (e instanceof RuntimeException) {
+                throw (RuntimeException) e;
+            } else if (e instanceof Error) {
+                throw (Error) e;
+            }
+
+            return new BatchResult<>(paths, sizes, results, failures, nanos, System.nanoTime() - start);
+        }
+
+        void work() {
+            try {
+                for (int i; (i = next.getAndIncrement()) < paths.length; ) {
+                    read(order[i]);
+                }
+            } catch (Throwable e) {
+                fatal = e;
+                // let the other workers stop after their current file
+                next.set(paths.length);
+            } finally {
+                done.countDown();
+            }
+        }
+
+        void read(int i) {
+            final long start = System.nanoTime();
+            try (InputStream in = Files.newInputStream(paths[i])) {
+                results[i] = new ODDLReader(in).setMetrics(metrics).read(listeners.get());
+            } catch (IOException | ODDLParseException | ODDLFormatException | RuntimeException e) {
+                failures[i] = e;
+            }
+            nanos[i] = System.nanoTime() - start;
+        }
+
+        void await() {
+            boolean interrupted = false;
+            while (true) {
+                try {
+                    done.await();
+                    break;
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
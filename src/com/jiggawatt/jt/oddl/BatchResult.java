@@ -0,0 +1,174 @@
+/*
+ * Jiggatech OpenDDL Parser
+ *
+ * Copyright (c) 2019 Nikita Leonidov
+ *
+ * MIT License
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package com.jiggawatt.jt.oddl;
+
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The outcome of a {@link BatchReader} run: the result of every file that was parsed, the exception of every file
+ * that was not, and throughput figures for the batch as a whole. Maps are ordered like the paths given to
+ * {@link BatchReader#read(java.util.Collection)}.
+ *
+ * @param <T> the type of result produced by the listeners
+ *
+ * @author Nikita Leonidov
+ */
+public final class BatchResult<T> {
+
+    private final List<Path>          paths;
+    private final Map<Path, T>         results;
+    private final Map<Path, Exception> failures;
+    private final Map<Path, Long>      nanos;
+
+    private final long byteCount;
+    private final long parseNanos;
+    private final long elapsedNanos;
+
+    @SuppressWarnings("unchecked")
+    BatchResult(Path[] paths, long[] sizes, Object[] results, Exception[] failures, long[] nanos, long elapsedNanos) {
+        final Map<Path, T>         r = new LinkedHashMap<>();
+        final Map<Path, Exception> f = new LinkedHashMap<>();
+        final Map<Path, Long>      t = new LinkedHashMap<>();
+
+        long bytes = 0;
+        long total = 0;
+        for (int i=0; i<paths.length; i++) {
+            if (failures[i] != null) {
+                f.put(paths[i], failures[i]);
+            } else {
+                r.put(paths[i], (T) results[i]);
+            }
+            t.put(paths[i], nanos[i]);
+            bytes += Math.max(0, sizes[i]);
+            total += nanos[i];
+        }
+
+        this.paths        = Collections.unmodifiableList(Arrays.asList(paths));
+        this.results      = Collections.unmodifiableMap(r);
+        this.failures     = Collections.unmodifiableMap(f);
+        this.nanos        = Collections.unmodifiableMap(t);
+        this.byteCount    = bytes;
+        this.parseNanos   = total;
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    /**
+     * @return all files in the batch, in the order in which they were given
+     */
+    public List<Path> getPaths() {
+        return paths;
+    }
+
+    /**
+     * @return the listener result of each file that was parsed successfully; results may be <tt>null</tt> if the
+     * listener returned <tt>null</tt>
+     */
+    public Map<Path, T> getResults() {
+        return results;
+    }
+
+    /**
+     * @return the exception thrown while opening or parsing each file that could not be read
+     */
+    public Map<Path, Exception> getFailures() {
+        return failures;
+    }
+
+    /**
+     * @return the time spent opening and parsing each file, in nanoseconds
+     */
+    public Map<Path, Long> getFileNanos() {
+        return nanos;
+    }
+
+    /**
+     * @return <tt>true</tt> if every file was parsed successfully
+     */
+    public boolean isSuccessful() {
+        return failures.isEmpty();
+    }
+
+    /**
+     * @return the number of files in the batch
+     */
+    public int getFileCount() {
+        return paths.size();
+    }
+
+    /**
+     * @return the total size of all files in the batch that could be found, in bytes
+     */
+    public long getByteCount() {
+        return byteCount;
+    }
+
+    /**
+     * @return the wall-clock time the batch took, in nanoseconds
+     */
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+
+    /**
+     * @return the sum of the time spent on each file, in nanoseconds; divided by {@link #getElapsedNanos()}, this gives
+     * the average number of files read at once
+     */
+    public long getParseNanos() {
+        return parseNanos;
+    }
+
+    /**
+     * @return the number of bytes read per second of wall-clock time
+     */
+    public double getBytesPerSecond() {
+        return elapsedNanos == 0 ? 0 : byteCount * 1e9 / elapsedNanos;
+    }
+
+    /**
+     * @return the number of files read per second of wall-clock time
+     */
+    public double getFilesPerSecond() {
+        return elapsedNanos == 0 ? 0 : paths.size() * 1e9 / elapsedNanos;
+    }
+
+    @Override
+    public String toString() {
+        return "BatchResult{" +
+                "files=" + paths.size() +
+                ", failures=" + failures.size() +
+                ", bytes=" + byteCount +
+                ", elapsedMs=" + elapsedNanos / 1_000_000 +
+                ", MB/s=" + String.format("%.1f", getBytesPerSecond() / 1e6) +
+                '}';
+    }
+}
@@ -0,0 +1,264 @@
+/*
+ * Jiggatech OpenDDL Parser
+ *
+ * Copyright (c) 2019 Nikita Leonidov
+ *
+ * MIT License
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package com.jiggawatt.jt.oddl;
+
+import java.lang.reflect.Array;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Fills instances of bound classes from parser events. Each open custom structure that is bound takes one entry on a
+ * stack; unbound structures and everything within them are skipped with a counter. Data list elements are collected
+ * in a reusable primitive array of the bound field's element type and stored as an exactly sized copy at the end of
+ * the list.
+ *
+ * @author Nikita Leonidov
+ */
+final class BindingListener<T> implements ODDLDataListListener<T> {
+
+    private final Class<T>     type;
+    private final ClassBinding root;
+
+    private Object[]                 objects  = new Object[16];
+    private ClassBinding[]           bindings = new ClassBinding[16];
+    /** the slots through which each object is added to the one below it */
+    private ClassBinding.ChildSlot[] slots    = new ClassBinding.ChildSlot[16];
+    private int                      depth;
+
+    /** the number of open custom structures that are not bound */
+    private int skipped;
+
+    /** the slot of the data list being read, or <tt>null</tt> if the list is not bound */
+    private ClassBinding.DataSlot list;
+    /** element buffers by {@link ClassBinding.DataSlot} kind, reused from list to list */
+    private final Object[] buffers = new Object[ClassBinding.DataSlot.KINDS];
+    private Object         buffer;
+    private int            count;
+    private int            capacity;
+
+    BindingListener(Class<T> type, ClassBinding root) {
+        this.type = type;
+        this.root = root;
+    }
+
+    @Override
+    public void begin() {
+        depth       = 0;
+        skipped     = 0;
+        list        = null;
+        objects[0]  = root.newInstance();
+        bindings[0] = root;
+    }
+
+    @Override
+    public T end(int row, int col) {
+        final Object ret = objects[0];
+        objects[0] = null;
+        return type.cast(ret);
+    }
+
+    //==================================================================================================================
+    // structures
+    //==================================================================================================================
+
+    @Override
+    public void beginCustomStructure(IdentifierToken identifier, NameToken name, PropertyMap properties) throws ODDLFormatException {
+        if (skipped > 0) {
+            skipped++;
+            return;
+        }
+
+        final ClassBinding.ChildSlot slot = bindings[depth].child(identifier.getText());
+        if (slot == null) {
+            skipped = 1;
+            return;
+        }
+
+        final Object object = slot.binding.newInstance();
+        slot.binding.setProperties(object, properties);
+
+        if (++depth == objects.length) {
+            objects  = Arrays.copyOf(objects, depth * 2);
+            bindings = Arrays.copyOf(bindings, depth * 2);
+            slots    = Arrays.copyOf(slots, depth * 2);
+        }
+        objects[depth]  = object;
+        bindings[depth] = slot.binding;
+        slots[depth]    = slot;
+    }
+
+    @Override
+    public void endCustomStructure(IdentifierToken identifier, NameToken name, PropertyMap properties) {
+        if (skipped > 0) {
+            skipped--;
+            return;
+        }
+
+        final Object object = objects[depth];
+        objects[depth] = null;
+        slots[depth--].add(objects[depth], object);
+    }
+
+    @Override
+    public void beginListStructure(DataTypeToken dataType, NameToken name) {
+        beginList(dataType, name);
+    }
+
+    @Override
+    public void endListStructure(DataTypeToken dataType, NameToken name) {
+        endList();
+    }
+
+    @Override
+    public void beginArrayListStructure(DataTypeToken dataType, int subarraySize, NameToken name) {
+        beginList(dataType, name);
+    }
+
+    @Override
+    public void endArrayListStructure(DataTypeToken dataType, int subarraySize, NameToken name) {
+        endList();
+    }
+
+    @Override
+    public void beginSubArray(DataTypeToken dataType, int subarraySize) {
+    }
+
+    @Override
+    public void endSubArray(DataTypeToken dataType, int subarraySize) {
+    }
+
+    @Override
+    public boolean dataList(DataTypeToken dataType, int subarraySize, NameToken name, ByteBuffer elements) {
+        if (skipped > 0) {
+            return true;
+        }
+        final ClassBinding.DataSlot slot = bindings[depth].data(dataType.getValue(), name);
+        if (slot == null) {
+            return true;
+        }
+        final Object array = slot.decode(dataType, elements);
+        if (array == null) {
+            return false;
+        }
+        slot.store(objects[depth], array);
+        return true;
+    }
+
+    private void beginList(DataTypeToken dataType, NameToken name) {
+        list = skipped > 0 ? null : bindings[depth].data(dataType.getValue(), name);
+        if (list != null) {
+            buffer = buffers[list.kind];
+            if (buffer == null) {
+                buffer = buffers[list.kind] = list.newBuffer(64);
+            }
+            capacity = Array.getLength(buffer);
+            count    = 0;
+        }
+    }
+
+    private void endList() {
+        if (list != null) {
+            final Object array = list.newBuffer(count);
+            System.arraycopy(buffer, 0, array, 0, count);
+            list.store(objects[depth], array);
+            list = null;
+        }
+    }
+
+    /**
+     * Makes room for one more element in the buffer of the current list.
+     */
+    private void grow() {
+        final Object larger = list.newBuffer(capacity * 2);
+        System.arraycopy(buffer, 0, larger, 0, count);
+        buffer = buffers[list.kind] = larger;
+        capacity *= 2;
+    }
+
+    //==================================================================================================================
+    // values
+    //==================================================================================================================
+
+    @Override
+    public void value(BoolToken value) {
+        if (list != null) {
+            if (count == capacity) {
+                grow();
+            }
+            ((boolean[]) buffer)[count++] = value.getValue();
+        }
+    }
+
+    @Override
+    public void value(IntToken value) throws ODDLFormatException {
+        if (list != null) {
+            if (count == capacity) {
+                grow();
+            }
+            final long v = list.narrow(value, bindings[depth]);
+            switch (list.kind) {
+                case ClassBinding.DataSlot.BYTE:  ((byte[])  buffer)[count++] = (byte) v;  break;
+                case ClassBinding.DataSlot.SHORT: ((short[]) buffer)[count++] = (short) v; break;
+                case ClassBinding.DataSlot.INT:   ((int[])   buffer)[count++] = (int) v;   break;
+                default:                          ((long[])  buffer)[count++] = v;
+            }
+        }
+    }
+
+    @Override
+    public void value(FloatToken value) {
+        if (list != null) {
+            if (count == capacity) {
+                grow();
+            }
+            if (list.kind == ClassBinding.DataSlot.FLOAT) {
+                ((float[]) buffer)[count++] = (float) value.getValue();
+            } else {
+                ((double[]) buffer)[count++] = value.getValue();
+            }
+        }
+    }
+
+    @Override
+    public void value(StringToken value) {
+        if (list != null) {
+            if (count == capacity) {
+                grow();
+            }
+            ((String[]) buffer)[count++] = value.getValue();
+        }
+    }
+
+    @Override
+    public void value(RefToken value) {
+    }
+
+    @Override
+    public void value(DataTypeToken value) {
+    }
+}
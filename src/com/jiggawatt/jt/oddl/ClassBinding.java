@@ -0,0 +1,639 @@
+/*
+ * Jiggatech OpenDDL Parser
+ *
+ * Copyright (c) 2019 Nikita Leonidov
+ *
+ * MIT License
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package com.jiggawatt.jt.oddl;
+
+import java.lang.invoke.LambdaMetafactory;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Array;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+import static java.lang.invoke.MethodType.methodType;
+
+/**
+ * How an {@link ODDLBinder} creates and fills instances of one class. Bindings are created once per class, along with
+ * the bindings of all classes reachable through {@link ODDLChild} fields, and cached for the lifetime of the class.
+ * Constructors are called through {@link LambdaMetafactory} suppliers, and fields are set through method handles
+ * adapted to a fixed shape per kind of field, so that primitive values are never boxed.
+ *
+ * @author Nikita Leonidov
+ */
+final class ClassBinding {
+
+    private static final ClassValue<Holder> CACHE = new ClassValue<>() {
+        @Override
+        protected Holder computeValue(Class<?> type) {
+            return new Holder();
+        }
+    };
+
+    private static final class Holder {
+        volatile ClassBinding binding;
+    }
+
+    private static final MethodType SET_BOOLEAN = methodType(void.class, Object.class, boolean.class);
+    private static final MethodType SET_LONG    = methodType(void.class, Object.class, long.class);
+    private static final MethodType SET_DOUBLE  = methodType(void.class, Object.class, double.class);
+    private static final MethodType SET_OBJECT  = methodType(void.class, Object.class, Object.class);
+    private static final MethodType GET_OBJECT  = methodType(Object.class, Object.class);
+
+    final Class<?> type;
+    /** the identifier from the class's {@link ODDLStructure} annotation, or <tt>null</tt> if it has none */
+    final String   identifier;
+
+    private Supplier<?>               constructor;
+    private Map<String, PropertySlot> properties;
+    private Map<String, ChildSlot>    children;
+    private DataSlot[]                data;
+
+    private ClassBinding(Class<?> type) {
+        this.type = type;
+        final ODDLStructure structure = type.getAnnotation(ODDLStructure.class);
+        this.identifier = structure == null ? null : structure.value();
+    }
+
+    /**
+     * Returns the binding for the given class, creating it and the bindings of its children if necessary.
+     * @param type   a class with a constructor without parameters
+     * @param lookup a lookup with full access to the class
+     * @return the binding for the class
+     * @throws IllegalArgumentException if the class or any of its children cannot be bound
+     */
+    static ClassBinding of(Class<?> type, MethodHandles.Lookup lookup) {
+        final ClassBinding ret = CACHE.get(type).binding;
+        if (ret == null) {
+            return create(type, lookup);
+        }
+        // the binding may have been created through another caller's lookup
+        ret.checkAccess(lookup, new IdentityHashMap<>());
+        return ret;
+    }
+
+    /**
+     * Checks that the given lookup has full access to every class this binding and its children create or fill.
+     * @throws IllegalArgumentException if the lookup lacks access to one of the classes
+     */
+    private void checkAccess(MethodHandles.Lookup lookup, Map<ClassBinding, Boolean> checked) {
+        if (checked.put(this, Boolean.TRUE) != null) {
+            return;
+        }
+        for (Class<?> c = type; c != Object.class; c = c.getSuperclass()) {
+            access(c, lookup);
+        }
+        for (ChildSlot child : children.values()) {
+            child.binding.checkAccess(lookup, checked);
+        }
+    }
+
+    private static synchronized ClassBinding create(Class<?> type, MethodHandles.Lookup lookup) {
+        final Map<Class<?>, ClassBinding> created = new IdentityHashMap<>();
+        final ClassBinding ret = create(type, lookup, created);
+
+        // publish the bindings only once all of them are complete
+        for (ClassBinding b : created.values()) {
+            CACHE.get(b.type).binding = b;
+        }
+        return ret;
+    }
+
+    private static ClassBinding create(Class<?> type, MethodHandles.Lookup lookup,
+                                       Map<Class<?>, ClassBinding> created) {
+        ClassBinding ret = CACHE.get(type).binding;
+        if (ret == null) {
+            ret = created.get(type);
+        }
+        if (ret == null) {
+            ret = new ClassBinding(type);
+            created.put(type, ret);
+            ret.init(lookup, created);
+        }
+        return ret;
+    }
+
+    private void init(MethodHandles.Lookup lookup, Map<Class<?>, ClassBinding> created) {
+        final MethodHandles.Lookup own = access(type, lookup);
+        constructor = constructor(own);
+        properties  = new HashMap<>();
+        children    = new HashMap<>();
+
+        final List<DataSlot> dataSlots = new ArrayList<>();
+        for (Class<?> c = type; c != Object.class; c = c.getSuperclass()) {
+            final MethodHandles.Lookup declaring = c == type ? own : access(c, lookup);
+            for (Field f : c.getDeclaredFields()) {
+                final ODDLProperty property = f.getAnnotation(ODDLProperty.class);
+                final ODDLChild    child    = f.getAnnotation(ODDLChild.class);
+                final ODDLData     list     = f.getAnnotation(ODDLData.class);
+                if (property == null && child == null && list == null) {
+                    continue;
+                }
+                if ((property != null ? 1 : 0) + (child != null ? 1 : 0) + (list != null ? 1 : 0) > 1) {
+                    throw new IllegalArgumentException(describe(f) + " has more than one binding annotation");
+                }
+                if ((f.getModifiers() & (Modifier.STATIC | Modifier.FINAL)) != 0) {
+                    throw new IllegalArgumentException(describe(f) + " must not be static or final");
+                }
+
+                if (property != null) {
+                    final String name = property.value().isEmpty() ? f.getName() : property.value();
+                    if (identifier == null) {
+                        throw new IllegalArgumentException(describe(f) + ": the document has no properties");
+                    }
+                    if (properties.putIfAbsent(name, new PropertySlot(f, name, setter(declaring, f))) != null) {
+                        throw new IllegalArgumentException(describe(f) + ": property " + name + " is already bound");
+                    }
+                } else if (child != null) {
+                    final ChildSlot slot = childSlot(declaring, f, lookup, created);
+                    if (children.putIfAbsent(slot.binding.identifier, slot) != null) {
+                        throw new IllegalArgumentException(
+                                describe(f) + ": structure " + slot.binding.identifier + " is already bound");
+                    }
+                } else {
+                    final DataSlot slot = new DataSlot(f, list.value(), setter(declaring, f).asType(SET_OBJECT));
+                    for (DataSlot other : dataSlots) {
+                        if (slot.name == null && other.name == null && slot.type == other.type) {
+                            throw new IllegalArgumentException(
+                                    describe(f) + ": an unnamed list of type " + slot.type + " is already bound");
+                        }
+                    }
+                    dataSlots.add(slot);
+                }
+            }
+        }
+        data = dataSlots.toArray(new DataSlot[0]);
+    }
+
+    private static MethodHandles.Lookup access(Class<?> type, MethodHandles.Lookup lookup) {
+        try {
+            return MethodHandles.privateLookupIn(type, lookup);
+        } catch (IllegalAccessException | SecurityException e) {
+            throw new IllegalArgumentException("cannot access " + type.getName() + " through the given lookup", e);
+        }
+    }
+
+    private Supplier<?> constructor(MethodHandles.Lookup own) {
+        final MethodHandle handle;
+        try {
+            handle = own.findConstructor(type, methodType(void.class));
+        } catch (NoSuchMethodException | IllegalAccessException e) {
+            throw new IllegalArgumentException(type.getName() + " has no accessible constructor without parameters", e);
+        }
+
+        try {
+            return (Supplier<?>) LambdaMetafactory.metafactory(
+                    own, "get", methodType(Supplier.class), methodType(Object.class), handle, methodType(type)
+            ).getTarget().invokeExact();
+        } catch (Throwable e) {
+            // the lookup may lack the module access the metafactory needs; call the handle directly instead
+            final MethodHandle generic = handle.asType(methodType(Object.class));
+            return () -> {
+                try {
+                    return generic.invokeExact();
+                } catch (Throwable t) {
+                    throw rethrow(t);
+                }
+            };
+        }
+    }
+
+    private static MethodHandle setter(MethodHandles.Lookup lookup, Field f) {
+        try {
+            return lookup.unreflectSetter(f);
+        } catch (IllegalAccessException e) {
+            throw new IllegalArgumentException("cannot access " + describe(f), e);
+        }
+    }
+
+    private static ChildSlot childSlot(MethodHandles.Lookup lookup, Field f, MethodHandles.Lookup root,
+                                       Map<Class<?>, ClassBinding> created) {
+        final Class<?> element;
+        final MethodHandle getter;
+        if (f.getType().isAssignableFrom(ArrayList.class)) {
+            final Type generic = f.getGenericType();
+            if (!(generic instanceof ParameterizedType)
+                    || !(((ParameterizedType) generic).getActualTypeArguments()[0] instanceof Class)) {
+                throw new IllegalArgumentException(describe(f) + " must be a list of a structure class");
+            }
+            element = (Class<?>) ((ParameterizedType) generic).getActualTypeArguments()[0];
+            try {
+                getter = lookup.unreflectGetter(f).asType(GET_OBJECT);
+            } catch (IllegalAccessException e) {
+                throw new IllegalArgumentException("cannot access " + describe(f), e);
+            }
+        } else {
+            element = f.getType();
+            getter  = null;
+        }
+
+        if (element.getAnnotation(ODDLStructure.class) == null) {
+            throw new IllegalArgumentException(
+                    describe(f) + ": " + element.getName() + " is not annotated with @ODDLStructure");
+        }
+        return new ChildSlot(create(element, root, created), setter(lookup, f).asType(SET_OBJECT), getter);
+    }
+
+    //==================================================================================================================
+    // binding
+    //==================================================================================================================
+
+    Object newInstance() {
+        return constructor.get();
+    }
+
+    /**
+     * Sets every bound property the structure has; other properties are ignored.
+     */
+    void setProperties(Object target, PropertyMap values) throws ODDLFormatException {
+        if (properties.isEmpty()) {
+            return;
+        }
+        for (PropertyMap.Entry e : values) {
+            final PropertySlot slot = properties.get(e.getKey());
+            if (slot != null) {
+                slot.set(target, e.getValue(), this);
+            }
+        }
+    }
+
+    /**
+     * @return the slot for the given child structure, or <tt>null</tt> if the structure is not bound
+     */
+    ChildSlot child(String identifier) {
+        return children.get(identifier);
+    }
+
+    /**
+     * @return the slot for the given data list, or <tt>null</tt> if the list is not bound
+     */
+    DataSlot data(DataType type, NameToken name) {
+        for (DataSlot slot : data) {
+            if (slot.accepts(type, name)) {
+                return slot;
+            }
+        }
+        return null;
+    }
+
+    String describe() {
+        return ODDLSchema.describe(identifier);
+    }
+
+    private static String describe(Field f) {
+        return "field " + f.getDeclaringClass().getName() + "." + f.getName();
+    }
+
+    private static long minValue(Class<?> t) {
+        return t == byte.class  ? Byte.MIN_VALUE
+             : t == short.class ? Short.MIN_VALUE
+             : t == int.class   ? Integer.MIN_VALUE
+             : Long.MIN_VALUE;
+    }
+
+    private static long maxValue(Class<?> t) {
+        return t == byte.class  ? Byte.MAX_VALUE
+             : t == short.class ? Short.MAX_VALUE
+             : t == int.class   ? Integer.MAX_VALUE
+             : Long.MAX_VALUE;
+    }
+
+    static RuntimeException rethrow(Throwable t) {
+        if (t instanceof RuntimeException) {
+            throw (RuntimeException) t;
+        }
+        if (t instanceof Error) {
+            throw (Error) t;
+        }
+        throw new IllegalStateException(t);
+    }
+
+    //==================================================================================================================
+    // slots
+    //==================================================================================================================
+
+    private static final class PropertySlot {
+        private static final int BOOL      = 0;
+        private static final int INT       = 1;
+        private static final int FLOAT     = 2;
+        private static final int STRING    = 3;
+        private static final int DATA_TYPE = 4;
+        private static final int REF       = 5;
+
+        private final String       name;
+        private final int          kind;
+        private final DataType     type;
+        private final MethodHandle setter;
+        /** the field's type and the range of integers it can hold without truncation */
+        private final Class<?>     field;
+        private final long         min;
+        private final long         max;
+
+        PropertySlot(Field f, String name, MethodHandle setter) {
+            final Class<?> t = f.getType();
+            this.name  = name;
+            this.field = t;
+            this.min   = minValue(t);
+            this.max   = maxValue(t);
+            if (t == boolean.class) {
+                kind = BOOL;
+                type = DataType.BOOL;
+                this.setter = setter.asType(SET_BOOLEAN);
+            } else if (t == byte.class || t == short.class || t == int.class || t == long.class) {
+                kind = INT;
+                type = DataType.INT;
+                this.setter = MethodHandles.explicitCastArguments(setter, SET_LONG);
+            } else if (t == float.class || t == double.class) {
+                kind = FLOAT;
+                type = DataType.FLOAT;
+                this.setter = MethodHandles.explicitCastArguments(setter, SET_DOUBLE);
+            } else if (t == String.class) {
+                kind = STRING;
+                type = DataType.STRING;
+                this.setter = setter.asType(SET_OBJECT);
+            } else if (t == DataType.class) {
+                kind = DATA_TYPE;
+                type = DataType.TYPE;
+                this.setter = setter.asType(SET_OBJECT);
+            } else if (t == RefToken.class) {
+                kind = REF;
+                type = DataType.REF;
+                this.setter = setter.asType(SET_OBJECT);
+            } else {
+                throw new IllegalArgumentException(describe(f) + ": properties cannot be bound to " + t.getName());
+            }
+        }
+
+        void set(Object target, PropertyValueToken value, ClassBinding owner) throws ODDLFormatException {
+            final ODDLToken.Type t = value.getType();
+            try {
+                switch (kind) {
+                    case BOOL:
+                        if (t == ODDLToken.Type.BOOL) {
+                            setter.invokeExact(target, value.asBool().getValue());
+                            return;
+                        }
+                        break;
+                    case INT:
+                        if (t == ODDLToken.Type.INT) {
+                            final long v = value.asInt().getValue();
+                            if (v < min || v > max) {
+                                throw new ODDLFormatException(value,
+                                        "property " + name + " of " + owner.describe() + " is out of range for "
+                                        + field.getName());
+                            }
+                            setter.invokeExact(target, v);
+                            return;
+                        }
+                        break;
+                    case FLOAT:
+                        if (t == ODDLToken.Type.FLOAT) {
+                            setter.invokeExact(target, value.asFloat().getValue());
+                            return;
+                        }
+                        if (t == ODDLToken.Type.INT) {
+                            setter.invokeExact(target, (double) value.asInt().getValue());
+                            return;
+                        }
+                        break;
+                    case STRING:
+                        if (t == ODDLToken.Type.STRING) {
+                            setter.invokeExact(target, (Object) value.asString().getValue());
+                            return;
+                        }
+                        break;
+                    case DATA_TYPE:
+                        if (t == ODDLToken.Type.DATA_TYPE) {
+                            setter.invokeExact(target, (Object) ((DataTypeToken) value).getValue());
+                            return;
+                        }
+                        break;
+                    default:
+                        if (t == ODDLToken.Type.REF) {
+                            setter.invokeExact(target, (Object) value.asRef());
+                            return;
+                        }
+                }
+            } catch (ODDLFormatException e) {
+                throw e;
+            } catch (Throwable e) {
+                throw rethrow(e);
+            }
+            throw new ODDLFormatException(value,
+                    "property " + name + " of " + owner.describe() + " must be of type " + type);
+        }
+    }
+
+    static final class ChildSlot {
+        final ClassBinding binding;
+
+        private final MethodHandle setter;
+        /** reads the list to which children are added, or <tt>null</tt> if the field holds a single child */
+        private final MethodHandle getter;
+
+        ChildSlot(ClassBinding binding, MethodHandle setter, MethodHandle getter) {
+            this.binding = binding;
+            this.setter  = setter;
+            this.getter  = getter;
+        }
+
+        @SuppressWarnings("unchecked")
+        void add(Object parent, Object child) {
+            try {
+                if (getter == null) {
+                    setter.invokeExact(parent, child);
+                    return;
+                }
+                final Object field = (Object) getter.invokeExact(parent);
+                List<Object> list = (List<Object>) field;
+                if (list == null) {
+                    list = new ArrayList<>();
+                    setter.invokeExact(parent, (Object) list);
+                }
+                list.add(child);
+            } catch (Throwable e) {
+                throw rethrow(e);
+            }
+        }
+    }
+
+    static final class DataSlot {
+        static final int BYTE   = 0;
+        static final int SHORT  = 1;
+        static final int INT    = 2;
+        static final int LONG   = 3;
+        static final int FLOAT  = 4;
+        static final int DOUBLE = 5;
+        static final int BOOL   = 6;
+        static final int STRING = 7;
+        static final int KINDS  = 8;
+
+        private static final Class<?>[] COMPONENTS = {
+            byte.class, short.class, int.class, long.class, float.class, double.class, boolean.class, String.class
+        };
+
+        final int kind;
+
+        /** the type of list accepted, and its name, or <tt>null</tt> to accept a list with any name or none */
+        private final DataType     type;
+        private final String       name;
+        private final MethodHandle setter;
+        /** the range of integers the array's elements can hold without truncation */
+        private final long         min;
+        private final long         max;
+
+        DataSlot(Field f, String name, MethodHandle setter) {
+            final Class<?> component = f.getType().getComponentType();
+            int k = -1;
+            for (int i=0; i<KINDS; i++) {
+                if (COMPONENTS[i] == component) {
+                    k = i;
+                }
+            }
+            if (k < 0) {
+                throw new IllegalArgumentException(
+                        describe(f) + ": data lists cannot be bound to " + f.getType().getName());
+            }
+            this.kind   = k;
+            this.type   = k <= LONG   ? DataType.INT
+                        : k <= DOUBLE ? DataType.FLOAT
+                        : k == BOOL   ? DataType.BOOL
+                        : DataType.STRING;
+            this.name   = name.isEmpty() ? null : name;
+            this.setter = setter;
+            this.min    = minValue(component);
+            this.max    = maxValue(component);
+        }
+
+        boolean accepts(DataType type, NameToken name) {
+            return this.type == type && (this.name == null || (name != null && this.name.equals(name.getValue())));
+        }
+
+        /**
+         * @return the value of an element of an integer list, checked against the range of the array's elements
+         * @throws ODDLFormatException if the array's elements cannot hold the value
+         */
+        long narrow(IntToken value, ClassBinding owner) throws ODDLFormatException {
+            final long v = value.getValue();
+            if (v < min || v > max) {
+                throw new ODDLFormatException(value,
+                        "data list element of " + owner.describe() + " is out of range for "
+                        + COMPONENTS[kind].getName());
+            }
+            return v;
+        }
+
+        /**
+         * @return a new, empty array to collect this slot's elements in
+         */
+        Object newBuffer(int capacity) {
+            return Array.newInstance(COMPONENTS[kind], capacity);
+        }
+
+        void store(Object target, Object array) {
+            try {
+                setter.invokeExact(target, array);
+            } catch (Throwable e) {
+                throw rethrow(e);
+            }
+        }
+
+        /**
+         * Copies packed little-endian elements into a new array, if their width matches the array's element type.
+         * Unsigned elements narrower than 64 bits are never copied, since they may not fit a signed element of the
+         * same width.
+         * @return the array, or <tt>null</tt> if the elements must be converted one by one
+         */
+        Object decode(DataTypeToken dataType, ByteBuffer elements) {
+            final int bits = dataType.getTypeBits();
+            if (kind < LONG && dataType.isTypeUnsigned()) {
+                return null;
+            }
+            switch (kind) {
+                case BYTE:
+                    if (bits == 8) {
+                        final byte[] ret = new byte[elements.remaining()];
+                        elements.get(ret);
+                        return ret;
+                    }
+                    break;
+                case SHORT:
+                    if (bits == 16) {
+                        final short[] ret = new short[elements.remaining() / 2];
+                        elements.asShortBuffer().get(ret);
+                        return ret;
+                    }
+                    break;
+                case INT:
+                    if (bits == 32) {
+                        final int[] ret = new int[elements.remaining() / 4];
+                        elements.asIntBuffer().get(ret);
+                        return ret;
+                    }
+                    break;
+                case LONG:
+                    if (bits == 64) {
+                        final long[] ret = new long[elements.remaining() / 8];
+                        elements.asLongBuffer().get(ret);
+                        return ret;
+                    }
+                    break;
+                case FLOAT:
+                    if (bits == 32) {
+                        final float[] ret = new float[elements.remaining() / 4];
+                        elements.asFloatBuffer().get(ret);
+                        return ret;
+                    }
+                    break;
+                case DOUBLE:
+                    if (bits == 64) {
+                        final double[] ret = new double[elements.remaining() / 8];
+                        elements.asDoubleBuffer().get(ret);
+                        return ret;
+                    }
+                    break;
+                case BOOL: {
+                    final boolean[] ret = new boolean[elements.remaining()];
+                    for (int i=0; i<ret.length; i++) {
+                        ret[i] = elements.get() != 0;
+                    }
+                    return ret;
+                }
+            }
+            return null;
+        }
+    }
+}
@@ -0,0 +1,428 @@
+/*
+ * Jiggatech OpenDDL Parser
+ *
+ * Copyright (c) 2019 Nikita Leonidov
+ *
+ * MIT License
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package com.jiggawatt.jt.oddl;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.function.Supplier;
+import java.util.function.ToLongFunction;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * A thread-safe cache of parsed text files. Each document is parsed with a fresh listener from a supplier, and the
+ * listener's result is kept until the file changes or the document is evicted.
+ * <p>
+ * Every lookup checks the file's size and last modification time; a cached document whose file no longer matches is
+ * discarded and the file is parsed again. Each document has a weight, by default the size of its file, and the cache
+ * evicts the least recently used documents whenever the total weight exceeds its budget. A document heavier than the
+ * whole budget is returned but not retained.
+ * <p>
+ * When several threads ask for the same uncached file at once, only one of them parses it, and the others wait for and
+ * share its result, or its exception. Failures are not cached:
+ * <pre>
+ * {@code
+ * DocumentCache<Scene> scenes = new DocumentCache<>(SceneListener::new, 256L << 20, Scene::estimateSize);
+ * Scene scene = scenes.get(path);
+ * }
+ * </pre>
+ *
+ * @param <T> the type of result produced by the listeners
+ *
+ * @author Nikita Leonidov
+ */
+public final class DocumentCache<T> {
+
+    private final Supplier<? extends ODDLListener<? extends T>> listeners;
+    private final ToLongFunction<? super T>                     weigher;
+    private final long                                          maxWeight;
+
+    /** guards all fields below */
+    private final Object lock = new Object();
+
+    /** cached documents, least recently used first */
+    private final LinkedHashMap<Path, Entry<T>> entries = new LinkedHashMap<>(16, 0.75f, true);
+    /** documents being parsed, by the file version they are parsed from */
+    private final Map<Version, Load<T>>         loading = new HashMap<>();
+
+    private long weight;
+    /** the number of loads started, which orders the entries they store */
+    private long loadCount;
+
+    private long hits;
+    private long misses;
+    private long loadFailures;
+    private long evictions;
+    private long invalidations;
+    private long loadNanos;
+
+    /**
+     * Creates a cache that weighs each document by the size of its file.
+     * @param listeners  supplies a new listener for each file parsed
+     * @param maxWeight  the total file size, in bytes, of the documents to retain
+     */
+    public DocumentCache(Supplier<? extends ODDLListener<? extends T>> listeners, long maxWeight) {
+        this(listeners, maxWeight, null);
+    }
+
+    /**
+     * @param listeners  supplies a new listener for each file parsed
+     * @param maxWeight  the total weight of the documents to retain
+     * @param weigher    estimates the memory retained by a document, e.g. in bytes; must return a non-negative value
+     *                   and always the same value for the same document
+     */
+    public DocumentCache(Supplier<? extends ODDLListener<? extends T>> listeners, long maxWeight, ToLongFunction<? super T> weigher) {
+        if (maxWeight < 0) {
+            throw new IllegalArgumentException("maxWeight: " + maxWeight);
+        }
+        this.listeners = requireNonNull(listeners, "listeners");
+        this.maxWeight = maxWeight;
+        this.weigher   = weigher;
+    }
+
+    /**
+     * Returns the document parsed from a file, parsing it only if it is not cached or has changed since it was cached.
+     * @param path path to a text OpenDDL file
+     * @return the result of the listener that parsed the current version of the file
+     * @throws IOException         when an IO exception occurs
+     * @throws ODDLParseException  when the file does not conform to the OpenDDL grammar
+     * @throws ODDLFormatException when the file does not conform to the listener's expected format
+     */
+    public T get(Path path) throws IOException, ODDLParseException, ODDLFormatException {
+        final Path                key   = path.toAbsolutePath().normalize();
+        final BasicFileAttributes attrs = Files.readAttributes(key, BasicFileAttributes.class);
+        final Version             v     = new Version(key, attrs.size(), attrs.lastModifiedTime());
+
+        final Load<T> load;
+        final boolean owner;
+        synchronized (lock) {
+            final Entry<T> e = entries.get(key);
+            if (e != null) {
+                if (e.version.equals(v)) {
+                    hits++;
+                    return e.value;
+                }
+                entries.remove(key);
+                weight -= e.weight;
+                invalidations++;
+            }
+            misses++;
+
+            Load<T> l = loading.get(v);
+            owner = l == null;
+            if (owner) {
+                l = new Load<>(++loadCount);
+                loading.put(v, l);
+            }
+            load = l;
+        }
+
+        return owner ? load(v, load) : load.await();
+    }
+
+    /**
+     * Discards the cached document for a file, if any. A parse of the file already in progress is not affected.
+     * @param path path to a file
+     */
+    public void invalidate(Path path) {
+        final Path key = path.toAbsolutePath().normalize();
+        synchronized (lock) {
+            final Entry<T> e = entries.remove(key);
+            if (e != null) {
+                weight -= e.weight;
+                invalidations++;
+            }
+        }
+    }
+
+    /**
+     * Discards all cached documents.
+     */
+    public void invalidateAll() {
+        synchronized (lock) {
+            invalidations += entries.size();
+            entries.clear();
+            weight = 0;
+        }
+    }
+
+    private T load(Version v, Load<T> load) throws IOException, ODDLParseException, ODDLFormatException {
+        final long start = System.nanoTime();
+
+        T         value   = null;
+        long      w       = 0;
+        Throwable failure = null;
+        try (InputStream in = Files.newInputStream(v.path)) {
+            value = new ODDLReader(in).read(listeners.get());
+            w     = weigher == null ? v.size : weigher.applyAsLong(value);
+            if (w < 0) {
+                throw new IllegalStateException("negative weight " + w + " for " + v.path);
+            }
+        } catch (Throwable e) {
+            failure = e;
+        }
+
+        synchronized (lock) {
+            loading.remove(v);
+            loadNanos += System.nanoTime() - start;
+            if (failure != null) {
+                loadFailures++;
+            } else if (w <= maxWeight && !isSuperseded(v.path, load)) {
+                final Entry<T> old = entries.put(v.path, new Entry<>(v, value, w, load.sequence));
+                if (old != null) {
+                    weight -= old.weight;
+                }
+                weight += w;
+                evict();
+            }
+        }
+
+        load.complete(value, failure);
+        return load.await();
+    }
+
+    /**
+     * @return <tt>true</tt> if a load of the file that started after the given one has already stored its document
+     */
+    private boolean isSuperseded(Path path, Load<T> load) {
+        final Entry<T> current = entries.get(path);
+        return current != null && current.sequence > load.sequence;
+    }
+
+    private void evict() {
+        final Iterator<Entry<T>> it = entries.values().iterator();
+        while (weight > maxWeight && it.hasNext()) {
+            weight -= it.next().weight;
+            it.remove();
+            evictions++;
+        }
+    }
+
+    // statistics
+    //==================================================================================================================
+    /**
+     * @return the number of documents currently cached
+     */
+    public int size() {
+        synchronized (lock) {
+            return entries.size();
+        }
+    }
+
+    /**
+     * @return the total weight of the documents currently cached
+     */
+    public long getWeight() {
+        synchronized (lock) {
+            return weight;
+        }
+    }
+
+    /**
+     * @return the maximum total weight of the documents cached
+     */
+    public long getMaxWeight() {
+        return maxWeight;
+    }
+
+    /**
+     * @return the number of lookups that returned a cached document
+     */
+    public long getHitCount() {
+        synchronized (lock) {
+            return hits;
+        }
+    }
+
+    /**
+     * @return the number of lookups that parsed the file, or waited for another thread to parse it
+     */
+    public long getMissCount() {
+        synchronized (lock) {
+            return misses;
+        }
+    }
+
+    /**
+     * @return the number of parses that failed
+     */
+    public long getLoadFailureCount() {
+        synchronized (lock) {
+            return loadFailures;
+        }
+    }
+
+    /**
+     * @return the total time spent parsing files, in nanoseconds
+     */
+    public long getLoadNanos() {
+        synchronized (lock) {
+            return loadNanos;
+        }
+    }
+
+    /**
+     * @return the number of documents discarded to stay within the weight budget
+     */
+    public long getEvictionCount() {
+        synchronized (lock) {
+            return evictions;
+        }
+    }
+
+    /**
+     * @return the number of documents discarded because their file changed, or by an <tt>invalidate</tt> method
+     */
+    public long getInvalidationCount() {
+        synchronized (lock) {
+            return invalidations;
+        }
+    }
+
+    @Override
+    public String toString() {
+        synchronized (lock) {
+            return "DocumentCache{" +
+                    "size=" + entries.size() +
+                    ", weight=" + weight +
+                    ", maxWeight=" + maxWeight +
+                    ", hits=" + hits +
+                    ", misses=" + misses +
+                    ", evictions=" + evictions +
+                    ", invalidations=" + invalidations +
+                    '}';
+        }
+    }
+
+    // internal
+    //==================================================================================================================
+    /** identifies the contents of a file by its size and modification time */
+    private static final class Version {
+        final Path     path;
+        final long     size;
+        final FileTime modified;
+
+        Version(Path path, long size, FileTime modified) {
+            this.path     = path;
+            this.size     = size;
+            this.modified = modified;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Version)) {
+                return false;
+            }
+            Version v = (Version) o;
+            return size == v.size && path.equals(v.path) && modified.equals(v.modified);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * (31 * path.hashCode() + Long.hashCode(size)) + modified.hashCode();
+        }
+    }
+
+    private static final class Entry<T> {
+        final Version version;
+        final T       value;
+        final long    weight;
+        /** the sequence number of the load that stored the entry */
+        final long    sequence;
+
+        Entry(Version version, T value, long weight, long sequence) {
+            this.version  = version;
+            this.value    = value;
+            this.weight   = weight;
+            this.sequence = sequence;
+        }
+    }
+
+    /** a parse in progress, awaited by every thread that asked for the same file version meanwhile */
+    private static final class Load<T> {
+        private final CountDownLatch done = new CountDownLatch(1);
+        /** orders the load among all loads of the cache */
+        private final long           sequence;
+
+        private T         value;
+        private Throwable failure;
+
+        Load(long sequence) {
+            this.sequence = sequence;
+        }
+
+        void complete(T value, Throwable failure) {
+            this.value   = value;
+            this.failure = failure;
+            done.countDown();
+        }
+
+        T await() throws IOException, ODDLParseException, ODDLFormatException {
+            boolean interrupted = false;
+            while (true) {
+                try {
+                    done.await();
+                    break;
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+
+            final Throwable e = failure;
+            if (e == null) {
+                return value;
+            } else if (e instanceof IOException) {
+                throw (IOException) e;
+            } else if (e instanceof ODDLParseException) {
+                throw (ODDLParseException) e;
+            } else if (e instanceof ODDLFormatException) {
+                throw (ODDLFormatException) e;
+            } else if (e instanceof RuntimeException) {
+                throw (RuntimeException) e;
+            } else if (e instanceof Error) {
+                throw (Error) e;
+            }
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,402 @@
+/*
+ * Jiggatech OpenDDL Parser
+ *
+ * Copyright (c) 2019 Nikita Leonidov
+ *
+ * MIT License
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.jiggawatt.jt.oddl;
+
+import java.io.IOException;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A bounded single-producer, single-consumer queue of listener events. Events are stored in preallocated parallel
+ * arrays, so publishing an event allocates nothing; the producer and consumer each advance their own sequence counter
+ * and only read the other's, which makes the ring lock-free. A side that finds the ring full or empty spins briefly,
+ * then yields, then sleeps in short intervals until the other side catches up.
+ *
+ * @author Nikita Leonidov
+ */
+final class EventRing {
+
+    // event kinds
+    //==================================================================================================================
+    static final byte BEGIN            = 0;
+    static final byte END              = 1;
+    static final byte FAIL             = 2;
+    static final byte BOOL             = 3;
+    static final byte INT              = 4;
+    static final byte FLOAT            = 5;
+    static final byte STRING           = 6;
+    static final byte REF              = 7;
+    static final byte TYPE             = 8;
+    static final byte BEGIN_LIST       = 9;
+    static final byte END_LIST         = 10;
+    static final byte BEGIN_ARRAY_LIST = 11;
+    static final byte END_ARRAY_LIST   = 12;
+    static final byte BEGIN_SUB_ARRAY  = 13;
+    static final byte END_SUB_ARRAY    = 14;
+    static final byte BEGIN_CUSTOM     = 15;
+    static final byte END_CUSTOM       = 16;
+
+    private static final int SPINS  = 128;
+    private static final int YIELDS = 16;
+    private static final long SLEEP = 20_000L;
+
+    private final int mask;
+
+    private final byte[]   kinds;
+    private final Object[] first;
+    private final Object[] second;
+    private final Object[] third;
+    private final int[]    sizes;
+
+    /** the next sequence the consumer will read; written by the consumer only */
+    private final AtomicLong head = new AtomicLong();
+    /** the next sequence the producer will write; written by the producer only */
+    private final AtomicLong tail = new AtomicLong();
+
+    private long producerTail;
+    private long producerHeadCache;
+
+    private long consumerHead;
+    private long consumerTailCache;
+
+    private volatile boolean closed;
+
+    /**
+     * @param capacity the number of events the ring can hold; rounded up to a power of two
+     */
+    EventRing(int capacity) {
+        if (capacity < 1 || capacity > 1 << 30) {
+            throw new IllegalArgumentException("capacity: " + capacity);
+        }
+        int size  = capacity == 1 ? 1 : Integer.highestOneBit(capacity - 1) << 1;
+        this.mask = size - 1;
+        kinds  = new byte[size];
+        first  = new Object[size];
+        second = new Object[size];
+        third  = new Object[size];
+        sizes  = new int[size];
+    }
+
+    int capacity() {
+        return mask + 1;
+    }
+
+    /**
+     * Makes the producer fail with a {@link CancellationException} the next time it waits for space, and the consumer
+     * the next time it waits for an event.
+     */
+    void close() {
+        closed = true;
+    }
+
+    // producer
+    //==================================================================================================================
+    /**
+     * Publishes an event, waiting for space if the ring is full.
+     * @throws CancellationException if the ring was closed while waiting
+     */
+    private void put(byte kind, Object a, Object b, Object c, int size) {
+        final long t = producerTail;
+        if (t - producerHeadCache > mask) {
+            producerHeadCache = awaitHead(t - mask);
+        }
+
+        final int i = (int) t & mask;
+        kinds[i]  = kind;
+        first[i]  = a;
+        second[i] = b;
+        third[i]  = c;
+        sizes[i]  = size;
+
+        producerTail = t + 1;
+        tail.lazySet(t + 1);
+    }
+
+    private long awaitHead(long min) {
+        long h;
+        for (int idle=0; (h = head.get()) < min; idle++) {
+            idle(idle);
+        }
+        return h;
+    }
+
+    /**
+     * @return a listener that publishes the events it receives to this ring
+     */
+    Publisher publisher() {
+        return new Publisher();
+    }
+
+    /**
+     * Publishes a failure, which {@link #drain(ODDLListener)} rethrows on the consumer thread.
+     */
+    void fail(Throwable e) {
+        put(FAIL, e, null, null, 0);
+    }
+
+    /**
+     * Publishes every event it receives to the ring. Its methods never throw checked exceptions, since the listener
+     * they stand in for runs on the consumer thread, and throw {@link CancellationException} if the ring is closed
+     * while waiting for space.
+     */
+    final class Publisher implements ODDLListener<Void> {
+        @Override
+        public void begin() {
+            put(BEGIN, null, null, null, 0);
+        }
+
+        @Override
+        public Void end(int row, int col) {
+            put(END, null, null, null, row);
+            put(END, null, null, null, col);
+            return null;
+        }
+
+        @Override
+        public void value(BoolToken value) {
+            put(BOOL, value, null, null, 0);
+        }
+
+        @Override
+        public void value(IntToken value) {
+            put(INT, value, null, null, 0);
+        }
+
+        @Override
+        public void value(FloatToken value) {
+            put(FLOAT, value, null, null, 0);
+        }
+
+        @Override
+        public void value(StringToken value) {
+            put(STRING, value, null, null, 0);
+        }
+
+        @Override
+        public void value(RefToken value) {
+            put(REF, value, null, null, 0);
+        }
+
+        @Override
+        public void value(DataTypeToken value) {
+            put(TYPE, value, null, null, 0);
+        }
+
+        @Override
+        public void beginListStructure(DataTypeToken dataType, NameToken name) {
+            put(BEGIN_LIST, dataType, name, null, 0);
+        }
+
+        @Override
+        public void endListStructure(DataTypeToken dataType, NameToken name) {
+            put(END_LIST, dataType, name, null, 0);
+        }
+
+        @Override
+        public void beginArrayListStructure(DataTypeToken dataType, int subarraySize, NameToken name) {
+            put(BEGIN_ARRAY_LIST, dataType, name, null, subarraySize);
+        }
+
+        @Override
+        public void endArrayListStructure(DataTypeToken dataType, int subarraySize, NameToken name) {
+            put(END_ARRAY_LIST, dataType, name, null, subarraySize);
+        }
+
+        @Override
+        public void beginSubArray(DataTypeToken dataType, int subarraySize) {
+            put(BEGIN_SUB_ARRAY, dataType, null, null, subarraySize);
+        }
+
+        @Override
+        public void endSubArray(DataTypeToken dataType, int subarraySize) {
+            put(END_SUB_ARRAY, dataType, null, null, subarraySize);
+        }
+
+        @Override
+        public void beginCustomStructure(IdentifierToken identifier, NameToken name, PropertyMap properties) {
+            put(BEGIN_CUSTOM, identifier, name, properties, 0);
+        }
+
+        @Override
+        public void endCustomStructure(IdentifierToken identifier, NameToken name, PropertyMap properties) {
+            put(END_CUSTOM, identifier, name, properties, 0);
+        }
+    }
+
+    // consumer
+    //==================================================================================================================
+    /**
+     * Waits for the next event to be published.
+     * @return the slot holding the event; valid until {@link #release()}
+     * @throws CancellationException if the ring was closed while waiting
+     */
+    private int next() {
+        final long h = consumerHead;
+        if (h >= consumerTailCache) {
+            consumerTailCache = awaitTail(h + 1);
+        }
+        return (int) h & mask;
+    }
+
+    /**
+     * Frees the slot returned by the last call to {@link #next()}.
+     */
+    private void release() {
+        final int i = (int) consumerHead & mask;
+        first[i]  = null;
+        second[i] = null;
+        third[i]  = null;
+        head.lazySet(++consumerHead);
+    }
+
+    private byte kind(int slot) {
+        return kinds[slot];
+    }
+
+    private Object first(int slot) {
+        return first[slot];
+    }
+
+    private Object second(int slot) {
+        return second[slot];
+    }
+
+    private Object third(int slot) {
+        return third[slot];
+    }
+
+    private int size(int slot) {
+        return sizes[slot];
+    }
+
+    private long awaitTail(long min) {
+        long t;
+        for (int idle=0; (t = tail.get()) < min; idle++) {
+            idle(idle);
+        }
+        return t;
+    }
+
+    private void idle(int count) {
+        if (closed) {
+            throw new CancellationException("event ring closed");
+        }
+        if (count < SPINS) {
+            Thread.onSpinWait();
+        } else if (count < SPINS + YIELDS) {
+            Thread.yield();
+        } else {
+            LockSupport.parkNanos(SLEEP);
+        }
+    }
+
+    /**
+     * Passes events to a listener until the end of the document or a failure is published.
+     * @return the listener's result
+     * @throws CancellationException if the ring is closed while waiting for an event
+     */
+    <T> T drain(ODDLListener<T> l) throws IOException, ODDLParseException, ODDLFormatException {
+        while (true) {
+            final int i = next();
+            switch (kind(i)) {
+                case BEGIN:
+                    l.begin();
+                    break;
+                case END: {
+                    final int row = size(i);
+                    release();
+                    final int col = size(next());
+                    release();
+                    return l.end(row, col);
+                }
+                case FAIL:
+                    throw rethrow((Throwable) first(i));
+                case BOOL:
+                    l.value((BoolToken) first(i));
+                    break;
+                case INT:
+                    l.value((IntToken) first(i));
+                    break;
+                case FLOAT:
+                    l.value((FloatToken) first(i));
+                    break;
+                case STRING:
+                    l.value((StringToken) first(i));
+                    break;
+                case REF:
+                    l.value((RefToken) first(i));
+                    break;
+                case TYPE:
+                    l.value((DataTypeToken) first(i));
+                    break;
+                case BEGIN_LIST:
+                    l.beginListStructure((DataTypeToken) first(i), (NameToken) second(i));
+                    break;
+                case END_LIST:
+                    l.endListStructure((DataTypeToken) first(i), (NameToken) second(i));
+                    break;
+                case BEGIN_ARRAY_LIST:
+                    l.beginArrayListStructure((DataTypeToken) first(i), size(i), (NameToken) second(i));
+                    break;
+                case END_ARRAY_LIST:
+                    l.endArrayListStructure((DataTypeToken) first(i), size(i), (NameToken) second(i));
+                    break;
+                case BEGIN_SUB_ARRAY:
+                    l.beginSubArray((DataTypeToken) first(i), size(i));
+                    break;
+                case END_SUB_ARRAY:
+                    l.endSubArray((DataTypeToken) first(i), size(i));
+                    break;
+                case BEGIN_CUSTOM:
+                    l.beginCustomStructure((IdentifierToken) first(i), (NameToken) second(i), (PropertyMap) third(i));
+                    break;
+                case END_CUSTOM:
+                    l.endCustomStructure((IdentifierToken) first(i), (NameToken) second(i), (PropertyMap) third(i));
+                    break;
+                default:
+                    throw new IllegalStateException("unknown event kind " + kind(i));
+            }
+            release();
+        }
+    }
+
+    private static RuntimeException rethrow(Throwable e) throws IOException, ODDLParseException, ODDLFormatException {
+        if (e instanceof IOException) {
+            throw (IOException) e;
+        } else if (e instanceof ODDLParseException) {
+            throw (ODDLParseException) e;
+        } else if (e instanceof ODDLFormatException) {
+            throw (ODDLFormatException) e;
+        } else if (e instanceof RuntimeException) {
+            throw (RuntimeException) e;
+        } else if (e instanceof Error) {
+            throw (Error) e;
+        }
+        throw new IllegalStateException(e);
+    }
+}
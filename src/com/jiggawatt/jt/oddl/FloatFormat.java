@@ -0,0 +1,455 @@
+/*
+ * Jiggatech OpenDDL Parser
+ *
+ * Copyright (c) 2019 Nikita Leonidov
+ *
+ * MIT License
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.jiggawatt.jt.oddl;
+
+import java.math.BigInteger;
+
+import static java.lang.Math.multiplyHigh;
+
+/**
+ * Formats floating-point values as the shortest decimal literals that read back to the same value, writing ASCII
+ * digits straight into a byte array. No objects are allocated per call.
+ * <p>
+ * The digits are computed with Raffaello Giulietti's Schubfach algorithm ("The Schubfach way to render doubles",
+ * 2020), the same algorithm used by {@link Double#toString(double)} since Java 19. Output follows the layout of
+ * {@link Double#toString(double)}: plain notation for magnitudes in [10<sup>-3</sup>, 10<sup>7</sup>), scientific
+ * notation otherwise. Callers must handle NaN and infinities, which have no OpenDDL decimal literal.
+ *
+ * @author Nikita Leonidov
+ */
+final class FloatFormat {
+
+    /** upper bound on the number of bytes written by {@link #writeDouble} or {@link #writeFloat} */
+    static final int MAX_LENGTH = 26;
+
+    // double parameters
+    private static final int  D_P       = 53;
+    private static final int  D_Q_MIN   = -1074;
+    private static final long D_C_MIN   = 1L << (D_P-1);
+    private static final long D_C_TINY  = 3;
+    private static final long D_T_MASK  = D_C_MIN - 1;
+    private static final int  D_BQ_MASK = 0x7ff;
+
+    // float parameters
+    private static final int F_P       = 24;
+    private static final int F_Q_MIN   = -149;
+    private static final int F_C_MIN   = 1 << (F_P-1);
+    private static final int F_C_TINY  = 8;
+    private static final int F_T_MASK  = F_C_MIN - 1;
+    private static final int F_BQ_MASK = 0xff;
+
+    private static final long MASK_63 = (1L << 63) - 1;
+    private static final long MASK_32 = (1L << 32) - 1;
+
+    private static final int K_MIN = -324;
+    private static final int K_MAX = 292;
+
+    /** g1, g0 pairs for 10^-k, k in [K_MIN, K_MAX]; see {@link #table()} */
+    private static final long[] G = table();
+
+    private static final long[] POW10 = new long[19];
+    static {
+        POW10[0] = 1;
+        for (int i=1; i<POW10.length; i++) {
+            POW10[i] = POW10[i-1] * 10;
+        }
+    }
+
+    private FloatFormat() {
+    }
+
+    /**
+     * Writes the shortest decimal literal that reads back as <tt>v</tt>.
+     * @return the position following the last byte written
+     */
+    static int writeDouble(double v, byte[] buf, int pos) {
+        long bits = Double.doubleToRawLongBits(v);
+        long t    = bits & D_T_MASK;
+        int  bq   = (int) (bits >>> (D_P-1)) & D_BQ_MASK;
+
+        if (bits < 0) {
+            buf[pos++] = '-';
+        }
+
+        if (bq != 0) {
+            int  mq = -D_Q_MIN + 1 - bq;
+            long c  = D_C_MIN | t;
+
+            // integers below 2^53 need no search
+            if (0 < mq && mq < D_P) {
+                long f = c >> mq;
+                if (f << mq == c) {
+                    return writeDecimal(f, 0, buf, pos);
+                }
+            }
+            return toDecimal(-mq, c, 0, buf, pos);
+        }
+
+        if (t != 0) {
+            return t < D_C_TINY
+                ? toDecimal(D_Q_MIN, 10*t, -1, buf, pos)
+                : toDecimal(D_Q_MIN, t, 0, buf, pos);
+        }
+
+        return writeDecimal(0, 0, buf, pos);
+    }
+
+    /**
+     * Writes the shortest decimal literal that reads back as <tt>v</tt> when parsed at single precision.
+     * @return the position following the last byte written
+     */
+    static int writeFloat(float v, byte[] buf, int pos) {
+        int bits = Float.floatToRawIntBits(v);
+        int t    = bits & F_T_MASK;
+        int bq   = (bits >>> (F_P-1)) & F_BQ_MASK;
+
+        if (bits < 0) {
+            buf[pos++] = '-';
+        }
+
+        if (bq != 0) {
+            int mq = -F_Q_MIN + 1 - bq;
+            int c  = F_C_MIN | t;
+
+            if (0 < mq && mq < F_P) {
+                int f = c >> mq;
+                if (f << mq == c) {
+                    return writeDecimal(f, 0, buf, pos);
+                }
+            }
+            return toDecimal(-mq, c, 0, buf, pos);
+        }
+
+        if (t != 0) {
+            return t < F_C_TINY
+                ? toDecimal(F_Q_MIN, 10*t, -1, buf, pos)
+                : toDecimal(F_Q_MIN, t, 0, buf, pos);
+        }
+
+        return writeDecimal(0, 0, buf, pos);
+    }
+
+    /**
+     * Converts a float to the bits of the nearest IEEE 754 half-precision value, rounding to nearest even.
+     */
+    static int toHalfBits(float f) {
+        int bits = Float.floatToRawIntBits(f);
+        int sign = (bits >>> 16) & 0x8000;
+        int exp  = (bits >>> 23) & 0xff;
+        int mant = bits & 0x7fffff;
+
+        if (exp == 0xff) {
+            return sign | 0x7c00 | (mant != 0 ? 0x200 | (mant >>> 13) : 0);
+        }
+
+        int e = exp - 127 + 15;
+        if (e >= 0x1f) {
+            return sign | 0x7c00;
+        }
+
+        if (e <= 0) {
+            if (e < -10) {
+                return sign;
+            }
+            // subnormal half: shift the full significand into place, then round
+            mant |= 0x800000;
+            int shift = 14 - e;
+            int half  = mant >>> shift;
+            int rem   = mant & ((1 << shift) - 1);
+            int mid   = 1 << (shift-1);
+            if (rem > mid || (rem == mid && (half & 1) != 0)) {
+                half++;
+            }
+            return sign | half;
+        }
+
+        int half = (e << 10) | (mant >>> 13);
+        int rem  = mant & 0x1fff;
+        if (rem > 0x1000 || (rem == 0x1000 && (half & 1) != 0)) {
+            half++; // may carry into the exponent, which is still correct
+        }
+        return sign | half;
+    }
+
+    /**
+     * Converts the bits of an IEEE 754 half-precision value to a float.
+     */
+    static float fromHalfBits(int half) {
+        int sign = (half & 0x8000) << 16;
+        int exp  = (half >>> 10) & 0x1f;
+        int mant = half & 0x3ff;
+
+        if (exp == 0x1f) {
+            return Float.intBitsToFloat(sign | 0x7f800000 | (mant << 13));
+        }
+        if (exp == 0) {
+            float f = mant * 0x1p-24f;
+            return sign != 0 ? -f : f;
+        }
+        return Float.intBitsToFloat(sign | ((exp - 15 + 127) << 23) | (mant << 13));
+    }
+
+    // double digits
+    //==================================================================================================================
+    private static int toDecimal(int q, long c, int dk, byte[] buf, int pos) {
+        int  out = (int) c & 0x1;
+        long cb  = c << 2;
+        long cbr = cb + 2;
+        long cbl;
+        int  k;
+
+        if (c != D_C_MIN | q == D_Q_MIN) {
+            cbl = cb - 2;
+            k   = flog10pow2(q);
+        } else {
+            cbl = cb - 1;
+            k   = flog10threeQuartersPow2(q);
+        }
+        int h = q + flog2pow10(-k) + 2;
+
+        long g1 = G[(k - K_MIN) << 1];
+        long g0 = G[(k - K_MIN) << 1 | 1];
+
+        long vb  = rop(g1, g0, cb << h);
+        long vbl = rop(g1, g0, cbl << h);
+        long vbr = rop(g1, g0, cbr << h);
+
+        long s = vb >> 2;
+        if (s >= 100) {
+            long sp10 = 10 * multiplyHigh(s, 115_292_150_460_684_698L << 4);
+            long tp10 = sp10 + 10;
+            boolean upin = vbl + out <= sp10 << 2;
+            boolean wpin = (tp10 << 2) + out <= vbr;
+            if (upin != wpin) {
+                return writeDecimal(upin ? sp10 : tp10, k, buf, pos);
+            }
+        }
+
+        long t = s + 1;
+        boolean uin = vbl + out <= s << 2;
+        boolean win = (t << 2) + out <= vbr;
+        if (uin != win) {
+            return writeDecimal(uin ? s : t, k + dk, buf, pos);
+        }
+
+        long cmp = vb - ((s + t) << 1);
+        return writeDecimal(cmp < 0 || cmp == 0 && (s & 0x1) == 0 ? s : t, k + dk, buf, pos);
+    }
+
+    private static long rop(long g1, long g0, long cp) {
+        long x1  = multiplyHigh(g0, cp);
+        long y0  = g1 * cp;
+        long y1  = multiplyHigh(g1, cp);
+        long z   = (y0 >>> 1) + x1;
+        long vbp = y1 + (z >>> 63);
+        return vbp | ((z & MASK_63) + MASK_63) >>> 63;
+    }
+
+    // float digits
+    //==================================================================================================================
+    private static int toDecimal(int q, int c, int dk, byte[] buf, int pos) {
+        int  out = c & 0x1;
+        long cb  = (long) c << 2;
+        long cbr = cb + 2;
+        long cbl;
+        int  k;
+
+        if (c != F_C_MIN | q == F_Q_MIN) {
+            cbl = cb - 2;
+            k   = flog10pow2(q);
+        } else {
+            cbl = cb - 1;
+            k   = flog10threeQuartersPow2(q);
+        }
+        int h = q + flog2pow10(-k) + 33;
+
+        long g = G[(k - K_MIN) << 1] + 1;
+
+        int vb  = rop(g, cb << h);
+        int vbl = rop(g, cbl << h);
+        int vbr = rop(g, cbr << h);
+
+        int s = vb >> 2;
+        if (s >= 100) {
+            int sp10 = 10 * (int) (s * 1_717_986_919L >>> 34);
+            int tp10 = sp10 + 10;
+            boolean upin = vbl + out <= sp10 << 2;
+            boolean wpin = (tp10 << 2) + out <= vbr;
+            if (upin != wpin) {
+                return writeDecimal(upin ? sp10 : tp10, k, buf, pos);
+            }
+        }
+
+        int t = s + 1;
+        boolean uin = vbl + out <= s << 2;
+        boolean win = (t << 2) + out <= vbr;
+        if (uin != win) {
+            return writeDecimal(uin ? s : t, k + dk, buf, pos);
+        }
+
+        int cmp = vb - ((s + t) << 1);
+        return writeDecimal(cmp < 0 || cmp == 0 && (s & 0x1) == 0 ? s : t, k + dk, buf, pos);
+    }
+
+    private static int rop(long g, long cp) {
+        long x1  = multiplyHigh(g, cp);
+        long vbp = x1 >>> 31;
+        return (int) (vbp | ((x1 & MASK_32) + MASK_32) >>> 32);
+    }
+
+    // layout
+    //==================================================================================================================
+    /**
+     * Writes <tt>f * 10^e</tt>.
+     */
+    private static int writeDecimal(long f, int e, byte[] buf, int pos) {
+        if (f == 0) {
+            buf[pos++] = '0';
+            buf[pos++] = '.';
+            buf[pos++] = '0';
+            return pos;
+        }
+
+        while (f % 10 == 0) {
+            f /= 10;
+            e++;
+        }
+
+        int len = 1;
+        while (len < POW10.length && f >= POW10[len]) {
+            len++;
+        }
+
+        // decimal exponent of the leading digit
+        int exp = e + len - 1;
+
+        if (exp >= 0 && exp < 7) {
+            // ddd.ddd, with at least one digit on either side of the point
+            int intDigits = exp + 1;
+            if (len <= intDigits) {
+                pos = writeDigits(f, len, buf, pos);
+                for (int i=len; i<intDigits; i++) {
+                    buf[pos++] = '0';
+                }
+                buf[pos++] = '.';
+                buf[pos++] = '0';
+            } else {
+                long div = POW10[len - intDigits];
+                pos = writeDigits(f / div, intDigits, buf, pos);
+                buf[pos++] = '.';
+                pos = writeDigits(f % div, len - intDigits, buf, pos);
+            }
+        } else if (exp < 0 && exp >= -3) {
+            // 0.000ddd
+            buf[pos++] = '0';
+            buf[pos++] = '.';
+            for (int i=-1; i>exp; i--) {
+                buf[pos++] = '0';
+            }
+            pos = writeDigits(f, len, buf, pos);
+        } else {
+            // d.dddE[-]xx
+            long div = POW10[len - 1];
+            buf[pos++] = (byte) ('0' + f / div);
+            buf[pos++] = '.';
+            if (len > 1) {
+                pos = writeDigits(f % div, len - 1, buf, pos);
+            } else {
+                buf[pos++] = '0';
+            }
+            buf[pos++] = 'E';
+            if (exp < 0) {
+                buf[pos++] = '-';
+                exp = -exp;
+            }
+            if (exp >= 100) {
+                buf[pos++] = (byte) ('0' + exp / 100);
+            }
+            if (exp >= 10) {
+                buf[pos++] = (byte) ('0' + exp / 10 % 10);
+            }
+            buf[pos++] = (byte) ('0' + exp % 10);
+        }
+
+        return pos;
+    }
+
+    /**
+     * Writes exactly <tt>n</tt> digits of <tt>v</tt>, padding with leading zeros.
+     */
+    private static int writeDigits(long v, int n, byte[] buf, int pos) {
+        for (int i=pos+n-1; i>=pos; i--) {
+            buf[i] = (byte) ('0' + v % 10);
+            v /= 10;
+        }
+        return pos + n;
+    }
+
+    // math
+    //==================================================================================================================
+    /** floor(q log10(2)) */
+    private static int flog10pow2(int q) {
+        return (int) (q * 661_971_961_083L >> 41);
+    }
+
+    /** floor(log10(3/4 2^q)) */
+    private static int flog10threeQuartersPow2(int q) {
+        return (int) (q * 661_971_961_083L + -274_743_187_321L >> 41);
+    }
+
+    /** floor(e log2(10)) */
+    private static int flog2pow10(int e) {
+        return (int) (e * 913_124_641_741L >> 38);
+    }
+
+    /**
+     * For each k, writes 10<sup>-k</sup> as β 2<sup>r</sup> with 2<sup>125</sup> &le; β &lt; 2<sup>126</sup>, and
+     * stores g = floor(β) + 1 split into its upper and lower 63 bits. Computed once with exact arithmetic rather than
+     * shipped as a literal table.
+     */
+    private static long[] table() {
+        long[] ret = new long[(K_MAX - K_MIN + 1) * 2];
+
+        for (int k=K_MIN; k<=K_MAX; k++) {
+            BigInteger beta;
+            if (k <= 0) {
+                BigInteger p = BigInteger.TEN.pow(-k);
+                int r = p.bitLength() - 126;
+                beta = r >= 0 ? p.shiftRight(r) : p.shiftLeft(-r);
+            } else {
+                BigInteger d = BigInteger.TEN.pow(k);
+                beta = BigInteger.ONE.shiftLeft(d.bitLength() + 125).divide(d);
+            }
+
+            BigInteger g = beta.add(BigInteger.ONE);
+            ret[(k - K_MIN) << 1]     = g.shiftRight(63).longValue();
+            ret[(k - K_MIN) << 1 | 1] = g.longValue() & MASK_63;
+        }
+
+        return ret;
+    }
+}
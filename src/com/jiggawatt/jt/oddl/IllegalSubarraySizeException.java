@@ -37,7 +37,21 @@ import java.io.IOException;
 public class IllegalSubarraySizeException extends IOException {
     private static final long serialVersionUID = 4475058997483723650L;
 
+    /** whether to capture a stack trace; false while the superclass constructor runs, so that it never captures one */
+    private boolean stackTrace;
+
     public IllegalSubarraySizeException(int line, int row, int actual, int expect) {
+        this(true, line, row, actual, expect);
+    }
+
+    IllegalSubarraySizeException(boolean stackTrace, int line, int row, int actual, int expect) {
         super("at "+line+", "+row+"; expected "+expect+" but found "+actual+" elements");
+        this.stackTrace = stackTrace;
+        fillInStackTrace();
+    }
+
+    @Override
+    public synchronized Throwable fillInStackTrace() {
+        return stackTrace ? super.fillInStackTrace() : this;
     }
 }
@@ -64,7 +64,13 @@ public final class IntToken extends AbstractODDLToken implements PropertyValueTo
     IntToken(int row, int col, String text, String value, Format format) {
         super(row, col, text);
         this.format = format;
-        this.value  = format==Format.CHAR ? parseCharLiteral(value) : Long.parseLong(value, format.getRadix());
+        this.value  = format==Format.CHAR ? parseCharLiteral(value) : parseLiteral(value, format.getRadix());
+    }
+
+    IntToken(int row, int col, String text, long value, Format format) {
+        super(row, col, text);
+        this.format = format;
+        this.value  = value;
     }
 
     /**
@@ -116,6 +122,16 @@ public final class IntToken extends AbstractODDLToken implements PropertyValueTo
         return Objects.hash(super.hashCode(), getValue(), getFormat());
     }
 
+    /**
+     * Parses the magnitude as an unsigned 64-bit value, so that every <tt>u64</tt> value can be written as a literal.
+     */
+    private static long parseLiteral(String value, int radix) {
+        if (value.charAt(0) == '-') {
+            return -Long.parseUnsignedLong(value.substring(1), radix);
+        }
+        return Long.parseUnsignedLong(value, radix);
+    }
+
     private static long parseCharLiteral(String value) {
         long v = 0;
         int off = value.codePointAt(0) == '-' || value.codePointAt(0) == '+' ? 1 : 0;
@@ -0,0 +1,293 @@
+/*
+ * Jiggatech OpenDDL Parser
+ *
+ * Copyright (c) 2019 Nikita Leonidov
+ *
+ * MIT License
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package com.jiggawatt.jt.oddl;
+
+import java.util.Arrays;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * A listener that computes a digest of each structure's content while the document is parsed, and forwards every
+ * event to another listener, which can use the digest to replace the objects it builds with canonical instances from
+ * a shared {@link StructureInterner}. Documents that repeat large structures, such as meshes or materials copied
+ * between scenes, then keep a single copy of each in memory.
+ * <p>
+ * A structure's digest covers its identifier or data type, its properties, its data and its substructures, including
+ * the names of substructures, but not the name of the structure itself; two structures that differ only in their own
+ * name therefore share their canonical object, which should not hold the name. Property order does not matter, and
+ * numbers are compared by value rather than by their text. The wrapped listener may call {@link #intern(Object)} from
+ * any of its <tt>end</tt> methods for structures:
+ * <pre>
+ * {@code
+ * public void endListStructure(DataTypeToken dataType, NameToken name) {
+ *     mesh.positions = interning.intern(floats.toArray());
+ * }
+ * }
+ * </pre>
+ *
+ * @param <T> the type of the result produced by the wrapped listener
+ *
+ * @author Nikita Leonidov
+ */
+public final class InterningListener<T> implements ODDLListener<T> {
+
+    private static final long C1 = 0x9E3779B97F4A7C15L;
+    private static final long C2 = 0xC2B2AE3D27D4EB4FL;
+
+    // markers distinguishing the kinds of content mixed into a digest
+    private static final long LIST       = 1;
+    private static final long ARRAY_LIST = 2;
+    private static final long CUSTOM     = 3;
+    private static final long SUB_ARRAY  = 4;
+    private static final long CHILD      = 5;
+
+    private final ODDLListener<T>   delegate;
+    private final StructureInterner interner;
+
+    /** the running digests of the structures the reader is in, innermost last */
+    private long[] stack = new long[16];
+    private int    depth;
+
+    private long    digest;
+    private boolean ending;
+
+    /**
+     * @param delegate  the listener to which all events are forwarded
+     * @param interner  the store of canonical objects; may be shared by any number of listeners and threads
+     */
+    public InterningListener(ODDLListener<T> delegate, StructureInterner interner) {
+        this.delegate = requireNonNull(delegate, "delegate");
+        this.interner = requireNonNull(interner, "interner");
+    }
+
+    /**
+     * @return the digest of the structure being ended
+     * @throws IllegalStateException if not called from the wrapped listener's <tt>end</tt> method for a structure
+     */
+    public long digest() {
+        if (!ending) {
+            throw new IllegalStateException("structure digests are only available while a structure is ending");
+        }
+        return digest;
+    }
+
+    /**
+     * Looks up the canonical instance of an object built from the structure being ended.
+     * @param value an object built from the structure; may not be null
+     * @param <V>   the type of the object
+     * @return an equal object built earlier from a structure with the same content, or <tt>value</tt> if there is none
+     * @throws IllegalStateException if not called from the wrapped listener's <tt>end</tt> method for a structure
+     */
+    public <V> V intern(V value) {
+        return interner.intern(digest(), value);
+    }
+
+    /**
+     * @return the store of canonical objects used by this listener
+     */
+    public StructureInterner getInterner() {
+        return interner;
+    }
+
+    // digest
+    //==================================================================================================================
+    private static long mix(long h, long v) {
+        return Long.rotateLeft(h ^ (v * C1), 31) * C2;
+    }
+
+    private static long finish(long h) {
+        h ^= h >>> 33;
+        h *= 0xFF51AFD7ED558CCDL;
+        h ^= h >>> 33;
+        h *= 0xC4CEB9FE1A85EC53L;
+        return h ^ (h >>> 33);
+    }
+
+    private static long hash(String s) {
+        return s == null ? 0 : mix(s.length(), s.hashCode());
+    }
+
+    private static long hash(ODDLToken value) {
+        switch (value.getType()) {
+            case BOOL:
+                return value.asBool().getValue() ? 1 : 2;
+            case INT:
+                return value.asInt().getValue();
+            case FLOAT:
+                return Double.doubleToLongBits(value.asFloat().getValue());
+            case STRING:
+                return hash(value.asString().getValue());
+            default:
+                // references and data types, whose text is canonical
+                return hash(value.getText());
+        }
+    }
+
+    private void push(long seed) {
+        if (depth == stack.length) {
+            stack = Arrays.copyOf(stack, depth * 2);
+        }
+        stack[depth++] = seed;
+    }
+
+    private void add(long v) {
+        stack[depth-1] = mix(stack[depth-1], v);
+    }
+
+    /**
+     * Finishes the innermost structure's digest and adds it, along with the structure's name, to its parent's.
+     */
+    private void pop(NameToken name) {
+        digest = finish(stack[--depth]);
+        if (depth > 0) {
+            add(CHILD);
+            add(name == null ? 0 : hash(name.getText()));
+            add(digest);
+        }
+    }
+
+    private static long hash(PropertyMap properties) {
+        // order-independent, since property maps are unordered
+        long ret = 0;
+        for (PropertyMap.Entry e : properties) {
+            ret += finish(mix(hash(e.getKey()), hash(e.getValue())));
+        }
+        return ret;
+    }
+
+    // ODDLListener
+    //==================================================================================================================
+    @Override
+    public void begin() throws ODDLFormatException {
+        depth = 0;
+        delegate.begin();
+    }
+
+    @Override
+    public T end(int row, int col) throws ODDLFormatException {
+        return delegate.end(row, col);
+    }
+
+    @Override
+    public void value(BoolToken value) throws ODDLFormatException {
+        add(value.getValue() ? 1 : 2);
+        delegate.value(value);
+    }
+
+    @Override
+    public void value(IntToken value) throws ODDLFormatException {
+        add(value.getValue());
+        delegate.value(value);
+    }
+
+    @Override
+    public void value(FloatToken value) throws ODDLFormatException {
+        add(Double.doubleToLongBits(value.getValue()));
+        delegate.value(value);
+    }
+
+    @Override
+    public void value(StringToken value) throws ODDLFormatException {
+        add(hash(value.getValue()));
+        delegate.value(value);
+    }
+
+    @Override
+    public void value(RefToken value) throws ODDLFormatException {
+        add(hash(value.getText()));
+        delegate.value(value);
+    }
+
+    @Override
+    public void value(DataTypeToken value) throws ODDLFormatException {
+        add(hash(value.getText()));
+        delegate.value(value);
+    }
+
+    @Override
+    public void beginListStructure(DataTypeToken dataType, NameToken name) throws ODDLFormatException {
+        push(mix(LIST, hash(dataType.getText())));
+        delegate.beginListStructure(dataType, name);
+    }
+
+    @Override
+    public void endListStructure(DataTypeToken dataType, NameToken name) throws ODDLFormatException {
+        pop(name);
+        ending = true;
+        try {
+            delegate.endListStructure(dataType, name);
+        } finally {
+            ending = false;
+        }
+    }
+
+    @Override
+    public void beginArrayListStructure(DataTypeToken dataType, int subarraySize, NameToken name) throws ODDLFormatException {
+        push(mix(mix(ARRAY_LIST, hash(dataType.getText())), subarraySize));
+        delegate.beginArrayListStructure(dataType, subarraySize, name);
+    }
+
+    @Override
+    public void endArrayListStructure(DataTypeToken dataType, int subarraySize, NameToken name) throws ODDLFormatException {
+        pop(name);
+        ending = true;
+        try {
+            delegate.endArrayListStructure(dataType, subarraySize, name);
+        } finally {
+            ending = false;
+        }
+    }
+
+    @Override
+    public void beginSubArray(DataTypeToken dataType, int subarraySize) throws ODDLFormatException {
+        add(SUB_ARRAY);
+        delegate.beginSubArray(dataType, subarraySize);
+    }
+
+    @Override
+    public void endSubArray(DataTypeToken dataType, int subarraySize) throws ODDLFormatException {
+        delegate.endSubArray(dataType, subarraySize);
+    }
+
+    @Override
+    public void beginCustomStructure(IdentifierToken identifier, NameToken name, PropertyMap properties) throws ODDLFormatException {
+        push(mix(mix(CUSTOM, hash(identifier.getText())), hash(properties)));
+        delegate.beginCustomStructure(identifier, name, properties);
+    }
+
+    @Override
+    public void endCustomStructure(IdentifierToken identifier, NameToken name, PropertyMap properties) throws ODDLFormatException {
+        pop(name);
+        ending = true;
+        try {
+            delegate.endCustomStructure(identifier, name, properties);
+        } finally {
+            ending = false;
+        }
+    }
+}
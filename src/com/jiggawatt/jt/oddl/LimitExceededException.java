@@ -0,0 +1,74 @@
+/*
+ * Jiggatech OpenDDL Parser
+ *
+ * Copyright (c) 2019 Nikita Leonidov
+ *
+ * MIT License
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package com.jiggawatt.jt.oddl;
+
+/**
+ * Thrown when a document exceeds one of the reader's {@link ODDLLimits}. The position is that of the token or
+ * character at which the limit was crossed.
+ *
+ * @author Nikita Leonidov
+ */
+public class LimitExceededException extends ODDLParseException {
+    private static final long serialVersionUID = 2291640581553215846L;
+
+    private final ODDLLimits.Limit limit;
+    private final long             maximum;
+    private final int              row;
+    private final int              col;
+
+    LimitExceededException(boolean stackTrace, ODDLLimits.Limit limit, long maximum, int row, int col) {
+        super(limit.name().toLowerCase().replace('_', ' ') + " exceeds limit of " + maximum + " at " + row + ", " + col,
+                stackTrace);
+        this.limit   = limit;
+        this.maximum = maximum;
+        this.row     = row;
+        this.col     = col;
+    }
+
+    /**
+     * @return the limit that was exceeded
+     */
+    public ODDLLimits.Limit getLimit() {
+        return limit;
+    }
+
+    /**
+     * @return the value of the limit that was exceeded
+     */
+    public long getMaximum() {
+        return maximum;
+    }
+
+    public int getRow() {
+        return row;
+    }
+
+    public int getCol() {
+        return col;
+    }
+}
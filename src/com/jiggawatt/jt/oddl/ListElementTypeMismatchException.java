@@ -34,7 +34,13 @@ public class ListElementTypeMismatchException extends ODDLParseException {
 
     @SafeVarargs
     public ListElementTypeMismatchException(ODDLToken actual, Class<? extends ODDLToken>... expect) {
-        super(createMessage(actual.getRow(), actual.getCol(), actual.toString(), createExpectMessage(expect)));
+        this(true, actual, expect);
+    }
+
+    @SafeVarargs
+    ListElementTypeMismatchException(boolean stackTrace, ODDLToken actual, Class<? extends ODDLToken>... expect) {
+        super(createMessage(actual.getRow(), actual.getCol(), actual.toString(), createExpectMessage(expect)),
+                stackTrace);
     }
 
     private static String createMessage(int line, int col, String actual, String expect) {
@@ -0,0 +1,332 @@
+/*
+ * Jiggatech OpenDDL Parser
+ *
+ * Copyright (c) 2019 Nikita Leonidov
+ *
+ * MIT License
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package com.jiggawatt.jt.oddl;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * A listener that passes every event it receives to several other listeners, so that independent consumers of the same
+ * document share a single read. Its result is the list of the wrapped listeners' results, in the order in which the
+ * listeners were given.
+ * <p>
+ * By default, each event is passed to the wrapped listeners one after another on the reader's thread. When created
+ * with an {@link Executor}, the multicast listener instead gives each wrapped listener its own bounded event queue and
+ * runs it as a separate task, so the listeners work in parallel with each other and with the reader. The reader only
+ * waits when a queue is full, and the call to {@link #end(int, int) end} waits for every listener to finish. If any
+ * listener fails, the read is aborted with that listener's exception.
+ * <p>
+ * Since the reader does not tell its listener when it fails, a concurrent multicast listener should be
+ * {@link #close() closed} once the read is over, so that its tasks do not wait for events that will never come:
+ * <pre>
+ * {@code
+ * try (MulticastListener all = new MulticastListener(Arrays.asList(geometry, materials), executor, 1024)) {
+ *     List<Object> results = new ODDLReader(in).read(all);
+ *     ...
+ * }
+ * }
+ * </pre>
+ *
+ * @author Nikita Leonidov
+ */
+public final class MulticastListener implements ODDLListener<List<Object>>, AutoCloseable {
+
+    private final ODDLListener<?>[] listeners;
+
+    private final Executor executor;
+    private final int      capacity;
+
+    /** the queues of the current document when running concurrently */
+    private EventRing[]           rings;
+    private EventRing.Publisher[] publishers;
+    private Object[]              results;
+    private CountDownLatch        done;
+
+    private volatile Throwable failure;
+
+    /**
+     * Creates a multicast listener that calls each listener in turn on the reader's thread.
+     * @param listeners the listeners to which all events are passed
+     */
+    public MulticastListener(ODDLListener<?>... listeners) {
+        this(Arrays.asList(listeners));
+    }
+
+    /**
+     * Creates a multicast listener that calls each listener in turn on the reader's thread.
+     * @param listeners the listeners to which all events are passed
+     */
+    public MulticastListener(List<? extends ODDLListener<?>> listeners) {
+        this(listeners, null, 0);
+    }
+
+    /**
+     * Creates a multicast listener that runs each listener as a separate task on the given executor.
+     * @param listeners the listeners to which all events are passed
+     * @param executor  runs one task per listener for each document; must be able to run all of them at once
+     * @param capacity  the number of events that may be queued for each listener before the reader waits
+     */
+    public MulticastListener(List<? extends ODDLListener<?>> listeners, Executor executor, int capacity) {
+        this.listeners = listeners.toArray(new ODDLListener<?>[0]);
+        for (ODDLListener<?> l : this.listeners) {
+            requireNonNull(l, "listener");
+        }
+        if (executor != null && capacity < 1) {
+            throw new IllegalArgumentException("capacity: " + capacity);
+        }
+        this.executor = executor;
+        this.capacity = capacity;
+    }
+
+    /**
+     * @return <tt>true</tt> if the wrapped listeners run on the executor rather than on the reader's thread
+     */
+    public boolean isConcurrent() {
+        return executor != null;
+    }
+
+    /**
+     * Stops the tasks running the wrapped listeners, if any. Listeners that have not yet received all events of the
+     * current document will not receive them. Does nothing if the listener is not concurrent or the document has
+     * already ended.
+     */
+    @Override
+    public void close() {
+        if (rings != null) {
+            for (EventRing r : rings) {
+                r.close();
+            }
+        }
+    }
+
+    // concurrent dispatch
+    //==================================================================================================================
+    private void start() {
+        final int n = listeners.length;
+        rings      = new EventRing[n];
+        publishers = new EventRing.Publisher[n];
+        results    = new Object[n];
+        done       = new CountDownLatch(n);
+        failure    = null;
+
+        for (int i=0; i<n; i++) {
+            rings[i]      = new EventRing(capacity);
+            publishers[i] = rings[i].publisher();
+        }
+        for (int i=0; i<n; i++) {
+            final int index = i;
+            executor.execute(() -> drain(index));
+        }
+    }
+
+    private void drain(int index) {
+        try {
+            results[index] = rings[index].drain(listeners[index]);
+        } catch (CancellationException e) {
+            // the read failed or the listener was closed
+        } catch (Throwable e) {
+            if (failure == null) {
+                failure = e;
+            }
+            // stop the reader as soon as it next waits on any queue
+            close();
+        } finally {
+            done.countDown();
+        }
+    }
+
+    private List<Object> finish() throws ODDLFormatException {
+        boolean interrupted = false;
+        while (true) {
+            try {
+                done.await();
+                break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        rings      = null;
+        publishers = null;
+        checkFailure();
+        return Collections.unmodifiableList(Arrays.asList(results));
+    }
+
+    private void checkFailure() throws ODDLFormatException {
+        final Throwable e = failure;
+        if (e == null) {
+            return;
+        }
+        close();
+        if (e instanceof ODDLFormatException) {
+            throw (ODDLFormatException) e;
+        } else if (e instanceof RuntimeException) {
+            throw (RuntimeException) e;
+        } else if (e instanceof Error) {
+            throw (Error) e;
+        }
+        throw new IllegalStateException(e);
+    }
+
+    /**
+     * One event, passed to a single listener or queue.
+     */
+    private interface Call {
+        void to(ODDLListener<?> listener) throws ODDLFormatException;
+    }
+
+    /**
+     * Passes an event to every wrapped listener, either directly or through their queues.
+     */
+    private void dispatch(Call call) throws ODDLFormatException {
+        if (executor != null) {
+            checkFailure();
+            try {
+                for (EventRing.Publisher p : publishers) {
+                    call.to(p);
+                }
+            } catch (CancellationException e) {
+                throw aborted(e);
+            }
+        } else {
+            for (ODDLListener<?> l : listeners) {
+                call.to(l);
+            }
+        }
+    }
+
+    /**
+     * Called when publishing to a closed queue; reports the failure that closed it, if there was one.
+     */
+    private ODDLFormatException aborted(CancellationException e) throws ODDLFormatException {
+        checkFailure();
+        throw e;
+    }
+
+    // ODDLListener
+    //==================================================================================================================
+    @Override
+    public void begin() throws ODDLFormatException {
+        if (executor != null) {
+            start();
+        }
+        dispatch(ODDLListener::begin);
+    }
+
+    @Override
+    public List<Object> end(int row, int col) throws ODDLFormatException {
+        if (executor != null) {
+            dispatch(l -> l.end(row, col));
+            return finish();
+        }
+        final List<Object> ret = new ArrayList<>(listeners.length);
+        for (ODDLListener<?> l : listeners) {
+            ret.add(l.end(row, col));
+        }
+        return Collections.unmodifiableList(ret);
+    }
+
+    @Override
+    public void value(BoolToken value) throws ODDLFormatException {
+        dispatch(l -> l.value(value));
+    }
+
+    @Override
+    public void value(IntToken value) throws ODDLFormatException {
+        dispatch(l -> l.value(value));
+    }
+
+    @Override
+    public void value(FloatToken value) throws ODDLFormatException {
+        dispatch(l -> l.value(value));
+    }
+
+    @Override
+    public void value(StringToken value) throws ODDLFormatException {
+        dispatch(l -> l.value(value));
+    }
+
+    @Override
+    public void value(RefToken value) throws ODDLFormatException {
+        dispatch(l -> l.value(value));
+    }
+
+    @Override
+    public void value(DataTypeToken value) throws ODDLFormatException {
+        dispatch(l -> l.value(value));
+    }
+
+    @Override
+    public void beginListStructure(DataTypeToken dataType, NameToken name) throws ODDLFormatException {
+        dispatch(l -> l.beginListStructure(dataType, name));
+    }
+
+    @Override
+    public void endListStructure(DataTypeToken dataType, NameToken name) throws ODDLFormatException {
+        dispatch(l -> l.endListStructure(dataType, name));
+    }
+
+    @Override
+    public void beginArrayListStructure(DataTypeToken dataType, int subarraySize, NameToken name) throws ODDLFormatException {
+        dispatch(l -> l.beginArrayListStructure(dataType, subarraySize, name));
+    }
+
+    @Override
+    public void endArrayListStructure(DataTypeToken dataType, int subarraySize, NameToken name) throws ODDLFormatException {
+        dispatch(l -> l.endArrayListStructure(dataType, subarraySize, name));
+    }
+
+    @Override
+    public void beginSubArray(DataTypeToken dataType, int subarraySize) throws ODDLFormatException {
+        dispatch(l -> l.beginSubArray(dataType, subarraySize));
+    }
+
+    @Override
+    public void endSubArray(DataTypeToken dataType, int subarraySize) throws ODDLFormatException {
+        dispatch(l -> l.endSubArray(dataType, subarraySize));
+    }
+
+    @Override
+    public void beginCustomStructure(IdentifierToken identifier, NameToken name, PropertyMap properties) throws ODDLFormatException {
+        dispatch(l -> l.beginCustomStructure(identifier, name, properties));
+    }
+
+    @Override
+    public void endCustomStructure(IdentifierToken identifier, NameToken name, PropertyMap properties) throws ODDLFormatException {
+        dispatch(l -> l.endCustomStructure(identifier, name, properties));
+    }
+}
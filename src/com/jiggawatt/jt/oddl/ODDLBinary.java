@@ -0,0 +1,86 @@
+/*
+ * Jiggatech OpenDDL Parser
+ *
+ * Copyright (c) 2019 Nikita Leonidov
+ *
+ * MIT License
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.jiggawatt.jt.oddl;
+
+/**
+ * Constants describing the binary OpenDDL encoding shared by {@link ODDLBinaryWriter} and {@link ODDLBinaryReader}.
+ * All multi-byte values are little-endian.
+ * <pre>
+ * document   := header record* END dictionary trailer
+ * header     := magic:u8[4] version:u16 reserved:u16
+ * record     := BEGIN_CUSTOM identifier:id name:id count:u32 property*
+ *             | END_CUSTOM
+ *             | LIST type:id name:id subarraySize:i32 count:u32 elements
+ * property   := key:id value-kind:u8 value
+ * dictionary := count:u32 (length:u32 utf8:u8[length])*
+ * trailer    := dictionaryOffset:u64 magic:u8[4] reserved:u32
+ * </pre>
+ * <tt>id</tt> is a u32 index into the dictionary, or {@link #NONE}. A plain data list has a sub-array size of -1.
+ * Numeric list elements are stored as a packed block of primitives, preceded by padding that aligns the block to
+ * the element size relative to the start of the document; <tt>bool</tt> elements take one byte each. Other elements
+ * are stored one after another: strings as a u32 length followed by UTF-8, references as a u32 name count followed by
+ * name ids, and data types as ids.
+ *
+ * @author Nikita Leonidov
+ */
+final class ODDLBinary {
+
+    static final byte[] MAGIC = { 'O', 'D', 'D', 'B' };
+
+    static final int VERSION = 1;
+
+    static final int HEADER_SIZE  = 8;
+    static final int TRAILER_SIZE = 16;
+
+    static final int NONE = -1;
+
+    // record op codes
+    static final int
+        END          = 0,
+        BEGIN_CUSTOM = 1,
+        END_CUSTOM   = 2,
+        LIST         = 3;
+
+    private ODDLBinary() {
+    }
+
+    /**
+     * @return the size in bytes of each element of a list of the given type within a packed block, or 0 if its
+     * elements are not packed
+     */
+    static int elementSize(DataTypeToken type) {
+        switch (type.getValue()) {
+            case INT:
+            case FLOAT:
+                return type.getTypeBits() / 8;
+            case BOOL:
+                return 1;
+            default:
+                return 0;
+        }
+    }
+}
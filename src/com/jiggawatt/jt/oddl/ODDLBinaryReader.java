@@ -0,0 +1,417 @@
+/*
+ * Jiggatech OpenDDL Parser
+ *
+ * Copyright (c) 2019 Nikita Leonidov
+ *
+ * MIT License
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.jiggawatt.jt.oddl;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Replays a document written by {@link ODDLBinaryWriter} as the same sequence of {@link ODDLListener} events that
+ * {@link ODDLReader} produces for its text form. Listeners that implement {@link ODDLDataListListener} receive
+ * numeric and <tt>bool</tt> data lists as buffer views instead, which reduces loading a mapped document to little
+ * more than the IO needed to page it in:
+ * <pre>
+ * {@code
+ * MyDocument doc = ODDLBinaryReader.open(path).read(new MyDocumentBuilder());
+ * }
+ * </pre>
+ * Tokens produced by this reader are positioned at row and column 0. Their text is synthesized from their values,
+ * since the original literals are not stored. A reader may replay its document any number of times.
+ *
+ * @author Nikita Leonidov
+ */
+public final class ODDLBinaryReader {
+
+    private final ByteBuffer data;
+
+    /**
+     * Creates a reader over a binary document held in a buffer. The buffer's content between its position and limit
+     * must not change while the reader is in use; the buffer itself is not modified.
+     * @param data the document; may not be null
+     */
+    public ODDLBinaryReader(ByteBuffer data) {
+        this.data = requireNonNull(data, "data").slice().asReadOnlyBuffer().order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    /**
+     * Creates a reader over a memory-mapped binary document. The file must not be modified while the reader, or any
+     * buffer passed to an {@link ODDLDataListListener}, is in use.
+     * @param path path to the document
+     * @return a reader for the document
+     * @throws IOException when an IO exception occurs, or the file is 2 GiB or larger
+     */
+    public static ODDLBinaryReader open(Path path) throws IOException {
+        try (FileChannel ch = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (ch.size() > Integer.MAX_VALUE) {
+                throw new IOException("binary document too large to map: "+ch.size()+" bytes");
+            }
+            return new ODDLBinaryReader(ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size()));
+        }
+    }
+
+    /**
+     * Replays the document to a listener.
+     * @param listener  the listener to notify
+     * @param <T>       the type of object produced by the listener
+     * @return the object returned by the listener's {@link ODDLListener#end(int, int)} method
+     * @throws BinaryFormatException when the data is not a well-formed binary document
+     * @throws ODDLFormatException   when the document does not conform to the listener's expected format
+     */
+    public <T> T read(ODDLListener<T> listener) throws BinaryFormatException, ODDLFormatException {
+        ByteBuffer in = data.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+        try {
+            return new Replay(in, readDictionary(in)).run(listener);
+        } catch (BufferUnderflowException | IndexOutOfBoundsException e) {
+            throw new BinaryFormatException(in.position(), "truncated or corrupt record");
+        }
+    }
+
+    private static String[] readDictionary(ByteBuffer in) throws BinaryFormatException {
+        int size = in.limit();
+        if (size < ODDLBinary.HEADER_SIZE + ODDLBinary.TRAILER_SIZE) {
+            throw new BinaryFormatException(0, "not a binary OpenDDL document");
+        }
+
+        byte[] magic = new byte[ODDLBinary.MAGIC.length];
+        in.get(magic);
+        if (!Arrays.equals(magic, ODDLBinary.MAGIC)) {
+            throw new BinaryFormatException(0, "not a binary OpenDDL document");
+        }
+        int version = in.getShort() & 0xffff;
+        if (version != ODDLBinary.VERSION) {
+            throw new BinaryFormatException(4, "unsupported binary OpenDDL version "+version);
+        }
+
+        int trailer = size - ODDLBinary.TRAILER_SIZE;
+        long offset = in.getLong(trailer);
+        for (int i=0; i<ODDLBinary.MAGIC.length; i++) {
+            if (in.get(trailer + 8 + i) != ODDLBinary.MAGIC[i]) {
+                throw new BinaryFormatException(trailer, "missing trailer; the document may be incomplete");
+            }
+        }
+        if (offset < ODDLBinary.HEADER_SIZE || offset > trailer) {
+            throw new BinaryFormatException(trailer, "invalid dictionary offset "+offset);
+        }
+
+        ByteBuffer d = in.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+        d.position((int) offset);
+        String[] ret = new String[d.getInt()];
+        for (int i=0; i<ret.length; i++) {
+            int len = d.getInt();
+            if (len < 0 || len > d.remaining()) {
+                throw new BinaryFormatException(d.position(), "invalid string length "+len);
+            }
+            byte[] bytes = new byte[len];
+            d.get(bytes);
+            ret[i] = new String(bytes, StandardCharsets.UTF_8);
+        }
+
+        in.position(ODDLBinary.HEADER_SIZE);
+        return ret;
+    }
+
+    // replay
+    //==================================================================================================================
+    /**
+     * State for a single replay. Tokens for dictionary entries are created on first use and shared afterwards.
+     */
+    private static final class Replay {
+        private final ByteBuffer in;
+        private final String[]   dictionary;
+
+        private final IdentifierToken[] identifiers;
+        private final NameToken[]       names;
+        private final DataTypeToken[]   types;
+
+        /** custom structures awaiting their end record */
+        private final List<OpenStructure> open = new ArrayList<>();
+
+        Replay(ByteBuffer in, String[] dictionary) {
+            this.in          = in;
+            this.dictionary  = dictionary;
+            this.identifiers = new IdentifierToken[dictionary.length];
+            this.names       = new NameToken[dictionary.length];
+            this.types       = new DataTypeToken[dictionary.length];
+        }
+
+        <T> T run(ODDLListener<T> listener) throws BinaryFormatException, ODDLFormatException {
+            listener.begin();
+
+            while (true) {
+                int op = in.get();
+                switch (op) {
+                    case ODDLBinary.BEGIN_CUSTOM:
+                        beginCustom(listener);
+                        break;
+                    case ODDLBinary.END_CUSTOM:
+                        if (open.isEmpty()) {
+                            throw new BinaryFormatException(in.position()-1, "unbalanced structure end");
+                        }
+                        OpenStructure s = open.remove(open.size()-1);
+                        listener.endCustomStructure(s.identifier, s.name, s.properties);
+                        break;
+                    case ODDLBinary.LIST:
+                        list(listener);
+                        break;
+                    case ODDLBinary.END:
+                        if (!open.isEmpty()) {
+                            throw new BinaryFormatException(in.position()-1, open.size()+" unterminated structures");
+                        }
+                        return listener.end(0, 0);
+                    default:
+                        throw new BinaryFormatException(in.position()-1, "unknown record type "+op);
+                }
+            }
+        }
+
+        private void beginCustom(ODDLListener<?> listener) throws BinaryFormatException, ODDLFormatException {
+            IdentifierToken identifier = identifier(in.getInt());
+            NameToken       name       = name(in.getInt());
+            int             count      = in.getInt();
+
+            PropertyMap properties;
+            if (count == 0) {
+                properties = PropertyMap.empty();
+            } else {
+                Map<IdentifierToken, PropertyValueToken> map = new HashMap<>();
+                for (int i=0; i<count; i++) {
+                    map.put(identifier(in.getInt()), property());
+                }
+                properties = new PropertyMap(map);
+            }
+
+            open.add(new OpenStructure(identifier, name, properties));
+            listener.beginCustomStructure(identifier, name, properties);
+        }
+
+        private PropertyValueToken property() throws BinaryFormatException {
+            int kind = in.get();
+            if (kind < 0 || kind >= ODDLToken.Type.values().length) {
+                throw new BinaryFormatException(in.position()-1, "unknown property type "+kind);
+            }
+
+            switch (ODDLToken.Type.values()[kind]) {
+                case BOOL:
+                    return in.get() != 0 ? new BoolToken(0, 0, "true") : new BoolToken(0, 0, "false");
+                case INT:
+                    IntToken.Format format = IntToken.Format.values()[in.get()];
+                    long v = in.getLong();
+                    return new IntToken(0, 0, Long.toString(v), v, format);
+                case FLOAT:
+                    double d = in.getDouble();
+                    return new FloatToken(0, 0, Double.toString(d), d);
+                case STRING:
+                    String str = string();
+                    return new StringToken(0, 0, str, str);
+                case REF:
+                    return ref();
+                case DATA_TYPE:
+                    return type(in.getInt());
+                default:
+                    throw new BinaryFormatException(in.position()-1, "unsupported property type "+kind);
+            }
+        }
+
+        private void list(ODDLListener<?> listener) throws BinaryFormatException, ODDLFormatException {
+            DataTypeToken type         = type(in.getInt());
+            NameToken     name         = name(in.getInt());
+            int           subarraySize = in.getInt();
+            int           count        = in.getInt();
+
+            if (count < 0 || subarraySize < -1 || (subarraySize >= 0 && (subarraySize == 0 ? count != 0 : count % subarraySize != 0))) {
+                throw new BinaryFormatException(in.position()-8, count+" elements do not form sub-arrays of size "+subarraySize);
+            }
+
+            int size = ODDLBinary.elementSize(type);
+            if (size > 0) {
+                int start = (in.position() + size-1) & -size;
+                if ((long) count*size > in.limit() - start) {
+                    throw new BinaryFormatException(in.position(), "truncated data list");
+                }
+                in.position(start);
+            }
+
+            if (size > 0 && listener instanceof ODDLDataListListener) {
+                int start = in.position();
+                ByteBuffer view = in.duplicate();
+                view.limit(start + count*size);
+                view = view.slice().order(ByteOrder.LITTLE_ENDIAN);
+
+                if (((ODDLDataListListener<?>) listener).dataList(type, subarraySize, name, view)) {
+                    in.position(start + count*size);
+                    return;
+                }
+            }
+
+            if (subarraySize < 0) {
+                listener.beginListStructure(type, name);
+                values(listener, type, count);
+                listener.endListStructure(type, name);
+            } else {
+                listener.beginArrayListStructure(type, subarraySize, name);
+                for (int i=0; i<count; i+=subarraySize) {
+                    listener.beginSubArray(type, subarraySize);
+                    values(listener, type, subarraySize);
+                    listener.endSubArray(type, subarraySize);
+                }
+                listener.endArrayListStructure(type, subarraySize, name);
+            }
+        }
+
+        private void values(ODDLListener<?> listener, DataTypeToken type, int count) throws BinaryFormatException, ODDLFormatException {
+            int     bits     = type.getTypeBits();
+            boolean unsigned = type.isTypeUnsigned();
+
+            for (int i=0; i<count; i++) {
+                switch (type.getValue()) {
+                    case BOOL:
+                        listener.value(in.get() != 0 ? new BoolToken(0, 0, "true") : new BoolToken(0, 0, "false"));
+                        break;
+                    case INT:
+                        long v;
+                        switch (bits) {
+                            case 8:  v = unsigned ? in.get() & 0xff : in.get(); break;
+                            case 16: v = unsigned ? in.getShort() & 0xffff : in.getShort(); break;
+                            case 32: v = unsigned ? in.getInt() & 0xffffffffL : in.getInt(); break;
+                            default: v = in.getLong();
+                        }
+                        String text = unsigned ? Long.toUnsignedString(v) : Long.toString(v);
+                        listener.value(new IntToken(0, 0, text, v, IntToken.Format.DEC));
+                        break;
+                    case FLOAT:
+                        double d;
+                        switch (bits) {
+                            case 16: d = FloatFormat.fromHalfBits(in.getShort() & 0xffff); break;
+                            case 32: d = in.getFloat(); break;
+                            default: d = in.getDouble();
+                        }
+                        listener.value(new FloatToken(0, 0, Double.toString(d), d));
+                        break;
+                    case STRING:
+                        String s = string();
+                        listener.value(new StringToken(0, 0, s, s));
+                        break;
+                    case REF:
+                        listener.value(ref());
+                        break;
+                    case TYPE:
+                        listener.value(type(in.getInt()));
+                        break;
+                }
+            }
+        }
+
+        private RefToken ref() throws BinaryFormatException {
+            int n = in.getInt();
+            if (n == 0) {
+                return new RefToken(0, 0);
+            }
+            if (n < 0 || n > in.remaining()/4) {
+                throw new BinaryFormatException(in.position()-4, "invalid reference length "+n);
+            }
+
+            List<NameToken> ret = new ArrayList<>(n);
+            for (int i=0; i<n; i++) {
+                ret.add(name(in.getInt()));
+            }
+            return new RefToken(ret);
+        }
+
+        private String string() throws BinaryFormatException {
+            int len = in.getInt();
+            if (len < 0 || len > in.remaining()) {
+                throw new BinaryFormatException(in.position()-4, "invalid string length "+len);
+            }
+            byte[] bytes = new byte[len];
+            in.get(bytes);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+
+        private IdentifierToken identifier(int id) throws BinaryFormatException {
+            IdentifierToken ret = identifiers[entry(id)];
+            if (ret == null) {
+                ret = identifiers[id] = new IdentifierToken(0, 0, dictionary[id]);
+            }
+            return ret;
+        }
+
+        private NameToken name(int id) throws BinaryFormatException {
+            if (id == ODDLBinary.NONE) {
+                return null;
+            }
+            NameToken ret = names[entry(id)];
+            if (ret == null) {
+                ret = names[id] = NameToken.create(0, 0, dictionary[id]);
+            }
+            return ret;
+        }
+
+        private DataTypeToken type(int id) throws BinaryFormatException {
+            DataTypeToken ret = types[entry(id)];
+            if (ret == null) {
+                ret = DataTypeToken.create(0, 0, dictionary[id]);
+                if (ret == null) {
+                    throw new BinaryFormatException(in.position()-4, "not a data type: "+dictionary[id]);
+                }
+                types[id] = ret;
+            }
+            return ret;
+        }
+
+        private int entry(int id) throws BinaryFormatException {
+            if (id < 0 || id >= dictionary.length) {
+                throw new BinaryFormatException(in.position()-4, "invalid dictionary index "+id);
+            }
+            return id;
+        }
+    }
+
+    private static final class OpenStructure {
+        final IdentifierToken identifier;
+        final NameToken       name;
+        final PropertyMap     properties;
+
+        OpenStructure(IdentifierToken identifier, NameToken name, PropertyMap properties) {
+            this.identifier = identifier;
+            this.name       = name;
+            this.properties = properties;
+        }
+    }
+}
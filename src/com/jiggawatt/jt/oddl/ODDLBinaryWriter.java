@@ -0,0 +1,398 @@
+/*
+ * Jiggatech OpenDDL Parser
+ *
+ * Copyright (c) 2019 Nikita Leonidov
+ *
+ * MIT License
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.jiggawatt.jt.oddl;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * A listener that encodes the document it receives in the compact binary form read by {@link ODDLBinaryReader}.
+ * Identifiers, names and data type keywords are stored once in a dictionary, and numeric data lists are stored as
+ * aligned blocks of little-endian primitives that can be used in place once the output is mapped into memory. A text
+ * document is converted by passing this writer to {@link ODDLReader#read(ODDLListener)}:
+ * <pre>
+ * {@code
+ * try (ODDLBinaryWriter out = new ODDLBinaryWriter(Files.newOutputStream(binaryPath))) {
+ *     new ODDLReader(Files.newInputStream(textPath)).read(out);
+ * }
+ * }
+ * </pre>
+ * Elements of each data list are buffered until the list ends, so memory use is proportional to the largest list.
+ * Listener methods cannot throw {@link IOException}; IO failures are rethrown as {@link UncheckedIOException}.
+ * Token positions and literal formats are not preserved. Elements of <tt>half</tt> and <tt>float</tt> lists are
+ * stored at the list's precision.
+ *
+ * @author Nikita Leonidov
+ */
+public final class ODDLBinaryWriter implements ODDLListener<Void>, Closeable {
+
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private final WritableByteChannel out;
+    private final ByteBuffer          buf = ByteBuffer.allocate(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+
+    /** number of bytes passed to the channel so far */
+    private long written;
+
+    private final Map<String, Integer> ids        = new HashMap<>();
+    private final List<String>         dictionary = new ArrayList<>();
+
+    // list being collected
+    private ByteBuffer    elements = ByteBuffer.allocate(1 << 12).order(ByteOrder.LITTLE_ENDIAN);
+    private DataTypeToken listType;
+    private NameToken     listName;
+    private int           listSubarraySize;
+    private int           listCount;
+
+    /**
+     * Creates a writer that writes to an output stream.
+     * @param out output stream; may not be null
+     */
+    public ODDLBinaryWriter(OutputStream out) {
+        this(Channels.newChannel(requireNonNull(out, "output stream")));
+    }
+
+    /**
+     * Creates a writer that writes to a channel. The channel should be in blocking mode.
+     * @param out output channel; may not be null
+     */
+    public ODDLBinaryWriter(WritableByteChannel out) {
+        this.out = requireNonNull(out, "output channel");
+    }
+
+    /**
+     * Closes the underlying channel. Output is only complete if the document has {@link #end(int, int) ended}.
+     * @throws IOException when an IO exception occurs
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            drain();
+        } finally {
+            out.close();
+        }
+    }
+
+    // document
+    //==================================================================================================================
+    @Override
+    public void begin() {
+        require(ODDLBinary.HEADER_SIZE);
+        buf.put(ODDLBinary.MAGIC);
+        buf.putShort((short) ODDLBinary.VERSION);
+        buf.putShort((short) 0);
+    }
+
+    @Override
+    public Void end(int row, int col) {
+        require(1);
+        buf.put((byte) ODDLBinary.END);
+
+        long dictionaryOffset = offset();
+        require(4);
+        buf.putInt(dictionary.size());
+        for (String s : dictionary) {
+            putString(s);
+        }
+
+        require(ODDLBinary.TRAILER_SIZE);
+        buf.putLong(dictionaryOffset);
+        buf.put(ODDLBinary.MAGIC);
+        buf.putInt(0);
+
+        drain();
+        return null;
+    }
+
+    // custom structures
+    //==================================================================================================================
+    @Override
+    public void beginCustomStructure(IdentifierToken identifier, NameToken name, PropertyMap properties) {
+        require(13);
+        buf.put((byte) ODDLBinary.BEGIN_CUSTOM);
+        buf.putInt(id(identifier.getText()));
+        buf.putInt(nameId(name));
+
+        int count = properties.keys().size();
+        buf.putInt(count);
+
+        for (PropertyMap.Entry e : properties) {
+            require(5);
+            buf.putInt(id(e.getKey()));
+
+            PropertyValueToken value = e.getValue();
+            buf.put((byte) value.getType().ordinal());
+
+            switch (value.getType()) {
+                case BOOL:
+                    require(1);
+                    buf.put((byte) (value.asBool().getValue() ? 1 : 0));
+                    break;
+                case INT:
+                    require(9);
+                    buf.put((byte) value.asInt().getFormat().ordinal());
+                    buf.putLong(value.asInt().getValue());
+                    break;
+                case FLOAT:
+                    require(8);
+                    buf.putDouble(value.asFloat().getValue());
+                    break;
+                case STRING:
+                    putString(value.asString().getValue());
+                    break;
+                case REF:
+                    putRef(value.asRef());
+                    break;
+                case DATA_TYPE:
+                    require(4);
+                    buf.putInt(id(value.getText()));
+                    break;
+                default:
+                    throw new IllegalArgumentException("unsupported property value: "+value);
+            }
+        }
+    }
+
+    @Override
+    public void endCustomStructure(IdentifierToken identifier, NameToken name, PropertyMap properties) {
+        require(1);
+        buf.put((byte) ODDLBinary.END_CUSTOM);
+    }
+
+    // list structures
+    //==================================================================================================================
+    @Override
+    public void beginListStructure(DataTypeToken dataType, NameToken name) {
+        beginList(dataType, -1, name);
+    }
+
+    @Override
+    public void endListStructure(DataTypeToken dataType, NameToken name) {
+        endList();
+    }
+
+    @Override
+    public void beginArrayListStructure(DataTypeToken dataType, int subarraySize, NameToken name) {
+        beginList(dataType, subarraySize, name);
+    }
+
+    @Override
+    public void endArrayListStructure(DataTypeToken dataType, int subarraySize, NameToken name) {
+        endList();
+    }
+
+    @Override
+    public void beginSubArray(DataTypeToken dataType, int subarraySize) {
+        // sub-array boundaries follow from the element count
+    }
+
+    @Override
+    public void endSubArray(DataTypeToken dataType, int subarraySize) {
+    }
+
+    // list elements
+    //==================================================================================================================
+    @Override
+    public void value(BoolToken value) {
+        reserve(1).put((byte) (value.getValue() ? 1 : 0));
+        listCount++;
+    }
+
+    @Override
+    public void value(IntToken value) {
+        long v = value.getValue();
+        switch (listType.getTypeBits()) {
+            case 8:  reserve(1).put((byte) v);      break;
+            case 16: reserve(2).putShort((short) v); break;
+            case 32: reserve(4).putInt((int) v);     break;
+            default: reserve(8).putLong(v);
+        }
+        listCount++;
+    }
+
+    @Override
+    public void value(FloatToken value) {
+        double v = value.getValue();
+        switch (listType.getTypeBits()) {
+            case 16: reserve(2).putShort((short) FloatFormat.toHalfBits((float) v)); break;
+            case 32: reserve(4).putFloat((float) v); break;
+            default: reserve(8).putDouble(v);
+        }
+        listCount++;
+    }
+
+    @Override
+    public void value(StringToken value) {
+        byte[] bytes = value.getValue().getBytes(StandardCharsets.UTF_8);
+        reserve(4 + bytes.length).putInt(bytes.length).put(bytes);
+        listCount++;
+    }
+
+    @Override
+    public void value(RefToken value) {
+        List<NameToken> names = value.getValue();
+        ByteBuffer b = reserve(4 + 4*names.size()).putInt(names.size());
+        for (NameToken k : names) {
+            b.putInt(id(k.getText()));
+        }
+        listCount++;
+    }
+
+    @Override
+    public void value(DataTypeToken value) {
+        reserve(4).putInt(id(value.getText()));
+        listCount++;
+    }
+
+    // helpers
+    //==================================================================================================================
+    private void beginList(DataTypeToken dataType, int subarraySize, NameToken name) {
+        listType         = dataType;
+        listName         = name;
+        listSubarraySize = subarraySize;
+        listCount        = 0;
+        elements.clear();
+    }
+
+    private void endList() {
+        require(17);
+        buf.put((byte) ODDLBinary.LIST);
+        buf.putInt(id(listType.getText()));
+        buf.putInt(nameId(listName));
+        buf.putInt(listSubarraySize);
+        buf.putInt(listCount);
+
+        // align packed blocks so that a mapped document can be viewed as an array of the element type
+        int size = ODDLBinary.elementSize(listType);
+        if (size > 1) {
+            int pad = (int) (-offset() & (size-1));
+            require(pad);
+            for (int i=0; i<pad; i++) {
+                buf.put((byte) 0);
+            }
+        }
+
+        elements.flip();
+        if (elements.remaining() > buf.remaining()) {
+            drain();
+            write(elements);
+        } else {
+            buf.put(elements);
+        }
+        listType = null;
+        listName = null;
+    }
+
+    /**
+     * @return the element buffer, grown if necessary to hold <tt>n</tt> more bytes
+     */
+    private ByteBuffer reserve(int n) {
+        if (elements.remaining() < n) {
+            int capacity = Math.max(elements.capacity()*2, elements.position()+n);
+            ByteBuffer grown = ByteBuffer.allocate(capacity).order(ByteOrder.LITTLE_ENDIAN);
+            elements.flip();
+            grown.put(elements);
+            elements = grown;
+        }
+        return elements;
+    }
+
+    private int id(String s) {
+        Integer ret = ids.get(s);
+        if (ret == null) {
+            ret = dictionary.size();
+            ids.put(s, ret);
+            dictionary.add(s);
+        }
+        return ret;
+    }
+
+    private int nameId(NameToken name) {
+        return name == null ? ODDLBinary.NONE : id(name.getText());
+    }
+
+    private void putRef(RefToken ref) {
+        List<NameToken> names = ref.getValue();
+        require(4);
+        buf.putInt(names.size());
+        for (NameToken k : names) {
+            require(4);
+            buf.putInt(id(k.getText()));
+        }
+    }
+
+    private void putString(String s) {
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        require(4);
+        buf.putInt(bytes.length);
+        if (bytes.length > buf.remaining()) {
+            drain();
+            write(ByteBuffer.wrap(bytes));
+        } else {
+            buf.put(bytes);
+        }
+    }
+
+    private long offset() {
+        return written + buf.position();
+    }
+
+    private void require(int n) {
+        if (buf.remaining() < n) {
+            drain();
+        }
+    }
+
+    private void drain() {
+        buf.flip();
+        write(buf);
+        buf.clear();
+    }
+
+    private void write(ByteBuffer b) {
+        try {
+            while (b.hasRemaining()) {
+                written += out.write(b);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,111 @@
+/*
+ * Jiggatech OpenDDL Parser
+ *
+ * Copyright (c) 2019 Nikita Leonidov
+ *
+ * MIT License
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package com.jiggawatt.jt.oddl;
+
+import java.lang.invoke.MethodHandles;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Populates annotated Java objects directly from a document, instead of a hand-written {@link ODDLListener}. The class
+ * given to {@link #of(Class, MethodHandles.Lookup)} represents the document itself; its {@link ODDLChild} fields
+ * receive the top-level structures, and the classes of those fields bind properties, child structures and data lists
+ * in turn:
+ * <pre>
+ * &#64;ODDLStructure("GeometryNode")
+ * class GeometryNode {
+ *     &#64;ODDLProperty("visible") boolean visible = true;
+ *     &#64;ODDLChild List&lt;Transform&gt; transforms;
+ * }
+ *
+ * &#64;ODDLStructure("Transform")
+ * class Transform {
+ *     &#64;ODDLData float[] matrix;
+ * }
+ *
+ * class Scene {
+ *     &#64;ODDLChild List&lt;GeometryNode&gt; nodes;
+ * }
+ *
+ * ODDLBinder&lt;Scene&gt; binder = ODDLBinder.of(Scene.class, MethodHandles.lookup());
+ * Scene scene = new ODDLReader(in).read(binder.listener());
+ * </pre>
+ * Structures, properties and data lists without a matching field are ignored; combine the binder's listener with a
+ * {@link SchemaValidator} to reject them instead.
+ * <p>
+ * The classes are inspected, and the method handles that create and fill their instances are generated, only once per
+ * class; later calls to {@link #of(Class, MethodHandles.Lookup)} reuse them, after checking that the caller's lookup
+ * has access to the classes. Data lists are collected in primitive arrays of the fields' element types without boxing,
+ * and signed lists from an {@link ODDLBinaryReader} whose element width matches the field are copied into the field's
+ * array in bulk. Binders are thread-safe, but each listener may only
+ * be used by one reader at a time.
+ *
+ * @param <T> the type of object bound to the document
+ * @author Nikita Leonidov
+ */
+public final class ODDLBinder<T> {
+
+    private final Class<T>     type;
+    private final ClassBinding binding;
+
+    private ODDLBinder(Class<T> type, ClassBinding binding) {
+        this.type    = type;
+        this.binding = binding;
+    }
+
+    /**
+     * Returns a binder for documents represented by the given class.
+     * @param type   the class that represents the document; it needs a constructor without parameters
+     * @param lookup a lookup with access to the class and to the classes of its children, such as
+     *               <tt>MethodHandles.lookup()</tt> called from the module that declares them
+     * @param <T>    the type of object bound to the document
+     * @return a binder for the class
+     * @throws IllegalArgumentException if the class or the class of any child field cannot be bound, or if the
+     *                                  lookup lacks access to one of them
+     */
+    public static <T> ODDLBinder<T> of(Class<T> type, MethodHandles.Lookup lookup) {
+        requireNonNull(type, "type");
+        requireNonNull(lookup, "lookup");
+        return new ODDLBinder<>(type, ClassBinding.of(type, lookup));
+    }
+
+    /**
+     * @return the class that represents the document
+     */
+    public Class<T> getType() {
+        return type;
+    }
+
+    /**
+     * Creates a listener that binds a new instance of this binder's class to each document it reads.
+     * @return a new listener
+     */
+    public ODDLDataListListener<T> listener() {
+        return new BindingListener<>(type, binding);
+    }
+}
@@ -0,0 +1,60 @@
+/*
+ * Jiggatech OpenDDL Parser
+ *
+ * Copyright (c) 2019 Nikita Leonidov
+ *
+ * MIT License
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package com.jiggawatt.jt.oddl;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Binds an array field to a data list or data array list of the enclosing structure. <tt>float[]</tt> and
+ * <tt>double[]</tt> fields receive floating-point lists; <tt>byte[]</tt>, <tt>short[]</tt>, <tt>int[]</tt> and
+ * <tt>long[]</tt> fields receive integer lists; <tt>boolean[]</tt> and <tt>String[]</tt> fields receive <tt>bool</tt>
+ * and <tt>string</tt> lists. The sub-arrays of a data array list are stored one after another. An integer element
+ * that does not fit the array's element type fails the read with an {@link ODDLFormatException}; packed binary lists
+ * of signed or 64-bit elements as wide as the array's are copied bit for bit.
+ * <p>
+ * A list is bound to the first field that accepts its type and whose name, if given, matches the list's name. Integer
+ * arrays of any width accept the same lists, as do <tt>float[]</tt> and <tt>double[]</tt>, so at most one of the fields
+ * that accept a type of list may be unnamed.
+ *
+ * @author Nikita Leonidov
+ */
+@Documented
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.FIELD)
+public @interface ODDLData {
+
+    /**
+     * @return the name of the list without its <tt>$</tt> or <tt>%</tt> prefix, or an empty string to accept a list
+     * with any name or none
+     */
+    String value() default "";
+}
@@ -0,0 +1,58 @@
+/*
+ * Jiggatech OpenDDL Parser
+ *
+ * Copyright (c) 2019 Nikita Leonidov
+ *
+ * MIT License
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.jiggawatt.jt.oddl;
+
+import java.nio.ByteBuffer;
+
+/**
+ * An extension of {@link ODDLListener} for sources that hold data lists as packed primitives, such as
+ * {@link ODDLBinaryReader}. Such sources offer each numeric or <tt>bool</tt> data list to
+ * {@link #dataList(DataTypeToken, int, NameToken, ByteBuffer)} before producing per-element events, so that large
+ * lists can be copied in bulk or used in place.
+ *
+ * @param <T> the type of object produced by this listener
+ * @author Nikita Leonidov
+ */
+public interface ODDLDataListListener<T> extends ODDLListener<T> {
+
+    /**
+     * Offers the elements of a data list or data array list as a buffer. Elements are little-endian, packed, and
+     * sized according to the list's data type: 1 byte for <tt>bool</tt> (0 or 1) and <tt>int8</tt>, 2 bytes for
+     * <tt>int16</tt> and <tt>half</tt>, and so on. Sub-arrays of a data array list are stored one after another.
+     * <p>
+     * The buffer is read-only and positioned at the first element, with its limit after the last. It may be backed
+     * by a memory-mapped file, in which case it stays valid for as long as the mapping does.
+     * @param dataType     the list's data type
+     * @param subarraySize the number of elements in each sub-array, or -1 if this is a data list
+     * @param name         the list's name, or <tt>null</tt> if it has none
+     * @param elements     a view of the list's elements
+     * @return <tt>true</tt> if the list was consumed; <tt>false</tt> to receive the usual begin, value and end events
+     *         for this list instead
+     * @throws ODDLFormatException when the list does not conform to the listener's expected format
+     */
+    boolean dataList(DataTypeToken dataType, int subarraySize, NameToken name, ByteBuffer elements) throws ODDLFormatException;
+}
@@ -0,0 +1,133 @@
+/*
+ * Jiggatech OpenDDL Parser
+ *
+ * Copyright (c) 2019 Nikita Leonidov
+ *
+ * MIT License
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.jiggawatt.jt.oddl;
+
+/**
+ * The first error found in a document by {@link ODDLReader#validate()}. It holds the same information as the exception
+ * {@link ODDLReader#read(ODDLListener)} would throw for the document, in structured form and without the cost of an
+ * exception. Positions follow the convention of the reader's exceptions: rows count from 0, and columns from 1.
+ *
+ * @author Nikita Leonidov
+ */
+public final class ODDLError {
+
+    /**
+     * The kinds of error a document can contain.
+     */
+    public enum Kind {
+        /** a token that the grammar does not allow at this point */
+        UNEXPECTED_TOKEN,
+        /** a character that cannot begin or continue a token */
+        UNEXPECTED_CHARACTER,
+        /** the end of the input within a structure or literal */
+        UNEXPECTED_EOF,
+        /** a data list element that does not match the list's data type */
+        ELEMENT_TYPE_MISMATCH,
+        /** a sub-array whose length differs from its data array list's sub-array size */
+        SUBARRAY_SIZE,
+        /** a well-formed literal whose value cannot be represented, e.g. an integer wider than 64 bits */
+        INVALID_LITERAL,
+        /** a document that exceeds one of the reader's {@link ODDLLimits} */
+        LIMIT_EXCEEDED
+    }
+
+    private final Kind             kind;
+    private final int              row;
+    private final int              col;
+    private final String           actual;
+    private final String           expected;
+    private final ODDLLimits.Limit limit;
+    private final String           message;
+
+    ODDLError(Kind kind, int row, int col, String actual, String expected, ODDLLimits.Limit limit, String message) {
+        this.kind     = kind;
+        this.row      = row;
+        this.col      = col;
+        this.actual   = actual;
+        this.expected = expected;
+        this.limit    = limit;
+        this.message  = message;
+    }
+
+    /**
+     * @return the kind of error
+     */
+    public Kind getKind() {
+        return kind;
+    }
+
+    /**
+     * @return the row at which the error was found
+     */
+    public int getRow() {
+        return row;
+    }
+
+    /**
+     * @return the column at which the error was found
+     */
+    public int getCol() {
+        return col;
+    }
+
+    /**
+     * @return what was found at the error's position: a token type such as <tt>IdentifierToken</tt>, a quoted
+     * delimiter, a character, the number of elements in a sub-array, or <tt>"end of file"</tt>; <tt>null</tt> for
+     * invalid literals and exceeded limits
+     */
+    public String getActual() {
+        return actual;
+    }
+
+    /**
+     * @return what the grammar allows at the error's position, e.g. <tt>"'{'"</tt> or
+     * <tt>"IdentifierToken or DataTypeToken"</tt>; the sub-array size or the exceeded limit's value; or <tt>null</tt>
+     * if the error is not a mismatch
+     */
+    public String getExpected() {
+        return expected;
+    }
+
+    /**
+     * @return the limit that was exceeded, or <tt>null</tt> unless this is a {@link Kind#LIMIT_EXCEEDED} error
+     */
+    public ODDLLimits.Limit getLimit() {
+        return limit;
+    }
+
+    /**
+     * @return a description of the error, including its position
+     */
+    public String getMessage() {
+        return message;
+    }
+
+    @Override
+    public String toString() {
+        return "ODDLError{" + kind + ": " + message + "}";
+    }
+}
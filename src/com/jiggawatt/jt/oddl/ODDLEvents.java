@@ -0,0 +1,71 @@
+/*
+ * Jiggatech OpenDDL Parser
+ *
+ * Copyright (c) 2019 Nikita Leonidov
+ *
+ * MIT License
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.jiggawatt.jt.oddl;
+
+/**
+ * Emits Java Flight Recorder events for parsing phases. Flight Recorder is not available before Java 11, so this
+ * implementation does nothing and is inlined away; the multi-release JAR replaces it with one backed by
+ * <tt>jdk.jfr</tt> on Java 11 and later.
+ * <p>
+ * Every <tt>begin</tt> method returns an opaque event handle, or <tt>null</tt> if the event is disabled; the matching
+ * <tt>end</tt> method accepts <tt>null</tt> and does nothing with it.
+ *
+ * @author Nikita Leonidov
+ */
+final class ODDLEvents {
+
+    private ODDLEvents() {
+    }
+
+    static Object beginDocument() {
+        return null;
+    }
+
+    static void endDocument(Object event, long characters, long bytes) {
+    }
+
+    static Object beginStructure() {
+        return null;
+    }
+
+    static void endStructure(Object event, ODDLToken head, NameToken name) {
+    }
+
+    static Object beginDataList() {
+        return null;
+    }
+
+    static void endDataList(Object event, DataTypeToken dataType, int subarraySize, int count) {
+    }
+
+    static Object beginRead() {
+        return null;
+    }
+
+    static void endRead(Object event, int characters, long bytes) {
+    }
+}
@@ -30,11 +30,30 @@ import java.io.*;
 
 import static java.util.Objects.requireNonNull;
 
+/**
+ * The character source of an {@link ODDLTokenizer}. Characters are taken from the wrapped reader a block at a time and
+ * then served from an unsynchronized buffer, so the tokenizer's per-character reads never lock; only the block reads
+ * may block, which keeps this class cheap to use from many threads at once, including virtual threads.
+ *
+ * @author Nikita Leonidov
+ */
 public final class ODDLInputStream {
 
     private static final int READAHEAD_SIZE = 3;
+    private static final int BUFFER_SIZE    = 8192;
+
+    private final Reader in;
 
-    private final PushbackReader in;
+    private final char[] buf = new char[BUFFER_SIZE];
+    private int          pos;
+    private int          limit;
+    private boolean      eof;
+
+    /** counts bytes taken from the wrapped input stream; null when wrapping a reader */
+    private final CountingInputStream bytes;
+
+    /** characters returned by {@link #read()} */
+    private long characters;
 
     private final int[] queue = new int[READAHEAD_SIZE];
     private int available;
@@ -50,7 +69,8 @@ public final class ODDLInputStream {
      * @param in input stream; may not be null
      */
     public ODDLInputStream(InputStream in) {
-        this.in = new PushbackReader(new InputStreamReader(requireNonNull(in, "input stream")));
+        this.bytes = new CountingInputStream(requireNonNull(in, "input stream"));
+        this.in    = new InputStreamReader(bytes);
     }
 
     /**
@@ -58,9 +78,20 @@ public final class ODDLInputStream {
      * @param in input reader; may not be null
      */
     public ODDLInputStream(Reader in) {
-        this.in = (in instanceof PushbackReader)
-                ? (PushbackReader) in
-                : new PushbackReader(requireNonNull(in, "input reader"));
+        this.bytes = null;
+        this.in    = requireNonNull(in, "input reader");
+    }
+
+    /**
+     * Wraps a reader whose first character is at the given position of a larger document.
+     * @param in  input reader; may not be null
+     * @param row the row of the first character
+     * @param col the column of the character preceding the first character on its row
+     */
+    ODDLInputStream(Reader in, int row, int col) {
+        this(in);
+        this.row = row;
+        this.col = col;
     }
 
     /**
@@ -106,7 +137,10 @@ public final class ODDLInputStream {
 
         if (c==-1) {
             return -1;
-        } else if (c=='\n') {
+        }
+
+        characters++;
+        if (c=='\n') {
             hasNewLine = true;
         } else {
             col++;
@@ -129,6 +163,20 @@ public final class ODDLInputStream {
         return col;
     }
 
+    /**
+     * @return the number of characters consumed so far, after line ending normalization
+     */
+    long getCharacterCount() {
+        return characters;
+    }
+
+    /**
+     * @return the number of bytes read from the wrapped input stream so far, or -1 if this stream wraps a reader
+     */
+    long getByteCount() {
+        return bytes == null ? -1 : bytes.count;
+    }
+
     /**
      * Reads a character, converting <tt>\r\n</tt> or <tt>\r</tt> to <tt>\n</tt>.
      *
@@ -136,12 +184,14 @@ public final class ODDLInputStream {
      * @throws IOException when an IO exception occurs
      */
     private int doRead() throws IOException {
-        int c = in.read();
+        if (pos == limit && !fill()) {
+            return -1;
+        }
 
+        final char c = buf[pos++];
         if (c == '\r') {
-            c = in.read();
-            if (c != '\n') { // this is a single \r
-                in.unread(c);
+            if ((pos < limit || fill()) && buf[pos] == '\n') {
+                pos++;
             }
             return '\n';
         }
@@ -149,5 +199,62 @@ public final class ODDLInputStream {
         return c;
     }
 
-}
+    /**
+     * Replaces the contents of the buffer with the next block of characters from the wrapped reader.
+     * @return <tt>false</tt> if the end of the stream has been reached
+     */
+    private boolean fill() throws IOException {
+        if (eof) {
+            return false;
+        }
+
+        final Object event  = ODDLEvents.beginRead();
+        final long   before = bytes == null ? 0 : bytes.count;
+        int n;
+        do {
+            n = in.read(buf, 0, buf.length);
+        } while (n == 0);
+        ODDLEvents.endRead(event, n, bytes == null ? -1 : bytes.count - before);
+
+        if (n < 0) {
+            eof = true;
+            return false;
+        }
+        pos   = 0;
+        limit = n;
+        return true;
+    }
+
+    private static final class CountingInputStream extends FilterInputStream {
+        long count;
+
+        CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int ret = in.read();
+            if (ret != -1) {
+                count++;
+            }
+            return ret;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int ret = in.read(b, off, len);
+            if (ret > 0) {
+                count += ret;
+            }
+            return ret;
+        }
 
+        @Override
+        public long skip(long n) throws IOException {
+            long ret = in.skip(n);
+            count += ret;
+            return ret;
+        }
+    }
+}
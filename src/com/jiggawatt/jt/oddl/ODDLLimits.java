@@ -0,0 +1,207 @@
+/*
+ * Jiggatech OpenDDL Parser
+ *
+ * Copyright (c) 2019 Nikita Leonidov
+ *
+ * MIT License
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package com.jiggawatt.jt.oddl;
+
+/**
+ * Caps on the resources a single document may consume, for readers of untrusted input. A reader enforces its limits
+ * while it scans, so an oversized literal, list or nesting is rejected with a {@link LimitExceededException} as soon as
+ * it crosses its limit rather than after it has been read into memory. Every limit is disabled by default:
+ * <pre>
+ * {@code
+ * ODDLReader reader = new ODDLReader(upload).setLimits(ODDLLimits.untrusted().setMaxDepth(32));
+ * }
+ * </pre>
+ * A reader copies the limits when they are set, so later changes to a limits object do not affect it.
+ *
+ * @author Nikita Leonidov
+ */
+public final class ODDLLimits {
+
+    /**
+     * The kinds of limit a document can exceed.
+     */
+    public enum Limit {
+        /** the number of characters in the text of a single token, including string literals */
+        TOKEN_LENGTH,
+        /** the number of characters in a string value, after escapes are decoded and adjacent literals joined */
+        STRING_LENGTH,
+        /** the number of elements in a data list structure, counting all sub-arrays */
+        LIST_LENGTH,
+        /** the number of structures enclosing a structure, plus one */
+        DEPTH,
+        /** the number of properties of a custom structure */
+        PROPERTIES,
+        /** the number of tokens in the document */
+        TOKENS
+    }
+
+    private int  maxTokenLength  = Integer.MAX_VALUE;
+    private int  maxStringLength = Integer.MAX_VALUE;
+    private int  maxListLength   = Integer.MAX_VALUE;
+    private int  maxDepth        = Integer.MAX_VALUE;
+    private int  maxProperties   = Integer.MAX_VALUE;
+    private long maxTokens       = Long.MAX_VALUE;
+
+    /**
+     * Creates limits that allow documents of any size, as a reader does by default.
+     */
+    public ODDLLimits() {
+    }
+
+    /**
+     * @return limits that let a document of up to a few hundred megabytes through, but keep a single token, string,
+     * list or property list to a size a shared service can afford, and nesting shallow enough not to exhaust the stack
+     */
+    public static ODDLLimits untrusted() {
+        return new ODDLLimits()
+                .setMaxTokenLength(1 << 20)
+                .setMaxStringLength(1 << 24)
+                .setMaxListLength(1 << 26)
+                .setMaxDepth(256)
+                .setMaxProperties(256)
+                .setMaxTokens(1L << 28);
+    }
+
+    ODDLLimits copy() {
+        ODDLLimits ret = new ODDLLimits();
+        ret.maxTokenLength  = maxTokenLength;
+        ret.maxStringLength = maxStringLength;
+        ret.maxListLength   = maxListLength;
+        ret.maxDepth        = maxDepth;
+        ret.maxProperties   = maxProperties;
+        ret.maxTokens       = maxTokens;
+        return ret;
+    }
+
+    private static int positive(String name, int value) {
+        if (value < 1) {
+            throw new IllegalArgumentException(name + ": " + value);
+        }
+        return value;
+    }
+
+    /**
+     * @return the maximum number of characters in the text of any one token
+     */
+    public int getMaxTokenLength() {
+        return maxTokenLength;
+    }
+
+    /**
+     * @param maxTokenLength the maximum number of characters in the text of any one token; must be positive
+     * @return this object
+     */
+    public ODDLLimits setMaxTokenLength(int maxTokenLength) {
+        this.maxTokenLength = positive("maxTokenLength", maxTokenLength);
+        return this;
+    }
+
+    /**
+     * @return the maximum number of characters in a decoded string value
+     */
+    public int getMaxStringLength() {
+        return maxStringLength;
+    }
+
+    /**
+     * @param maxStringLength the maximum number of characters in a decoded string value; must be positive
+     * @return this object
+     */
+    public ODDLLimits setMaxStringLength(int maxStringLength) {
+        this.maxStringLength = positive("maxStringLength", maxStringLength);
+        return this;
+    }
+
+    /**
+     * @return the maximum number of elements in a data list structure
+     */
+    public int getMaxListLength() {
+        return maxListLength;
+    }
+
+    /**
+     * @param maxListLength the maximum number of elements in a data list structure; must be positive
+     * @return this object
+     */
+    public ODDLLimits setMaxListLength(int maxListLength) {
+        this.maxListLength = positive("maxListLength", maxListLength);
+        return this;
+    }
+
+    /**
+     * @return the maximum nesting depth of structures
+     */
+    public int getMaxDepth() {
+        return maxDepth;
+    }
+
+    /**
+     * @param maxDepth the maximum nesting depth of structures, where top-level structures have depth 1; must be
+     *                 positive
+     * @return this object
+     */
+    public ODDLLimits setMaxDepth(int maxDepth) {
+        this.maxDepth = positive("maxDepth", maxDepth);
+        return this;
+    }
+
+    /**
+     * @return the maximum number of properties of a custom structure
+     */
+    public int getMaxProperties() {
+        return maxProperties;
+    }
+
+    /**
+     * @param maxProperties the maximum number of properties of a custom structure; must be positive
+     * @return this object
+     */
+    public ODDLLimits setMaxProperties(int maxProperties) {
+        this.maxProperties = positive("maxProperties", maxProperties);
+        return this;
+    }
+
+    /**
+     * @return the maximum number of tokens in a document
+     */
+    public long getMaxTokens() {
+        return maxTokens;
+    }
+
+    /**
+     * @param maxTokens the maximum number of tokens in a document; must be positive
+     * @return this object
+     */
+    public ODDLLimits setMaxTokens(long maxTokens) {
+        if (maxTokens < 1) {
+            throw new IllegalArgumentException("maxTokens: " + maxTokens);
+        }
+        this.maxTokens = maxTokens;
+        return this;
+    }
+}
@@ -0,0 +1,86 @@
+/*
+ * Jiggatech OpenDDL Parser
+ *
+ * Copyright (c) 2019 Nikita Leonidov
+ *
+ * MIT License
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.jiggawatt.jt.oddl;
+
+/**
+ * Receives measurements from an {@link ODDLReader} while it parses a document. All methods have empty default
+ * implementations, so implementations only override what they need. {@link ODDLMetricsRecorder} aggregates all
+ * measurements in memory for export.
+ * <p>
+ * Methods are called on the parsing thread, synchronously, and should return quickly. A reader configured with
+ * {@link #NONE} skips measurement entirely.
+ *
+ * @author Nikita Leonidov
+ */
+public interface ODDLMetrics {
+
+    /** discards all measurements; the default for every reader */
+    ODDLMetrics NONE = new ODDLMetrics() {};
+
+    /**
+     * Called for every token read, including tokens that form part of a larger token such as the names of a
+     * reference; comments and whitespace are not tokens.
+     * @param type the token's type
+     */
+    default void token(ODDLToken.Type type) {
+    }
+
+    /**
+     * Called when the identifier of a custom structure has been read.
+     * @param identifier the structure's identifier
+     */
+    default void structure(IdentifierToken identifier) {
+    }
+
+    /**
+     * Called after the elements of a data list, or of one sub-array of a data array list, have been read.
+     * @param dataType the list's data type
+     * @param count    the number of elements read
+     */
+    default void dataList(DataTypeToken dataType, int count) {
+    }
+
+    /**
+     * Called after a top-level structure, including all of its substructures, has been read and passed to the
+     * listener.
+     * @param head  the structure's identifier, or its data type if it is a list
+     * @param nanos elapsed time in nanoseconds, including time spent in the listener
+     */
+    default void topLevelStructure(ODDLToken head, long nanos) {
+    }
+
+    /**
+     * Called after the listener has processed the end of the document.
+     * @param characters the number of characters consumed, after line ending normalization
+     * @param bytes      the number of bytes read from the underlying input stream, or -1 if the reader was created
+     *                   from a {@link java.io.Reader}; may include bytes decoded ahead of the parser
+     * @param maxDepth   the deepest structure nesting seen, where top-level structures are at depth 1
+     * @param nanos      elapsed time in nanoseconds
+     */
+    default void document(long characters, long bytes, int maxDepth, long nanos) {
+    }
+}
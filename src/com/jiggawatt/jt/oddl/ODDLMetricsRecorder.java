@@ -0,0 +1,260 @@
+/*
+ * Jiggatech OpenDDL Parser
+ *
+ * Copyright (c) 2019 Nikita Leonidov
+ *
+ * MIT License
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.jiggawatt.jt.oddl;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * An {@link ODDLMetrics} implementation that aggregates measurements in memory. A single recorder may be shared by
+ * readers on any number of threads; getters return snapshots that can be exported to a monitoring system.
+ *
+ * @author Nikita Leonidov
+ */
+public final class ODDLMetricsRecorder implements ODDLMetrics {
+
+    private final LongAdder documents  = new LongAdder();
+    private final LongAdder characters = new LongAdder();
+    private final LongAdder bytes      = new LongAdder();
+    private final LongAdder nanos      = new LongAdder();
+
+    private final AtomicInteger maxDepth = new AtomicInteger();
+
+    private final LongAdder[] tokens   = adders(ODDLToken.Type.values().length);
+    private final LongAdder[] elements = adders(DataType.values().length);
+
+    private final ConcurrentHashMap<String, LongAdder>   structures = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, TimingAdder> topLevel   = new ConcurrentHashMap<>();
+
+    /**
+     * Creates a recorder with every count at zero.
+     */
+    public ODDLMetricsRecorder() {
+    }
+
+    // recording
+    //==================================================================================================================
+    @Override
+    public void token(ODDLToken.Type type) {
+        tokens[type.ordinal()].increment();
+    }
+
+    @Override
+    public void structure(IdentifierToken identifier) {
+        structures.computeIfAbsent(identifier.getText(), k -> new LongAdder()).increment();
+    }
+
+    @Override
+    public void dataList(DataTypeToken dataType, int count) {
+        elements[dataType.getValue().ordinal()].add(count);
+    }
+
+    @Override
+    public void topLevelStructure(ODDLToken head, long nanos) {
+        topLevel.computeIfAbsent(head.getText(), k -> new TimingAdder()).add(nanos);
+    }
+
+    @Override
+    public void document(long characters, long bytes, int maxDepth, long nanos) {
+        this.documents.increment();
+        this.characters.add(characters);
+        if (bytes > 0) {
+            this.bytes.add(bytes);
+        }
+        this.nanos.add(nanos);
+        this.maxDepth.accumulateAndGet(maxDepth, Math::max);
+    }
+
+    /**
+     * Discards all measurements recorded so far.
+     */
+    public void reset() {
+        documents.reset();
+        characters.reset();
+        bytes.reset();
+        nanos.reset();
+        maxDepth.set(0);
+        for (LongAdder k : tokens) {
+            k.reset();
+        }
+        for (LongAdder k : elements) {
+            k.reset();
+        }
+        structures.clear();
+        topLevel.clear();
+    }
+
+    // snapshots
+    //==================================================================================================================
+    /**
+     * @return the number of documents read to the end
+     */
+    public long getDocumentCount() {
+        return documents.sum();
+    }
+
+    /**
+     * @return the total number of characters consumed
+     */
+    public long getCharacterCount() {
+        return characters.sum();
+    }
+
+    /**
+     * @return the total number of bytes read from input streams; documents read from a {@link java.io.Reader} do not
+     * contribute
+     */
+    public long getByteCount() {
+        return bytes.sum();
+    }
+
+    /**
+     * @return the total time spent reading documents, in nanoseconds
+     */
+    public long getTotalNanos() {
+        return nanos.sum();
+    }
+
+    /**
+     * @return the deepest structure nesting seen in any document
+     */
+    public int getMaxDepth() {
+        return maxDepth.get();
+    }
+
+    /**
+     * @return token counts by token type; types that were never seen map to 0
+     */
+    public Map<ODDLToken.Type, Long> getTokenCounts() {
+        Map<ODDLToken.Type, Long> ret = new EnumMap<>(ODDLToken.Type.class);
+        for (ODDLToken.Type k : ODDLToken.Type.values()) {
+            ret.put(k, tokens[k.ordinal()].sum());
+        }
+        return Collections.unmodifiableMap(ret);
+    }
+
+    /**
+     * @return data list element counts by data type; types that were never seen map to 0
+     */
+    public Map<DataType, Long> getElementCounts() {
+        Map<DataType, Long> ret = new EnumMap<>(DataType.class);
+        for (DataType k : DataType.values()) {
+            ret.put(k, elements[k.ordinal()].sum());
+        }
+        return Collections.unmodifiableMap(ret);
+    }
+
+    /**
+     * @return custom structure counts by identifier
+     */
+    public Map<String, Long> getStructureCounts() {
+        Map<String, Long> ret = new HashMap<>();
+        structures.forEach((k, v) -> ret.put(k, v.sum()));
+        return Collections.unmodifiableMap(ret);
+    }
+
+    /**
+     * @return timings of top-level structures, keyed by the structure's identifier or, for lists, its data type
+     */
+    public Map<String, Timing> getTopLevelTimings() {
+        Map<String, Timing> ret = new HashMap<>();
+        topLevel.forEach((k, v) -> ret.put(k, v.snapshot()));
+        return Collections.unmodifiableMap(ret);
+    }
+
+    private static LongAdder[] adders(int n) {
+        LongAdder[] ret = new LongAdder[n];
+        for (int i=0; i<n; i++) {
+            ret[i] = new LongAdder();
+        }
+        return ret;
+    }
+
+    // inner types
+    //==================================================================================================================
+    /**
+     * Aggregate timing of a group of top-level structures.
+     */
+    public static final class Timing {
+        private final long count;
+        private final long totalNanos;
+        private final long maxNanos;
+
+        Timing(long count, long totalNanos, long maxNanos) {
+            this.count      = count;
+            this.totalNanos = totalNanos;
+            this.maxNanos   = maxNanos;
+        }
+
+        /**
+         * @return the number of structures timed
+         */
+        public long getCount() {
+            return count;
+        }
+
+        /**
+         * @return the total time spent on these structures, in nanoseconds
+         */
+        public long getTotalNanos() {
+            return totalNanos;
+        }
+
+        /**
+         * @return the longest time spent on a single structure, in nanoseconds
+         */
+        public long getMaxNanos() {
+            return maxNanos;
+        }
+
+        @Override
+        public String toString() {
+            return "Timing{count=" + count + ", totalNanos=" + totalNanos + ", maxNanos=" + maxNanos + '}';
+        }
+    }
+
+    private static final class TimingAdder {
+        private long count;
+        private long total;
+        private long max;
+
+        synchronized void add(long nanos) {
+            count++;
+            total += nanos;
+            max = Math.max(max, nanos);
+        }
+
+        synchronized Timing snapshot() {
+            return new Timing(count, total, max);
+        }
+    }
+}
@@ -11,4 +11,12 @@ public abstract class ODDLParseException extends Exception {
     ODDLParseException(String message) {
         super(message);
     }
+
+    /**
+     * @param stackTrace <tt>false</tt> to skip capturing the stack trace, which costs more than the rest of the
+     *                   exception when documents fail often
+     */
+    ODDLParseException(String message, boolean stackTrace) {
+        super(message, null, true, stackTrace);
+    }
 }
@@ -0,0 +1,167 @@
+/*
+ * Jiggatech OpenDDL Parser
+ *
+ * Copyright (c) 2019 Nikita Leonidov
+ *
+ * MIT License
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.jiggawatt.jt.oddl;
+
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * An {@link ODDLSchema} compiled for use by an {@link ODDLReader}. Each structure definition becomes a node that holds
+ * its allowed children, properties and data lists in lookup tables, so that the reader checks each structure, property
+ * and list with a single lookup as it parses. Plans are immutable and may be shared by any number of readers:
+ * <pre>
+ * {@code
+ * new ODDLReader(in).setPlan(plan).read(listener);
+ * }
+ * </pre>
+ * A document that does not match the plan fails with an {@link ODDLFormatException} at the first structure, property
+ * or list that does not match, before the listener receives it.
+ *
+ * @author Nikita Leonidov
+ */
+public final class ODDLParsePlan {
+
+    private final Node root;
+
+    ODDLParsePlan(Node root) {
+        this.root = root;
+    }
+
+    Node root() {
+        return root;
+    }
+
+    /**
+     * The compiled definition of the custom structures with a given identifier, or of the document itself.
+     */
+    static final class Node {
+        final String identifier;
+
+        private final Map<String, DataType> properties;
+        private final String[]              required;
+        /** allowed sub-array sizes, sorted, by data type ordinal; null if the type is not allowed, empty for any */
+        private final int[][]               lists;
+        private Map<String, Node>           children;
+
+        Node(String identifier, Map<String, DataType> properties, String[] required, int[][] lists) {
+            this.identifier = identifier;
+            this.properties = properties;
+            this.required   = required;
+            this.lists      = lists;
+        }
+
+        void link(Map<String, Node> children) {
+            this.children = children;
+        }
+
+        private boolean allowsList(DataType type, int subarraySize) {
+            final int[] sizes = lists[type.ordinal()];
+            return sizes != null && (sizes.length == 0 || Arrays.binarySearch(sizes, subarraySize) >= 0);
+        }
+
+        /**
+         * Looks up the node for a child structure.
+         * @param identifier the identifier of the child structure
+         * @return the node for the child structure
+         * @throws ODDLFormatException if the child structure is not allowed here
+         */
+        Node enter(IdentifierToken identifier) throws ODDLFormatException {
+            final Node ret = children.get(identifier.getText());
+            if (ret == null) {
+                throw new ODDLFormatException(identifier,
+                        "structure " + identifier.getText() + " is not allowed in " + describe());
+            }
+            return ret;
+        }
+
+        /**
+         * @param dataType      the data type of a list structure in this structure
+         * @param subarraySize  the sub-array size of the list structure, or -1 for a data list
+         * @throws ODDLFormatException if the list is not allowed here
+         */
+        void checkList(DataTypeToken dataType, int subarraySize) throws ODDLFormatException {
+            if (!allowsList(dataType.getValue(), subarraySize)) {
+                final String list = subarraySize < 0
+                        ? dataType.getText()
+                        : dataType.getText() + "[" + subarraySize + "]";
+                throw new ODDLFormatException(dataType, list + " list is not allowed in " + describe());
+            }
+        }
+
+        /**
+         * @param key    the name of a property of this structure
+         * @param at     the token at which to report an unknown property
+         * @param value  the value of the property
+         * @throws ODDLFormatException if the property is not allowed here, or its value is of the wrong type
+         */
+        void checkProperty(String key, ODDLToken at, PropertyValueToken value) throws ODDLFormatException {
+            final DataType type = properties.get(key);
+            if (type == null) {
+                throw new ODDLFormatException(at, "unknown property " + key + " of " + describe());
+            }
+            if (!accepts(type, value)) {
+                throw new ODDLFormatException(value,
+                        "property " + key + " of " + describe() + " must be of type " + type);
+            }
+        }
+
+        /**
+         * @param identifier  the identifier of a structure described by this node
+         * @param properties  the properties of the structure
+         * @throws ODDLFormatException if the structure lacks a required property
+         */
+        void checkRequired(IdentifierToken identifier, PropertyMap properties) throws ODDLFormatException {
+            for (String key : required) {
+                if (properties.get(key) == null) {
+                    throw new ODDLFormatException(identifier, "missing required property " + key + " of " + describe());
+                }
+            }
+        }
+
+        /**
+         * @return a description of this node for error messages
+         */
+        String describe() {
+            return ODDLSchema.describe(identifier);
+        }
+
+        /**
+         * @return <tt>true</tt> if the given property value is of the given type; integers are accepted as floats
+         */
+        private static boolean accepts(DataType type, PropertyValueToken value) {
+            final ODDLToken.Type t = value.getType();
+            switch (type) {
+                case BOOL:   return t == ODDLToken.Type.BOOL;
+                case INT:    return t == ODDLToken.Type.INT;
+                case FLOAT:  return t == ODDLToken.Type.FLOAT || t == ODDLToken.Type.INT;
+                case STRING: return t == ODDLToken.Type.STRING;
+                case REF:    return t == ODDLToken.Type.REF;
+                default:     return t == ODDLToken.Type.DATA_TYPE;
+            }
+        }
+    }
+}
@@ -29,7 +29,15 @@ package com.jiggawatt.jt.oddl;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.Reader;
+import java.io.UncheckedIOException;
 import java.util.*;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import static java.util.Objects.requireNonNull;
 
 /**
  * Parses the contents of an input stream as OpenDDL text, notifying an {@link ODDLListener} of all identified language
@@ -39,8 +47,37 @@ import java.util.*;
  */
 public class ODDLReader {
 
+    /** events buffered between the tokenizer and listener threads by {@link #readPipelined(ODDLListener)} */
+    private static final int PIPELINE_CAPACITY = 4096;
+
+    /** characters per chunk passed to an {@link ODDLStringListener} */
+    private static final int STRING_CHUNK_SIZE = 4096;
+
     private final ODDLTokenizer tokenizer;
 
+    private ODDLMetrics metrics = ODDLMetrics.NONE;
+    private boolean     measuring;
+    private int         depth;
+    private int         maxDepth;
+
+    private int depthLimit    = Integer.MAX_VALUE;
+    private int listLimit     = Integer.MAX_VALUE;
+    private int propertyLimit = Integer.MAX_VALUE;
+    private int stringLimit   = Integer.MAX_VALUE;
+
+    private ODDLLimits limits = new ODDLLimits();
+
+    private boolean stackTraces = true;
+
+    /** elements read so far in the current data list structure */
+    private int listLength;
+
+    /** buffer for strings delivered in chunks; created on first use */
+    private char[] chunk;
+
+    /** the plan node of the structure being read, or <tt>null</tt> when reading without a plan */
+    private ODDLParsePlan.Node node;
+
     public ODDLReader(ODDLInputStream in) {
         this.tokenizer = new ODDLTokenizer(in);
     }
@@ -53,6 +90,62 @@ public class ODDLReader {
         this(new ODDLInputStream(in));
     }
 
+    /**
+     * Sets the sink to which this reader reports parse metrics: characters and bytes consumed, token counts, structure
+     * counts, data list sizes, nesting depth and timings. The default, {@link ODDLMetrics#NONE}, skips measurement
+     * entirely.
+     * @param metrics a metrics sink; may not be null
+     * @return this reader
+     */
+    public ODDLReader setMetrics(ODDLMetrics metrics) {
+        this.metrics   = requireNonNull(metrics, "metrics");
+        this.measuring = metrics != ODDLMetrics.NONE;
+        tokenizer.setMetrics(metrics);
+        return this;
+    }
+
+    /**
+     * Sets the resource limits enforced while reading, replacing any set before. By default, no limits apply.
+     * @param limits the limits to enforce; copied, so later changes to <tt>limits</tt> do not affect this reader
+     * @return this reader
+     */
+    public ODDLReader setLimits(ODDLLimits limits) {
+        depthLimit    = limits.getMaxDepth();
+        listLimit     = limits.getMaxListLength();
+        propertyLimit = limits.getMaxProperties();
+        stringLimit   = limits.getMaxStringLength();
+        tokenizer.setLimits(limits);
+        this.limits = limits.copy();
+        return this;
+    }
+
+    /**
+     * Sets the plan against which this reader checks the structures it reads. A structure, property or data list the
+     * plan does not allow fails the read with an {@link ODDLFormatException} before it is passed to the listener. By
+     * default, and when <tt>plan</tt> is <tt>null</tt>, any well-formed document is accepted. The plan applies to
+     * {@link #read(ODDLListener)} and {@link #readPipelined(ODDLListener)}, but not to {@link #validate()}.
+     * @param plan a plan compiled from an {@link ODDLSchema}, or <tt>null</tt>
+     * @return this reader
+     */
+    public ODDLReader setPlan(ODDLParsePlan plan) {
+        this.node = plan == null ? null : plan.root();
+        return this;
+    }
+
+    /**
+     * Sets whether the exceptions this reader throws for malformed documents capture a stack trace. Capturing one
+     * takes longer than the rest of a failed parse of a small document, so readers that reject many documents, such as
+     * upload validators, can turn it off. The exceptions keep their types and messages. Exceptions thrown by
+     * listeners and by the underlying input stream are unaffected. By default, stack traces are captured.
+     * @param stackTraces <tt>false</tt> to throw parse exceptions without stack traces
+     * @return this reader
+     */
+    public ODDLReader setStackTraces(boolean stackTraces) {
+        this.stackTraces = stackTraces;
+        tokenizer.setStackTraces(stackTraces);
+        return this;
+    }
+
     /**
      * Reads a text file from the wrapped input stream, parsing it as an OpenDDL file. The given <tt>listener</tt> will
      * be notified of all identified language constructs in the order that they are encountered in the input text.
@@ -66,11 +159,233 @@ public class ODDLReader {
      * @throws ODDLParseException  when the text read from the input stream does not conform to the OpenDDL grammar
      */
     public <T> T read(ODDLListener<T> listener) throws IOException, ODDLParseException, ODDLFormatException {
+        final long   start = measuring ? System.nanoTime() : 0;
+        final Object event = ODDLEvents.beginDocument();
+
         listener.begin();
         while (!tokenizer.peek(0).isEOF()) {
+            readTopLevelStructure(listener);
+        }
+        T ret = listener.end(tokenizer.peek(0).getRow(), tokenizer.peek(0).getCol());
+
+        ODDLInputStream in = tokenizer.getInputStream();
+        if (measuring) {
+            metrics.document(in.getCharacterCount(), in.getByteCount(), maxDepth, System.nanoTime() - start);
+        }
+        ODDLEvents.endDocument(event, in.getCharacterCount(), in.getByteCount());
+        return ret;
+    }
+
+    /**
+     * Checks that the text read from the wrapped input stream is a valid OpenDDL file, without parsing it. The checks
+     * are those {@link #read(ODDLListener)} makes, including list element types, sub-array sizes and the reader's
+     * {@link #setLimits(ODDLLimits) limits}, but the text is scanned in place: no tokens, strings or listener calls are
+     * made, so validation is several times faster than reading with a listener that discards every event. Use this
+     * instead of <tt>read</tt>, on a reader that has not read anything yet.
+     * <p>
+     * The reader's {@link #setPlan(ODDLParsePlan) plan} is not applied: a file that the plan would reject is still
+     * valid if it conforms to the OpenDDL grammar. To check a file against a plan, read it with a listener that
+     * discards every event.
+     *
+     * @return the first error in the file, or <tt>null</tt> if the file is valid
+     * @throws IOException when an IO exception occurs
+     */
+    public ODDLError validate() throws IOException {
+        return new ODDLValidator(tokenizer.getInputStream(), limits).validate();
+    }
+
+    /**
+     * Reads a text file like {@link #read(ODDLListener)}, but tokenizes on a separate thread so that tokenizing and
+     * listener work overlap. The tokenizer thread hands events to the calling thread through a bounded lock-free
+     * queue; the <tt>listener</tt> is only ever called on the calling thread, in the same order as by
+     * {@link #read(ODDLListener)}. This pays off when the listener does enough work per event to keep a thread
+     * busy; otherwise the handoff costs more than it saves.
+     * <p>
+     * A new daemon thread runs the tokenizer. {@link ODDLMetrics} are reported from that thread.
+     *
+     * @param listener  an object to which the reader will pass all parsed language constructs
+     * @param <T>       the type of the result produced by the listener
+     *
+     * @return the object returned by <tt>listener</tt>'s {@link ODDLListener#end(int,int)} method.
+     *
+     * @throws IOException         when an IO exception occurs
+     * @throws ODDLParseException  when the text read from the input stream does not conform to the OpenDDL grammar
+     */
+    public <T> T readPipelined(ODDLListener<T> listener) throws IOException, ODDLParseException, ODDLFormatException {
+        return readPipelined(listener, task -> {
+            Thread thread = new Thread(task, "oddl-tokenizer");
+            thread.setDaemon(true);
+            thread.start();
+        });
+    }
+
+    /**
+     * Reads a text file like {@link #readPipelined(ODDLListener)}, running the tokenizer on the given executor. The
+     * calling thread waits for the tokenizer's events, so the executor must start the tokenizer without waiting for
+     * the calling thread: if it queues the task behind work that never finishes, such as on a saturated fixed pool to
+     * which the calling thread itself belongs, the read never returns. Whether the read succeeds or fails, it returns
+     * only once the tokenizer has stopped using this reader and its input.
+     *
+     * @param listener  an object to which the reader will pass all parsed language constructs
+     * @param executor  runs the tokenizer; must run it on a thread other than the caller's, without waiting for the
+     *                  caller
+     * @param <T>       the type of the result produced by the listener
+     *
+     * @return the object returned by <tt>listener</tt>'s {@link ODDLListener#end(int,int)} method.
+     *
+     * @throws IOException         when an IO exception occurs
+     * @throws ODDLParseException  when the text read from the input stream does not conform to the OpenDDL grammar
+     * @throws IllegalArgumentException if <tt>executor</tt> runs the tokenizer on the calling thread
+     */
+    public <T> T readPipelined(ODDLListener<T> listener, Executor executor) throws IOException, ODDLParseException, ODDLFormatException {
+        return new PipelinedRead(this, PIPELINE_CAPACITY).read(listener, executor);
+    }
+
+    /**
+     * Creates a publisher that reads top-level structures from this reader on demand. For every structure, the
+     * publisher obtains a listener from <tt>mapper</tt>, passes it {@link ODDLListener#begin()}, the structure's
+     * events and {@link ODDLListener#end(int,int)}, and emits the result of <tt>end</tt> to its subscriber.
+     * <p>
+     * The publisher accepts a single subscriber and honors its demand: it reads no further than the first token of
+     * the next structure while demand is zero, so memory stays bounded however slow the subscriber. Parse errors
+     * terminate the subscription with {@link Flow.Subscriber#onError(Throwable)}. Reading, and every signal to the
+     * subscriber, happens on <tt>executor</tt>; since reading may block on input, an executor meant for blocking work
+     * is preferable to the common pool. The publisher does not close the underlying input.
+     *
+     * @param mapper    supplies a listener to build each emitted element; the listener may not return <tt>null</tt>
+     * @param executor  runs the reader and signals the subscriber
+     * @param <T>       the type of the emitted elements
+     * @return a publisher of mapped top-level structures
+     */
+    public <T> Flow.Publisher<T> publisher(Supplier<? extends ODDLListener<? extends T>> mapper, Executor executor) {
+        return new StructurePublisher<>(this, mapper, executor);
+    }
+
+    /**
+     * Returns a sequential stream with one element per top-level structure read from this reader. Each structure is
+     * mapped as by {@link #publisher(Supplier, Executor)}. Structures are read lazily as the stream is consumed; a
+     * parallel stream can only parallelize work downstream of reading, since the input is sequential. Use
+     * {@link #structures(CharSequence, Supplier)} to parse an in-memory document in parallel.
+     * <p>
+     * IO errors are rethrown as {@link UncheckedIOException}s, parse and listener errors as
+     * {@link UncheckedODDLException}s.
+     *
+     * @param mapper  supplies a listener to build each element; the listener may not return <tt>null</tt>
+     * @param <T>     the type of the stream elements
+     * @return a stream of mapped top-level structures
+     */
+    public <T> Stream<T> structures(Supplier<? extends ODDLListener<? extends T>> mapper) {
+        requireNonNull(mapper, "mapper");
+        Iterator<T> it = new Iterator<T>() {
+            @Override
+            public boolean hasNext() {
+                try {
+                    return hasNextStructure();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                } catch (ODDLParseException e) {
+                    throw new UncheckedODDLException(e);
+                }
+            }
+
+            @Override
+            public T next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                try {
+                    return requireNonNull(readStructure(mapper.get()), "mapper produced null");
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                } catch (ODDLParseException e) {
+                    throw new UncheckedODDLException(e);
+                } catch (ODDLFormatException e) {
+                    throw new UncheckedODDLException(e);
+                }
+            }
+        };
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(it, Spliterator.ORDERED | Spliterator.NONNULL), false);
+    }
+
+    /**
+     * Returns a sequential stream with one element per top-level structure of an in-memory document. Each structure
+     * is mapped as by {@link #publisher(Supplier, Executor)}. When the stream is consumed, the document is first
+     * scanned for the boundaries of top-level structures, which is much cheaper than tokenizing it; the stream's
+     * spliterator then splits at those boundaries, so a {@link Stream#parallel() parallel} stream parses structures
+     * on several threads. Row and column numbers match those of a sequential read. <tt>mapper</tt> must be safe to
+     * call from several threads, and each listener it supplies is only used by one thread.
+     * <p>
+     * Parse and listener errors are rethrown as {@link UncheckedODDLException}s.
+     *
+     * @param text    an OpenDDL document, which must not change while the stream is in use
+     * @param mapper  supplies a listener to build each element; the listener may not return <tt>null</tt>
+     * @param <T>     the type of the stream elements
+     * @return a stream of mapped top-level structures
+     */
+    public static <T> Stream<T> structures(CharSequence text, Supplier<? extends ODDLListener<? extends T>> mapper) {
+        requireNonNull(text, "text");
+        requireNonNull(mapper, "mapper");
+        return StreamSupport.stream(
+            () -> new StructureSpliterator<T>(text, mapper),
+            Spliterator.ORDERED | Spliterator.SIZED | Spliterator.SUBSIZED | Spliterator.NONNULL | Spliterator.IMMUTABLE,
+            false
+        );
+    }
+
+    /**
+     * @return <tt>true</tt> unless the reader has reached the end of the input
+     * @throws IOException when an IO exception occurs
+     */
+    boolean hasNextStructure() throws IOException, ODDLParseException {
+        return !tokenizer.peek(0).isEOF();
+    }
+
+    /**
+     * Reads the next top-level structure as if it were a document of its own: the listener receives
+     * {@link ODDLListener#begin()}, the structure's events, and {@link ODDLListener#end(int,int)} with the position
+     * of the token that follows it.
+     */
+    <T> T readStructure(ODDLListener<T> listener) throws IOException, ODDLParseException, ODDLFormatException {
+        listener.begin();
+        readTopLevelStructure(listener);
+        ODDLToken next = tokenizer.peek(0);
+        return listener.end(next.getRow(), next.getCol());
+    }
+
+    private void readTopLevelStructure(ODDLListener<?> listener) throws IOException, ODDLParseException, ODDLFormatException {
+        final Object event = ODDLEvents.beginStructure();
+        if (event == null && !measuring) {
             tryReadStructure(listener, false);
+            return;
+        }
+
+        final ODDLToken head  = tokenizer.peek(0);
+        final NameToken name  = event != null ? peekStructureName() : null;
+        final long      start = System.nanoTime();
+
+        tryReadStructure(listener, false);
+
+        if (measuring) {
+            metrics.topLevelStructure(head, System.nanoTime() - start);
+        }
+        ODDLEvents.endStructure(event, head, name);
+    }
+
+    private NameToken peekStructureName() throws IOException, ODDLParseException {
+        ODDLToken token = tokenizer.peek(1);
+        if (token.isDelimiter('[')) {
+            token = tokenizer.peek(4); // skip subarray size
+        }
+        return token.isName() ? token.asName() : null;
+    }
+
+    private void enter(ODDLToken head) throws LimitExceededException {
+        if (depth == depthLimit) {
+            throw new LimitExceededException(stackTraces, ODDLLimits.Limit.DEPTH, depthLimit, head.getRow(), head.getCol());
+        }
+        if (++depth > maxDepth) {
+            maxDepth = depth;
         }
-        return listener.end(tokenizer.peek(0).getRow(), tokenizer.peek(0).getCol());
     }
 
     private void tryReadStructure(ODDLListener<?> listener, boolean nested) throws IOException, ODDLParseException, ODDLFormatException {
@@ -85,11 +400,14 @@ public class ODDLReader {
                 break;
             case DELIMITER:
                 if (token.isEOF()) {
+                    if (nested) {
+                        throw new UnexpectedEOFException(stackTraces, tokenizer.getInputStream(), "structure");
+                    }
                     return; // end reading here, else fallthrough to exception
                 }
             default:
                 if (!nested || !token.isDelimiter('}')) {
-                    throw new UnexpectedTokenException(
+                    throw new UnexpectedTokenException(stackTraces,
                             token,
                             IdentifierToken.class, DataTypeToken.class
                     );
@@ -99,6 +417,8 @@ public class ODDLReader {
 
     private void readListStructure(ODDLListener<?> listener) throws IOException, ODDLParseException, ODDLFormatException {
         final DataTypeToken dataType = tokenizer.read(DataTypeToken.class);
+        enter(dataType);
+        listLength = 0;
 
         // this is a data-array-list iff a subarray size is specified
         //--------------------------------------------------------------------------------------------------------------
@@ -111,6 +431,10 @@ public class ODDLReader {
             subarraySize = -1;
         }
 
+        if (node != null) {
+            node.checkList(dataType, subarraySize);
+        }
+
         // the name is optional & follows the subarray size
         //--------------------------------------------------------------------------------------------------------------
         final NameToken name;
@@ -123,20 +447,33 @@ public class ODDLReader {
         // data-array-list iff subarray size set, else data-list
         //--------------------------------------------------------------------------------------------------------------
         tokenizer.read('{');
+        final Object event = ODDLEvents.beginDataList();
+        final int    count;
         if (subarraySize >= 0) {
             listener.beginArrayListStructure(dataType, subarraySize, name);
-            readDataArrayList(dataType, subarraySize, listener);
+            count = readDataArrayList(dataType, subarraySize, listener);
             listener.endArrayListStructure(dataType, subarraySize, name);
         } else {
             listener.beginListStructure(dataType, name);
-            readDataList(dataType, -1, listener);
+            count = readDataList(dataType, -1, listener);
             listener.endListStructure(dataType, name);
         }
+        ODDLEvents.endDataList(event, dataType, subarraySize, count);
         tokenizer.read('}');
+        depth--;
     }
 
     private void readCustomStructure(ODDLListener<?> listener) throws IOException, ODDLParseException, ODDLFormatException {
         final IdentifierToken identifier = tokenizer.read(IdentifierToken.class);
+        enter(identifier);
+        if (measuring) {
+            metrics.structure(identifier);
+        }
+
+        final ODDLParsePlan.Node parent = node;
+        if (parent != null) {
+            node = parent.enter(identifier);
+        }
 
         // the name is optional
         //--------------------------------------------------------------------------------------------------------------
@@ -157,6 +494,9 @@ public class ODDLReader {
             while (tokenizer.peek(0).isIdentifier()) {
                 // lhs is property identifier, rhs is property value; separated by =
                 IdentifierToken left = tokenizer.read(IdentifierToken.class);
+                if (props.size() == propertyLimit) {
+                    throw new LimitExceededException(stackTraces, ODDLLimits.Limit.PROPERTIES, propertyLimit, left.getRow(), left.getCol());
+                }
                 tokenizer.read('=');
                 PropertyValueToken right;
 
@@ -172,6 +512,10 @@ public class ODDLReader {
                         right = tokenizer.read(PropertyValueToken.class);
                 }
 
+                if (node != null) {
+                    node.checkProperty(left.getText(), left, right);
+                }
+
                 // finally, store property
                 props.put(left, right);
 
@@ -188,6 +532,10 @@ public class ODDLReader {
             properties = PropertyMap.empty();
         }
 
+        if (node != null) {
+            node.checkRequired(identifier, properties);
+        }
+
         // pass the structure to the listener, then read any nested structures
         //--------------------------------------------------------------------------------------------------------------
         tokenizer.read('{');
@@ -198,106 +546,233 @@ public class ODDLReader {
         }
 
         tokenizer.read('}');
+        depth--;
+        node = parent;
         listener.endCustomStructure(identifier, name, properties);
     }
 
-    private void readDataList(DataTypeToken dataType, final int subarraySize, ODDLListener<?> listener) throws IOException, ODDLParseException, ODDLFormatException {
-        final Class<? extends ODDLToken> type = dataType.getValue().getTokenType();
+    private int readDataList(DataTypeToken dataType, final int subarraySize, ODDLListener<?> listener) throws IOException, ODDLParseException, ODDLFormatException {
+        final DataType type = dataType.getValue();
+
+        if (type == DataType.STRING && listener instanceof ODDLStringListener) {
+            return readStringChunks(dataType, subarraySize, (ODDLStringListener<?>) listener);
+        }
 
         // skip list if empty
         if (tokenizer.peek(0).isDelimiter('}')) {
-            return;
+            return 0;
         }
 
         int count = 0;
 
-        if (type == FloatToken.class) {
-            do {
-                listener.value(readFloatListElement());
-                count++;
-            } while (tokenizer.consumeIfPresent(','));
-
-        } else if (type == IntToken.class) {
-            do {
-                listener.value(readListElement(IntToken.class));
-                count++;
-            } while (tokenizer.consumeIfPresent(','));
-
-        } else if (type == StringToken.class) {
-            do {
-                listener.value(readString(true));
-                count++;
-            } while (tokenizer.consumeIfPresent(','));
-
-        } else if (type == RefToken.class) {
-            do {
-                listener.value(readRef(true));
-                count++;
-            } while (tokenizer.consumeIfPresent(','));
-
-        } else if (type == DataTypeToken.class) {
-            do {
-                listener.value(readListElement(DataTypeToken.class));
-                count++;
-            } while (tokenizer.consumeIfPresent(','));
-
-        } else if (type == BoolToken.class) {
-            do {
-                listener.value(readListElement(BoolToken.class));
-                count++;
-            } while (tokenizer.consumeIfPresent(','));
+        // one loop per data type, chosen once per list
+        switch (type) {
+            case FLOAT:
+                do {
+                    countElement();
+                    listener.value(readFloatListElement(dataType));
+                    count++;
+                } while (tokenizer.consumeIfPresent(','));
+                break;
 
-        } else {
-            throw new IllegalArgumentException(dataType.toString());
+            case INT:
+                do {
+                    countElement();
+                    listener.value(readListElement(IntToken.class));
+                    count++;
+                } while (tokenizer.consumeIfPresent(','));
+                break;
+
+            case STRING:
+                do {
+                    countElement();
+                    listener.value(readString(true));
+                    count++;
+                } while (tokenizer.consumeIfPresent(','));
+                break;
+
+            case REF:
+                do {
+                    countElement();
+                    listener.value(readRef(true));
+                    count++;
+                } while (tokenizer.consumeIfPresent(','));
+                break;
+
+            case TYPE:
+                do {
+                    countElement();
+                    listener.value(readListElement(DataTypeToken.class));
+                    count++;
+                } while (tokenizer.consumeIfPresent(','));
+                break;
+
+            case BOOL:
+                do {
+                    countElement();
+                    listener.value(readListElement(BoolToken.class));
+                    count++;
+                } while (tokenizer.consumeIfPresent(','));
+                break;
+
+            default:
+                throw new IllegalArgumentException(dataType.toString());
         }
 
         // enforce subarray size; unbounded if < 0
         if (subarraySize>=0 && count!=subarraySize) {
-            throw new IllegalSubarraySizeException(dataType.getRow(), dataType.getCol(), count, subarraySize);
+            throw new IllegalSubarraySizeException(stackTraces, dataType.getRow(), dataType.getCol(), count, subarraySize);
+        }
+
+        if (measuring) {
+            metrics.dataList(dataType, count);
+        }
+
+        return count;
+    }
+
+    /**
+     * Reads the elements of a string data list, passing each string to the listener in chunks instead of as a token.
+     */
+    private int readStringChunks(DataTypeToken dataType, final int subarraySize, ODDLStringListener<?> listener) throws IOException, ODDLParseException, ODDLFormatException {
+        if (chunk == null) {
+            chunk = new char[STRING_CHUNK_SIZE];
+        }
+
+        int count = 0;
+        do {
+            final ODDLInputStream in = tokenizer.getInputStream();
+            final int row = in.getRow();
+            final int col = in.getCol();
+
+            if (tokenizer.beginStringChunks()) {
+                if (++listLength > listLimit) {
+                    throw new LimitExceededException(stackTraces, ODDLLimits.Limit.LIST_LENGTH, listLimit, row, col);
+                }
+                listener.beginString();
+                for (int n; (n = tokenizer.readStringChunk(chunk)) >= 0; ) {
+                    listener.stringChunk(chunk, 0, n);
+                }
+                listener.endString();
+            } else if (count == 0 && tokenizer.peek(0).isDelimiter('}')) {
+                return 0;
+            } else if (tokenizer.peek(0).isString()) {
+                // already read ahead as a token
+                countElement();
+                sliceString(readString(true).getValue(), chunk, listener);
+            } else {
+                throw new ListElementTypeMismatchException(stackTraces, tokenizer.peek(0), StringToken.class);
+            }
+            count++;
+        } while (tokenizer.consumeIfPresent(','));
+
+        if (subarraySize>=0 && count!=subarraySize) {
+            throw new IllegalSubarraySizeException(stackTraces, dataType.getRow(), dataType.getCol(), count, subarraySize);
         }
+
+        if (measuring) {
+            metrics.dataList(dataType, count);
+        }
+
+        return count;
     }
 
-    private void readDataArrayList(DataTypeToken dataType, final int subarraySize, ODDLListener<?> listener) throws IOException, ODDLParseException, ODDLFormatException {
+    /**
+     * Passes a string that has already been read as a token to the listener in chunks. Like
+     * {@link ODDLTokenizer#readStringChunk(char[])}, a chunk never ends with the high half of a surrogate pair.
+     * @param value    the string to pass to the listener
+     * @param chunk    the buffer to slice the string into; at least two characters long
+     * @param listener receives the chunks
+     * @throws ODDLFormatException when the string does not conform to the listener's expected format
+     */
+    static void sliceString(String value, char[] chunk, ODDLStringListener<?> listener) throws ODDLFormatException {
+        listener.beginString();
+        for (int i=0, n; i<value.length(); i+=n) {
+            n = Math.min(chunk.length, value.length() - i);
+            if (i + n < value.length() && Character.isHighSurrogate(value.charAt(i + n - 1))) {
+                n--;
+            }
+            value.getChars(i, i + n, chunk, 0);
+            listener.stringChunk(chunk, 0, n);
+        }
+        listener.endString();
+    }
+
+    private void countElement() throws IOException, ODDLParseException {
+        if (++listLength > listLimit) {
+            ODDLToken next = tokenizer.peek(0);
+            throw new LimitExceededException(stackTraces, ODDLLimits.Limit.LIST_LENGTH, listLimit, next.getRow(), next.getCol());
+        }
+    }
+
+    private int readDataArrayList(DataTypeToken dataType, final int subarraySize, ODDLListener<?> listener) throws IOException, ODDLParseException, ODDLFormatException {
         // skip list if empty
         if (tokenizer.peek(0).isDelimiter('}')) {
-            return;
+            return 0;
         }
 
+        int count = 0;
         do {
             tokenizer.read('{');
             listener.beginSubArray(dataType, subarraySize);
 
-            readDataList(dataType, subarraySize, listener);
+            count += readDataList(dataType, subarraySize, listener);
 
             tokenizer.read('}');
             listener.endSubArray(dataType, subarraySize);
         } while (tokenizer.consumeIfPresent(','));
+
+        return count;
     }
 
     private <T extends ODDLToken> T readListElement(Class<T> type) throws IOException, ODDLParseException {
         if (tokenizer.peek(0).getClass()!=type) {
-            throw new ListElementTypeMismatchException(tokenizer.peek(0), type);
+            throw new ListElementTypeMismatchException(stackTraces, tokenizer.peek(0), type);
         }
 
         return type.cast(tokenizer.read());
     }
 
-    private FloatToken readFloatListElement() throws IOException, ODDLParseException {
+    private FloatToken readFloatListElement(DataTypeToken dataType) throws IOException, ODDLParseException {
         if (!tokenizer.peek(0).isFloat() && !tokenizer.peek(0).isInt()) {
-            throw new ListElementTypeMismatchException(tokenizer.peek(0), FloatToken.class);
+            throw new ListElementTypeMismatchException(stackTraces, tokenizer.peek(0), FloatToken.class);
         }
 
         ODDLToken token = tokenizer.read();
         if (token.isInt()) {
-            return new FloatToken(token.getRow(), token.getCol(), token.getText(), token.asInt().getValue());
+            IntToken i = token.asInt();
+            double value = i.getValue();
+
+            // hex, octal and binary literals specify the bits of the floating-point value directly; a sign applies to
+            // the value those bits encode, rather than making the bits a two's complement integer
+            switch (i.getFormat()) {
+                case HEX:
+                case OCT:
+                case BIN:
+                    if (token.getText().charAt(0) == '-') {
+                        value = -bitsToFloat(dataType.getTypeBits(), -i.getValue());
+                    } else {
+                        value = bitsToFloat(dataType.getTypeBits(), i.getValue());
+                    }
+            }
+
+            return new FloatToken(token.getRow(), token.getCol(), token.getText(), value);
         } else {
             return token.asFloat();
         }
     }
 
+    private static double bitsToFloat(int typeBits, long bits) {
+        switch (typeBits) {
+            case 16: return FloatFormat.fromHalfBits((int) bits & 0xffff);
+            case 32: return Float.intBitsToFloat((int) bits);
+            default: return Double.longBitsToDouble(bits);
+        }
+    }
+
     private RefToken readRef(boolean list) throws IOException, ODDLParseException {
         if (list && !tokenizer.peek(0).isName()) {
-            throw new ListElementTypeMismatchException(tokenizer.peek(0), NameToken.class);
+            throw new ListElementTypeMismatchException(stackTraces, tokenizer.peek(0), NameToken.class);
         }
 
         if (tokenizer.peek(0).isNullName()) {
@@ -311,7 +786,7 @@ public class ODDLReader {
             while (tokenizer.peek(0).isName()) {
                 // only the first name may be global ($); subsequent names must be local (%)
                 if (tokenizer.peek(0).asName().isGlobal()) {
-                    throw new UnexpectedTokenException(
+                    throw new UnexpectedTokenException(stackTraces,
                             tokenizer.peek(0).getRow(),
                             tokenizer.peek(0).getCol(),
                             "global "+NameToken.class.getSimpleName(),
@@ -328,7 +803,7 @@ public class ODDLReader {
 
     private StringToken readString(boolean list) throws IOException, ODDLParseException {
         if (list && !tokenizer.peek(0).isString()) {
-            throw new ListElementTypeMismatchException(tokenizer.peek(0), NameToken.class);
+            throw new ListElementTypeMismatchException(stackTraces, tokenizer.peek(0), NameToken.class);
         }
 
         StringToken ret = tokenizer.read().asString();
@@ -343,6 +818,9 @@ public class ODDLReader {
 
             while (tokenizer.peek(0).isString()) {
                 StringToken next = tokenizer.read().asString();
+                if (value.length() + next.getValue().length() > stringLimit) {
+                    throw new LimitExceededException(stackTraces, ODDLLimits.Limit.STRING_LENGTH, stringLimit, next.getRow(), next.getCol());
+                }
                 text.append(next.getText());
                 value.append(next.getValue());
             }
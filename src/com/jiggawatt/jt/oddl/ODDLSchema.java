@@ -0,0 +1,359 @@
+/*
+ * Jiggatech OpenDDL Parser
+ *
+ * Copyright (c) 2019 Nikita Leonidov
+ *
+ * MIT License
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.jiggawatt.jt.oddl;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Describes the shape of a family of OpenDDL documents: which custom structures may appear at the top level and
+ * within each other, which properties each structure has and of what type, and which data lists each structure may
+ * contain. Formats such as OpenGEX fix all of these in advance. A schema is built once and then
+ * {@link #compile() compiled} into an {@link ODDLParsePlan}, which readers use to check documents as they parse them:
+ * <pre>
+ * {@code
+ * ODDLSchema schema = new ODDLSchema();
+ * schema.root().child("Metric", "GeometryNode");
+ * schema.structure("Metric").requiredProperty("key", DataType.STRING).list(DataType.FLOAT).list(DataType.STRING);
+ * schema.structure("GeometryNode").child("Transform");
+ * schema.structure("Transform").list(DataType.FLOAT, 16);
+ * ODDLParsePlan plan = schema.compile();
+ * }
+ * </pre>
+ * Schemas may also be written as OpenDDL documents and loaded with {@link #parse(Reader)}. The schema above reads:
+ * <pre>
+ * {@code
+ * Document { Children {string {"Metric", "GeometryNode"}} }
+ * Structure (identifier="Metric") {
+ *     Property (name="key", datatype=string, required=true) {}
+ *     List (datatype=float) {}
+ *     List (datatype=string) {}
+ * }
+ * Structure (identifier="GeometryNode") { Children {string {"Transform"}} }
+ * Structure (identifier="Transform") { List (datatype=float) {int32 {16}} }
+ * }
+ * </pre>
+ * <tt>Document</tt> and <tt>Structure</tt> hold the definitions of the document and of custom structures. Within them,
+ * <tt>Children</tt> lists allowed child structures, <tt>Property</tt> allows a property of a given type, and
+ * <tt>List</tt> allows data lists of a given type, with the allowed sub-array sizes in an optional integer list.
+ * <p>
+ * Schemas are not thread-safe, but the plans compiled from them are immutable and may be shared.
+ *
+ * @author Nikita Leonidov
+ */
+public final class ODDLSchema {
+
+    /** the schema of schema documents read by {@link #parse(Reader)} */
+    private static final ODDLParsePlan LANGUAGE;
+    static {
+        final ODDLSchema schema = new ODDLSchema();
+        schema.root().child("Document", "Structure");
+        schema.structure("Document").child("Children", "List");
+        schema.structure("Structure")
+                .requiredProperty("identifier", DataType.STRING)
+                .child("Children", "Property", "List");
+        schema.structure("Children").list(DataType.STRING, -1);
+        schema.structure("Property")
+                .requiredProperty("name", DataType.STRING)
+                .requiredProperty("datatype", DataType.TYPE)
+                .property("required", DataType.BOOL);
+        schema.structure("List").requiredProperty("datatype", DataType.TYPE).list(DataType.INT, -1);
+        LANGUAGE = schema.compile();
+    }
+
+    private final Structure              root       = new Structure(null);
+    private final Map<String, Structure> structures = new LinkedHashMap<>();
+
+    /**
+     * Creates a schema that defines no structures.
+     */
+    public ODDLSchema() {
+    }
+
+    /**
+     * @return the definition of the document itself, which lists the structures allowed at the top level
+     */
+    public Structure root() {
+        return root;
+    }
+
+    /**
+     * Returns the definition of the custom structures with the given identifier, creating an empty one, which allows
+     * no properties and no contents, if there is none yet.
+     * @param identifier a structure identifier
+     * @return the definition of structures with the given identifier
+     */
+    public Structure structure(String identifier) {
+        return structures.computeIfAbsent(requireNonNull(identifier, "identifier"), Structure::new);
+    }
+
+    /**
+     * @return the identifiers of all defined custom structures, in the order they were first defined
+     */
+    public Set<String> getIdentifiers() {
+        return Collections.unmodifiableSet(structures.keySet());
+    }
+
+    /**
+     * Compiles this schema into a plan. Later changes to this schema do not affect the plan.
+     * @return a plan that checks documents against this schema
+     * @throws IllegalStateException if a structure allows a child structure that is not defined
+     */
+    public ODDLParsePlan compile() {
+        final Map<String, ODDLParsePlan.Node> nodes = new HashMap<>();
+        for (Structure s : structures.values()) {
+            nodes.put(s.identifier, s.createNode());
+        }
+        final ODDLParsePlan.Node rootNode = root.createNode();
+
+        rootNode.link(root.resolveChildren(nodes));
+        for (Structure s : structures.values()) {
+            nodes.get(s.identifier).link(s.resolveChildren(nodes));
+        }
+
+        return new ODDLParsePlan(rootNode);
+    }
+
+    /**
+     * Reads a schema written as an OpenDDL document. The document is checked against the schema language as it is
+     * read; definitions of the same structure given in several places are merged.
+     * @param in the schema document
+     * @return the schema, ready to be compiled or extended
+     * @throws IOException          if reading from the stream fails
+     * @throws ODDLParseException   if the schema is not a valid OpenDDL document
+     * @throws ODDLFormatException  if the schema does not follow the schema language
+     */
+    public static ODDLSchema parse(Reader in) throws IOException, ODDLParseException, ODDLFormatException {
+        return new ODDLReader(in).setPlan(LANGUAGE).read(new Loader());
+    }
+
+    /**
+     * The definition of the custom structures with a given identifier, or of the document itself.
+     */
+    public static final class Structure {
+
+        private static final int[] ANY_SIZE = {};
+
+        private final String identifier;
+
+        private final Map<String, DataType> properties = new LinkedHashMap<>();
+        private final Set<String>           required   = new LinkedHashSet<>();
+        private final Set<String>           children   = new LinkedHashSet<>();
+        private final Map<DataType, int[]>  lists      = new EnumMap<>(DataType.class);
+
+        private Structure(String identifier) {
+            this.identifier = identifier;
+        }
+
+        /**
+         * @return the identifier of the structures this definition describes, or <tt>null</tt> for the document
+         */
+        public String getIdentifier() {
+            return identifier;
+        }
+
+        /**
+         * Allows a property, replacing any earlier definition of a property with the same name. Properties of type
+         * {@link DataType#FLOAT} also accept integer literals.
+         * @param name the property name
+         * @param type the type of the property's value
+         * @return this definition
+         */
+        public Structure property(String name, DataType type) {
+            if (identifier == null) {
+                throw new IllegalStateException("the document has no properties");
+            }
+            properties.put(requireNonNull(name, "name"), requireNonNull(type, "type"));
+            required.remove(name);
+            return this;
+        }
+
+        /**
+         * Allows a property like {@link #property(String, DataType)}, and requires every structure to have it.
+         * @param name the property name
+         * @param type the type of the property's value
+         * @return this definition
+         */
+        public Structure requiredProperty(String name, DataType type) {
+            property(name, type);
+            required.add(name);
+            return this;
+        }
+
+        /**
+         * Allows custom structures with the given identifiers to appear within these structures. Each must be
+         * defined with {@link ODDLSchema#structure(String)} before the schema is compiled.
+         * @param identifiers structure identifiers
+         * @return this definition
+         */
+        public Structure child(String... identifiers) {
+            for (String id : identifiers) {
+                children.add(requireNonNull(id, "identifier"));
+            }
+            return this;
+        }
+
+        /**
+         * Allows data lists of the given type to appear within these structures, replacing any earlier definition for
+         * the same type. Without sub-array sizes, data lists and data array lists of any sub-array size are allowed.
+         * @param type           the data type of the lists
+         * @param subarraySizes  the allowed sub-array sizes, with -1 standing for a data list without sub-arrays
+         * @return this definition
+         */
+        public Structure list(DataType type, int... subarraySizes) {
+            for (int size : subarraySizes) {
+                if (size < -1) {
+                    throw new IllegalArgumentException("sub-array size: " + size);
+                }
+            }
+            lists.put(requireNonNull(type, "type"), subarraySizes.length == 0 ? ANY_SIZE : subarraySizes.clone());
+            return this;
+        }
+
+        private ODDLParsePlan.Node createNode() {
+            final int[][] listSizes = new int[DataType.values().length][];
+            for (Map.Entry<DataType, int[]> e : lists.entrySet()) {
+                final int[] sizes = e.getValue().clone();
+                Arrays.sort(sizes);
+                listSizes[e.getKey().ordinal()] = sizes;
+            }
+            return new ODDLParsePlan.Node(
+                    identifier,
+                    new HashMap<>(properties),
+                    required.toArray(new String[0]),
+                    listSizes
+            );
+        }
+
+        private Map<String, ODDLParsePlan.Node> resolveChildren(Map<String, ODDLParsePlan.Node> nodes) {
+            final Map<String, ODDLParsePlan.Node> ret = new HashMap<>();
+            for (String id : children) {
+                final ODDLParsePlan.Node child = nodes.get(id);
+                if (child == null) {
+                    throw new IllegalStateException(
+                            "structure " + id + " is allowed in " + describe(identifier) + " but not defined");
+                }
+                ret.put(id, child);
+            }
+            return ret;
+        }
+    }
+
+    /**
+     * Builds a schema from the events of a schema document. The schema language plan has already checked that every
+     * structure is where it belongs and has the properties it needs, so only the values remain to be collected.
+     */
+    private static final class Loader implements ODDLListener<ODDLSchema> {
+        private final ODDLSchema schema = new ODDLSchema();
+
+        /** the definition of the enclosing <tt>Document</tt> or <tt>Structure</tt> */
+        private Structure current;
+
+        /** the type and sub-array sizes of the enclosing <tt>List</tt> */
+        private DataType listType;
+        private int[]    sizes = new int[4];
+        private int      sizeCount;
+
+        @Override public void begin() {}
+        @Override public ODDLSchema end(int row, int col) { return schema; }
+        @Override public void value(BoolToken value) {}
+        @Override public void value(FloatToken value) {}
+        @Override public void value(RefToken value) {}
+        @Override public void value(DataTypeToken value) {}
+        @Override public void beginListStructure(DataTypeToken dataType, NameToken name) {}
+        @Override public void endListStructure(DataTypeToken dataType, NameToken name) {}
+        @Override public void beginArrayListStructure(DataTypeToken dataType, int subarraySize, NameToken name) {}
+        @Override public void endArrayListStructure(DataTypeToken dataType, int subarraySize, NameToken name) {}
+        @Override public void beginSubArray(DataTypeToken dataType, int subarraySize) {}
+        @Override public void endSubArray(DataTypeToken dataType, int subarraySize) {}
+
+        @Override
+        public void value(StringToken value) {
+            // string lists only appear in Children
+            current.child(value.getValue());
+        }
+
+        @Override
+        public void value(IntToken value) throws ODDLFormatException {
+            // integer lists only appear in List
+            if (value.getValue() < -1 || value.getValue() > Integer.MAX_VALUE) {
+                throw new ODDLFormatException(value, "invalid sub-array size: " + value.getText());
+            }
+            if (sizeCount == sizes.length) {
+                sizes = Arrays.copyOf(sizes, sizeCount * 2);
+            }
+            sizes[sizeCount++] = (int) value.getValue();
+        }
+
+        @Override
+        public void beginCustomStructure(IdentifierToken identifier, NameToken name, PropertyMap properties) {
+            switch (identifier.getText()) {
+                case "Document":
+                    current = schema.root();
+                    break;
+                case "Structure":
+                    current = schema.structure(properties.get("identifier").asString().getValue());
+                    break;
+                case "Property":
+                    final String             key      = properties.get("name").asString().getValue();
+                    final DataType           type     = ((DataTypeToken) properties.get("datatype")).getValue();
+                    final PropertyValueToken required = properties.get("required");
+                    if (required != null && required.asBool().getValue()) {
+                        current.requiredProperty(key, type);
+                    } else {
+                        current.property(key, type);
+                    }
+                    break;
+                case "List":
+                    listType  = ((DataTypeToken) properties.get("datatype")).getValue();
+                    sizeCount = 0;
+                    break;
+            }
+        }
+
+        @Override
+        public void endCustomStructure(IdentifierToken identifier, NameToken name, PropertyMap properties) {
+            if (identifier.getText().equals("List")) {
+                current.list(listType, Arrays.copyOf(sizes, sizeCount));
+            }
+        }
+    }
+
+    static String describe(String identifier) {
+        return identifier == null ? "the document" : identifier;
+    }
+}
@@ -0,0 +1,66 @@
+/*
+ * Jiggatech OpenDDL Parser
+ *
+ * Copyright (c) 2019 Nikita Leonidov
+ *
+ * MIT License
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.jiggawatt.jt.oddl;
+
+/**
+ * An extension of {@link ODDLListener} for documents that hold very large strings. When a listener implements this
+ * interface, {@link ODDLReader} passes each element of a <tt>string</tt> data list to it in chunks of bounded size
+ * instead of as a {@link StringToken}, so that the whole value never has to be held in memory at once. Strings in
+ * property values are still delivered as tokens.
+ * <p>
+ * For each element of the list, the reader calls {@link #beginString()}, then {@link #stringChunk(char[], int, int)}
+ * zero or more times, then {@link #endString()}. Adjacent literals that make up a single value are delivered as one
+ * string, with escape sequences already decoded.
+ *
+ * @param <T> the type of object produced by this listener
+ * @author Nikita Leonidov
+ */
+public interface ODDLStringListener<T> extends ODDLListener<T> {
+
+    /**
+     * Called before the first chunk of a string in a data list.
+     * @throws ODDLFormatException when the string does not conform to the listener's expected format
+     */
+    void beginString() throws ODDLFormatException;
+
+    /**
+     * Receives the next characters of the current string. A surrogate pair is never split across chunks.
+     * <p>
+     * The array is reused by the reader; its contents are only valid until this method returns.
+     * @param chars  a buffer holding the characters
+     * @param offset the index of the first character in <tt>chars</tt>
+     * @param length the number of characters
+     * @throws ODDLFormatException when the string does not conform to the listener's expected format
+     */
+    void stringChunk(char[] chars, int offset, int length) throws ODDLFormatException;
+
+    /**
+     * Called after the last chunk of a string in a data list.
+     * @throws ODDLFormatException when the string does not conform to the listener's expected format
+     */
+    void endString() throws ODDLFormatException;
+}
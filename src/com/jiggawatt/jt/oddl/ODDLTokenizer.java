@@ -43,10 +43,64 @@ class ODDLTokenizer {
     private ODDLToken[] tokens = new ODDLToken[READAHEAD_SIZE];
     private int available;
 
+    private ODDLMetrics metrics = ODDLMetrics.NONE;
+    private boolean     measuring;
+
+    private int  maxTokenLength  = Integer.MAX_VALUE;
+    private int  maxStringLength = Integer.MAX_VALUE;
+    private long maxTokens       = Long.MAX_VALUE;
+    private long tokenCount;
+
+    private boolean stackTraces = true;
+
+    // state of a string read by readStringChunk
+    //==================================================================================================================
+    /** true from {@link #beginStringChunks()} until the last chunk of the string has been read */
+    private boolean inString;
+    /** true while between the quotes of one of the string's literals */
+    private boolean inLiteral;
+    /** decoded characters of the string so far */
+    private long    stringLength;
+
+    /** scratch space for decoding a single escape sequence */
+    private final StringBuilder escapeText  = new StringBuilder();
+    private final StringBuilder escapeValue = new StringBuilder();
+
     ODDLTokenizer(ODDLInputStream in) {
         this.in = in;
     }
 
+    /**
+     * Sets the metrics sink notified of every token read from the input stream.
+     * @param metrics a metrics sink; {@link ODDLMetrics#NONE} disables counting
+     */
+    void setMetrics(ODDLMetrics metrics) {
+        this.metrics   = metrics;
+        this.measuring = metrics != ODDLMetrics.NONE;
+    }
+
+    /**
+     * Sets the limits checked while scanning tokens.
+     * @param limits the limits to copy
+     */
+    void setLimits(ODDLLimits limits) {
+        this.maxTokenLength  = limits.getMaxTokenLength();
+        this.maxStringLength = limits.getMaxStringLength();
+        this.maxTokens       = limits.getMaxTokens();
+    }
+
+    /**
+     * Sets whether exceptions thrown by this tokenizer capture a stack trace.
+     * @param stackTraces <tt>false</tt> to throw exceptions without stack traces
+     */
+    void setStackTraces(boolean stackTraces) {
+        this.stackTraces = stackTraces;
+    }
+
+    ODDLInputStream getInputStream() {
+        return in;
+    }
+
     /**
      * Retrieves a token at the given offset from the tokenizer's current position in the input stream. If the offset
      * is greater than the number of tokens available in the stream, returns an EOF token.
@@ -55,7 +109,7 @@ class ODDLTokenizer {
      * remaining tokens
      * @throws IOException when an IO exception occurs
      */
-    ODDLToken peek(int ahead) throws IOException {
+    ODDLToken peek(int ahead) throws IOException, ODDLParseException {
         doPeek(ahead);
         return tokens[ahead];
     }
@@ -66,15 +120,14 @@ class ODDLTokenizer {
      * @return the token at the current position in the input stream, or an EOF token if none is available
      * @throws IOException when an IO exception occurs
      */
-    ODDLToken read() throws IOException {
+    ODDLToken read() throws IOException, ODDLParseException {
         // Consume from read-ahead queue first
         ODDLToken ret;
         if (available > 0) {
             ret = tokens[0];
             System.arraycopy(tokens, 1, tokens, 0, --available);
         } else {
-            consumeComments();
-            ret = readToken();
+            ret = next();
         }
 
         return ret;
@@ -88,15 +141,15 @@ class ODDLTokenizer {
      * @throws IOException when an IO exception occurs
      * @throws UnexpectedTokenException when <tt>expectType</tt> is not assignable from the read token's type
      */
-    <T extends ODDLToken> T read(Class<T> expectType) throws IOException, UnexpectedTokenException {
+    <T extends ODDLToken> T read(Class<T> expectType) throws IOException, ODDLParseException {
         ODDLToken ret = read();
 
         if (ret.isEOF()) {
-            throw new UnexpectedEOFException(in);
+            throw new UnexpectedEOFException(stackTraces, in);
         }
 
         if (!expectType.isAssignableFrom(ret.getClass())) {
-            throw new UnexpectedTokenException(ret, expectType);
+            throw new UnexpectedTokenException(stackTraces, ret, expectType);
         }
 
         return expectType.cast(ret);
@@ -109,15 +162,15 @@ class ODDLTokenizer {
      * @throws IOException when an IO exception occurs
      * @throws UnexpectedTokenException when the read token was not a delimiter token with value <tt>expectSame</tt>
      */
-    DelimiterToken read(int expectValue) throws IOException, UnexpectedTokenException {
+    DelimiterToken read(int expectValue) throws IOException, ODDLParseException {
         ODDLToken ret = read();
 
         if (ret.isEOF()) {
-            throw new UnexpectedEOFException(in);
+            throw new UnexpectedEOFException(stackTraces, in);
         }
 
         if (!ret.isDelimiter(expectValue)) {
-            throw new UnexpectedTokenException(ret.getRow(), ret.getCol(), ret.getText(), new StringBuilder().appendCodePoint(expectValue).toString());
+            throw new UnexpectedTokenException(stackTraces, ret.getRow(), ret.getCol(), ret.getText(), new StringBuilder().appendCodePoint(expectValue).toString());
         }
 
         return ret.asDelimiter();
@@ -129,7 +182,7 @@ class ODDLTokenizer {
      * @return true if the tokenizer read a token with the given value
      * @throws IOException when an IO exception occurs
      */
-    boolean consumeIfPresent(int codePoint) throws IOException {
+    boolean consumeIfPresent(int codePoint) throws IOException, ODDLParseException {
         if (peek(0).isDelimiter(codePoint)) {
             read();
             return true;
@@ -138,20 +191,119 @@ class ODDLTokenizer {
         }
     }
 
-    private void doPeek(int ahead) throws IOException {
+    private void doPeek(int ahead) throws IOException, ODDLParseException {
         if (tokens.length <= ahead) {
             tokens = Arrays.copyOf(tokens, ahead+1);
         }
 
         for (int i = available; i<=ahead; i++) {
-            consumeComments();
-            tokens[i] = readToken();
+            tokens[i] = next();
 
             available++;
         }
     }
 
-    private ODDLToken readToken() throws IOException {
+    /**
+     * Starts reading a string value in chunks, without creating a token, if the next token is a string literal that
+     * has not been peeked yet. The value comprises that literal and any literals immediately following it, which
+     * {@link #readStringChunk(char[])} then decodes into a caller-supplied buffer.
+     * @return <tt>true</tt> if a string value follows; <tt>false</tt> if the next token is not a string literal or has
+     * already been read ahead, in which case it must be read as a token
+     * @throws IOException when an IO exception occurs
+     */
+    boolean beginStringChunks() throws IOException, ODDLParseException {
+        if (available > 0) {
+            return false;
+        }
+        consumeComments();
+        if (in.peek(0) != '"') {
+            return false;
+        }
+        countToken();
+        in.read();
+        inString     = true;
+        inLiteral    = true;
+        stringLength = 0;
+        return true;
+    }
+
+    /**
+     * Decodes the next characters of the string value started by {@link #beginStringChunks()}.
+     * @param chunk the buffer to fill; at least two characters long, so that a surrogate pair is never split
+     * @return the number of characters decoded into the buffer, starting at index 0, or -1 once the whole value has
+     * been read
+     * @throws IOException when an IO exception occurs
+     */
+    int readStringChunk(char[] chunk) throws IOException, ODDLParseException {
+        if (!inString) {
+            return -1;
+        }
+
+        int n = 0;
+        while (n < chunk.length - 1) {
+            if (!inLiteral) {
+                // the value continues with the next literal, if there is one
+                consumeComments();
+                if (in.peek(0) != '"') {
+                    inString = false;
+                    break;
+                }
+                countToken();
+                in.read();
+                inLiteral = true;
+            }
+
+            final int c = in.peek(0);
+            if (c == '"') {
+                in.read();
+                inLiteral = false;
+                continue;
+            } else if (c == -1) {
+                throw new UnexpectedEOFException(stackTraces, in, "string literal");
+            } else if (c == '\\') {
+                escapeText.setLength(0);
+                escapeValue.setLength(0);
+                readStringEscape(escapeText, escapeValue);
+                escapeValue.getChars(0, escapeValue.length(), chunk, n);
+                n += escapeValue.length();
+            } else {
+                if (!isStringLiteralCharacter(c)) {
+                    throw new UnexpectedCharacterException(stackTraces, in, "string literal", c);
+                }
+                chunk[n++] = (char) in.read();
+            }
+        }
+
+        stringLength += n;
+        if (stringLength > maxStringLength) {
+            throw new LimitExceededException(stackTraces, ODDLLimits.Limit.STRING_LENGTH, maxStringLength, in.getRow(), in.getCol());
+        }
+
+        return n == 0 && !inString ? -1 : n;
+    }
+
+    private void countToken() throws IOException, LimitExceededException {
+        if (++tokenCount > maxTokens && in.peek(0) != -1) {
+            throw new LimitExceededException(stackTraces, ODDLLimits.Limit.TOKENS, maxTokens, in.getRow(), in.getCol());
+        }
+        if (measuring) {
+            metrics.token(ODDLToken.Type.STRING);
+        }
+    }
+
+    private ODDLToken next() throws IOException, ODDLParseException {
+        consumeComments();
+        if (++tokenCount > maxTokens && in.peek(0) != -1) {
+            throw new LimitExceededException(stackTraces, ODDLLimits.Limit.TOKENS, maxTokens, in.getRow(), in.getCol());
+        }
+        ODDLToken ret = readToken();
+        if (measuring && !ret.isEOF()) {
+            metrics.token(ret.getType());
+        }
+        return ret;
+    }
+
+    private ODDLToken readToken() throws IOException, ODDLParseException {
         int c = in.peek(0);
         if (c==-1) {
             return DelimiterToken.createEOF(in.getRow(), in.getCol());
@@ -179,13 +331,15 @@ class ODDLTokenizer {
             return DelimiterToken.create(in.getRow(), in.getCol(), in.read());
         }
 
-        throw new UnexpectedCharacterException(in, c);
+        throw new UnexpectedCharacterException(stackTraces, in, c);
     }
 
-    private void consumeComments() throws IOException {
+    private void consumeComments() throws IOException, ODDLParseException {
         while (true) {
             consumeWhitespace();
-            if (in.peek(1) == '/') {
+            if (in.peek(0) != '/') {
+                break;
+            } else if (in.peek(1) == '/') {
                 consumeSingleLineComment();
             } else if (in.peek(1) == '*') {
                 consumeBlockComment();
@@ -196,7 +350,7 @@ class ODDLTokenizer {
         consumeWhitespace();
     }
 
-    private void consumeWhitespace() throws IOException {
+    private void consumeWhitespace() throws IOException, ODDLParseException {
         while (isWhitespace(in.peek(0))) {
             in.read();
         }
@@ -210,11 +364,12 @@ class ODDLTokenizer {
         return isLeadingIdentifierChar(c) || (c >= '0' && c <= '9');
     }
 
-    private String readIdentifierText() throws IOException {
+    private String readIdentifierText() throws IOException, ODDLParseException {
         StringBuilder token = new StringBuilder();
 
         do {
             token.appendCodePoint(in.read());
+            checkLength(token);
         } while (isIdentifierChar(in.peek(0)));
 
         return token.toString();
@@ -225,7 +380,7 @@ class ODDLTokenizer {
      * @return the keyword or identifier token at the input stream's current position
      * @throws IOException when an IO exception occurs
      */
-    private ODDLToken readIdentifierOrKeyword() throws IOException {
+    private ODDLToken readIdentifierOrKeyword() throws IOException, ODDLParseException {
         String str = readIdentifierText();
 
         switch (str) {
@@ -241,7 +396,7 @@ class ODDLTokenizer {
         }
     }
 
-    private ODDLToken readNumberLiteral() throws IOException {
+    private ODDLToken readNumberLiteral() throws IOException, ODDLParseException {
         StringBuilder text = new StringBuilder();
 
         // consume sign, if present
@@ -250,7 +405,7 @@ class ODDLTokenizer {
         }
 
         if (in.peek(0) == -1) {
-            throw new UnexpectedEOFException(in, "number literal");
+            throw new UnexpectedEOFException(stackTraces, in, "number literal");
         }
 
         if (in.peek(0)=='0') { // could be decimal, hex, octal, binary
@@ -273,7 +428,7 @@ class ODDLTokenizer {
         return readDecimalLiteral(text);
     }
 
-    private ODDLToken readCharLiteral(StringBuilder text) throws IOException {
+    private ODDLToken readCharLiteral(StringBuilder text) throws IOException, ODDLParseException {
         // copy sign, if present
         StringBuilder value = new StringBuilder().append(text);
 
@@ -287,6 +442,7 @@ class ODDLTokenizer {
                 value.appendCodePoint(in.peek(0));
                 text.appendCodePoint(in.read());
             }
+            checkLength(text);
         }
         // consume trailing quote
         readSingleQuote(text);
@@ -294,7 +450,7 @@ class ODDLTokenizer {
         return new IntToken(in.getRow(), in.getCol(), text.toString(), value.toString(), IntToken.Format.CHAR);
     }
 
-    private IntToken readBinaryLiteral(StringBuilder text) throws IOException {
+    private IntToken readBinaryLiteral(StringBuilder text) throws IOException, ODDLParseException {
         // omit prefix from value string
         StringBuilder value = new StringBuilder().append(text.toString());
 
@@ -303,7 +459,7 @@ class ODDLTokenizer {
         text.appendCodePoint(in.read());
 
         if (in.peek(0) == -1) {
-            throw new UnexpectedEOFException(in, "binary literal");
+            throw new UnexpectedEOFException(stackTraces, in, "binary literal");
         }
 
         // consume binary digits
@@ -313,13 +469,14 @@ class ODDLTokenizer {
                 value.appendCodePoint(in.peek(0));
             }
             text.appendCodePoint(in.read());
+            checkLength(text);
         }
         requireValidNumberTerminator("binary");
 
         return new IntToken(in.getRow(), in.getCol(), text.toString(), value.toString(), IntToken.Format.BIN);
     }
 
-    private ODDLToken readOctalLiteral(StringBuilder text) throws IOException {
+    private ODDLToken readOctalLiteral(StringBuilder text) throws IOException, ODDLParseException {
         // omit prefix from value string
         StringBuilder value = new StringBuilder().append(text.toString());
 
@@ -328,7 +485,7 @@ class ODDLTokenizer {
         text.appendCodePoint(in.read());
 
         if (in.peek(0) == -1) {
-            throw new UnexpectedEOFException(in, "octal literal");
+            throw new UnexpectedEOFException(stackTraces, in, "octal literal");
         }
 
         // consume octal digits
@@ -338,6 +495,7 @@ class ODDLTokenizer {
                 value.appendCodePoint(in.peek(0));
             }
             text.appendCodePoint(in.read());
+            checkLength(text);
         }
 
         requireValidNumberTerminator("octal");
@@ -345,7 +503,7 @@ class ODDLTokenizer {
         return new IntToken(in.getRow(), in.getCol(), text.toString(), value.toString(), IntToken.Format.OCT);
     }
 
-    private ODDLToken readHexLiteral(StringBuilder text) throws IOException {
+    private ODDLToken readHexLiteral(StringBuilder text) throws IOException, ODDLParseException {
         // omit prefix from value string
         StringBuilder value = new StringBuilder().append(text.toString());
 
@@ -354,7 +512,7 @@ class ODDLTokenizer {
         text.appendCodePoint(in.read());
 
         if (in.peek(0) == -1) {
-            throw new UnexpectedEOFException(in, "hex literal");
+            throw new UnexpectedEOFException(stackTraces, in, "hex literal");
         }
 
         // consume hex digits
@@ -364,6 +522,7 @@ class ODDLTokenizer {
                 value.appendCodePoint(c);
             }
             text.appendCodePoint(in.read());
+            checkLength(text);
         }
 
         requireValidNumberTerminator("hex");
@@ -371,7 +530,7 @@ class ODDLTokenizer {
         return new IntToken(in.getRow(), in.getCol(), text.toString(), value.toString(), IntToken.Format.HEX);
     }
 
-    private ODDLToken readDecimalLiteral(StringBuilder text) throws IOException {
+    private ODDLToken readDecimalLiteral(StringBuilder text) throws IOException, ODDLParseException {
         StringBuilder value = new StringBuilder().append(text);
 
         readDigits(text, value);
@@ -408,24 +567,31 @@ class ODDLTokenizer {
             : new FloatToken(in.getRow(), in.getCol(), text.toString(), value.toString());
     }
 
-    private void readDigits(StringBuilder text, StringBuilder value) throws IOException {
+    private void readDigits(StringBuilder text, StringBuilder value) throws IOException, ODDLParseException {
         int c;
         while (Character.isDigit(c=in.peek(0)) || c=='_') {
             if (c!='_') {
                 value.appendCodePoint(c);
             }
             text.appendCodePoint(in.read());
+            checkLength(text);
         }
     }
 
-    private void requireValidNumberTerminator(String type) throws IOException {
+    private void checkLength(StringBuilder text) throws LimitExceededException {
+        if (text.length() > maxTokenLength) {
+            throw new LimitExceededException(stackTraces, ODDLLimits.Limit.TOKEN_LENGTH, maxTokenLength, in.getRow(), in.getCol());
+        }
+    }
+
+    private void requireValidNumberTerminator(String type) throws IOException, ODDLParseException {
         int c = in.peek(0);
         if (!isWhitespace(c) && !DelimiterToken.isDelimiterCharacter(c)) {
-            throw new UnexpectedCharacterException(in, "in "+type+" literal", c);
+            throw new UnexpectedCharacterException(stackTraces, in, "in "+type+" literal", c);
         }
     }
 
-    private ODDLToken readStringLiteral() throws IOException {
+    private ODDLToken readStringLiteral() throws IOException, ODDLParseException {
         StringBuilder text  = new StringBuilder();
         StringBuilder value = new StringBuilder();
 
@@ -434,16 +600,20 @@ class ODDLTokenizer {
         int c;
         while ((c=in.peek(0))!='"') {
             if (c==-1) {
-                throw new UnexpectedEOFException(in, "string literal");
+                throw new UnexpectedEOFException(stackTraces, in, "string literal");
             } else if (c=='\\') {
                 readStringEscape(text, value);
             } else {
                 if (!isStringLiteralCharacter(c)) {
-                    throw new UnexpectedCharacterException(in, "string literal", c);
+                    throw new UnexpectedCharacterException(stackTraces, in, "string literal", c);
                 }
                 value.appendCodePoint(c);
                 text.appendCodePoint(in.read());
             }
+            checkLength(text);
+            if (value.length() > maxStringLength) {
+                throw new LimitExceededException(stackTraces, ODDLLimits.Limit.STRING_LENGTH, maxStringLength, in.getRow(), in.getCol());
+            }
         }
 
         readDoubleQuote(text);
@@ -451,7 +621,7 @@ class ODDLTokenizer {
         return new StringToken(in.getRow(), in.getCol(), text.toString(), value.toString());
     }
 
-    private void readStringEscape(StringBuilder text, StringBuilder value) throws IOException {
+    private void readStringEscape(StringBuilder text, StringBuilder value) throws IOException, ODDLParseException {
         if (in.peek(1)=='u') {
             text.appendCodePoint(in.read()); // slash
             text.appendCodePoint(in.read()); // u
@@ -477,7 +647,7 @@ class ODDLTokenizer {
         }
     }
 
-    private void readEscapeChar(StringBuilder text, StringBuilder value) throws IOException {
+    private void readEscapeChar(StringBuilder text, StringBuilder value) throws IOException, ODDLParseException {
         text.appendCodePoint(in.read()); // slash
         int c = in.read();
         text.appendCodePoint(c);
@@ -515,21 +685,21 @@ class ODDLTokenizer {
                 value.appendCodePoint((hi << 4) | lo);
                 break;
             default:
-                throw new UnexpectedCharacterException(in, "escape character", c);
+                throw new UnexpectedCharacterException(stackTraces, in, "escape character", c);
         }
     }
 
-    private int readHexDigit(StringBuilder text) throws IOException {
+    private int readHexDigit(StringBuilder text) throws IOException, ODDLParseException {
         int c = in.read();
         text.appendCodePoint(c);
         int ret = Character.digit(c, 16);
         if (ret<0) {
-            throw new UnexpectedCharacterException(in, c);
+            throw new UnexpectedCharacterException(stackTraces, in, c);
         }
         return ret;
     }
 
-    private void consumeSingleLineComment() throws IOException {
+    private void consumeSingleLineComment() throws IOException, ODDLParseException {
         // consume "//"
         in.read();
         in.read();
@@ -537,7 +707,7 @@ class ODDLTokenizer {
         while ((c=in.read())!=-1 && c!='\n'); // nada
     }
 
-    private void consumeBlockComment() throws IOException {
+    private void consumeBlockComment() throws IOException, ODDLParseException {
         // consume "/*"
         in.read();
         in.read();
@@ -551,18 +721,18 @@ class ODDLTokenizer {
         }
     }
 
-    private void readSingleQuote(StringBuilder text) throws IOException {
+    private void readSingleQuote(StringBuilder text) throws IOException, ODDLParseException {
         int c = in.peek(0);
         if (c!='\'') {
-            throw new UnexpectedCharacterException(in, "character literal", c);
+            throw new UnexpectedCharacterException(stackTraces, in, "character literal", c);
         }
         text.appendCodePoint(in.read());
     }
 
-    private void readDoubleQuote(StringBuilder text) throws IOException {
+    private void readDoubleQuote(StringBuilder text) throws IOException, ODDLParseException {
         int c = in.peek(0);
         if (c!='"') {
-            throw new UnexpectedCharacterException(in, "string literal", c);
+            throw new UnexpectedCharacterException(stackTraces, in, "string literal", c);
         }
         text.appendCodePoint(in.read());
     }
@@ -576,7 +746,7 @@ class ODDLTokenizer {
     }
 
     private boolean isCharLiteralCharacter(int c) {
-        return c=='\\' || (c>=0x20 && c<=0x26) || (c>=0x28 && c<0x5b) || (c>=0x5d && c<=0x7e);
+        return c=='\\' || (c>=0x20 && c<=0x26) || (c>=0x28 && c<=0x5b) || (c>=0x5d && c<=0x7e);
     }
 
     private boolean isStringLiteralCharacter(int c) {
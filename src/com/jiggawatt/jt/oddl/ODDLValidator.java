@@ -0,0 +1,922 @@
+/*
+ * Jiggatech OpenDDL Parser
+ *
+ * Copyright (c) 2019 Nikita Leonidov
+ *
+ * MIT License
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.jiggawatt.jt.oddl;
+
+import java.io.IOException;
+
+/**
+ * Checks that a document conforms to the OpenDDL grammar without producing tokens. This is the engine behind
+ * {@link ODDLReader#validate()}: it applies the same grammar, literal, list element type, sub-array size and limit
+ * checks as {@link ODDLReader#read(ODDLListener)}, but scans the characters in place, so that no token objects, strings
+ * or listener calls are made for a valid document.
+ * <p>
+ * Errors are reported at the positions at which the reader's exceptions report them.
+ *
+ * @author Nikita Leonidov
+ */
+final class ODDLValidator {
+
+    /**
+     * Unwinds the recursive descent once an error has been recorded. It carries no state and no stack trace, so a
+     * single instance is shared.
+     */
+    private static final class Stop extends RuntimeException {
+        private static final long serialVersionUID = -2407711532004913376L;
+
+        Stop() {
+            super(null, null, false, false);
+        }
+    }
+
+    private static final Stop STOP = new Stop();
+
+    /** the code point of the delimiter that stands for the end of the input, as in {@link DelimiterToken} */
+    private static final int EOF = '\u0003';
+
+    /** long and short data type names, paired with their values in {@link #TYPE_VALUES} */
+    private static final String[] TYPE_NAMES = {
+        "bool", "b",
+        "int8", "i8", "int16", "i16", "int32", "i32", "int64", "i64",
+        "unsigned_int8", "u8", "unsigned_int16", "u16", "unsigned_int32", "u32", "unsigned_int64", "u64",
+        "half", "float16", "h", "f16", "float", "float32", "f", "f32", "double", "float64", "d", "f64",
+        "string", "s", "ref", "r", "type", "t"
+    };
+
+    private static final DataType[] TYPE_VALUES = {
+        DataType.BOOL, DataType.BOOL,
+        DataType.INT, DataType.INT, DataType.INT, DataType.INT, DataType.INT, DataType.INT, DataType.INT, DataType.INT,
+        DataType.INT, DataType.INT, DataType.INT, DataType.INT, DataType.INT, DataType.INT, DataType.INT, DataType.INT,
+        DataType.FLOAT, DataType.FLOAT, DataType.FLOAT, DataType.FLOAT, DataType.FLOAT, DataType.FLOAT, DataType.FLOAT,
+        DataType.FLOAT, DataType.FLOAT, DataType.FLOAT, DataType.FLOAT, DataType.FLOAT,
+        DataType.STRING, DataType.STRING, DataType.REF, DataType.REF, DataType.TYPE, DataType.TYPE
+    };
+
+    /** the length of the longest keyword, <tt>unsigned_int16</tt> */
+    private static final int MAX_KEYWORD_LENGTH = 14;
+
+    private final ODDLInputStream in;
+
+    private final int  maxTokenLength;
+    private final int  maxStringLength;
+    private final int  maxListLength;
+    private final int  maxDepth;
+    private final int  maxProperties;
+    private final long maxTokens;
+
+    // the current token
+    //------------------------------------------------------------------------------------------------------------------
+    private ODDLToken.Type type;
+    private int            row;
+    private int            col;
+    /** the code point of a delimiter token */
+    private int            delimiter;
+    /** the value of a data type token */
+    private DataType       dataType;
+    /** whether a name token is global; true for <tt>null</tt> as for {@link NameToken} */
+    private boolean        global;
+    private boolean        nullName;
+    /** the value of an integer token, or of the sub-array size */
+    private long           intValue;
+    /** the length of the value of a string token */
+    private int            stringLength;
+
+    private final char[] word = new char[MAX_KEYWORD_LENGTH];
+
+    private long tokens;
+    private int  depth;
+    private int  listLength;
+
+    private ODDLError error;
+
+    ODDLValidator(ODDLInputStream in, ODDLLimits limits) {
+        this.in              = in;
+        this.maxTokenLength  = limits.getMaxTokenLength();
+        this.maxStringLength = limits.getMaxStringLength();
+        this.maxListLength   = limits.getMaxListLength();
+        this.maxDepth        = limits.getMaxDepth();
+        this.maxProperties   = limits.getMaxProperties();
+        this.maxTokens       = limits.getMaxTokens();
+    }
+
+    /**
+     * Scans the rest of the input.
+     * @return the first error in the input, or <tt>null</tt> if there is none
+     * @throws IOException when an IO exception occurs
+     */
+    ODDLError validate() throws IOException {
+        try {
+            next();
+            while (!isEOF()) {
+                structure(false);
+            }
+            return null;
+        } catch (Stop stop) {
+            return error;
+        }
+    }
+
+    //==================================================================================================================
+    // grammar
+    //==================================================================================================================
+
+    private void structure(boolean nested) throws IOException {
+        switch (type) {
+            case DATA_TYPE:
+                listStructure();
+                break;
+            case IDENTIFIER:
+                customStructure();
+                break;
+            default:
+                if (isEOF()) {
+                    if (nested) {
+                        failEOF("structure");
+                    }
+                    return;
+                }
+                if (!nested || !isDelimiter('}')) {
+                    failToken("IdentifierToken or DataTypeToken");
+                }
+        }
+    }
+
+    private void enter() {
+        if (depth == maxDepth) {
+            failLimit(ODDLLimits.Limit.DEPTH, maxDepth);
+        }
+        depth++;
+    }
+
+    private void listStructure() throws IOException {
+        final DataType listType = dataType;
+        final int      typeRow  = row;
+        final int      typeCol  = col;
+        enter();
+        next();
+        listLength = 0;
+
+        // this is a data-array-list iff a subarray size is specified
+        int subarraySize = -1;
+        if (isDelimiter('[')) {
+            next();
+            expectType(ODDLToken.Type.INT, "IntToken");
+            subarraySize = (int) intValue;
+            next();
+            expect(']');
+        }
+
+        // the name is optional & follows the subarray size
+        if (type == ODDLToken.Type.NAME) {
+            next();
+        }
+
+        expect('{');
+        if (subarraySize >= 0) {
+            dataArrayList(listType, subarraySize, typeRow, typeCol);
+        } else {
+            dataList(listType, -1, typeRow, typeCol);
+        }
+        expect('}');
+        depth--;
+    }
+
+    private void customStructure() throws IOException {
+        enter();
+        next();
+
+        // the name is optional
+        if (type == ODDLToken.Type.NAME) {
+            next();
+        }
+
+        // the property list is optional
+        if (isDelimiter('(')) {
+            next();
+
+            int properties = 0;
+            while (type == ODDLToken.Type.IDENTIFIER) {
+                if (properties++ == maxProperties) {
+                    failLimit(ODDLLimits.Limit.PROPERTIES, maxProperties);
+                }
+                next();
+                expect('=');
+
+                switch (type) {
+                    case STRING:
+                        string();
+                        break;
+                    case NAME:
+                        ref();
+                        break;
+                    case BOOL:
+                    case INT:
+                    case FLOAT:
+                    case DATA_TYPE:
+                        next();
+                        break;
+                    default:
+                        expectType(null, "PropertyValueToken");
+                }
+
+                if (!consume(',')) {
+                    break;
+                }
+            }
+            expect(')');
+        }
+
+        expect('{');
+        while (!isDelimiter('}')) {
+            structure(true);
+        }
+        next();
+        depth--;
+    }
+
+    private int dataList(DataType listType, int subarraySize, int typeRow, int typeCol) throws IOException {
+        // skip list if empty
+        if (isDelimiter('}')) {
+            return 0;
+        }
+
+        int count = 0;
+        do {
+            if (++listLength > maxListLength) {
+                failLimit(ODDLLimits.Limit.LIST_LENGTH, maxListLength);
+            }
+            switch (listType) {
+                case FLOAT:
+                    if (type != ODDLToken.Type.FLOAT && type != ODDLToken.Type.INT) {
+                        failMismatch("FloatToken");
+                    }
+                    next();
+                    break;
+                case INT:
+                    element(ODDLToken.Type.INT, "IntToken");
+                    break;
+                case BOOL:
+                    element(ODDLToken.Type.BOOL, "BoolToken");
+                    break;
+                case TYPE:
+                    element(ODDLToken.Type.DATA_TYPE, "DataTypeToken");
+                    break;
+                case STRING:
+                    if (type != ODDLToken.Type.STRING) {
+                        failMismatch("StringToken");
+                    }
+                    string();
+                    break;
+                case REF:
+                    if (type != ODDLToken.Type.NAME) {
+                        failMismatch("NameToken");
+                    }
+                    ref();
+                    break;
+            }
+            count++;
+        } while (consume(','));
+
+        // enforce subarray size; unbounded if < 0
+        if (subarraySize >= 0 && count != subarraySize) {
+            fail(ODDLError.Kind.SUBARRAY_SIZE, typeRow, typeCol, String.valueOf(count), String.valueOf(subarraySize),
+                    "at "+typeRow+", "+typeCol+"; expected "+subarraySize+" but found "+count+" elements");
+        }
+
+        return count;
+    }
+
+    private void dataArrayList(DataType listType, int subarraySize, int typeRow, int typeCol) throws IOException {
+        // skip list if empty
+        if (isDelimiter('}')) {
+            return;
+        }
+
+        do {
+            expect('{');
+            dataList(listType, subarraySize, typeRow, typeCol);
+            expect('}');
+        } while (consume(','));
+    }
+
+    private void element(ODDLToken.Type expect, String name) throws IOException {
+        if (type != expect) {
+            failMismatch(name);
+        }
+        next();
+    }
+
+    private void string() throws IOException {
+        // adjacent literals form a single value
+        long length = stringLength;
+        next();
+        while (type == ODDLToken.Type.STRING) {
+            length += stringLength;
+            if (length > maxStringLength) {
+                failLimit(ODDLLimits.Limit.STRING_LENGTH, maxStringLength);
+            }
+            next();
+        }
+    }
+
+    private void ref() throws IOException {
+        if (nullName) {
+            next();
+            return;
+        }
+
+        // only the first name may be global ($); subsequent names must be local (%)
+        next();
+        while (type == ODDLToken.Type.NAME) {
+            if (global) {
+                fail(ODDLError.Kind.UNEXPECTED_TOKEN, row, col, "global NameToken", "local NameToken",
+                        "unexpected token global NameToken; expected local NameToken at "+row+", "+col);
+            }
+            next();
+        }
+    }
+
+    private boolean isEOF() {
+        return type == ODDLToken.Type.DELIMITER && delimiter == EOF;
+    }
+
+    private boolean isDelimiter(int c) {
+        return type == ODDLToken.Type.DELIMITER && delimiter == c;
+    }
+
+    private boolean consume(int c) throws IOException {
+        if (isDelimiter(c)) {
+            next();
+            return true;
+        }
+        return false;
+    }
+
+    private void expect(int c) throws IOException {
+        if (isEOF()) {
+            failEOF(null);
+        }
+        if (delimiter != c || type != ODDLToken.Type.DELIMITER) {
+            failToken("'" + (char) c + "'");
+        }
+        next();
+    }
+
+    private void expectType(ODDLToken.Type expect, String name) {
+        if (isEOF()) {
+            failEOF(null);
+        }
+        if (type != expect) {
+            failToken(name);
+        }
+    }
+
+    //==================================================================================================================
+    // tokens
+    //==================================================================================================================
+
+    private void next() throws IOException {
+        skipComments();
+
+        final int c = in.peek(0);
+        if (++tokens > maxTokens && c != -1) {
+            failLimit(ODDLLimits.Limit.TOKENS, maxTokens, in.getRow(), in.getCol());
+        }
+
+        final long start    = in.getCharacterCount();
+        final int  startRow = in.getRow();
+        final int  startCol = in.getCol();
+
+        if (c == -1) {
+            type      = ODDLToken.Type.DELIMITER;
+            delimiter = EOF;
+        } else if (isLeadingIdentifierChar(c)) {
+            word();
+        } else if (c=='+' || c=='-' || c=='.' || Character.isDigit(c)) {
+            number();
+        } else if (c == '\'') {
+            charLiteral(false);
+        } else if (c == '$' || c == '%') {
+            in.read();
+            skipIdentifierChars();
+            type     = ODDLToken.Type.NAME;
+            global   = c == '$';
+            nullName = false;
+        } else if (c == '"') {
+            stringLiteral();
+        } else if (DelimiterToken.isDelimiterCharacter(c)) {
+            in.read();
+            type      = ODDLToken.Type.DELIMITER;
+            delimiter = c;
+        } else {
+            failCharacter(null, c);
+        }
+
+        // as with tokens, delimiters and names are located at the character before them, others at their last character
+        if (type == ODDLToken.Type.DELIMITER || type == ODDLToken.Type.NAME && !nullName) {
+            row = startRow;
+            col = startCol;
+        } else {
+            row = in.getRow();
+            col = in.getCol();
+        }
+
+        if (in.getCharacterCount() - start > maxTokenLength) {
+            failLimit(ODDLLimits.Limit.TOKEN_LENGTH, maxTokenLength);
+        }
+    }
+
+    private void skipComments() throws IOException {
+        while (true) {
+            skipWhitespace();
+            if (in.peek(0) != '/') {
+                break;
+            } else if (in.peek(1) == '/') {
+                // line comment
+                in.read();
+                in.read();
+                int c;
+                while ((c=in.read())!=-1 && c!='\n');
+            } else if (in.peek(1) == '*') {
+                // block comment; ends at "*/" or at the end of the input
+                in.read();
+                in.read();
+                int c;
+                while ((c=in.read())!=-1) {
+                    if (c=='*' && in.peek(0)=='/') {
+                        in.read();
+                        break;
+                    }
+                }
+            } else {
+                break;
+            }
+        }
+    }
+
+    private void skipWhitespace() throws IOException {
+        while (isWhitespace(in.peek(0))) {
+            in.read();
+        }
+    }
+
+    /**
+     * Scans an identifier or keyword, keeping only as many characters as the longest keyword has.
+     */
+    private void word() throws IOException {
+        int length = 0;
+        do {
+            final int c = in.read();
+            if (length < MAX_KEYWORD_LENGTH) {
+                word[length] = (char) c;
+            }
+            length++;
+        } while (isIdentifierChar(in.peek(0)));
+
+        type = ODDLToken.Type.IDENTIFIER;
+        if (length > MAX_KEYWORD_LENGTH) {
+            return;
+        }
+
+        if (matches("null", length)) {
+            type     = ODDLToken.Type.NAME;
+            global   = true;
+            nullName = true;
+        } else if (matches("true", length) || matches("false", length)) {
+            type = ODDLToken.Type.BOOL;
+        } else {
+            for (int i=0; i<TYPE_NAMES.length; i++) {
+                if (matches(TYPE_NAMES[i], length)) {
+                    type     = ODDLToken.Type.DATA_TYPE;
+                    dataType = TYPE_VALUES[i];
+                    break;
+                }
+            }
+        }
+    }
+
+    private boolean matches(String keyword, int length) {
+        if (keyword.length() != length) {
+            return false;
+        }
+        for (int i=0; i<length; i++) {
+            if (word[i] != keyword.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void skipIdentifierChars() throws IOException {
+        while (isIdentifierChar(in.peek(0))) {
+            in.read();
+        }
+    }
+
+    private void number() throws IOException {
+        final boolean negative = in.peek(0) == '-';
+        literal();
+
+        // like IntToken, keep the value of a negative literal negative
+        if (negative) {
+            intValue = -intValue;
+        }
+    }
+
+    private void literal() throws IOException {
+        boolean signed = false;
+
+        // consume sign, if present
+        if (in.peek(0) == '+' || in.peek(0) == '-') {
+            in.read();
+            signed = true;
+        }
+
+        if (in.peek(0) == -1) {
+            failEOF("number literal");
+        }
+
+        if (in.peek(0) == '0') { // could be decimal, hex, octal, binary
+            switch (in.peek(1)) {
+                case 'x':
+                case 'X':
+                    radixLiteral(16, "hex");
+                    return;
+                case 'o':
+                case 'O':
+                    radixLiteral(8, "octal");
+                    return;
+                case 'b':
+                case 'B':
+                    radixLiteral(2, "binary");
+                    return;
+            }
+        } else if (in.peek(0) == '\'') {
+            charLiteral(signed);
+            return;
+        }
+
+        decimalLiteral();
+    }
+
+    private void radixLiteral(int radix, String name) throws IOException {
+        // consume prefix
+        in.read();
+        in.read();
+
+        if (in.peek(0) == -1) {
+            failEOF(name + " literal");
+        }
+
+        long    value  = 0;
+        boolean digits = false;
+        boolean range  = true;
+        int c;
+        while (true) {
+            c = in.peek(0);
+            final int d = radixDigit(c, radix);
+            if (d >= 0) {
+                if ((value >>> 59) != 0) { // may overflow
+                    range &= Long.compareUnsigned(value, Long.divideUnsigned(-1L - d, radix)) <= 0;
+                }
+                value  = value * radix + d;
+                digits = true;
+            } else if (c != '_') {
+                break;
+            }
+            in.read();
+        }
+
+        requireValidNumberTerminator(name);
+        requireValue(digits && range, name + " literal");
+
+        type     = ODDLToken.Type.INT;
+        intValue = value;
+    }
+
+    private static int radixDigit(int c, int radix) {
+        if (c >= '0' && c <= '9') {
+            final int d = c - '0';
+            return d < radix ? d : -1;
+        } else if (radix == 16 && c >= 'a' && c <= 'f') {
+            return c - 'a' + 10;
+        } else if (radix == 16 && c >= 'A' && c <= 'F') {
+            return c - 'A' + 10;
+        }
+        return -1;
+    }
+
+    private void decimalLiteral() throws IOException {
+        long    value   = 0;
+        boolean range   = true;
+        int     digits  = 0;
+        boolean integer = true;
+        boolean ascii   = true;
+
+        int c;
+        while (Character.isDigit(c=in.peek(0)) || c=='_') {
+            if (c != '_') {
+                final int d = Character.digit(c, 10);
+                if ((value >>> 59) != 0) { // may overflow
+                    range &= Long.compareUnsigned(value, Long.divideUnsigned(-1L - d, 10)) <= 0;
+                }
+                value  = value * 10 + d;
+                ascii &= c <= '9';
+                digits++;
+            }
+            in.read();
+        }
+
+        if (in.peek(0) == '.') {
+            integer = false;
+            in.read();
+            while (Character.isDigit(c=in.peek(0)) || c=='_') {
+                if (c != '_') {
+                    ascii &= c <= '9';
+                    digits++;
+                }
+                in.read();
+            }
+        }
+
+        if (in.peek(0)=='e' || in.peek(0)=='E') { // read optional exponent, if present
+            integer = false;
+            in.read();
+            if (in.peek(0)=='+' || in.peek(0)=='-') {
+                in.read();
+            }
+            int exponent = 0;
+            while (Character.isDigit(c=in.peek(0)) || c=='_') {
+                if (c != '_') {
+                    ascii &= c <= '9';
+                    exponent++;
+                }
+                in.read();
+            }
+            requireValue(exponent > 0, "decimal literal");
+        }
+
+        requireValidNumberTerminator("decimal");
+
+        if (integer) {
+            requireValue(digits > 0 && range, "decimal literal");
+            type     = ODDLToken.Type.INT;
+            intValue = value;
+        } else {
+            requireValue(digits > 0 && ascii, "decimal literal");
+            type = ODDLToken.Type.FLOAT;
+        }
+    }
+
+    private void requireValidNumberTerminator(String name) throws IOException {
+        final int c = in.peek(0);
+        if (!isWhitespace(c) && !DelimiterToken.isDelimiterCharacter(c)) {
+            failCharacter("in "+name+" literal", c);
+        }
+    }
+
+    private void requireValue(boolean valid, String location) {
+        if (!valid) {
+            final int r = in.getRow();
+            final int c = in.getCol();
+            fail(ODDLError.Kind.INVALID_LITERAL, r, c, null, null, "invalid value of "+location+" at "+r+", "+c);
+        }
+    }
+
+    private void charLiteral(boolean signed) throws IOException {
+        // consume leading quote
+        in.read();
+
+        long value  = 0;
+        int  length = 0;
+        int c;
+        while (isCharLiteralCharacter(c=in.peek(0))) {
+            if (c == '\\') {
+                c = escape();
+            } else {
+                in.read();
+            }
+            value = (value << 8) | c;
+            length++;
+        }
+
+        // consume trailing quote
+        if (c != '\'') {
+            failCharacter("character literal", c);
+        }
+        in.read();
+
+        requireValue(signed || length > 0, "character literal");
+
+        type     = ODDLToken.Type.INT;
+        intValue = value;
+    }
+
+    private void stringLiteral() throws IOException {
+        // consume leading quote
+        in.read();
+
+        int length = 0;
+        int c;
+        while ((c=in.peek(0)) != '"') {
+            if (c == -1) {
+                failEOF("string literal");
+            } else if (c == '\\') {
+                if (in.peek(1) == 'u') {
+                    in.read();
+                    in.read();
+                    for (int i=0; i<4; i++) {
+                        hexDigit();
+                    }
+                    length++;
+                } else if (in.peek(1) == 'U') {
+                    in.read();
+                    in.read();
+                    int uc24 = 0;
+                    for (int i=0; i<6; i++) {
+                        uc24 = (uc24 << 4) | hexDigit();
+                    }
+                    requireValue(Character.isValidCodePoint(uc24), "string literal");
+                    length += Character.charCount(uc24);
+                } else {
+                    escape();
+                    length++;
+                }
+            } else {
+                if (!isStringLiteralCharacter(c)) {
+                    failCharacter("string literal", c);
+                }
+                in.read();
+                length++;
+            }
+            if (length > maxStringLength) {
+                failLimit(ODDLLimits.Limit.STRING_LENGTH, maxStringLength, in.getRow(), in.getCol());
+            }
+        }
+
+        // consume trailing quote
+        in.read();
+
+        type         = ODDLToken.Type.STRING;
+        stringLength = length;
+    }
+
+    /**
+     * Consumes an escape sequence other than <tt>\\u</tt> and <tt>\\U</tt>.
+     * @return the escaped character
+     */
+    private int escape() throws IOException {
+        in.read(); // slash
+        final int c = in.read();
+        switch (c) {
+            case '\"':
+            case '\'':
+            case '?':
+            case '\\':
+                return c;
+            case 'a':
+                return 0x22;
+            case 'b':
+                return '\b';
+            case 'f':
+                return '\f';
+            case 'n':
+                return '\n';
+            case 'r':
+                return '\r';
+            case 't':
+                return '\t';
+            case 'v':
+                return 0x0b;
+            case 'x':
+                return (hexDigit() << 4) | hexDigit();
+            case -1:
+                failEOF("escape character");
+                return -1;
+            default:
+                failCharacter("escape character", c);
+                return -1;
+        }
+    }
+
+    private int hexDigit() throws IOException {
+        final int c = in.read();
+        final int ret = Character.digit(c, 16);
+        if (ret < 0) {
+            if (c == -1) {
+                failEOF("escape character");
+            }
+            failCharacter(null, c);
+        }
+        return ret;
+    }
+
+    private static boolean isWhitespace(int c) {
+        return c>=1 && c<=32;
+    }
+
+    private static boolean isLeadingIdentifierChar(int c) {
+        return (c >= 'A' && c <= 'Z') || (c >= 'a' && c <= 'z') || c == '_';
+    }
+
+    private static boolean isIdentifierChar(int c) {
+        return isLeadingIdentifierChar(c) || (c >= '0' && c <= '9');
+    }
+
+    private static boolean isCharLiteralCharacter(int c) {
+        return c=='\\' || (c>=0x20 && c<=0x26) || (c>=0x28 && c<=0x5b) || (c>=0x5d && c<=0x7e);
+    }
+
+    private static boolean isStringLiteralCharacter(int c) {
+        return (c>=0x20   && c<=0x21)   || (c>=0x23     && c<=0x5b   ) ||
+               (c>=0x5d   && c<=0x7e)   || (c>=0xa0     && c<=0xd7ff ) ||
+               (c>=0xe000 && c<=0xfffd) || (c>=0x010000 && c<0x10ffff);
+    }
+
+    //==================================================================================================================
+    // errors
+    //==================================================================================================================
+
+    private void fail(ODDLError.Kind kind, int row, int col, String actual, String expect, String message) {
+        error = new ODDLError(kind, row, col, actual, expect, null, message);
+        throw STOP;
+    }
+
+    private void failToken(String expect) {
+        final String actual = describe();
+        fail(ODDLError.Kind.UNEXPECTED_TOKEN, row, col, actual, expect,
+                "unexpected token "+actual+"; expected "+expect+" at "+row+", "+col);
+    }
+
+    private void failMismatch(String expect) {
+        final String actual = describe();
+        fail(ODDLError.Kind.ELEMENT_TYPE_MISMATCH, row, col, actual, expect,
+                "unexpected token "+actual+"; expected "+expect+" at "+row+", "+col);
+    }
+
+    private void failEOF(String location) {
+        final int r = in.getRow();
+        final int c = in.getCol();
+        fail(ODDLError.Kind.UNEXPECTED_EOF, r, c, "end of file", null,
+                "unexpected end of file "+(location == null ? "" : "in "+location+" ")+"at "+r+", "+c);
+    }
+
+    private void failCharacter(String location, int codePoint) {
+        final int r = in.getRow();
+        final int c = in.getCol();
+        final String actual = codePoint < 0 ? "end of file" : new StringBuilder().appendCodePoint(codePoint).toString();
+        final StringBuilder message = new StringBuilder("unexpected character ");
+        if (location != null) {
+            message.append(location).append(' ');
+        }
+        message.append("at ").append(r).append(", ").append(c).append(": ").append(actual);
+        fail(ODDLError.Kind.UNEXPECTED_CHARACTER, r, c, actual, null, message.toString());
+    }
+
+    private void failLimit(ODDLLimits.Limit limit, long maximum) {
+        failLimit(limit, maximum, row, col);
+    }
+
+    private void failLimit(ODDLLimits.Limit limit, long maximum, int row, int col) {
+        error = new ODDLError(ODDLError.Kind.LIMIT_EXCEEDED, row, col, null, String.valueOf(maximum), limit,
+                limit.name().toLowerCase().replace('_', ' ') + " exceeds limit of " + maximum +
+                " at " + row + ", " + col);
+        throw STOP;
+    }
+
+    private String describe() {
+        switch (type) {
+            case DELIMITER:  return isEOF() ? "end of file" : "'" + (char) delimiter + "'";
+            case IDENTIFIER: return "IdentifierToken";
+            case DATA_TYPE:  return "DataTypeToken";
+            case NAME:       return "NameToken";
+            case BOOL:       return "BoolToken";
+            case INT:        return "IntToken";
+            case FLOAT:      return "FloatToken";
+            default:         return "StringToken";
+        }
+    }
+}
@@ -0,0 +1,1476 @@
+/*
+ * Jiggatech OpenDDL Parser
+ *
+ * Copyright (c) 2019 Nikita Leonidov
+ *
+ * MIT License
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.jiggawatt.jt.oddl;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.util.Arrays;
+
+import static java.util.Objects.checkFromIndexSize;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Writes OpenDDL text. The writer's methods mirror the callbacks of {@link ODDLListener}: structures are opened and
+ * closed with matching <tt>begin</tt> and <tt>end</tt> calls, and list elements are written with <tt>value</tt> calls.
+ * Output is UTF-8, accumulated in an internal byte buffer and handed to the destination in large blocks.
+ * <pre>
+ * {@code
+ * try (ODDLWriter out = new ODDLWriter(Files.newOutputStream(path))) {
+ *     out.beginCustomStructure("Metric")
+ *        .property("key", "distance")
+ *        .beginListStructure("float").value(1.0).endListStructure()
+ *        .endCustomStructure();
+ * }
+ * }
+ * </pre>
+ * Names are given with their prefix, exactly as they appear in OpenDDL text (<tt>"$global"</tt>, <tt>"%local"</tt>).
+ * Values are formatted according to the data type of the enclosing list: integer values are range checked against
+ * the list's bit width and signedness, and floating-point values are written at the list's precision. Methods throw
+ * {@link IllegalArgumentException} when given a value that cannot appear at the current position, and
+ * {@link IllegalStateException} when called out of order.
+ *
+ * @author Nikita Leonidov
+ */
+public final class ODDLWriter implements Closeable, Flushable {
+
+    private static final int DEFAULT_BUFFER_SIZE = 1 << 16;
+
+    /** space reserved by callers before writing an indivisible piece of output, e.g. a number or an escaped char */
+    private static final int MAX_ATOM = 64;
+
+    private static final byte[] HEX = "0123456789ABCDEF".getBytes();
+
+    private final Sink   sink;
+    private final byte[] buf;
+    private int pos;
+
+    private Frame[] frames = new Frame[16];
+    private int     depth;
+
+    /** number of custom structures on the frame stack; determines indentation */
+    private int     nesting;
+    private boolean started;
+
+    private boolean hexFloats;
+    private boolean hexIntegers;
+
+    /**
+     * Creates a writer that encodes its output as UTF-8 and writes it to an output stream.
+     * @param out output stream; may not be null
+     */
+    public ODDLWriter(OutputStream out) {
+        this(new StreamSink(requireNonNull(out, "output stream")));
+    }
+
+    /**
+     * Creates a writer that encodes its output as UTF-8 and writes it to a channel. The channel should be in
+     * blocking mode.
+     * @param out output channel; may not be null
+     */
+    public ODDLWriter(WritableByteChannel out) {
+        this(new ChannelSink(requireNonNull(out, "output channel")));
+    }
+
+    /**
+     * Creates a writer that writes characters to a {@link Writer}.
+     * @param out output writer; may not be null
+     */
+    public ODDLWriter(Writer out) {
+        this(new WriterSink(requireNonNull(out, "output writer")));
+    }
+
+    private ODDLWriter(Sink sink) {
+        this.sink = sink;
+        this.buf  = new byte[DEFAULT_BUFFER_SIZE];
+    }
+
+    // options
+    //==================================================================================================================
+    /**
+     * Selects how floating-point list elements are written. By default, elements are written as the shortest decimal
+     * literal that reads back to the same value at the list's precision. In hex mode, elements are written as hex
+     * literals holding their IEEE 754 bit pattern, which is exact and cheaper to produce and parse. NaN and infinities
+     * are always written as bit patterns.
+     * @param hexFloats <tt>true</tt> to write bit patterns
+     * @return this writer
+     */
+    public ODDLWriter setHexFloats(boolean hexFloats) {
+        this.hexFloats = hexFloats;
+        return this;
+    }
+
+    /**
+     * Selects whether integer list elements are written as hex literals, zero-padded to the width of the list's data
+     * type. Negative elements of signed lists are written as a minus sign followed by their magnitude.
+     * @param hexIntegers <tt>true</tt> to write hex literals
+     * @return this writer
+     */
+    public ODDLWriter setHexIntegers(boolean hexIntegers) {
+        this.hexIntegers = hexIntegers;
+        return this;
+    }
+
+    // custom structures
+    //==================================================================================================================
+    /**
+     * Begins an unnamed custom structure.
+     * @param identifier the structure identifier
+     * @return this writer
+     * @throws IOException when an IO exception occurs
+     */
+    public ODDLWriter beginCustomStructure(String identifier) throws IOException {
+        return beginCustomStructure(identifier, null);
+    }
+
+    /**
+     * Begins a custom structure. Properties may be written with the <tt>property</tt> methods until the first child
+     * structure is begun or the structure is ended.
+     * @param identifier the structure identifier
+     * @param name       the structure name, with its <tt>$</tt> or <tt>%</tt> prefix, or <tt>null</tt> for none
+     * @return this writer
+     * @throws IOException when an IO exception occurs
+     */
+    public ODDLWriter beginCustomStructure(String identifier, String name) throws IOException {
+        requireIdentifier(identifier);
+        if (DataTypeToken.create(0, 0, identifier) != null) {
+            throw new IllegalArgumentException("data type keyword used as identifier: "+identifier);
+        }
+
+        beginChild();
+        writeAscii(identifier);
+        writeName(name);
+
+        push(Frame.CUSTOM, null, -1);
+        nesting++;
+        return this;
+    }
+
+    /**
+     * Ends the innermost custom structure.
+     * @return this writer
+     * @throws IOException when an IO exception occurs
+     */
+    public ODDLWriter endCustomStructure() throws IOException {
+        Frame f = pop(Frame.CUSTOM);
+        nesting--;
+
+        if (f.headerOpen) {
+            closeHeader(f);
+            writeAscii(" {}");
+        } else {
+            newLine();
+            write('}');
+        }
+        return this;
+    }
+
+    /**
+     * Writes a boolean property of the innermost custom structure.
+     * @param key   the property identifier
+     * @param value the property value
+     * @return this writer
+     * @throws IOException when an IO exception occurs
+     */
+    public ODDLWriter property(String key, boolean value) throws IOException {
+        beginProperty(key);
+        writeAscii(value ? "true" : "false");
+        return this;
+    }
+
+    /**
+     * Writes an integer property of the innermost custom structure.
+     * @param key   the property identifier
+     * @param value the property value
+     * @return this writer
+     * @throws IOException when an IO exception occurs
+     */
+    public ODDLWriter property(String key, long value) throws IOException {
+        beginProperty(key);
+        writeLong(value);
+        return this;
+    }
+
+    /**
+     * Writes a floating-point property of the innermost custom structure.
+     * @param key   the property identifier
+     * @param value the property value
+     * @return this writer
+     * @throws IOException when an IO exception occurs
+     */
+    public ODDLWriter property(String key, double value) throws IOException {
+        beginProperty(key);
+        writeDouble(value);
+        return this;
+    }
+
+    /**
+     * Writes a string property of the innermost custom structure.
+     * @param key   the property identifier
+     * @param value the property value; may not be null
+     * @return this writer
+     * @throws IOException when an IO exception occurs
+     */
+    public ODDLWriter property(String key, String value) throws IOException {
+        requireNonNull(value, "value");
+        beginProperty(key);
+        writeString(value);
+        return this;
+    }
+
+    /**
+     * Writes a reference property of the innermost custom structure.
+     * @param key    the property identifier
+     * @param names  the names forming the reference, each with its prefix; an empty array writes <tt>null</tt>
+     * @return this writer
+     * @throws IOException when an IO exception occurs
+     */
+    public ODDLWriter refProperty(String key, String... names) throws IOException {
+        beginProperty(key);
+        writeRef(names);
+        return this;
+    }
+
+    /**
+     * Writes a data type property of the innermost custom structure.
+     * @param key       the property identifier
+     * @param dataType  a data type keyword, e.g. <tt>"float"</tt> or <tt>"u8"</tt>
+     * @return this writer
+     * @throws IOException when an IO exception occurs
+     */
+    public ODDLWriter typeProperty(String key, String dataType) throws IOException {
+        requireDataType(dataType);
+        beginProperty(key);
+        writeAscii(dataType);
+        return this;
+    }
+
+    // list structures
+    //==================================================================================================================
+    /**
+     * Begins an unnamed data list.
+     * @param dataType a data type keyword, e.g. <tt>"float"</tt> or <tt>"u8"</tt>
+     * @return this writer
+     * @throws IOException when an IO exception occurs
+     */
+    public ODDLWriter beginListStructure(String dataType) throws IOException {
+        return beginListStructure(dataType, null);
+    }
+
+    /**
+     * Begins a data list.
+     * @param dataType a data type keyword, e.g. <tt>"float"</tt> or <tt>"u8"</tt>
+     * @param name     the list name, with its <tt>$</tt> or <tt>%</tt> prefix, or <tt>null</tt> for none
+     * @return this writer
+     * @throws IOException when an IO exception occurs
+     */
+    public ODDLWriter beginListStructure(String dataType, String name) throws IOException {
+        DataTypeToken type = requireDataType(dataType);
+
+        beginChild();
+        writeAscii(dataType);
+        writeName(name);
+        writeAscii(" {");
+
+        push(Frame.LIST, type, -1);
+        return this;
+    }
+
+    /**
+     * Ends the innermost data list.
+     * @return this writer
+     * @throws IOException when an IO exception occurs
+     */
+    public ODDLWriter endListStructure() throws IOException {
+        pop(Frame.LIST);
+        write('}');
+        return this;
+    }
+
+    /**
+     * Begins an unnamed data array list.
+     * @param dataType      a data type keyword, e.g. <tt>"float"</tt> or <tt>"u8"</tt>
+     * @param subarraySize  the number of elements in each sub-array
+     * @return this writer
+     * @throws IOException when an IO exception occurs
+     */
+    public ODDLWriter beginArrayListStructure(String dataType, int subarraySize) throws IOException {
+        return beginArrayListStructure(dataType, subarraySize, null);
+    }
+
+    /**
+     * Begins a data array list. Elements must be written within sub-arrays.
+     * @param dataType      a data type keyword, e.g. <tt>"float"</tt> or <tt>"u8"</tt>
+     * @param subarraySize  the number of elements in each sub-array
+     * @param name          the list name, with its <tt>$</tt> or <tt>%</tt> prefix, or <tt>null</tt> for none
+     * @return this writer
+     * @throws IOException when an IO exception occurs
+     */
+    public ODDLWriter beginArrayListStructure(String dataType, int subarraySize, String name) throws IOException {
+        DataTypeToken type = requireDataType(dataType);
+        if (subarraySize < 0) {
+            throw new IllegalArgumentException("negative subarray size: "+subarraySize);
+        }
+
+        beginChild();
+        writeAscii(dataType);
+        write('[');
+        writeLong(subarraySize);
+        write(']');
+        writeName(name);
+
+        push(Frame.ARRAY_LIST, type, subarraySize);
+        return this;
+    }
+
+    /**
+     * Ends the innermost data array list.
+     * @return this writer
+     * @throws IOException when an IO exception occurs
+     */
+    public ODDLWriter endArrayListStructure() throws IOException {
+        Frame f = pop(Frame.ARRAY_LIST);
+        if (f.count == 0) {
+            writeAscii(" {}");
+        } else {
+            newLine();
+            write('}');
+        }
+        return this;
+    }
+
+    /**
+     * Begins a sub-array of the innermost data array list.
+     * @return this writer
+     * @throws IOException when an IO exception occurs
+     */
+    public ODDLWriter beginSubArray() throws IOException {
+        Frame list = top(Frame.ARRAY_LIST);
+
+        if (list.count++ == 0) {
+            newLine();
+            write('{');
+        } else {
+            write(',');
+        }
+        nesting++;
+        newLine();
+        nesting--;
+        write('{');
+
+        push(Frame.SUBARRAY, list.type, list.subarraySize);
+        return this;
+    }
+
+    /**
+     * Ends the innermost sub-array.
+     * @return this writer
+     * @throws IOException when an IO exception occurs
+     * @throws IllegalStateException if the sub-array does not contain exactly as many elements as specified for the
+     *                               enclosing data array list
+     */
+    public ODDLWriter endSubArray() throws IOException {
+        Frame f = top(Frame.SUBARRAY);
+        if (f.count != f.subarraySize) {
+            throw new IllegalStateException("expected "+f.subarraySize+" sub-array elements but wrote "+f.count);
+        }
+        pop(Frame.SUBARRAY);
+        write('}');
+        return this;
+    }
+
+    // list elements
+    //==================================================================================================================
+    /**
+     * Writes an element of a <tt>bool</tt> list.
+     * @param value the element value
+     * @return this writer
+     * @throws IOException when an IO exception occurs
+     */
+    public ODDLWriter value(boolean value) throws IOException {
+        beginElement(DataType.BOOL);
+        writeAscii(value ? "true" : "false");
+        return this;
+    }
+
+    /**
+     * Writes an element of an integer or floating-point list.
+     * @param value the element value
+     * @return this writer
+     * @throws IOException when an IO exception occurs
+     * @throws IllegalArgumentException if the value is out of range for the list's integer type
+     */
+    public ODDLWriter value(long value) throws IOException {
+        Frame f = beginElement(DataType.INT, DataType.FLOAT);
+        if (f.type.getValue() == DataType.FLOAT) {
+            writeFloat(f.type, value);
+        } else {
+            writeInt(f.type, value);
+        }
+        return this;
+    }
+
+    /**
+     * Writes an element of a floating-point list, at the precision of the list's data type.
+     * @param value the element value
+     * @return this writer
+     * @throws IOException when an IO exception occurs
+     */
+    public ODDLWriter value(double value) throws IOException {
+        Frame f = beginElement(DataType.FLOAT);
+        writeFloat(f.type, value);
+        return this;
+    }
+
+    /**
+     * Writes an element of a <tt>string</tt> list.
+     * @param value the element value; may not be null
+     * @return this writer
+     * @throws IOException when an IO exception occurs
+     */
+    public ODDLWriter value(String value) throws IOException {
+        requireNonNull(value, "value");
+        beginElement(DataType.STRING);
+        writeString(value);
+        return this;
+    }
+
+    /**
+     * Writes an element of a <tt>ref</tt> list.
+     * @param names the names forming the reference, each with its prefix; an empty array writes <tt>null</tt>
+     * @return this writer
+     * @throws IOException when an IO exception occurs
+     */
+    public ODDLWriter ref(String... names) throws IOException {
+        beginElement(DataType.REF);
+        writeRef(names);
+        return this;
+    }
+
+    /**
+     * Writes an element of a <tt>type</tt> list.
+     * @param dataType a data type keyword, e.g. <tt>"float"</tt> or <tt>"u8"</tt>
+     * @return this writer
+     * @throws IOException when an IO exception occurs
+     */
+    public ODDLWriter type(String dataType) throws IOException {
+        requireDataType(dataType);
+        beginElement(DataType.TYPE);
+        writeAscii(dataType);
+        return this;
+    }
+
+    // bulk list elements
+    //==================================================================================================================
+    /**
+     * Writes all elements of an array to the innermost floating-point list or sub-array.
+     * @param values the element values
+     * @return this writer
+     * @throws IOException when an IO exception occurs
+     * @see #values(float[], int, int)
+     */
+    public ODDLWriter values(float[] values) throws IOException {
+        return values(values, 0, values.length);
+    }
+
+    /**
+     * Writes a range of an array to the innermost floating-point list or sub-array. This is equivalent to calling
+     * {@link #value(double)} for each element, without the per-element checks.
+     * @param values the element values
+     * @param off    index of the first element to write
+     * @param len    number of elements to write
+     * @return this writer
+     * @throws IOException when an IO exception occurs
+     * @throws IllegalStateException if a sub-array does not have room for <tt>len</tt> more elements
+     */
+    public ODDLWriter values(float[] values, int off, int len) throws IOException {
+        checkFromIndexSize(off, len, values.length);
+        Frame f = beginElements(DataType.FLOAT, DataType.FLOAT, len);
+        for (int i=off; i<off+len; i++) {
+            separate(f);
+            writeFloat(f.type, values[i]);
+        }
+        return this;
+    }
+
+    /**
+     * Writes all elements of an array to the innermost floating-point list or sub-array.
+     * @param values the element values
+     * @return this writer
+     * @throws IOException when an IO exception occurs
+     * @see #values(double[], int, int)
+     */
+    public ODDLWriter values(double[] values) throws IOException {
+        return values(values, 0, values.length);
+    }
+
+    /**
+     * Writes a range of an array to the innermost floating-point list or sub-array. This is equivalent to calling
+     * {@link #value(double)} for each element, without the per-element checks.
+     * @param values the element values
+     * @param off    index of the first element to write
+     * @param len    number of elements to write
+     * @return this writer
+     * @throws IOException when an IO exception occurs
+     * @throws IllegalStateException if a sub-array does not have room for <tt>len</tt> more elements
+     */
+    public ODDLWriter values(double[] values, int off, int len) throws IOException {
+        checkFromIndexSize(off, len, values.length);
+        Frame f = beginElements(DataType.FLOAT, DataType.FLOAT, len);
+        for (int i=off; i<off+len; i++) {
+            separate(f);
+            writeFloat(f.type, values[i]);
+        }
+        return this;
+    }
+
+    /**
+     * Writes all elements of an array to the innermost integer or floating-point list or sub-array.
+     * @param values the element values
+     * @return this writer
+     * @throws IOException when an IO exception occurs
+     * @see #values(int[], int, int)
+     */
+    public ODDLWriter values(int[] values) throws IOException {
+        return values(values, 0, values.length);
+    }
+
+    /**
+     * Writes a range of an array to the innermost integer or floating-point list or sub-array. This is equivalent to
+     * calling {@link #value(long)} for each element, without the per-element checks.
+     * @param values the element values
+     * @param off    index of the first element to write
+     * @param len    number of elements to write
+     * @return this writer
+     * @throws IOException when an IO exception occurs
+     * @throws IllegalArgumentException if a value is out of range for the list's integer type; elements preceding it
+     *                                  will already have been written
+     * @throws IllegalStateException if a sub-array does not have room for <tt>len</tt> more elements
+     */
+    public ODDLWriter values(int[] values, int off, int len) throws IOException {
+        checkFromIndexSize(off, len, values.length);
+        Frame f = beginElements(DataType.INT, DataType.FLOAT, len);
+        boolean isFloat = f.type.getValue() == DataType.FLOAT;
+        for (int i=off; i<off+len; i++) {
+            separate(f);
+            if (isFloat) {
+                writeFloat(f.type, values[i]);
+            } else {
+                writeInt(f.type, values[i]);
+            }
+        }
+        return this;
+    }
+
+    /**
+     * Writes all elements of an array to the innermost integer or floating-point list or sub-array.
+     * @param values the element values
+     * @return this writer
+     * @throws IOException when an IO exception occurs
+     * @see #values(long[], int, int)
+     */
+    public ODDLWriter values(long[] values) throws IOException {
+        return values(values, 0, values.length);
+    }
+
+    /**
+     * Writes a range of an array to the innermost integer or floating-point list or sub-array. This is equivalent to
+     * calling {@link #value(long)} for each element, without the per-element checks.
+     * @param values the element values
+     * @param off    index of the first element to write
+     * @param len    number of elements to write
+     * @return this writer
+     * @throws IOException when an IO exception occurs
+     * @throws IllegalArgumentException if a value is out of range for the list's integer type; elements preceding it
+     *                                  will already have been written
+     * @throws IllegalStateException if a sub-array does not have room for <tt>len</tt> more elements
+     */
+    public ODDLWriter values(long[] values, int off, int len) throws IOException {
+        checkFromIndexSize(off, len, values.length);
+        Frame f = beginElements(DataType.INT, DataType.FLOAT, len);
+        boolean isFloat = f.type.getValue() == DataType.FLOAT;
+        for (int i=off; i<off+len; i++) {
+            separate(f);
+            if (isFloat) {
+                writeFloat(f.type, values[i]);
+            } else {
+                writeInt(f.type, values[i]);
+            }
+        }
+        return this;
+    }
+
+    /**
+     * Writes a range of a flat array to the innermost data array list, starting a new sub-array every
+     * <tt>subarraySize</tt> elements. For example, 3 consecutive elements per vertex become one sub-array of a
+     * <tt>float[3]</tt> list.
+     * @param values the element values
+     * @param off    index of the first element to write
+     * @param len    number of elements to write; must be a multiple of the list's sub-array size
+     * @return this writer
+     * @throws IOException when an IO exception occurs
+     */
+    public ODDLWriter subArrays(float[] values, int off, int len) throws IOException {
+        checkFromIndexSize(off, len, values.length);
+        int size = subArrayStride(len);
+        for (int i=off; i<off+len; i+=size) {
+            beginSubArray();
+            values(values, i, size);
+            endSubArray();
+        }
+        return this;
+    }
+
+    /**
+     * Writes a range of a flat array to the innermost data array list, starting a new sub-array every
+     * <tt>subarraySize</tt> elements.
+     * @param values the element values
+     * @param off    index of the first element to write
+     * @param len    number of elements to write; must be a multiple of the list's sub-array size
+     * @return this writer
+     * @throws IOException when an IO exception occurs
+     * @see #subArrays(float[], int, int)
+     */
+    public ODDLWriter subArrays(double[] values, int off, int len) throws IOException {
+        checkFromIndexSize(off, len, values.length);
+        int size = subArrayStride(len);
+        for (int i=off; i<off+len; i+=size) {
+            beginSubArray();
+            values(values, i, size);
+            endSubArray();
+        }
+        return this;
+    }
+
+    /**
+     * Writes a range of a flat array to the innermost data array list, starting a new sub-array every
+     * <tt>subarraySize</tt> elements.
+     * @param values the element values
+     * @param off    index of the first element to write
+     * @param len    number of elements to write; must be a multiple of the list's sub-array size
+     * @return this writer
+     * @throws IOException when an IO exception occurs
+     * @see #subArrays(float[], int, int)
+     */
+    public ODDLWriter subArrays(int[] values, int off, int len) throws IOException {
+        checkFromIndexSize(off, len, values.length);
+        int size = subArrayStride(len);
+        for (int i=off; i<off+len; i+=size) {
+            beginSubArray();
+            values(values, i, size);
+            endSubArray();
+        }
+        return this;
+    }
+
+    /**
+     * Writes a range of a flat array to the innermost data array list, starting a new sub-array every
+     * <tt>subarraySize</tt> elements.
+     * @param values the element values
+     * @param off    index of the first element to write
+     * @param len    number of elements to write; must be a multiple of the list's sub-array size
+     * @return this writer
+     * @throws IOException when an IO exception occurs
+     * @see #subArrays(float[], int, int)
+     */
+    public ODDLWriter subArrays(long[] values, int off, int len) throws IOException {
+        checkFromIndexSize(off, len, values.length);
+        int size = subArrayStride(len);
+        for (int i=off; i<off+len; i+=size) {
+            beginSubArray();
+            values(values, i, size);
+            endSubArray();
+        }
+        return this;
+    }
+
+    // output
+    //==================================================================================================================
+    /**
+     * Writes all buffered output to the destination and flushes it.
+     * @throws IOException when an IO exception occurs
+     */
+    @Override
+    public void flush() throws IOException {
+        drain();
+        sink.flush();
+    }
+
+    /**
+     * Flushes and closes the destination.
+     * @throws IOException when an IO exception occurs
+     * @throws IllegalStateException if any structure is still open; the destination is closed regardless
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            if (started) {
+                write('\n');
+            }
+            drain();
+            sink.flush();
+        } finally {
+            sink.close();
+        }
+
+        if (depth > 0) {
+            throw new IllegalStateException(depth+" structure(s) left open");
+        }
+    }
+
+    /**
+     * Returns a listener that writes every event it receives to this writer, which makes it possible to re-serialize
+     * a document as it is read. Input/output errors are rethrown as {@link UncheckedIOException}. The listener's result
+     * is always <tt>null</tt>; it flushes, but does not close, this writer when the document ends.
+     * @return a listener backed by this writer
+     */
+    public ODDLListener<Void> asListener() {
+        return new WritingListener(this);
+    }
+
+    // structure bookkeeping
+    //==================================================================================================================
+    private void beginChild() throws IOException {
+        if (depth > 0) {
+            Frame parent = frames[depth-1];
+            if (parent.kind != Frame.CUSTOM) {
+                throw new IllegalStateException("structures may only be nested in custom structures");
+            }
+
+            if (parent.headerOpen) {
+                closeHeader(parent);
+                nesting--;
+                newLine();
+                nesting++;
+                write('{');
+            }
+            parent.count++;
+        }
+
+        if (started) {
+            newLine();
+        }
+        started = true;
+    }
+
+    private void beginProperty(String key) throws IOException {
+        requireIdentifier(key);
+        Frame f = top(Frame.CUSTOM);
+        if (!f.headerOpen) {
+            throw new IllegalStateException("properties must be written before the first child structure");
+        }
+
+        writeAscii(f.count++ == 0 ? " (" : ", ");
+        writeAscii(key);
+        writeAscii(" = ");
+    }
+
+    private void closeHeader(Frame f) throws IOException {
+        if (f.count > 0) {
+            write(')');
+        }
+        f.headerOpen = false;
+        f.count      = 0;
+    }
+
+    private Frame beginElement(DataType type) throws IOException {
+        return beginElement(type, type);
+    }
+
+    private Frame beginElement(DataType a, DataType b) throws IOException {
+        if (depth == 0) {
+            throw new IllegalStateException("values may only be written within a data list");
+        }
+
+        Frame f = frames[depth-1];
+        if (f.kind == Frame.ARRAY_LIST) {
+            throw new IllegalStateException("data array list elements must be written within a sub-array");
+        }
+        if (f.kind == Frame.CUSTOM) {
+            throw new IllegalStateException("values may only be written within a data list");
+        }
+
+        DataType listType = f.type.getValue();
+        if (listType != a && listType != b) {
+            throw new IllegalArgumentException("cannot write "+a+" value to "+f.type.getText()+" list");
+        }
+        if (f.kind == Frame.SUBARRAY && f.count >= f.subarraySize) {
+            throw new IllegalStateException("sub-array already holds "+f.subarraySize+" elements");
+        }
+
+        if (f.count++ > 0) {
+            writeAscii(", ");
+        }
+        return f;
+    }
+
+    /**
+     * Checks that <tt>len</tt> elements of the given type may be written at the current position. Unlike
+     * {@link #beginElement(DataType, DataType)}, separators are left to {@link #separate(Frame)}.
+     */
+    private Frame beginElements(DataType a, DataType b, int len) {
+        if (depth == 0) {
+            throw new IllegalStateException("values may only be written within a data list");
+        }
+
+        Frame f = frames[depth-1];
+        if (f.kind == Frame.ARRAY_LIST) {
+            throw new IllegalStateException("data array list elements must be written within a sub-array");
+        }
+        if (f.kind == Frame.CUSTOM) {
+            throw new IllegalStateException("values may only be written within a data list");
+        }
+
+        DataType listType = f.type.getValue();
+        if (listType != a && listType != b) {
+            throw new IllegalArgumentException("cannot write "+a+" value to "+f.type.getText()+" list");
+        }
+        if (f.kind == Frame.SUBARRAY && f.count + len > f.subarraySize) {
+            throw new IllegalStateException("sub-array holds "+f.count+" of "+f.subarraySize+" elements; cannot write "+len+" more");
+        }
+        return f;
+    }
+
+    private void separate(Frame f) throws IOException {
+        if (f.count++ > 0) {
+            require(2);
+            buf[pos++] = ',';
+            buf[pos++] = ' ';
+        }
+    }
+
+    private int subArrayStride(int len) {
+        Frame list = top(Frame.ARRAY_LIST);
+        int size = list.subarraySize;
+        if (size == 0 ? len != 0 : len % size != 0) {
+            throw new IllegalArgumentException(len+" elements do not fill sub-arrays of size "+size);
+        }
+        return size;
+    }
+
+    private void push(int kind, DataTypeToken type, int subarraySize) {
+        if (depth == frames.length) {
+            frames = Arrays.copyOf(frames, depth*2);
+        }
+
+        Frame f = frames[depth];
+        if (f == null) {
+            f = frames[depth] = new Frame();
+        }
+        f.kind         = kind;
+        f.type         = type;
+        f.subarraySize = subarraySize;
+        f.count        = 0;
+        f.headerOpen   = kind == Frame.CUSTOM;
+        depth++;
+    }
+
+    private Frame top(int kind) {
+        if (depth == 0 || frames[depth-1].kind != kind) {
+            throw new IllegalStateException("no open "+Frame.describe(kind));
+        }
+        return frames[depth-1];
+    }
+
+    private Frame pop(int kind) {
+        Frame ret = top(kind);
+        depth--;
+        return ret;
+    }
+
+    // formatting
+    //==================================================================================================================
+    private void writeName(String name) throws IOException {
+        if (name != null) {
+            requireName(name);
+            write(' ');
+            writeAscii(name);
+        }
+    }
+
+    private void writeRef(String[] names) throws IOException {
+        if (names.length == 0) {
+            writeAscii("null");
+            return;
+        }
+
+        for (int i=0; i<names.length; i++) {
+            requireName(names[i]);
+            if (i > 0 && names[i].charAt(0) != '%') {
+                throw new IllegalArgumentException("only the first name in a reference may be global: "+names[i]);
+            }
+        }
+        for (String k : names) {
+            writeAscii(k);
+        }
+    }
+
+    private void writeInt(DataTypeToken type, long value) throws IOException {
+        int bits = type.getTypeBits();
+
+        if (type.isTypeUnsigned()) {
+            if (bits < 64 && (value < 0 || value >>> bits != 0)) {
+                throw new IllegalArgumentException(value+" out of range for "+type.getText());
+            }
+            if (hexIntegers) {
+                writeHex(value, bits/4);
+                return;
+            }
+            if (value < 0) { // only possible for 64-bit values
+                writeAscii(Long.toUnsignedString(value));
+                return;
+            }
+        } else {
+            if (bits < 64) {
+                long min = -1L << (bits-1);
+                if (value < min || value > ~min) {
+                    throw new IllegalArgumentException(value+" out of range for "+type.getText());
+                }
+            }
+            if (hexIntegers) {
+                if (value < 0) {
+                    write('-');
+                    value = -value; // Long.MIN_VALUE stays negative, but its bits are still the right magnitude
+                }
+                writeHex(value, bits/4);
+                return;
+            }
+        }
+
+        writeLong(value);
+    }
+
+    private void writeFloat(DataTypeToken type, double value) throws IOException {
+        switch (type.getTypeBits()) {
+            case 64:
+                writeDouble(value);
+                break;
+            case 16:
+                float h = (float) value;
+                if (hexFloats || Float.isNaN(h) || Float.isInfinite(h)) {
+                    writeHex(FloatFormat.toHalfBits(h), 4);
+                } else {
+                    writeFloat(h);
+                }
+                break;
+            default:
+                float f = (float) value;
+                if (hexFloats || Float.isNaN(f) || Float.isInfinite(f)) {
+                    // OpenDDL has no literals for NaN or infinities, but reads hex literals as raw bits
+                    writeHex(Float.floatToRawIntBits(f) & 0xffffffffL, 8);
+                } else {
+                    writeFloat(f);
+                }
+        }
+    }
+
+    private void writeFloat(float value) throws IOException {
+        require(FloatFormat.MAX_LENGTH);
+        pos = FloatFormat.writeFloat(value, buf, pos);
+    }
+
+    private void writeDouble(double value) throws IOException {
+        if (hexFloats || Double.isNaN(value) || Double.isInfinite(value)) {
+            writeHex(Double.doubleToRawLongBits(value), 16);
+        } else {
+            require(FloatFormat.MAX_LENGTH);
+            pos = FloatFormat.writeDouble(value, buf, pos);
+        }
+    }
+
+    private void writeHex(long bits, int digits) throws IOException {
+        require(digits + 2);
+        buf[pos++] = '0';
+        buf[pos++] = 'x';
+        for (int i=digits-1; i>=0; i--) {
+            buf[pos++] = HEX[(int) (bits >>> (i*4)) & 0xf];
+        }
+    }
+
+    private void writeLong(long value) throws IOException {
+        require(20);
+
+        if (value < 0) {
+            buf[pos++] = '-';
+        } else {
+            value = -value;
+        }
+
+        // digits are produced from the negated value so that Long.MIN_VALUE needs no special case
+        int start = pos;
+        do {
+            buf[pos++] = (byte) ('0' - value % 10);
+            value /= 10;
+        } while (value != 0);
+
+        for (int i=start, j=pos-1; i<j; i++, j--) {
+            byte t = buf[i];
+            buf[i] = buf[j];
+            buf[j] = t;
+        }
+    }
+
+    private void writeString(String value) throws IOException {
+        require(1);
+        buf[pos++] = '"';
+
+        for (int i=0; i<value.length(); i++) {
+            char c = value.charAt(i);
+            require(10);
+
+            if (c >= 0x20 && c <= 0x7e) {
+                if (c == '"' || c == '\\') {
+                    buf[pos++] = '\\';
+                }
+                buf[pos++] = (byte) c;
+            } else if (c >= 0xa0 && c < 0xd800 || c >= 0xe000 && c <= 0xfffd) {
+                if (c < 0x800) {
+                    buf[pos++] = (byte) (0xc0 | (c >> 6));
+                } else {
+                    buf[pos++] = (byte) (0xe0 | (c >> 12));
+                    buf[pos++] = (byte) (0x80 | ((c >> 6) & 0x3f));
+                }
+                buf[pos++] = (byte) (0x80 | (c & 0x3f));
+            } else if (Character.isHighSurrogate(c) && i+1 < value.length() && Character.isLowSurrogate(value.charAt(i+1))) {
+                // supplementary characters are escaped, since the reader consumes UTF-16 units one at a time
+                buf[pos++] = '\\';
+                buf[pos++] = 'U';
+                int cp = Character.toCodePoint(c, value.charAt(++i));
+                for (int k=20; k>=0; k-=4) {
+                    buf[pos++] = HEX[(cp >>> k) & 0xf];
+                }
+            } else {
+                writeEscape(c);
+            }
+        }
+
+        require(1);
+        buf[pos++] = '"';
+    }
+
+    private void writeEscape(char c) {
+        buf[pos++] = '\\';
+        switch (c) {
+            case '\b': buf[pos++] = 'b'; return;
+            case '\f': buf[pos++] = 'f'; return;
+            case '\n': buf[pos++] = 'n'; return;
+            case '\r': buf[pos++] = 'r'; return;
+            case '\t': buf[pos++] = 't'; return;
+        }
+
+        if (c <= 0xff) {
+            buf[pos++] = 'x';
+        } else {
+            buf[pos++] = 'u';
+            buf[pos++] = HEX[c >>> 12];
+            buf[pos++] = HEX[(c >>> 8) & 0xf];
+        }
+        buf[pos++] = HEX[(c >>> 4) & 0xf];
+        buf[pos++] = HEX[c & 0xf];
+    }
+
+    private void newLine() throws IOException {
+        require(1 + nesting);
+        buf[pos++] = '\n';
+        for (int i=0; i<nesting; i++) {
+            buf[pos++] = '\t';
+        }
+    }
+
+    private void writeAscii(String s) throws IOException {
+        for (int i=0; i<s.length(); i+=MAX_ATOM) {
+            int n = Math.min(MAX_ATOM, s.length()-i);
+            require(n);
+            for (int j=0; j<n; j++) {
+                buf[pos++] = (byte) s.charAt(i+j);
+            }
+        }
+    }
+
+    private void write(char c) throws IOException {
+        require(1);
+        buf[pos++] = (byte) c;
+    }
+
+    private void require(int n) throws IOException {
+        if (buf.length - pos < n) {
+            drain();
+            if (buf.length < n) {
+                throw new IllegalArgumentException("atom of "+n+" bytes exceeds buffer size");
+            }
+        }
+    }
+
+    private void drain() throws IOException {
+        if (pos > 0) {
+            sink.write(buf, pos);
+            pos = 0;
+        }
+    }
+
+    // validation
+    //==================================================================================================================
+    private static void requireIdentifier(String identifier) {
+        requireNonNull(identifier, "identifier");
+        if (!isIdentifier(identifier, 0) || identifier.equals("null") || identifier.equals("true") || identifier.equals("false")) {
+            throw new IllegalArgumentException("invalid identifier: "+identifier);
+        }
+    }
+
+    private static void requireName(String name) {
+        if (name.isEmpty() || (name.charAt(0) != '$' && name.charAt(0) != '%') || !isIdentifier(name, 1)) {
+            throw new IllegalArgumentException("invalid name: "+name);
+        }
+    }
+
+    private static DataTypeToken requireDataType(String dataType) {
+        requireNonNull(dataType, "data type");
+        DataTypeToken ret = DataTypeToken.create(0, 0, dataType);
+        if (ret == null) {
+            throw new IllegalArgumentException("unknown data type: "+dataType);
+        }
+        return ret;
+    }
+
+    private static boolean isIdentifier(String s, int off) {
+        if (s.length() <= off) {
+            return false;
+        }
+
+        char c = s.charAt(off);
+        if (!(c >= 'A' && c <= 'Z') && !(c >= 'a' && c <= 'z') && c != '_') {
+            return false;
+        }
+
+        for (int i=off+1; i<s.length(); i++) {
+            c = s.charAt(i);
+            if (!(c >= 'A' && c <= 'Z') && !(c >= 'a' && c <= 'z') && !(c >= '0' && c <= '9') && c != '_') {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    // inner types
+    //==================================================================================================================
+    private static final class Frame {
+        static final int
+            CUSTOM     = 0,
+            LIST       = 1,
+            ARRAY_LIST = 2,
+            SUBARRAY   = 3;
+
+        int           kind;
+        DataTypeToken type;
+        int           subarraySize;
+
+        /** properties written while the header is open; child structures or elements written afterwards */
+        int     count;
+        boolean headerOpen;
+
+        static String describe(int kind) {
+            switch (kind) {
+                case CUSTOM:     return "custom structure";
+                case LIST:       return "data list";
+                case ARRAY_LIST: return "data array list";
+                default:         return "sub-array";
+            }
+        }
+    }
+
+    private interface Sink {
+        void write(byte[] b, int len) throws IOException;
+        void flush() throws IOException;
+        void close() throws IOException;
+    }
+
+    private static final class StreamSink implements Sink {
+        private final OutputStream out;
+
+        StreamSink(OutputStream out) {
+            this.out = out;
+        }
+
+        @Override
+        public void write(byte[] b, int len) throws IOException {
+            out.write(b, 0, len);
+        }
+
+        @Override
+        public void flush() throws IOException {
+            out.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            out.close();
+        }
+    }
+
+    private static final class ChannelSink implements Sink {
+        private final WritableByteChannel out;
+
+        ChannelSink(WritableByteChannel out) {
+            this.out = out;
+        }
+
+        @Override
+        public void write(byte[] b, int len) throws IOException {
+            ByteBuffer bb = ByteBuffer.wrap(b, 0, len);
+            while (bb.hasRemaining()) {
+                out.write(bb);
+            }
+        }
+
+        @Override
+        public void flush() {
+            // channels are unbuffered
+        }
+
+        @Override
+        public void close() throws IOException {
+            out.close();
+        }
+    }
+
+    /**
+     * Decodes the writer's UTF-8 output back to characters. The writer never splits a character's encoding across two
+     * blocks, and only ever emits one, two and three byte sequences, so decoding needs no state between blocks.
+     */
+    private static final class WriterSink implements Sink {
+        private final Writer out;
+        private char[] chars = new char[0];
+
+        WriterSink(Writer out) {
+            this.out = out;
+        }
+
+        @Override
+        public void write(byte[] b, int len) throws IOException {
+            if (chars.length < len) {
+                chars = new char[len];
+            }
+
+            int n = 0;
+            for (int i=0; i<len; i++) {
+                int c = b[i];
+                if (c >= 0) {
+                    chars[n++] = (char) c;
+                } else if ((c & 0xe0) == 0xc0) {
+                    chars[n++] = (char) (((c & 0x1f) << 6) | (b[++i] & 0x3f));
+                } else {
+                    chars[n++] = (char) (((c & 0x0f) << 12) | ((b[++i] & 0x3f) << 6) | (b[++i] & 0x3f));
+                }
+            }
+            out.write(chars, 0, n);
+        }
+
+        @Override
+        public void flush() throws IOException {
+            out.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            out.close();
+        }
+    }
+
+    private static final class WritingListener implements ODDLListener<Void> {
+        private final ODDLWriter out;
+
+        WritingListener(ODDLWriter out) {
+            this.out = out;
+        }
+
+        @Override
+        public void begin() {
+        }
+
+        @Override
+        public Void end(int row, int col) {
+            try {
+                out.flush();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return null;
+        }
+
+        @Override
+        public void value(BoolToken value) {
+            try {
+                out.value(value.getValue());
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        @Override
+        public void value(IntToken value) {
+            try {
+                out.value(value.getValue());
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        @Override
+        public void value(FloatToken value) {
+            try {
+                out.value(value.getValue());
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        @Override
+        public void value(StringToken value) {
+            try {
+                out.value(value.getValue());
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        @Override
+        public void value(RefToken value) {
+            try {
+                out.ref(names(value));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        @Override
+        public void value(DataTypeToken value) {
+            try {
+                out.type(value.getText());
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        @Override
+        public void beginListStructure(DataTypeToken dataType, NameToken name) {
+            try {
+                out.beginListStructure(dataType.getText(), name(name));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        @Override
+        public void endListStructure(DataTypeToken dataType, NameToken name) {
+            try {
+                out.endListStructure();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        @Override
+        public void beginArrayListStructure(DataTypeToken dataType, int subarraySize, NameToken name) {
+            try {
+                out.beginArrayListStructure(dataType.getText(), subarraySize, name(name));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        @Override
+        public void endArrayListStructure(DataTypeToken dataType, int subarraySize, NameToken name) {
+            try {
+                out.endArrayListStructure();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        @Override
+        public void beginSubArray(DataTypeToken dataType, int subarraySize) {
+            try {
+                out.beginSubArray();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        @Override
+        public void endSubArray(DataTypeToken dataType, int subarraySize) {
+            try {
+                out.endSubArray();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        @Override
+        public void beginCustomStructure(IdentifierToken identifier, NameToken name, PropertyMap properties) {
+            try {
+                out.beginCustomStructure(identifier.getText(), name(name));
+
+                for (PropertyMap.Entry e : properties) {
+                    PropertyValueToken v = e.getValue();
+                    switch (v.getType()) {
+                        case BOOL:      out.property(e.getKey(), v.asBool().getValue()); break;
+                        case INT:       out.property(e.getKey(), v.asInt().getValue()); break;
+                        case FLOAT:     out.property(e.getKey(), v.asFloat().getValue()); break;
+                        case STRING:    out.property(e.getKey(), v.asString().getValue()); break;
+                        case REF:       out.refProperty(e.getKey(), names(v.asRef())); break;
+                        case DATA_TYPE: out.typeProperty(e.getKey(), v.getText()); break;
+                        default:        throw new IllegalArgumentException(v.toString());
+                    }
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        @Override
+        public void endCustomStructure(IdentifierToken identifier, NameToken name, PropertyMap properties) {
+            try {
+                out.endCustomStructure();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        private static String name(NameToken name) {
+            return name == null || name.isNullName() ? null : name.getText();
+        }
+
+        private static String[] names(RefToken ref) {
+            String[] ret = new String[ref.getValue().size()];
+            for (int i=0; i<ret.length; i++) {
+                ret[i] = ref.getValue().get(i).getText();
+            }
+            return ret;
+        }
+    }
+}
@@ -0,0 +1,106 @@
+/*
+ * Jiggatech OpenDDL Parser
+ *
+ * Copyright (c) 2019 Nikita Leonidov
+ *
+ * MIT License
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.jiggawatt.jt.oddl;
+
+import java.io.IOException;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+
+/**
+ * Runs an {@link ODDLReader} on a producer thread and replays the events it produces to a listener on the calling
+ * thread. The two threads are connected by an {@link EventRing}, so tokenizing and listener work overlap instead of
+ * serializing. A read returns only once the producer has stopped using the reader, whether it succeeds or fails.
+ *
+ * @author Nikita Leonidov
+ */
+final class PipelinedRead {
+
+    private final ODDLReader reader;
+    private final EventRing  ring;
+
+    private final CountDownLatch done = new CountDownLatch(1);
+
+    PipelinedRead(ODDLReader reader, int capacity) {
+        this.reader = reader;
+        this.ring   = new EventRing(capacity);
+    }
+
+    <T> T read(ODDLListener<T> listener, Executor executor) throws IOException, ODDLParseException, ODDLFormatException {
+        final Thread consumer = Thread.currentThread();
+        executor.execute(() -> {
+            if (Thread.currentThread() == consumer) {
+                throw new IllegalArgumentException("executor must run the tokenizer on another thread");
+            }
+            produce();
+        });
+
+        try {
+            T ret = ring.drain(listener);
+            awaitProducer();
+            return ret;
+        } catch (Throwable e) {
+            ring.close();
+            // the producer stops once the ring fills up or the document ends
+            awaitProducer();
+            throw e;
+        }
+    }
+
+    // producer
+    //==================================================================================================================
+    private void produce() {
+        try {
+            reader.read(ring.publisher());
+        } catch (CancellationException e) {
+            // the consumer failed and has closed the ring
+        } catch (Throwable e) {
+            try {
+                ring.fail(e);
+            } catch (CancellationException ignored) {
+                // nobody left to report to
+            }
+        } finally {
+            done.countDown();
+        }
+    }
+
+    private void awaitProducer() {
+        boolean interrupted = false;
+        while (true) {
+            try {
+                done.await();
+                break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
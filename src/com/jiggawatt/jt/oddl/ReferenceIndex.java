@@ -0,0 +1,142 @@
+/*
+ * Jiggatech OpenDDL Parser
+ *
+ * Copyright (c) 2019 Nikita Leonidov
+ *
+ * MIT License
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.jiggawatt.jt.oddl;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Maps OpenDDL names to the structures that declare them. Global (<tt>$</tt>) names are kept in a single hash map for
+ * the whole document; local (<tt>%</tt>) names are kept by the {@link StructureNode} that encloses them. Resolving a
+ * reference therefore takes one hash lookup per name in the reference, except that a leading local name is looked up
+ * in each enclosing structure in turn, from the innermost outwards, until one declares it.
+ *
+ * @author Nikita Leonidov
+ */
+public final class ReferenceIndex {
+
+    private final StructureNode root = new StructureNode(null, null, null, null);
+    private final Map<String, StructureNode> globals = new HashMap<>();
+
+    /**
+     * Creates an empty index.
+     */
+    public ReferenceIndex() {
+    }
+
+    /**
+     * @return the node representing the document; top-level structures are its children
+     */
+    public StructureNode getRoot() {
+        return root;
+    }
+
+    /**
+     * Looks up a structure by its global name.
+     * @param name a global name, without the <tt>$</tt> prefix
+     * @return the structure with the given global name, or <tt>null</tt> if none has been indexed
+     */
+    public StructureNode getGlobal(String name) {
+        return globals.get(name);
+    }
+
+    /**
+     * Resolves a reference according to the OpenDDL scoping rules. A reference starting with a global name is looked
+     * up in the global name map. A reference starting with a local name is looked up among the children of
+     * <tt>scope</tt>, then among the children of each enclosing structure in turn. Every subsequent name selects a
+     * locally named child of the structure found so far.
+     *
+     * @param ref    the reference to resolve
+     * @param scope  the structure in which the reference appears
+     * @return the referenced structure, or <tt>null</tt> if the reference is null or cannot be resolved
+     */
+    public StructureNode resolve(RefToken ref, StructureNode scope) {
+        List<NameToken> names = ref.getValue();
+        if (names.isEmpty()) {
+            return null;
+        }
+
+        StructureNode node = resolveFirst(names.get(0), scope);
+
+        for (int i=1; i<names.size() && node!=null; i++) {
+            node = node.getLocal(names.get(i).getValue());
+        }
+
+        return node;
+    }
+
+    StructureNode resolveFirst(NameToken first, StructureNode scope) {
+        if (first.isGlobal()) {
+            return globals.get(first.getValue());
+        }
+
+        for (StructureNode s=scope; s!=null; s=s.getParent()) {
+            StructureNode ret = s.getLocal(first.getValue());
+            if (ret != null) {
+                return ret;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Creates a node for a newly encountered structure and indexes it under its name, if it has one.
+     * @throws ODDLFormatException if the name is already taken in its scope
+     */
+    StructureNode add(StructureNode parent, IdentifierToken identifier, DataTypeToken dataType, NameToken name) throws ODDLFormatException {
+        StructureNode node = new StructureNode(parent, identifier, dataType, name);
+
+        if (name != null && !name.isNullName()) {
+            boolean unique = name.isGlobal()
+                    ? globals.putIfAbsent(name.getValue(), node) == null
+                    : parent.putLocal(name.getValue(), node);
+
+            if (!unique) {
+                throw new ODDLFormatException(name, "duplicate name "+name.getText());
+            }
+        }
+
+        return node;
+    }
+
+    /**
+     * Removes a node from the index, so that references can no longer resolve to it.
+     */
+    void remove(StructureNode node) {
+        NameToken name = node.getName();
+        if (name == null || name.isNullName()) {
+            return;
+        }
+
+        if (name.isGlobal()) {
+            globals.remove(name.getValue(), node);
+        } else {
+            node.getParent().removeLocal(name.getValue(), node);
+        }
+    }
+}
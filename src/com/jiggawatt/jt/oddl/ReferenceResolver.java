@@ -0,0 +1,234 @@
+/*
+ * Jiggatech OpenDDL Parser
+ *
+ * Copyright (c) 2019 Nikita Leonidov
+ *
+ * MIT License
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.jiggawatt.jt.oddl;
+
+import java.util.*;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * A listener that builds a {@link ReferenceIndex} while the document is parsed, and forwards every event to another
+ * listener. All references found in property lists and <tt>ref</tt> data lists are recorded along with the structure
+ * in which they appear; once the reader reaches the end of the document they are resolved in a single pass, before the
+ * wrapped listener's {@link ODDLListener#end(int, int) end} method is called.
+ * <p>
+ * The wrapped listener may call {@link #current()} from any of its <tt>begin</tt> methods to obtain the node for the
+ * structure being entered, and {@link #getTarget(RefToken)} from its <tt>end</tt> method to look up the structure a
+ * reference points to:
+ * <pre>
+ * {@code
+ * ReferenceResolver<Scene> resolver = new ReferenceResolver<>(sceneListener);
+ * Scene scene = new ODDLReader(in).read(resolver);
+ * }
+ * </pre>
+ *
+ * @author Nikita Leonidov
+ */
+public final class ReferenceResolver<T> implements ODDLListener<T> {
+
+    private final ODDLListener<T> delegate;
+    private final boolean         requireResolved;
+
+    private final ReferenceIndex       index = new ReferenceIndex();
+    private final Deque<StructureNode> stack = new ArrayDeque<>();
+
+    private final List<RefToken>      refs   = new ArrayList<>();
+    private final List<StructureNode> scopes = new ArrayList<>();
+
+    private final Map<RefToken, StructureNode> targets    = new IdentityHashMap<>();
+    private final List<RefToken>               unresolved = new ArrayList<>();
+
+    /**
+     * Creates a resolver that records unresolved references without failing.
+     * @param delegate the listener to which all events are forwarded
+     */
+    public ReferenceResolver(ODDLListener<T> delegate) {
+        this(delegate, false);
+    }
+
+    /**
+     * @param delegate         the listener to which all events are forwarded
+     * @param requireResolved  when <tt>true</tt>, {@link #end(int, int)} throws an {@link ODDLFormatException} if any
+     *                         reference cannot be resolved
+     */
+    public ReferenceResolver(ODDLListener<T> delegate, boolean requireResolved) {
+        this.delegate        = requireNonNull(delegate, "delegate");
+        this.requireResolved = requireResolved;
+    }
+
+    /**
+     * @return the index of all structures seen so far
+     */
+    public ReferenceIndex getIndex() {
+        return index;
+    }
+
+    /**
+     * @return the node for the innermost structure the reader is in, or the root node at the top level
+     */
+    public StructureNode current() {
+        return stack.isEmpty() ? index.getRoot() : stack.peek();
+    }
+
+    /**
+     * Looks up the structure a reference was resolved to. Only valid once the reader has reached the end of the
+     * document.
+     * @param ref a reference token passed to the wrapped listener
+     * @return the referenced structure, or <tt>null</tt> if the reference is null or unresolved
+     */
+    public StructureNode getTarget(RefToken ref) {
+        return targets.get(ref);
+    }
+
+    /**
+     * @return the references that could not be resolved, in document order; only valid once the reader has reached the
+     * end of the document
+     */
+    public List<RefToken> getUnresolved() {
+        return Collections.unmodifiableList(unresolved);
+    }
+
+    @Override
+    public void begin() throws ODDLFormatException {
+        delegate.begin();
+    }
+
+    @Override
+    public T end(int row, int col) throws ODDLFormatException {
+        for (int i=0; i<refs.size(); i++) {
+            RefToken      ref    = refs.get(i);
+            StructureNode target = index.resolve(ref, scopes.get(i));
+            if (target != null) {
+                targets.put(ref, target);
+            } else {
+                unresolved.add(ref);
+            }
+        }
+
+        if (requireResolved && !unresolved.isEmpty()) {
+            throw new ODDLFormatException(
+                unresolved.get(0),
+                unresolved.size()+" unresolved reference(s), first: "+unresolved.get(0).getText()
+            );
+        }
+
+        return delegate.end(row, col);
+    }
+
+    @Override
+    public void value(BoolToken value) throws ODDLFormatException {
+        delegate.value(value);
+    }
+
+    @Override
+    public void value(IntToken value) throws ODDLFormatException {
+        delegate.value(value);
+    }
+
+    @Override
+    public void value(FloatToken value) throws ODDLFormatException {
+        delegate.value(value);
+    }
+
+    @Override
+    public void value(StringToken value) throws ODDLFormatException {
+        delegate.value(value);
+    }
+
+    @Override
+    public void value(RefToken value) throws ODDLFormatException {
+        record(value, current());
+        delegate.value(value);
+    }
+
+    @Override
+    public void value(DataTypeToken value) throws ODDLFormatException {
+        delegate.value(value);
+    }
+
+    @Override
+    public void beginListStructure(DataTypeToken dataType, NameToken name) throws ODDLFormatException {
+        stack.push(index.add(current(), null, dataType, name));
+        delegate.beginListStructure(dataType, name);
+    }
+
+    @Override
+    public void endListStructure(DataTypeToken dataType, NameToken name) throws ODDLFormatException {
+        delegate.endListStructure(dataType, name);
+        stack.pop().close();
+    }
+
+    @Override
+    public void beginArrayListStructure(DataTypeToken dataType, int subarraySize, NameToken name) throws ODDLFormatException {
+        stack.push(index.add(current(), null, dataType, name));
+        delegate.beginArrayListStructure(dataType, subarraySize, name);
+    }
+
+    @Override
+    public void endArrayListStructure(DataTypeToken dataType, int subarraySize, NameToken name) throws ODDLFormatException {
+        delegate.endArrayListStructure(dataType, subarraySize, name);
+        stack.pop().close();
+    }
+
+    @Override
+    public void beginSubArray(DataTypeToken dataType, int subarraySize) throws ODDLFormatException {
+        delegate.beginSubArray(dataType, subarraySize);
+    }
+
+    @Override
+    public void endSubArray(DataTypeToken dataType, int subarraySize) throws ODDLFormatException {
+        delegate.endSubArray(dataType, subarraySize);
+    }
+
+    @Override
+    public void beginCustomStructure(IdentifierToken identifier, NameToken name, PropertyMap properties) throws ODDLFormatException {
+        StructureNode node = index.add(current(), identifier, null, name);
+        stack.push(node);
+
+        // property references are scoped to the structure that declares them
+        for (PropertyValueToken value : properties.values()) {
+            if (value.isRef()) {
+                record(value.asRef(), node);
+            }
+        }
+
+        delegate.beginCustomStructure(identifier, name, properties);
+    }
+
+    @Override
+    public void endCustomStructure(IdentifierToken identifier, NameToken name, PropertyMap properties) throws ODDLFormatException {
+        delegate.endCustomStructure(identifier, name, properties);
+        stack.pop().close();
+    }
+
+    private void record(RefToken ref, StructureNode scope) {
+        if (!ref.isNullName()) {
+            refs.add(ref);
+            scopes.add(scope);
+        }
+    }
+}
@@ -0,0 +1,165 @@
+/*
+ * Jiggatech OpenDDL Parser
+ *
+ * Copyright (c) 2019 Nikita Leonidov
+ *
+ * MIT License
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package com.jiggawatt.jt.oddl;
+
+import java.util.Arrays;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * A listener that checks the events it receives against an {@link ODDLParsePlan}, and forwards every event to another
+ * listener. Unlike {@link ODDLReader#setPlan(ODDLParsePlan)}, a schema validator works with any source of events, such
+ * as an {@link ODDLBinaryReader}, and can be combined with other wrapping listeners:
+ * <pre>
+ * {@code
+ * Scene scene = new ODDLBinaryReader(in).read(new SchemaValidator<>(sceneListener, plan));
+ * }
+ * </pre>
+ * The validator keeps only the plan node of each open custom structure, so checking takes constant memory per level
+ * of nesting and happens in the same pass as parsing. Each event is checked before it is forwarded; a document that
+ * does not match the plan fails with an {@link ODDLFormatException} at the first structure, property or list that does
+ * not match.
+ * <p>
+ * Validators are not thread-safe, but may be reused for any number of documents read one after another.
+ *
+ * @author Nikita Leonidov
+ */
+public final class SchemaValidator<T> implements ODDLListener<T> {
+
+    private final ODDLListener<T> delegate;
+    private final ODDLParsePlan   plan;
+
+    /** plan nodes of the document and each open custom structure; the innermost is at <tt>depth</tt> */
+    private ODDLParsePlan.Node[] stack = new ODDLParsePlan.Node[16];
+    private int                  depth;
+
+    /**
+     * @param delegate the listener to which all events are forwarded
+     * @param plan     the plan against which events are checked
+     */
+    public SchemaValidator(ODDLListener<T> delegate, ODDLParsePlan plan) {
+        this.delegate = requireNonNull(delegate, "delegate");
+        this.plan     = requireNonNull(plan, "plan");
+    }
+
+    @Override
+    public void begin() throws ODDLFormatException {
+        depth    = 0;
+        stack[0] = plan.root();
+        delegate.begin();
+    }
+
+    @Override
+    public T end(int row, int col) throws ODDLFormatException {
+        return delegate.end(row, col);
+    }
+
+    @Override
+    public void value(BoolToken value) throws ODDLFormatException {
+        delegate.value(value);
+    }
+
+    @Override
+    public void value(IntToken value) throws ODDLFormatException {
+        delegate.value(value);
+    }
+
+    @Override
+    public void value(FloatToken value) throws ODDLFormatException {
+        delegate.value(value);
+    }
+
+    @Override
+    public void value(StringToken value) throws ODDLFormatException {
+        delegate.value(value);
+    }
+
+    @Override
+    public void value(RefToken value) throws ODDLFormatException {
+        delegate.value(value);
+    }
+
+    @Override
+    public void value(DataTypeToken value) throws ODDLFormatException {
+        delegate.value(value);
+    }
+
+    @Override
+    public void beginListStructure(DataTypeToken dataType, NameToken name) throws ODDLFormatException {
+        stack[depth].checkList(dataType, -1);
+        delegate.beginListStructure(dataType, name);
+    }
+
+    @Override
+    public void endListStructure(DataTypeToken dataType, NameToken name) throws ODDLFormatException {
+        delegate.endListStructure(dataType, name);
+    }
+
+    @Override
+    public void beginArrayListStructure(DataTypeToken dataType, int subarraySize, NameToken name) throws ODDLFormatException {
+        stack[depth].checkList(dataType, subarraySize);
+        delegate.beginArrayListStructure(dataType, subarraySize, name);
+    }
+
+    @Override
+    public void endArrayListStructure(DataTypeToken dataType, int subarraySize, NameToken name) throws ODDLFormatException {
+        delegate.endArrayListStructure(dataType, subarraySize, name);
+    }
+
+    @Override
+    public void beginSubArray(DataTypeToken dataType, int subarraySize) throws ODDLFormatException {
+        delegate.beginSubArray(dataType, subarraySize);
+    }
+
+    @Override
+    public void endSubArray(DataTypeToken dataType, int subarraySize) throws ODDLFormatException {
+        delegate.endSubArray(dataType, subarraySize);
+    }
+
+    @Override
+    public void beginCustomStructure(IdentifierToken identifier, NameToken name, PropertyMap properties) throws ODDLFormatException {
+        final ODDLParsePlan.Node node = stack[depth].enter(identifier);
+        for (PropertyMap.Entry e : properties) {
+            // property maps do not keep their key tokens, so unknown properties are reported at their values
+            node.checkProperty(e.getKey(), e.getValue(), e.getValue());
+        }
+        node.checkRequired(identifier, properties);
+
+        if (++depth == stack.length) {
+            stack = Arrays.copyOf(stack, depth * 2);
+        }
+        stack[depth] = node;
+        delegate.beginCustomStructure(identifier, name, properties);
+    }
+
+    @Override
+    public void endCustomStructure(IdentifierToken identifier, NameToken name, PropertyMap properties) throws ODDLFormatException {
+        stack[depth--] = null;
+        delegate.endCustomStructure(identifier, name, properties);
+    }
+}
@@ -0,0 +1,390 @@
+/*
+ * Jiggatech OpenDDL Parser
+ *
+ * Copyright (c) 2019 Nikita Leonidov
+ *
+ * MIT License
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.jiggawatt.jt.oddl;
+
+import java.util.*;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * A listener that resolves references while the document is being parsed, without keeping the whole document in
+ * memory. Every event is forwarded to a wrapped listener. A reference whose target has already been seen is resolved
+ * immediately; any other reference is kept as a pending fixup and resolved as soon as the structure it names is
+ * encountered. Either way, the outcome is reported to a {@link FixupHandler}.
+ * <p>
+ * The resolver holds on to a structure only while something can still refer to it:
+ * <ul>
+ *     <li>open structures, since references may resolve to them or to their future children;</li>
+ *     <li>closed structures with global names, and closed structures with local names whose parent is still held;</li>
+ *     <li>structures containing pending fixups.</li>
+ * </ul>
+ * Unnamed structures are forgotten as soon as they close. Globally named structures are kept until the listener calls
+ * {@link #release(StructureNode)}, typically once it knows that nothing later in the document will refer to them.
+ * Memory use is therefore bounded by the live reference frontier rather than by the size of the document.
+ *
+ * @author Nikita Leonidov
+ */
+public final class StreamingReferenceResolver<T> implements ODDLListener<T> {
+
+    /**
+     * Receives the outcome of every non-null reference seen by a {@link StreamingReferenceResolver}.
+     */
+    public interface FixupHandler {
+
+        /**
+         * Called once the structure a reference points to is known. This happens immediately for backward references,
+         * and as soon as the target structure begins for forward references.
+         * @param ref     the reference
+         * @param source  the structure in which the reference appears
+         * @param target  the referenced structure
+         * @throws ODDLFormatException to abort parsing
+         */
+        void resolved(RefToken ref, StructureNode source, StructureNode target) throws ODDLFormatException;
+
+        /**
+         * Called as soon as it is certain that a reference cannot be resolved: when the structure that should have
+         * contained its target closes, or at the end of the document.
+         * @param ref     the reference
+         * @param source  the structure in which the reference appears
+         * @throws ODDLFormatException to abort parsing
+         */
+        void unresolved(RefToken ref, StructureNode source) throws ODDLFormatException;
+    }
+
+    private final ODDLListener<T> delegate;
+    private final FixupHandler    handler;
+
+    private final ReferenceIndex       index = new ReferenceIndex();
+    private final Deque<StructureNode> stack = new ArrayDeque<>();
+
+    /** fixups whose first name is global and has not been seen yet, keyed by name value */
+    private final Map<String, List<Fixup>> awaitingGlobal = new HashMap<>();
+
+    /** fixups waiting for an open structure to gain a child with a given local name */
+    private final Map<StructureNode, Map<String, List<Fixup>>> awaitingLocal = new HashMap<>();
+
+    private int pending;
+
+    /**
+     * @param delegate  the listener to which all events are forwarded
+     * @param handler   receives resolved and unresolved references; often the same object as <tt>delegate</tt>
+     */
+    public StreamingReferenceResolver(ODDLListener<T> delegate, FixupHandler handler) {
+        this.delegate = requireNonNull(delegate, "delegate");
+        this.handler  = requireNonNull(handler, "handler");
+    }
+
+    /**
+     * @return the node for the innermost structure the reader is in, or the root node at the top level
+     */
+    public StructureNode current() {
+        return stack.isEmpty() ? index.getRoot() : stack.peek();
+    }
+
+    /**
+     * @return the number of references that are still waiting for their target
+     */
+    public int getPendingCount() {
+        return pending;
+    }
+
+    /**
+     * Tests whether a pending fixup is waiting for the given structure to gain a child. Only open structures can be
+     * awaited in this way.
+     * @param node a structure node
+     * @return <tt>true</tt> if releasing <tt>node</tt> would leave a pending reference without a possible target
+     */
+    public boolean isAwaited(StructureNode node) {
+        return awaitingLocal.containsKey(node);
+    }
+
+    /**
+     * Removes a closed structure from the name index. References encountered later in the document will no longer
+     * resolve to it, and the resolver drops its own reference to the node and its attachment.
+     * @param node a closed structure node
+     * @throws IllegalStateException if the structure is still open
+     */
+    public void release(StructureNode node) {
+        if (node.isOpen()) {
+            throw new IllegalStateException("cannot release open structure "+node);
+        }
+        index.remove(node);
+    }
+
+    @Override
+    public void begin() throws ODDLFormatException {
+        delegate.begin();
+    }
+
+    @Override
+    public T end(int row, int col) throws ODDLFormatException {
+        for (List<Fixup> fixups : awaitingGlobal.values()) {
+            for (Fixup k : fixups) {
+                fail(k);
+            }
+        }
+        awaitingGlobal.clear();
+        closeNode(index.getRoot());
+
+        return delegate.end(row, col);
+    }
+
+    @Override
+    public void value(BoolToken value) throws ODDLFormatException {
+        delegate.value(value);
+    }
+
+    @Override
+    public void value(IntToken value) throws ODDLFormatException {
+        delegate.value(value);
+    }
+
+    @Override
+    public void value(FloatToken value) throws ODDLFormatException {
+        delegate.value(value);
+    }
+
+    @Override
+    public void value(StringToken value) throws ODDLFormatException {
+        delegate.value(value);
+    }
+
+    @Override
+    public void value(RefToken value) throws ODDLFormatException {
+        delegate.value(value);
+        record(value, current());
+    }
+
+    @Override
+    public void value(DataTypeToken value) throws ODDLFormatException {
+        delegate.value(value);
+    }
+
+    @Override
+    public void beginListStructure(DataTypeToken dataType, NameToken name) throws ODDLFormatException {
+        StructureNode node = push(null, dataType, name);
+        delegate.beginListStructure(dataType, name);
+        arrived(node);
+    }
+
+    @Override
+    public void endListStructure(DataTypeToken dataType, NameToken name) throws ODDLFormatException {
+        delegate.endListStructure(dataType, name);
+        closeNode(stack.pop());
+    }
+
+    @Override
+    public void beginArrayListStructure(DataTypeToken dataType, int subarraySize, NameToken name) throws ODDLFormatException {
+        StructureNode node = push(null, dataType, name);
+        delegate.beginArrayListStructure(dataType, subarraySize, name);
+        arrived(node);
+    }
+
+    @Override
+    public void endArrayListStructure(DataTypeToken dataType, int subarraySize, NameToken name) throws ODDLFormatException {
+        delegate.endArrayListStructure(dataType, subarraySize, name);
+        closeNode(stack.pop());
+    }
+
+    @Override
+    public void beginSubArray(DataTypeToken dataType, int subarraySize) throws ODDLFormatException {
+        delegate.beginSubArray(dataType, subarraySize);
+    }
+
+    @Override
+    public void endSubArray(DataTypeToken dataType, int subarraySize) throws ODDLFormatException {
+        delegate.endSubArray(dataType, subarraySize);
+    }
+
+    @Override
+    public void beginCustomStructure(IdentifierToken identifier, NameToken name, PropertyMap properties) throws ODDLFormatException {
+        StructureNode node = push(identifier, null, name);
+        delegate.beginCustomStructure(identifier, name, properties);
+        arrived(node);
+
+        // property references are scoped to the structure that declares them
+        for (PropertyValueToken value : properties.values()) {
+            if (value.isRef()) {
+                record(value.asRef(), node);
+            }
+        }
+    }
+
+    @Override
+    public void endCustomStructure(IdentifierToken identifier, NameToken name, PropertyMap properties) throws ODDLFormatException {
+        delegate.endCustomStructure(identifier, name, properties);
+        closeNode(stack.pop());
+    }
+
+    private StructureNode push(IdentifierToken identifier, DataTypeToken dataType, NameToken name) throws ODDLFormatException {
+        StructureNode node = index.add(current(), identifier, dataType, name);
+        stack.push(node);
+        return node;
+    }
+
+    private void record(RefToken ref, StructureNode scope) throws ODDLFormatException {
+        if (ref.isNullName()) {
+            return;
+        }
+
+        pending++;
+        Fixup fixup = new Fixup(ref, scope);
+        NameToken first = ref.getValue().get(0);
+
+        if (first.isGlobal()) {
+            StructureNode target = index.getGlobal(first.getValue());
+            if (target != null) {
+                advance(fixup, target);
+            } else {
+                awaitingGlobal.computeIfAbsent(first.getValue(), k -> new ArrayList<>()).add(fixup);
+            }
+        } else {
+            // a local first name is searched for in the innermost scope first; wider scopes are only considered once
+            // the inner ones have closed, since until then they may still gain a closer match
+            fixup.searching = true;
+            search(fixup, scope);
+        }
+    }
+
+    /**
+     * Continues resolution of a fixup whose name at index <tt>fixup.next</tt> has been matched by <tt>node</tt>.
+     */
+    private void advance(Fixup fixup, StructureNode node) throws ODDLFormatException {
+        fixup.searching = false;
+        fixup.next++;
+
+        List<NameToken> names = fixup.ref.getValue();
+        while (fixup.next < names.size()) {
+            String name = names.get(fixup.next).getValue();
+            StructureNode child = node.getLocal(name);
+
+            if (child == null) {
+                if (node.isOpen()) {
+                    await(fixup, node, name);
+                } else {
+                    fail(fixup);
+                }
+                return;
+            }
+
+            node = child;
+            fixup.next++;
+        }
+
+        pending--;
+        handler.resolved(fixup.ref, fixup.source, node);
+    }
+
+    private void search(Fixup fixup, StructureNode scope) throws ODDLFormatException {
+        String name = fixup.ref.getValue().get(0).getValue();
+        StructureNode match = scope.getLocal(name);
+        if (match != null) {
+            advance(fixup, match);
+        } else {
+            await(fixup, scope, name);
+        }
+    }
+
+    private void await(Fixup fixup, StructureNode parent, String name) {
+        awaitingLocal
+            .computeIfAbsent(parent, k -> new HashMap<>())
+            .computeIfAbsent(name, k -> new ArrayList<>())
+            .add(fixup);
+    }
+
+    /**
+     * Resolves pending fixups that were waiting for a newly entered structure.
+     */
+    private void arrived(StructureNode node) throws ODDLFormatException {
+        NameToken name = node.getName();
+        if (name == null || name.isNullName()) {
+            return;
+        }
+
+        List<Fixup> fixups;
+        if (name.isGlobal()) {
+            fixups = awaitingGlobal.remove(name.getValue());
+        } else {
+            Map<String, List<Fixup>> byName = awaitingLocal.get(node.getParent());
+            fixups = byName == null ? null : byName.remove(name.getValue());
+            if (byName != null && byName.isEmpty()) {
+                awaitingLocal.remove(node.getParent());
+            }
+        }
+
+        if (fixups != null) {
+            for (Fixup k : fixups) {
+                advance(k, node);
+            }
+        }
+    }
+
+    private void closeNode(StructureNode node) throws ODDLFormatException {
+        node.close();
+
+        Map<String, List<Fixup>> byName = awaitingLocal.remove(node);
+        if (byName != null) {
+            for (List<Fixup> fixups : byName.values()) {
+                for (Fixup k : fixups) {
+                    if (k.searching && node.getParent() != null) {
+                        search(k, node.getParent());
+                    } else {
+                        fail(k);
+                    }
+                }
+            }
+        }
+
+        // locally named nodes are only reachable through their parent, so the link costs nothing; others let go of it
+        // so that a retained node does not keep its ancestors and their attachments alive
+        NameToken name = node.getName();
+        if (name == null || name.isNullName() || name.isGlobal()) {
+            node.detach();
+        }
+    }
+
+    private void fail(Fixup fixup) throws ODDLFormatException {
+        pending--;
+        handler.unresolved(fixup.ref, fixup.source);
+    }
+
+    private static final class Fixup {
+        final RefToken      ref;
+        final StructureNode source;
+
+        /** index of the next name in the reference to be matched */
+        int next;
+
+        /** true while the first (local) name is being looked up in successively wider scopes */
+        boolean searching;
+
+        Fixup(RefToken ref, StructureNode source) {
+            this.ref    = ref;
+            this.source = source;
+        }
+    }
+}
@@ -0,0 +1,133 @@
+/*
+ * Jiggatech OpenDDL Parser
+ *
+ * Copyright (c) 2019 Nikita Leonidov
+ *
+ * MIT License
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package com.jiggawatt.jt.oddl;
+
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A thread-safe store of canonical objects built from structures, used with {@link InterningListener} to share a
+ * single instance among structures with identical content, within a document or across any number of documents.
+ * <p>
+ * Objects are looked up by the content digest of the structure they were built from, and an object is only replaced
+ * by a stored one that is equal to it according to {@link Objects#deepEquals(Object, Object)}. The objects should
+ * therefore be immutable arrays or have value-based <tt>equals</tt> and <tt>hashCode</tt> methods; an object that only
+ * equals itself is stored, but never shared.
+ * <p>
+ * The store holds on to its objects until it is {@link #clear() cleared}.
+ *
+ * @author Nikita Leonidov
+ */
+public final class StructureInterner {
+
+    private final ConcurrentHashMap<Key, Object> canonical = new ConcurrentHashMap<>();
+
+    private final LongAdder hits   = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    /**
+     * Creates an interner that holds no canonical instances yet.
+     */
+    public StructureInterner() {
+    }
+
+    /**
+     * Returns the canonical instance of an object built from a structure.
+     * @param digest the content digest of the structure, as given by {@link InterningListener#digest()}
+     * @param value  an object built from the structure; may not be null
+     * @param <V>    the type of the object
+     * @return a previously interned object with the same digest that is equal to <tt>value</tt>, or <tt>value</tt>
+     * itself if there is none
+     */
+    @SuppressWarnings("unchecked")
+    public <V> V intern(long digest, V value) {
+        final Object ret = canonical.putIfAbsent(new Key(digest, Objects.requireNonNull(value, "value")), value);
+        if (ret == null) {
+            misses.increment();
+            return value;
+        }
+        hits.increment();
+        return (V) ret;
+    }
+
+    /**
+     * @return the number of canonical objects stored
+     */
+    public int size() {
+        return canonical.size();
+    }
+
+    /**
+     * @return the number of calls to {@link #intern(long, Object)} that returned a previously stored object
+     */
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    /**
+     * @return the number of calls to {@link #intern(long, Object)} that stored a new object
+     */
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    /**
+     * Discards all canonical objects. Objects already returned stay shared.
+     */
+    public void clear() {
+        canonical.clear();
+    }
+
+    private static final class Key {
+        final long   digest;
+        final Object value;
+
+        Key(long digest, Object value) {
+            this.digest = digest;
+            this.value  = value;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key k = (Key) o;
+            return digest == k.digest && Objects.deepEquals(value, k.value);
+        }
+
+        @Override
+        public int hashCode() {
+            return Long.hashCode(digest);
+        }
+    }
+}
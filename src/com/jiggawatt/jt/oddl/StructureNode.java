@@ -0,0 +1,165 @@
+/*
+ * Jiggatech OpenDDL Parser
+ *
+ * Copyright (c) 2019 Nikita Leonidov
+ *
+ * MIT License
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.jiggawatt.jt.oddl;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A lightweight record of a structure seen by a {@link ReferenceIndex}. Nodes only hold what is needed to resolve
+ * references: the structure's identifier or data type, its name, its parent, and its locally named children.
+ * Listeners may {@link #attach(Object) attach} their own representation of the structure to a node, which makes it
+ * possible to map a resolved reference back to application objects.
+ *
+ * @author Nikita Leonidov
+ */
+public final class StructureNode {
+
+    private final IdentifierToken identifier;
+    private final DataTypeToken   dataType;
+    private final NameToken       name;
+
+    /** children with local names, keyed by name value; created on first use */
+    private Map<String, StructureNode> locals;
+
+    /** cleared by {@link #detach()} so that retained nodes do not keep their ancestors reachable */
+    private StructureNode parent;
+
+    private Object  attachment;
+    private boolean open = true;
+
+    StructureNode(StructureNode parent, IdentifierToken identifier, DataTypeToken dataType, NameToken name) {
+        this.parent     = parent;
+        this.identifier = identifier;
+        this.dataType   = dataType;
+        this.name       = name;
+    }
+
+    /**
+     * @return the structure enclosing this one, or <tt>null</tt> if this is the root of the document; a
+     * {@link StreamingReferenceResolver} also clears this link once a globally named or unnamed structure is closed
+     */
+    public StructureNode getParent() {
+        return parent;
+    }
+
+    /**
+     * @return the identifier of this custom structure, or <tt>null</tt> if this is a list structure or the root
+     */
+    public IdentifierToken getIdentifier() {
+        return identifier;
+    }
+
+    /**
+     * @return the data type of this list structure, or <tt>null</tt> if this is a custom structure or the root
+     */
+    public DataTypeToken getDataType() {
+        return dataType;
+    }
+
+    /**
+     * @return the name of this structure, or <tt>null</tt> if it has none
+     */
+    public NameToken getName() {
+        return name;
+    }
+
+    /**
+     * @return <tt>true</tt> if this node represents the document itself rather than a structure
+     */
+    public boolean isRoot() {
+        return identifier == null && dataType == null;
+    }
+
+    /**
+     * @return <tt>true</tt> until the reader has passed the closing brace of this structure
+     */
+    public boolean isOpen() {
+        return open;
+    }
+
+    /**
+     * Looks up an immediate child of this structure by its local name.
+     * @param name a local name, without the <tt>%</tt> prefix
+     * @return the child with the given local name, or <tt>null</tt> if there is none
+     */
+    public StructureNode getLocal(String name) {
+        return locals == null ? null : locals.get(name);
+    }
+
+    /**
+     * Attaches an arbitrary object to this node, replacing any previous attachment.
+     * @param attachment the object to attach; may be <tt>null</tt>
+     */
+    public void attach(Object attachment) {
+        this.attachment = attachment;
+    }
+
+    /**
+     * @return the object most recently {@link #attach(Object) attached} to this node, or <tt>null</tt> if none
+     */
+    public Object attachment() {
+        return attachment;
+    }
+
+    boolean putLocal(String name, StructureNode child) {
+        if (locals == null) {
+            locals = new HashMap<>();
+        }
+        return locals.putIfAbsent(name, child) == null;
+    }
+
+    void removeLocal(String name, StructureNode child) {
+        if (locals != null) {
+            locals.remove(name, child);
+        }
+    }
+
+    void close() {
+        open = false;
+    }
+
+    void detach() {
+        parent = null;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("StructureNode{");
+        if (identifier != null) {
+            sb.append(identifier.getText());
+        } else if (dataType != null) {
+            sb.append(dataType.getText());
+        } else {
+            sb.append("<root>");
+        }
+        if (name != null) {
+            sb.append(' ').append(name.getText());
+        }
+        return sb.append('}').toString();
+    }
+}
@@ -0,0 +1,196 @@
+/*
+ * Jiggatech OpenDDL Parser
+ *
+ * Copyright (c) 2019 Nikita Leonidov
+ *
+ * MIT License
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.jiggawatt.jt.oddl;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Publishes the top-level structures of a document, reading each one only once the subscriber has requested it.
+ * Created by {@link ODDLReader#publisher(Supplier, Executor)}.
+ *
+ * @author Nikita Leonidov
+ */
+final class StructurePublisher<T> implements Flow.Publisher<T> {
+
+    private final ODDLReader                                      reader;
+    private final Supplier<? extends ODDLListener<? extends T>> mapper;
+    private final Executor                                        executor;
+
+    private final AtomicBoolean subscribed = new AtomicBoolean();
+
+    StructurePublisher(ODDLReader reader, Supplier<? extends ODDLListener<? extends T>> mapper, Executor executor) {
+        this.reader   = reader;
+        this.mapper   = requireNonNull(mapper, "mapper");
+        this.executor = requireNonNull(executor, "executor");
+    }
+
+    @Override
+    public void subscribe(Flow.Subscriber<? super T> subscriber) {
+        requireNonNull(subscriber, "subscriber");
+        if (!subscribed.compareAndSet(false, true)) {
+            subscriber.onSubscribe(new Flow.Subscription() {
+                @Override public void request(long n) {}
+                @Override public void cancel() {}
+            });
+            subscriber.onError(new IllegalStateException("a document can only be published to one subscriber"));
+            return;
+        }
+        new Subscription(subscriber).start();
+    }
+
+    /**
+     * Signals the subscriber from a drain loop on the executor. Requests and cancellation may arrive on any thread;
+     * they only update counters and flags, and schedule the loop if it is not already running.
+     */
+    private final class Subscription implements Flow.Subscription, Runnable {
+        private final Flow.Subscriber<? super T> subscriber;
+
+        private final AtomicLong    requested = new AtomicLong();
+        /** the number of pending drain requests; the drain loop runs while this is non-zero */
+        private final AtomicInteger wip       = new AtomicInteger();
+
+        private volatile boolean   cancelled;
+        private volatile Throwable badRequest;
+
+        // accessed only by the drain loop
+        private boolean started;
+        private boolean done;
+
+        Subscription(Flow.Subscriber<? super T> subscriber) {
+            this.subscriber = subscriber;
+        }
+
+        void start() {
+            wip.set(1);
+            executor.execute(this);
+        }
+
+        @Override
+        public void request(long n) {
+            if (n <= 0) {
+                badRequest = new IllegalArgumentException("non-positive request: " + n);
+            } else {
+                long r, u;
+                do {
+                    r = requested.get();
+                    u = r + n < 0 ? Long.MAX_VALUE : r + n;
+                } while (!requested.compareAndSet(r, u));
+            }
+            schedule();
+        }
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+        }
+
+        private void schedule() {
+            if (wip.getAndIncrement() == 0) {
+                executor.execute(this);
+            }
+        }
+
+        @Override
+        public void run() {
+            if (!started) {
+                started = true;
+                subscriber.onSubscribe(this);
+            }
+
+            int missed = 1;
+            while (true) {
+                if (!done) {
+                    drain();
+                }
+                missed = wip.addAndGet(-missed);
+                if (missed == 0) {
+                    break;
+                }
+            }
+        }
+
+        private void drain() {
+            final long r = requested.get();
+            long e = 0;
+            while (true) {
+                if (cancelled) {
+                    done = true;
+                    return;
+                }
+                if (badRequest != null) {
+                    fail(badRequest);
+                    return;
+                }
+
+                final T next;
+                try {
+                    if (!reader.hasNextStructure()) {
+                        done = true;
+                        subscriber.onComplete();
+                        return;
+                    }
+                    if (e == r) {
+                        break;
+                    }
+                    next = reader.readStructure(mapper.get());
+                    if (next == null) {
+                        throw new NullPointerException("mapper produced null");
+                    }
+                } catch (Exception err) {
+                    fail(err);
+                    return;
+                }
+
+                try {
+                    subscriber.onNext(next);
+                } catch (RuntimeException | Error err) {
+                    // a failing subscriber is considered to have cancelled; let the executor report the error
+                    done      = true;
+                    cancelled = true;
+                    throw err;
+                }
+                e++;
+            }
+
+            if (r != Long.MAX_VALUE) {
+                requested.addAndGet(-e);
+            }
+        }
+
+        private void fail(Throwable err) {
+            done = true;
+            subscriber.onError(err);
+        }
+    }
+}
@@ -0,0 +1,308 @@
+/*
+ * Jiggatech OpenDDL Parser
+ *
+ * Copyright (c) 2019 Nikita Leonidov
+ *
+ * MIT License
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.jiggawatt.jt.oddl;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Parses the top-level structures of an in-memory document, one element per structure. The whole document is first
+ * scanned for the closing braces of top-level structures, which only requires skipping strings, character literals
+ * and comments; the resulting segments are then parsed independently, so a parallel stream splits parsing work
+ * itself rather than just the work downstream of a sequential parse.
+ *
+ * @author Nikita Leonidov
+ */
+final class StructureSpliterator<T> implements Spliterator<T> {
+
+    private final CharSequence                                  text;
+    private final Segments                                      segments;
+    private final Supplier<? extends ODDLListener<? extends T>> mapper;
+
+    private int lo;
+    private final int hi;
+
+    StructureSpliterator(CharSequence text, Supplier<? extends ODDLListener<? extends T>> mapper) {
+        this(text, Segments.scan(text), mapper, 0, -1);
+    }
+
+    private StructureSpliterator(CharSequence text, Segments segments, Supplier<? extends ODDLListener<? extends T>> mapper, int lo, int hi) {
+        this.text     = text;
+        this.segments = segments;
+        this.mapper   = mapper;
+        this.lo       = lo;
+        this.hi       = hi < 0 ? segments.count() : hi;
+    }
+
+    @Override
+    public boolean tryAdvance(Consumer<? super T> action) {
+        if (lo >= hi) {
+            return false;
+        }
+        T item = parse(lo++);
+        action.accept(item);
+        return true;
+    }
+
+    @Override
+    public void forEachRemaining(Consumer<? super T> action) {
+        while (lo < hi) {
+            action.accept(parse(lo++));
+        }
+    }
+
+    @Override
+    public Spliterator<T> trySplit() {
+        int mid = (lo + hi) >>> 1;
+        if (mid <= lo) {
+            return null;
+        }
+        Spliterator<T> ret = new StructureSpliterator<>(text, segments, mapper, lo, mid);
+        lo = mid;
+        return ret;
+    }
+
+    @Override
+    public long estimateSize() {
+        return hi - lo;
+    }
+
+    @Override
+    public int characteristics() {
+        return ORDERED | SIZED | SUBSIZED | NONNULL | IMMUTABLE;
+    }
+
+    private T parse(int segment) {
+        int start = segments.starts[segment];
+        int end   = segments.starts[segment + 1];
+        ODDLReader reader = new ODDLReader(new ODDLInputStream(
+            new SegmentReader(text, start, end),
+            segments.rows[segment],
+            segments.cols[segment]
+        ));
+
+        try {
+            T ret = reader.readStructure(mapper.get());
+            if (ret == null) {
+                throw new NullPointerException("mapper produced null");
+            }
+            return ret;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } catch (ODDLParseException e) {
+            throw new UncheckedODDLException(e);
+        } catch (ODDLFormatException e) {
+            throw new UncheckedODDLException(e);
+        }
+    }
+
+    /**
+     * The boundaries of top-level structures in a document. Segment <tt>i</tt> spans
+     * <tt>[starts[i], starts[i+1])</tt> and contains one structure, possibly preceded by whitespace and comments; the
+     * whitespace and comments that follow the last structure belong to no segment. Malformed input that the scan
+     * cannot delimit, such as an unmatched closing brace or an unterminated structure, becomes a segment of its own,
+     * so that parsing it raises the same error as reading the document sequentially.
+     */
+    static final class Segments {
+        /** segment boundaries; the start of each segment and the end of the last */
+        private int[] starts = new int[16];
+        /** the position of each boundary, as {@link ODDLInputStream} would report it */
+        private int[] rows   = new int[16];
+        private int[] cols   = new int[16];
+        private int   boundaries;
+
+        /** the number of segments */
+        private int   count;
+
+        static Segments scan(CharSequence text) {
+            final Segments ret = new Segments();
+            final Cursor   in  = new Cursor(text);
+            ret.add(0, 0, 0);
+
+            int     depth   = 0;
+            boolean content = false;
+            for (int c; (c = in.next()) != -1; ) {
+                switch (c) {
+                    case '/':
+                        if (in.peek() == '/') {
+                            while (in.peek() != '\n' && in.peek() != -1) {
+                                in.next();
+                            }
+                        } else if (in.peek() == '*') {
+                            in.next();
+                            for (int prev = 0, k; (k = in.next()) != -1 && !(prev == '*' && k == '/'); ) {
+                                prev = k;
+                            }
+                        } else {
+                            content = true;
+                        }
+                        break;
+                    case '"':
+                    case '\'':
+                        content = true;
+                        for (int k; (k = in.next()) != -1 && k != c; ) {
+                            if (k == '\\') {
+                                in.next();
+                            }
+                        }
+                        break;
+                    case '{':
+                        content = true;
+                        depth++;
+                        break;
+                    case '}':
+                        if (--depth <= 0) {
+                            depth   = 0;
+                            content = false;
+                            ret.add(in.pos, in.row, in.col);
+                        }
+                        break;
+                    default:
+                        content |= c < 1 || c > ' ';
+                }
+            }
+
+            if (content) {
+                ret.add(text.length(), in.row, in.col);
+            }
+            ret.count = ret.boundaries - 1;
+            return ret;
+        }
+
+        int count() {
+            return count;
+        }
+
+        private void add(int start, int row, int col) {
+            if (boundaries == starts.length) {
+                starts = Arrays.copyOf(starts, boundaries * 2);
+                rows   = Arrays.copyOf(rows, boundaries * 2);
+                cols   = Arrays.copyOf(cols, boundaries * 2);
+            }
+            starts[boundaries] = start;
+            rows[boundaries]   = row;
+            cols[boundaries]   = col;
+            boundaries++;
+        }
+    }
+
+    /**
+     * Reads characters from a sequence, normalizing line breaks and tracking position like {@link ODDLInputStream}.
+     */
+    private static final class Cursor {
+        private final CharSequence text;
+        private final int          len;
+
+        int     pos;
+        int     row;
+        int     col;
+        boolean newLine;
+
+        Cursor(CharSequence text) {
+            this.text = text;
+            this.len  = text.length();
+        }
+
+        int next() {
+            if (pos >= len) {
+                return -1;
+            }
+            if (newLine) {
+                newLine = false;
+                row++;
+                col = 0;
+            }
+
+            char c = text.charAt(pos++);
+            if (c == '\r') {
+                if (pos < len && text.charAt(pos) == '\n') {
+                    pos++;
+                }
+                c = '\n';
+            }
+
+            if (c == '\n') {
+                newLine = true;
+            } else {
+                col++;
+            }
+            return c;
+        }
+
+        int peek() {
+            if (pos >= len) {
+                return -1;
+            }
+            char c = text.charAt(pos);
+            return c == '\r' ? '\n' : c;
+        }
+    }
+
+    /**
+     * A reader over a range of a character sequence.
+     */
+    private static final class SegmentReader extends Reader {
+        private final CharSequence text;
+        private final int          end;
+        private int pos;
+
+        SegmentReader(CharSequence text, int start, int end) {
+            this.text = text;
+            this.pos  = start;
+            this.end  = end;
+        }
+
+        @Override
+        public int read() {
+            return pos < end ? text.charAt(pos++) : -1;
+        }
+
+        @Override
+        public int read(char[] cbuf, int off, int len) {
+            if (len == 0) {
+                return 0;
+            }
+            if (pos >= end) {
+                return -1;
+            }
+            int n = Math.min(len, end - pos);
+            for (int i=0; i<n; i++) {
+                cbuf[off + i] = text.charAt(pos++);
+            }
+            return n;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
@@ -0,0 +1,53 @@
+/*
+ * Jiggatech OpenDDL Parser
+ *
+ * Copyright (c) 2019 Nikita Leonidov
+ *
+ * MIT License
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.jiggawatt.jt.oddl;
+
+/**
+ * Wraps an {@link ODDLParseException} or {@link ODDLFormatException} where an API cannot throw checked exceptions,
+ * e.g. in a {@link java.util.stream.Stream}. IO errors are wrapped in {@link java.io.UncheckedIOException} instead.
+ *
+ * @author Nikita Leonidov
+ */
+public final class UncheckedODDLException extends RuntimeException {
+    private static final long serialVersionUID = 5043196328551473650L;
+
+    UncheckedODDLException(ODDLParseException cause) {
+        super(cause.getMessage(), cause);
+    }
+
+    UncheckedODDLException(ODDLFormatException cause) {
+        super(cause.getMessage(), cause);
+    }
+
+    /**
+     * @return the wrapped {@link ODDLParseException} or {@link ODDLFormatException}
+     */
+    @Override
+    public synchronized Exception getCause() {
+        return (Exception) super.getCause();
+    }
+}
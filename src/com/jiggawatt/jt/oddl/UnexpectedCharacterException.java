@@ -36,7 +36,10 @@ import java.io.IOException;
 public class UnexpectedCharacterException extends IOException {
     private static final long serialVersionUID = -658157575553963372L;
 
-    UnexpectedCharacterException(ODDLInputStream in, String location, int codePoint) {
+    /** whether to capture a stack trace; false while the superclass constructor runs, so that it never captures one */
+    private boolean stackTrace;
+
+    UnexpectedCharacterException(boolean stackTrace, ODDLInputStream in, String location, int codePoint) {
         super(new StringBuilder()
             .append(location)
             .append(" at ")
@@ -47,9 +50,11 @@ public class UnexpectedCharacterException extends IOException {
             .appendCodePoint(codePoint)
             .toString()
         );
+        this.stackTrace = stackTrace;
+        fillInStackTrace();
     }
 
-    UnexpectedCharacterException(ODDLInputStream in, int codePoint) {
+    UnexpectedCharacterException(boolean stackTrace, ODDLInputStream in, int codePoint) {
         super(new StringBuilder()
             .append("at ")
             .append(in.getRow())
@@ -59,5 +64,12 @@ public class UnexpectedCharacterException extends IOException {
             .appendCodePoint(codePoint)
             .toString()
         );
+        this.stackTrace = stackTrace;
+        fillInStackTrace();
+    }
+
+    @Override
+    public synchronized Throwable fillInStackTrace() {
+        return stackTrace ? super.fillInStackTrace() : this;
     }
 }
@@ -36,11 +36,23 @@ import java.io.IOException;
 public class UnexpectedEOFException extends IOException {
     private static final long serialVersionUID = 6784560380601765752L;
 
-    UnexpectedEOFException(ODDLInputStream in, String location) {
+    /** whether to capture a stack trace; false while the superclass constructor runs, so that it never captures one */
+    private boolean stackTrace;
+
+    UnexpectedEOFException(boolean stackTrace, ODDLInputStream in, String location) {
         super("in "+location+" at "+in.getRow()+", "+in.getCol());
+        this.stackTrace = stackTrace;
+        fillInStackTrace();
     }
 
-    UnexpectedEOFException(ODDLInputStream in) {
+    UnexpectedEOFException(boolean stackTrace, ODDLInputStream in) {
         super("at "+in.getRow()+", "+in.getCol());
+        this.stackTrace = stackTrace;
+        fillInStackTrace();
+    }
+
+    @Override
+    public synchronized Throwable fillInStackTrace() {
+        return stackTrace ? super.fillInStackTrace() : this;
     }
 }
@@ -35,16 +35,18 @@ public class UnexpectedTokenException extends ODDLParseException {
     private static final long serialVersionUID = -5172427909986993343L;
 
     @SafeVarargs
-    UnexpectedTokenException(ODDLToken actual, Class<? extends ODDLToken>...expect) {
-        super(createMessage(actual.getRow(), actual.getCol(), actual.toString(), createExpectMessage(expect)));
+    UnexpectedTokenException(boolean stackTrace, ODDLToken actual, Class<? extends ODDLToken>...expect) {
+        super(createMessage(actual.getRow(), actual.getCol(), actual.toString(), createExpectMessage(expect)),
+                stackTrace);
     }
 
-    UnexpectedTokenException(ODDLToken actual, ODDLToken expect) {
-        super(createMessage(actual.getRow(), actual.getCol(), "'"+actual.getText()+"'", "'"+expect.getText()+"'"));
+    UnexpectedTokenException(boolean stackTrace, ODDLToken actual, ODDLToken expect) {
+        super(createMessage(actual.getRow(), actual.getCol(), "'"+actual.getText()+"'", "'"+expect.getText()+"'"),
+                stackTrace);
     }
 
-    UnexpectedTokenException(int line, int col, String actual, String expect) {
-        super(createMessage(line, col, actual, expect));
+    UnexpectedTokenException(boolean stackTrace, int line, int col, String actual, String expect) {
+        super(createMessage(line, col, actual, expect), stackTrace);
     }
 
     private static String createMessage(int line, int col, String actual, String expect) {
@@ -0,0 +1,265 @@
+/*
+ * Jiggatech OpenDDL Parser
+ *
+ * Copyright (c) 2019 Nikita Leonidov
+ *
+ * MIT License
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.jiggawatt.jt.oddl;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.StringReader;
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.util.Locale;
+
+import static org.junit.Assert.*;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * Guards the parse and write hot paths against allocation regressions. Each test runs a workload on a small and a
+ * large corpus and divides the difference in allocated bytes by the difference in element count, which cancels out
+ * fixed costs such as buffers and listener setup. Budgets sit about 15% above the cost measured with compressed
+ * oops, so a new per-element object or <tt>StringBuilder</tt> exceeds them; lower a budget when an optimization
+ * lowers the cost.
+ * <p>
+ * The tests are skipped on JVMs that do not count per-thread allocations.
+ */
+public class AllocationBudgetTest {
+
+    private static final int SMALL = 2_000;
+    private static final int LARGE = 20_000;
+
+    private static final int WARMUP = 5;
+    private static final int RUNS   = 5;
+
+    private com.sun.management.ThreadMXBean threads;
+
+    @Before
+    public void setUp() {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        assumeTrue(bean instanceof com.sun.management.ThreadMXBean);
+
+        threads = (com.sun.management.ThreadMXBean) bean;
+        assumeTrue(threads.isThreadAllocatedMemorySupported());
+        threads.setThreadAllocatedMemoryEnabled(true);
+    }
+
+    // text reader
+    //==================================================================================================================
+    @Test
+    public void readFloatList() throws Exception {
+        assertBudget("text float element", 480, new TextReads() {
+            @Override String corpus(int n) { return list("float", n, i -> (i * 0.25f) + ""); }
+        });
+    }
+
+    @Test
+    public void readIntList() throws Exception {
+        assertBudget("text int element", 416, new TextReads() {
+            @Override String corpus(int n) { return list("int32", n, i -> Integer.toString(i - n/2)); }
+        });
+    }
+
+    @Test
+    public void readFloatArrayList() throws Exception {
+        assertBudget("text float[3] element", 528, new TextReads() {
+            @Override String corpus(int n) {
+                StringBuilder sb = new StringBuilder("float[3] {");
+                for (int i=0; i<n/3; i++) {
+                    sb.append(i==0 ? "{" : ", {").append(i).append(".5, -").append(i).append(".25, 1e-3}");
+                }
+                return sb.append('}').toString();
+            }
+        });
+    }
+
+    @Test
+    public void readCustomStructures() throws Exception {
+        assertBudget("custom structure", 672, new TextReads() {
+            @Override String corpus(int n) {
+                StringBuilder sb = new StringBuilder();
+                for (int i=0; i<n; i++) {
+                    sb.append("Node { Leaf {} }\n");
+                }
+                return sb.toString();
+            }
+        });
+    }
+
+    // binary reader
+    //==================================================================================================================
+    @Test
+    public void replayFloatListInBulk() throws Exception {
+        assertBudget("bulk binary float element", 0, new BinaryReads(true));
+    }
+
+    @Test
+    public void replayFloatListPerElement() throws Exception {
+        assertBudget("binary float element", 96, new BinaryReads(false));
+    }
+
+    // writer
+    //==================================================================================================================
+    @Test
+    public void writeFloatArray() throws Exception {
+        assertBudget("written float element", 0, new Workload<float[]>() {
+            @Override
+            float[] prepare(int n) {
+                float[] ret = new float[n];
+                for (int i=0; i<n; i++) {
+                    ret[i] = (float) Math.sin(i) * 1000;
+                }
+                return ret;
+            }
+
+            @Override
+            void run(float[] input) throws Exception {
+                try (ODDLWriter out = new ODDLWriter(NULL_STREAM)) {
+                    out.beginListStructure("float").values(input).endListStructure();
+                }
+            }
+        });
+    }
+
+    @Test
+    public void writeDoubleArray() throws Exception {
+        assertBudget("written double element", 0, new Workload<double[]>() {
+            @Override
+            double[] prepare(int n) {
+                double[] ret = new double[n];
+                for (int i=0; i<n; i++) {
+                    ret[i] = Math.sin(i) * 1e10;
+                }
+                return ret;
+            }
+
+            @Override
+            void run(double[] input) throws Exception {
+                try (ODDLWriter out = new ODDLWriter(NULL_STREAM)) {
+                    out.beginListStructure("double").values(input).endListStructure();
+                }
+            }
+        });
+    }
+
+    // measurement
+    //==================================================================================================================
+    private <I> void assertBudget(String what, double budget, Workload<I> workload) throws Exception {
+        I small = workload.prepare(SMALL);
+        I large = workload.prepare(LARGE);
+
+        for (int i=0; i<WARMUP; i++) {
+            workload.run(large);
+        }
+
+        double perElement = (double) (allocated(workload, large) - allocated(workload, small)) / (LARGE - SMALL);
+        // allow for bookkeeping allocations that do not scale with the input, e.g. by the JIT or a GC
+        assertTrue(
+            String.format(Locale.ROOT, "%s: %.2f bytes allocated, budget is %.0f", what, perElement, budget),
+            perElement <= budget + 0.5
+        );
+    }
+
+    private <I> long allocated(Workload<I> workload, I input) throws Exception {
+        long id  = Thread.currentThread().getId();
+        long ret = Long.MAX_VALUE;
+        for (int i=0; i<RUNS; i++) {
+            long before = threads.getThreadAllocatedBytes(id);
+            workload.run(input);
+            ret = Math.min(ret, threads.getThreadAllocatedBytes(id) - before);
+        }
+        return ret;
+    }
+
+    private static String list(String dataType, int n, java.util.function.IntFunction<String> element) {
+        StringBuilder sb = new StringBuilder(dataType).append(" {");
+        for (int i=0; i<n; i++) {
+            sb.append(i==0 ? "" : ", ").append(element.apply(i));
+        }
+        return sb.append('}').toString();
+    }
+
+    private static final OutputStream NULL_STREAM = new OutputStream() {
+        @Override public void write(int b) {}
+        @Override public void write(byte[] b, int off, int len) {}
+    };
+
+    private static abstract class Workload<I> {
+        abstract I prepare(int n) throws Exception;
+        abstract void run(I input) throws Exception;
+    }
+
+    private static abstract class TextReads extends Workload<String> {
+        abstract String corpus(int n);
+
+        @Override
+        String prepare(int n) {
+            return corpus(n);
+        }
+
+        @Override
+        void run(String input) throws Exception {
+            new ODDLReader(new StringReader(input)).read(new BulkListener(false));
+        }
+    }
+
+    private static final class BinaryReads extends Workload<ByteBuffer> {
+        private final boolean bulk;
+
+        BinaryReads(boolean bulk) {
+            this.bulk = bulk;
+        }
+
+        @Override
+        ByteBuffer prepare(int n) throws Exception {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            try (ODDLBinaryWriter out = new ODDLBinaryWriter(bytes)) {
+                new ODDLReader(new StringReader(list("float", n, i -> Float.toString(i * 0.25f)))).read(out);
+            }
+            return ByteBuffer.wrap(bytes.toByteArray());
+        }
+
+        @Override
+        void run(ByteBuffer input) throws Exception {
+            new ODDLBinaryReader(input.duplicate()).read(new BulkListener(bulk));
+        }
+    }
+
+    private static final class BulkListener extends NoopListener<Void> implements ODDLDataListListener<Void> {
+        private final boolean bulk;
+
+        BulkListener(boolean bulk) {
+            this.bulk = bulk;
+        }
+
+        @Override
+        public boolean dataList(DataTypeToken dataType, int subarraySize, NameToken name, ByteBuffer elements) {
+            return bulk;
+        }
+    }
+}
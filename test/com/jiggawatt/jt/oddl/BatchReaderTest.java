@@ -0,0 +1,220 @@
+/*
+ * Jiggatech OpenDDL Parser
+ *
+ * Copyright (c) 2019 Nikita Leonidov
+ *
+ * MIT License
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package com.jiggawatt.jt.oddl;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.Assert.*;
+
+public class BatchReaderTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void readAllFiles() throws IOException, ODDLParseException, ODDLFormatException {
+        List<Path>   paths = new ArrayList<>();
+        List<String> texts = new ArrayList<>();
+        for (int i=0; i<12; i++) {
+            String text = new CorpusGenerator(i).setSize(1_000 + i * 3_000).generate();
+            texts.add(text);
+            paths.add(write("doc" + i + ".oddl", text));
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(3);
+        BatchResult<String> batch;
+        try {
+            batch = new BatchReader<>(BatchReaderTest::rewriter).setExecutor(executor).setParallelism(4).read(paths);
+        } finally {
+            executor.shutdown();
+        }
+
+        assertTrue(batch.isSuccessful());
+        assertEquals(12, batch.getFileCount());
+        assertEquals(new ArrayList<>(paths), new ArrayList<>(batch.getResults().keySet()));
+        for (int i=0; i<12; i++) {
+            assertEquals(rewrite(texts.get(i)), batch.getResults().get(paths.get(i)));
+        }
+
+        long bytes = 0;
+        for (Path p : paths) {
+            bytes += Files.size(p);
+        }
+        assertEquals(bytes, batch.getByteCount());
+        assertTrue(batch.getElapsedNanos() > 0);
+        assertTrue(batch.getBytesPerSecond() > 0);
+    }
+
+    @Test
+    public void readLargestFileFirst() throws IOException {
+        List<Path> paths = Arrays.asList(
+            write("small.oddl", "A {}"),
+            write("large.oddl", "A {} B {} C {}"),
+            write("medium.oddl", "A {} B {}")
+        );
+
+        List<Integer> order = Collections.synchronizedList(new ArrayList<>());
+        new BatchReader<>(() -> new Counter(order)).setParallelism(1).read(paths);
+
+        assertEquals(Arrays.asList(3, 2, 1), order);
+    }
+
+    @Test
+    public void recordFailuresWithoutStopping() throws IOException {
+        Path good    = write("good.oddl", "A { float {1.0} }");
+        Path bad     = write("bad.oddl", "A { float {1.0, } }");
+        Path missing = folder.getRoot().toPath().resolve("missing.oddl");
+
+        BatchResult<String> batch = new BatchReader<>(BatchReaderTest::rewriter).setParallelism(2).read(Arrays.asList(good, bad, missing));
+
+        assertFalse(batch.isSuccessful());
+        assertEquals(Collections.singleton(good), batch.getResults().keySet());
+        assertEquals(Arrays.asList(bad, missing), new ArrayList<>(batch.getFailures().keySet()));
+        assertTrue(batch.getFailures().get(bad) instanceof ListElementTypeMismatchException);
+        assertTrue(batch.getFailures().get(missing) instanceof NoSuchFileException);
+        assertEquals(3, batch.getFileNanos().size());
+    }
+
+    @Test
+    public void readRepeatedPathsOnce() throws IOException {
+        Path a = write("a.oddl", "A {}");
+        Path b = write("b.oddl", "B { float {1.0, } }");
+
+        BatchResult<String> batch = new BatchReader<>(BatchReaderTest::rewriter).read(Arrays.asList(a, b, a, b));
+
+        assertEquals(2, batch.getFileCount());
+        assertEquals(Collections.singleton(a), batch.getResults().keySet());
+        assertEquals(Collections.singleton(b), batch.getFailures().keySet());
+    }
+
+    @Test
+    public void runRejectedWorkersOnCallingThread() throws IOException {
+        List<Path> paths = Arrays.asList(write("a.oddl", "A {}"), write("b.oddl", "B {}"), write("c.oddl", "C {}"));
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        executor.shutdown();
+
+        BatchResult<String> batch = new BatchReader<>(BatchReaderTest::rewriter).setExecutor(executor).setParallelism(3).read(paths);
+
+        assertEquals(3, batch.getResults().size());
+    }
+
+    @Test
+    public void reportMetricsForEveryFile() throws IOException {
+        List<Path> paths = Arrays.asList(write("a.oddl", "A {}"), write("b.oddl", "B {}"));
+        ODDLMetricsRecorder metrics = new ODDLMetricsRecorder();
+        new BatchReader<>(BatchReaderTest::rewriter).setMetrics(metrics).read(paths);
+        assertEquals(2, metrics.getDocumentCount());
+    }
+
+    @Test
+    public void acceptEmptyBatch() {
+        BatchResult<String> batch = new BatchReader<>(BatchReaderTest::rewriter).read(Collections.emptyList());
+        assertEquals(0, batch.getFileCount());
+        assertTrue(batch.isSuccessful());
+    }
+
+    private Path write(String name, String text) throws IOException {
+        return Files.write(folder.getRoot().toPath().resolve(name), text.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String rewrite(String text) throws IOException, ODDLParseException, ODDLFormatException {
+        return new ODDLReader(new StringReader(text)).read(rewriter());
+    }
+
+    private static ODDLListener<String> rewriter() {
+        return new Rewriter();
+    }
+
+    /** writes the document back to a string, which becomes the listener's result */
+    private static final class Rewriter implements ODDLListener<String> {
+        private final StringWriter       sw       = new StringWriter();
+        private final ODDLWriter         out      = new ODDLWriter(sw);
+        private final ODDLListener<Void> delegate = out.asListener();
+
+        @Override
+        public String end(int row, int col) throws ODDLFormatException {
+            delegate.end(row, col);
+            try {
+                out.flush();
+            } catch (IOException e) {
+                throw new AssertionError(e);
+            }
+            return sw.toString();
+        }
+
+        @Override public void begin() throws ODDLFormatException { delegate.begin(); }
+        @Override public void value(BoolToken value) throws ODDLFormatException { delegate.value(value); }
+        @Override public void value(IntToken value) throws ODDLFormatException { delegate.value(value); }
+        @Override public void value(FloatToken value) throws ODDLFormatException { delegate.value(value); }
+        @Override public void value(StringToken value) throws ODDLFormatException { delegate.value(value); }
+        @Override public void value(RefToken value) throws ODDLFormatException { delegate.value(value); }
+        @Override public void value(DataTypeToken value) throws ODDLFormatException { delegate.value(value); }
+        @Override public void beginListStructure(DataTypeToken dataType, NameToken name) throws ODDLFormatException { delegate.beginListStructure(dataType, name); }
+        @Override public void endListStructure(DataTypeToken dataType, NameToken name) throws ODDLFormatException { delegate.endListStructure(dataType, name); }
+        @Override public void beginArrayListStructure(DataTypeToken dataType, int subarraySize, NameToken name) throws ODDLFormatException { delegate.beginArrayListStructure(dataType, subarraySize, name); }
+        @Override public void endArrayListStructure(DataTypeToken dataType, int subarraySize, NameToken name) throws ODDLFormatException { delegate.endArrayListStructure(dataType, subarraySize, name); }
+        @Override public void beginSubArray(DataTypeToken dataType, int subarraySize) throws ODDLFormatException { delegate.beginSubArray(dataType, subarraySize); }
+        @Override public void endSubArray(DataTypeToken dataType, int subarraySize) throws ODDLFormatException { delegate.endSubArray(dataType, subarraySize); }
+        @Override public void beginCustomStructure(IdentifierToken identifier, NameToken name, PropertyMap properties) throws ODDLFormatException { delegate.beginCustomStructure(identifier, name, properties); }
+        @Override public void endCustomStructure(IdentifierToken identifier, NameToken name, PropertyMap properties) throws ODDLFormatException { delegate.endCustomStructure(identifier, name, properties); }
+    }
+
+    /** adds the number of structures in the document to a list when the document ends */
+    private static final class Counter extends NoopListener<Integer> {
+        private final List<Integer> order;
+        private int count;
+
+        Counter(List<Integer> order) {
+            this.order = order;
+        }
+
+        @Override
+        public Integer end(int row, int col) {
+            order.add(count);
+            return count;
+        }
+
+        @Override public void beginCustomStructure(IdentifierToken identifier, NameToken name, PropertyMap properties) { count++; }
+    }
+}
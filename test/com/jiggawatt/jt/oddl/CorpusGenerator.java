@@ -0,0 +1,678 @@
+/*
+ * Jiggatech OpenDDL Parser
+ *
+ * Copyright (c) 2019 Nikita Leonidov
+ *
+ * MIT License
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.jiggawatt.jt.oddl;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.EnumSet;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * Generates synthetic OpenDDL documents for benchmarks and stress tests. Output is determined entirely by the seed
+ * and settings, so the same generator configuration reproduces the same document on any machine. Documents are
+ * produced lazily, one top-level structure at a time, which makes it possible to feed inputs far larger than memory
+ * to an {@link ODDLReader}:
+ * <pre>
+ * {@code
+ * CorpusGenerator gen = new CorpusGenerator(42).setSize(1L << 30).setCommentDensity(0.1);
+ * new ODDLReader(gen.reader()).read(listener);
+ * }
+ * </pre>
+ * Every generated document is valid OpenDDL. Names are unique, and references only point to global names emitted
+ * earlier in the document, though not every referenced structure is guaranteed to still be reachable by the
+ * reference's full path. Settings are captured when a reader is created; changing them afterwards only affects
+ * readers created later.
+ *
+ * @author Nikita Leonidov
+ */
+public final class CorpusGenerator {
+
+    private static final String[] IDENTIFIERS = {
+        "Node", "Mesh", "Material", "Param", "Transform", "Color", "Texture", "Animation", "Track", "Extension"
+    };
+
+    private static final String[] KEYS = {
+        "key", "attrib", "index", "weight", "visible", "kind", "target", "lod", "primitive", "restart"
+    };
+
+    private static final String[][] INT_TYPES = {
+        {"int8", "i8"}, {"int16", "i16"}, {"int32", "i32"}, {"int64", "i64"},
+        {"unsigned_int8", "u8"}, {"unsigned_int16", "u16"}, {"unsigned_int32", "u32"}, {"unsigned_int64", "u64"}
+    };
+
+    private static final String[][] FLOAT_TYPES = {
+        {"half", "float16", "h", "f16"}, {"float", "float32", "f", "f32"}, {"double", "float64", "d", "f64"}
+    };
+
+    private static final String[][] OTHER_TYPES = {
+        {"bool", "b"}, {"string", "s"}, {"ref", "r"}, {"type", "t"}
+    };
+
+    /** recently emitted global names available as reference targets */
+    private static final int REF_TARGETS = 1024;
+
+    private final long seed;
+
+    private long   size                 = 1 << 20;
+    private int    maxDepth             = 4;
+    private int    maxFanOut            = 6;
+    private int    maxProperties        = 3;
+    private int    maxListLength        = 32;
+    private int[]  subarraySizes        = {2, 3, 4, 16};
+    private double arrayListProbability = 0.5;
+    private double nameProbability      = 0.3;
+    private double commentDensity       = 0;
+    private boolean digitSeparators;
+
+    private EnumSet<DataType>        dataTypes  = EnumSet.allOf(DataType.class);
+    private EnumSet<IntToken.Format> intFormats = EnumSet.of(IntToken.Format.DEC);
+
+    /**
+     * Creates a generator with default settings, which produce a document of about 1 MiB.
+     * @param seed the seed for all random choices
+     */
+    public CorpusGenerator(long seed) {
+        this.seed = seed;
+    }
+
+    // settings
+    //==================================================================================================================
+    /**
+     * Sets the approximate document size. Generation stops after the first top-level structure that reaches it.
+     * @param size document size in characters
+     * @return this generator
+     */
+    public CorpusGenerator setSize(long size) {
+        this.size = requireNonNegative(size, "size");
+        return this;
+    }
+
+    /**
+     * Sets the maximum nesting depth of custom structures; data lists may appear one level deeper.
+     * @param maxDepth maximum depth; 0 produces only top-level data lists
+     * @return this generator
+     */
+    public CorpusGenerator setMaxDepth(int maxDepth) {
+        this.maxDepth = (int) requireNonNegative(maxDepth, "maximum depth");
+        return this;
+    }
+
+    /**
+     * Sets the maximum number of child structures of each custom structure.
+     * @param maxFanOut maximum child count
+     * @return this generator
+     */
+    public CorpusGenerator setMaxFanOut(int maxFanOut) {
+        this.maxFanOut = (int) requireNonNegative(maxFanOut, "maximum fan-out");
+        return this;
+    }
+
+    /**
+     * Sets the maximum number of properties of each custom structure.
+     * @param maxProperties maximum property count, up to 10
+     * @return this generator
+     */
+    public CorpusGenerator setMaxProperties(int maxProperties) {
+        this.maxProperties = Math.min(KEYS.length, (int) requireNonNegative(maxProperties, "maximum property count"));
+        return this;
+    }
+
+    /**
+     * Sets the maximum number of elements in a data list, or of sub-arrays in a data array list.
+     * @param maxListLength maximum list length
+     * @return this generator
+     */
+    public CorpusGenerator setMaxListLength(int maxListLength) {
+        this.maxListLength = (int) requireNonNegative(maxListLength, "maximum list length");
+        return this;
+    }
+
+    /**
+     * Sets the data types from which list types are chosen.
+     * @param dataTypes a non-empty set of data types
+     * @return this generator
+     */
+    public CorpusGenerator setDataTypes(Set<DataType> dataTypes) {
+        if (dataTypes.isEmpty()) {
+            throw new IllegalArgumentException("no data types");
+        }
+        this.dataTypes = EnumSet.copyOf(dataTypes);
+        return this;
+    }
+
+    /**
+     * Sets the sub-array sizes from which data array lists choose, and how often data array lists are generated
+     * instead of data lists.
+     * @param probability probability that a list is a data array list, from 0 to 1
+     * @param sizes       sub-array sizes to choose from; must be positive
+     * @return this generator
+     */
+    public CorpusGenerator setArrayLists(double probability, int... sizes) {
+        for (int k : sizes) {
+            if (k <= 0) {
+                throw new IllegalArgumentException("invalid sub-array size: "+k);
+            }
+        }
+        if (sizes.length == 0 && probability > 0) {
+            throw new IllegalArgumentException("no sub-array sizes");
+        }
+        this.arrayListProbability = requireProbability(probability);
+        this.subarraySizes        = sizes.clone();
+        return this;
+    }
+
+    /**
+     * Sets the probability that a structure is named.
+     * @param probability probability from 0 to 1
+     * @return this generator
+     */
+    public CorpusGenerator setNameProbability(double probability) {
+        this.nameProbability = requireProbability(probability);
+        return this;
+    }
+
+    /**
+     * Sets the probability that a line or block comment precedes a structure or list element.
+     * @param density probability from 0 to 1
+     * @return this generator
+     */
+    public CorpusGenerator setCommentDensity(double density) {
+        this.commentDensity = requireProbability(density);
+        return this;
+    }
+
+    /**
+     * Sets the formats in which integer literals are written. When {@link IntToken.Format#HEX} is included,
+     * floating-point elements are occasionally written as hex bit patterns as well.
+     * @param formats a non-empty set of formats
+     * @return this generator
+     */
+    public CorpusGenerator setIntFormats(Set<IntToken.Format> formats) {
+        if (formats.isEmpty()) {
+            throw new IllegalArgumentException("no integer formats");
+        }
+        this.intFormats = EnumSet.copyOf(formats);
+        return this;
+    }
+
+    /**
+     * Sets whether numeric literals contain <tt>_</tt> digit separators.
+     * @param digitSeparators <tt>true</tt> to insert separators
+     * @return this generator
+     */
+    public CorpusGenerator setDigitSeparators(boolean digitSeparators) {
+        this.digitSeparators = digitSeparators;
+        return this;
+    }
+
+    // output
+    //==================================================================================================================
+    /**
+     * @return a reader that generates the document as it is read
+     */
+    public Reader reader() {
+        return new CorpusReader(new Emitter(this));
+    }
+
+    /**
+     * Generates the whole document and writes it to a writer.
+     * @param out the destination
+     * @throws IOException when an IO exception occurs
+     */
+    public void writeTo(Writer out) throws IOException {
+        Emitter e = new Emitter(this);
+        while (e.next()) {
+            out.append(e.out);
+        }
+    }
+
+    /**
+     * @return the whole document as a string
+     */
+    public String generate() {
+        StringBuilder ret = new StringBuilder((int) Math.min(size + 4096, Integer.MAX_VALUE - 8));
+        Emitter e = new Emitter(this);
+        while (e.next()) {
+            ret.append(e.out);
+        }
+        return ret.toString();
+    }
+
+    private static long requireNonNegative(long v, String what) {
+        if (v < 0) {
+            throw new IllegalArgumentException("negative "+what+": "+v);
+        }
+        return v;
+    }
+
+    private static double requireProbability(double p) {
+        if (!(p >= 0 && p <= 1)) {
+            throw new IllegalArgumentException("probability out of range: "+p);
+        }
+        return p;
+    }
+
+    // generation
+    //==================================================================================================================
+    /**
+     * Produces a document one top-level structure at a time.
+     */
+    private static final class Emitter {
+        final StringBuilder out = new StringBuilder();
+
+        private final Random rnd;
+        private final long   size;
+        private final int    maxDepth;
+        private final int    maxFanOut;
+        private final int    maxProperties;
+        private final int    maxListLength;
+        private final int[]  subarraySizes;
+        private final double arrayListProbability;
+        private final double nameProbability;
+        private final double commentDensity;
+        private final boolean digitSeparators;
+
+        private final DataType[]        dataTypes;
+        private final IntToken.Format[] intFormats;
+        private final boolean           hexFloats;
+
+        private final String[] targets = new String[REF_TARGETS];
+        private long globals;
+        private long topLevel;
+        private long produced;
+
+        Emitter(CorpusGenerator g) {
+            rnd                  = new Random(g.seed);
+            size                 = g.size;
+            maxDepth             = g.maxDepth;
+            maxFanOut            = g.maxFanOut;
+            maxProperties        = g.maxProperties;
+            maxListLength        = g.maxListLength;
+            subarraySizes        = g.subarraySizes.clone();
+            arrayListProbability = g.arrayListProbability;
+            nameProbability      = g.nameProbability;
+            commentDensity       = g.commentDensity;
+            digitSeparators      = g.digitSeparators;
+            dataTypes            = g.dataTypes.toArray(new DataType[0]);
+            intFormats           = g.intFormats.toArray(new IntToken.Format[0]);
+            hexFloats            = g.intFormats.contains(IntToken.Format.HEX);
+        }
+
+        /**
+         * Replaces the contents of {@link #out} with the next top-level structure.
+         * @return <tt>false</tt> if the document is complete
+         */
+        boolean next() {
+            out.setLength(0);
+            if (produced >= size) {
+                return false;
+            }
+            structure(0, topLevel++);
+            produced += out.length();
+            return true;
+        }
+
+        private void structure(int depth, long index) {
+            comment(depth);
+            if (depth < maxDepth && (depth == 0 || rnd.nextInt(3) != 0)) {
+                custom(depth, index);
+            } else {
+                list(depth, index);
+            }
+        }
+
+        private void custom(int depth, long index) {
+            indent(depth);
+            out.append(pick(IDENTIFIERS));
+            name(index);
+
+            int properties = rnd.nextInt(maxProperties + 1);
+            if (properties > 0) {
+                out.append(" (");
+                int first = rnd.nextInt(KEYS.length);
+                for (int i=0; i<properties; i++) {
+                    if (i > 0) {
+                        out.append(", ");
+                    }
+                    out.append(KEYS[(first + i) % KEYS.length]).append(" = ");
+                    propertyValue();
+                }
+                out.append(')');
+            }
+
+            int children = rnd.nextInt(maxFanOut + 1);
+            if (children == 0) {
+                out.append(" {}\n");
+                return;
+            }
+
+            out.append('\n');
+            indent(depth);
+            out.append("{\n");
+            for (int i=0; i<children; i++) {
+                structure(depth+1, i);
+            }
+            indent(depth);
+            out.append("}\n");
+        }
+
+        private void list(int depth, long index) {
+            DataType type    = dataTypes[rnd.nextInt(dataTypes.length)];
+            String   keyword = keyword(type);
+            boolean  array   = subarraySizes.length > 0 && rnd.nextDouble() < arrayListProbability;
+
+            indent(depth);
+            out.append(keyword);
+            if (array) {
+                int subarraySize = subarraySizes[rnd.nextInt(subarraySizes.length)];
+                out.append('[');
+                integer(subarraySize, IntToken.Format.DEC);
+                out.append(']');
+                name(index);
+                out.append("\n");
+                indent(depth);
+                out.append("{\n");
+
+                int n = rnd.nextInt(maxListLength + 1);
+                for (int i=0; i<n; i++) {
+                    indent(depth+1);
+                    out.append('{');
+                    elements(keyword, subarraySize, depth+1);
+                    out.append(i+1 < n ? "},\n" : "}\n");
+                }
+                indent(depth);
+                out.append("}\n");
+            } else {
+                name(index);
+                out.append(" {");
+                elements(keyword, rnd.nextInt(maxListLength + 1), depth);
+                out.append("}\n");
+            }
+        }
+
+        private void elements(String keyword, int n, int depth) {
+            DataTypeToken type = DataTypeToken.create(0, 0, keyword);
+            for (int i=0; i<n; i++) {
+                if (i > 0) {
+                    out.append(", ");
+                }
+                if (commentDensity > 0 && rnd.nextDouble() < commentDensity / 4) {
+                    out.append("/* element ").append(i).append(" */ ");
+                }
+                element(type);
+            }
+        }
+
+        private void element(DataTypeToken type) {
+            switch (type.getValue()) {
+                case INT:
+                    intElement(type.getTypeBits(), type.isTypeUnsigned());
+                    break;
+                case FLOAT:
+                    floatElement(type.getTypeBits());
+                    break;
+                case BOOL:
+                    out.append(rnd.nextBoolean());
+                    break;
+                case STRING:
+                    string();
+                    break;
+                case REF:
+                    ref();
+                    break;
+                case TYPE:
+                    out.append(keyword(dataTypes[rnd.nextInt(dataTypes.length)]));
+                    break;
+            }
+        }
+
+        private void propertyValue() {
+            switch (rnd.nextInt(6)) {
+                case 0:  out.append(rnd.nextBoolean()); break;
+                case 1:  intElement(32, false); break;
+                case 2:  floatElement(64); break;
+                case 3:  string(); break;
+                case 4:  ref(); break;
+                default: out.append(keyword(dataTypes[rnd.nextInt(dataTypes.length)]));
+            }
+        }
+
+        private void intElement(int bits, boolean unsigned) {
+            IntToken.Format format = intFormats[rnd.nextInt(intFormats.length)];
+
+            if (format == IntToken.Format.CHAR) {
+                // printable ASCII other than the quote and backslash, which fits every integer type
+                char c;
+                do {
+                    c = (char) (0x20 + rnd.nextInt(0x5f));
+                } while (c == '\'' || c == '\\');
+                out.append('\'').append(c).append('\'');
+                return;
+            }
+
+            long v;
+            if (rnd.nextBoolean()) {
+                // small values are most common in practice
+                v = rnd.nextInt(bits > 8 ? 1000 : unsigned ? 256 : 128);
+            } else {
+                v = rnd.nextLong();
+                if (bits < 64) {
+                    v = unsigned ? v >>> (64 - bits) : v >> (64 - bits);
+                }
+            }
+            if (!unsigned && v >= 0 && rnd.nextInt(4) == 0) {
+                v = -v;
+            }
+
+            if (unsigned || v >= 0) {
+                integer(v, format);
+            } else {
+                out.append('-');
+                integer(-v, format);
+            }
+        }
+
+        /**
+         * Writes the unsigned value of <tt>v</tt> in the given format.
+         */
+        private void integer(long v, IntToken.Format format) {
+            switch (format) {
+                case HEX: out.append("0x"); digits(Long.toHexString(v).toUpperCase(), true); break;
+                case OCT: out.append("0o"); digits(Long.toOctalString(v), false); break;
+                case BIN: out.append("0b"); digits(Long.toBinaryString(v), false); break;
+                default:  digits(Long.toUnsignedString(v), false);
+            }
+        }
+
+        private void floatElement(int bits) {
+            double v = rnd.nextGaussian() * Math.pow(10, rnd.nextInt(9) - 4);
+
+            if (hexFloats && rnd.nextInt(4) == 0) {
+                // floating-point lists read hex literals as bit patterns
+                out.append("0x");
+                switch (bits) {
+                    case 16: digits(hex(FloatFormat.toHalfBits((float) v), 4), true); break;
+                    case 32: digits(hex(Float.floatToRawIntBits((float) v), 8), true); break;
+                    default: digits(hex(Double.doubleToRawLongBits(v), 16), true);
+                }
+                return;
+            }
+
+            String text = bits == 64 ? Double.toString(v) : Float.toString((float) v);
+            if (digitSeparators) {
+                int dot = text.indexOf('.');
+                out.append(text, 0, dot);
+                digits(text.substring(dot), false);
+            } else {
+                out.append(text);
+            }
+        }
+
+        private static String hex(long bits, int digits) {
+            char[] ret = new char[digits];
+            for (int i=digits-1; i>=0; i--, bits >>>= 4) {
+                ret[i] = Character.toUpperCase(Character.forDigit((int) bits & 0xf, 16));
+            }
+            return new String(ret);
+        }
+
+        /**
+         * Appends digits, inserting separators between some of them when enabled. Separators never begin or end a
+         * run of digits.
+         */
+        private void digits(String s, boolean hex) {
+            if (!digitSeparators) {
+                out.append(s);
+                return;
+            }
+            for (int i=0; i<s.length(); i++) {
+                char c = s.charAt(i);
+                out.append(c);
+                if (i+1 < s.length() && isDigit(c, hex) && isDigit(s.charAt(i+1), hex) && rnd.nextInt(4) == 0) {
+                    out.append('_');
+                }
+            }
+        }
+
+        private static boolean isDigit(char c, boolean hex) {
+            return (c >= '0' && c <= '9') || (hex && c >= 'A' && c <= 'F');
+        }
+
+        private void string() {
+            out.append('"');
+            int n = rnd.nextInt(48);
+            for (int i=0; i<n; i++) {
+                int r = rnd.nextInt(40);
+                switch (r) {
+                    case 0:  out.append("\\n"); break;
+                    case 1:  out.append("\\\""); break;
+                    case 2:  out.append("\\\\"); break;
+                    case 3:  out.append("\\x41"); break;
+                    case 4:  out.append(' '); break;
+                    default: out.append((char) ('a' + r % 26));
+                }
+            }
+            out.append('"');
+        }
+
+        private void ref() {
+            if (globals == 0 || rnd.nextInt(8) == 0) {
+                out.append("null");
+            } else {
+                out.append(targets[(int) ((globals - 1 - rnd.nextInt((int) Math.min(globals, REF_TARGETS))) % REF_TARGETS)]);
+            }
+        }
+
+        private void name(long index) {
+            if (rnd.nextDouble() >= nameProbability) {
+                return;
+            }
+            if (rnd.nextBoolean()) {
+                String name = "$g" + globals;
+                targets[(int) (globals++ % REF_TARGETS)] = name;
+                out.append(' ').append(name);
+            } else {
+                out.append(" %l").append(index);
+            }
+        }
+
+        private void comment(int depth) {
+            if (commentDensity == 0 || rnd.nextDouble() >= commentDensity) {
+                return;
+            }
+            indent(depth);
+            if (rnd.nextBoolean()) {
+                out.append("// comment ").append(rnd.nextInt(1 << 20)).append('\n');
+            } else {
+                out.append("/* block\n");
+                indent(depth);
+                out.append(" * comment ").append(rnd.nextInt(1 << 20)).append(" */\n");
+            }
+        }
+
+        private String keyword(DataType type) {
+            String[][] table;
+            switch (type) {
+                case INT:    table = INT_TYPES; break;
+                case FLOAT:  table = FLOAT_TYPES; break;
+                case BOOL:   return pick(OTHER_TYPES[0]);
+                case STRING: return pick(OTHER_TYPES[1]);
+                case REF:    return pick(OTHER_TYPES[2]);
+                default:     return pick(OTHER_TYPES[3]);
+            }
+            return pick(table[rnd.nextInt(table.length)]);
+        }
+
+        private String pick(String[] choices) {
+            return choices[rnd.nextInt(choices.length)];
+        }
+
+        private void indent(int depth) {
+            for (int i=0; i<depth; i++) {
+                out.append('\t');
+            }
+        }
+    }
+
+    /**
+     * Serves characters from an {@link Emitter}, generating structures on demand.
+     */
+    private static final class CorpusReader extends Reader {
+        private final Emitter emitter;
+        private int     pos;
+        private boolean done;
+
+        CorpusReader(Emitter emitter) {
+            this.emitter = emitter;
+        }
+
+        @Override
+        public int read(char[] cbuf, int off, int len) {
+            if (len == 0) {
+                return 0;
+            }
+            while (pos == emitter.out.length()) {
+                if (done || !emitter.next()) {
+                    done = true;
+                    return -1;
+                }
+                pos = 0;
+            }
+
+            int n = Math.min(len, emitter.out.length() - pos);
+            emitter.out.getChars(pos, pos + n, cbuf, off);
+            pos += n;
+            return n;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
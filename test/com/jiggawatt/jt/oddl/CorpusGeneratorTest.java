@@ -0,0 +1,134 @@
+/*
+ * Jiggatech OpenDDL Parser
+ *
+ * Copyright (c) 2019 Nikita Leonidov
+ *
+ * MIT License
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.jiggawatt.jt.oddl;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.EnumSet;
+
+import static org.junit.Assert.*;
+import static org.junit.Assume.assumeTrue;
+
+public class CorpusGeneratorTest {
+
+    @Test
+    public void reproduceDocumentFromSeed() throws IOException {
+        String a = new CorpusGenerator(7).setSize(1 << 16).generate();
+        String b = new CorpusGenerator(7).setSize(1 << 16).generate();
+        assertEquals(a, b);
+        assertEquals(a, drain(new CorpusGenerator(7).setSize(1 << 16).reader()));
+        assertNotEquals(a, new CorpusGenerator(8).setSize(1 << 16).generate());
+    }
+
+    @Test
+    public void stopAfterRequestedSize() {
+        String text = new CorpusGenerator(1).setSize(100_000).generate();
+        assertTrue(text.length() >= 100_000);
+        assertTrue(text.length() < 200_000);
+    }
+
+    @Test
+    public void generateValidDocumentsWithAllFeatures() throws IOException, ODDLParseException, ODDLFormatException {
+        for (long seed=0; seed<20; seed++) {
+            CorpusGenerator gen = new CorpusGenerator(seed)
+                .setSize(1 << 15)
+                .setMaxDepth(6)
+                .setMaxProperties(10)
+                .setCommentDensity(0.3)
+                .setNameProbability(0.8)
+                .setIntFormats(EnumSet.allOf(IntToken.Format.class))
+                .setDigitSeparators(true);
+
+            String text = gen.generate();
+            try {
+                new ODDLReader(new StringReader(text)).read(new ReferenceResolver<>(new Counter()));
+            } catch (IOException | ODDLParseException | ODDLFormatException e) {
+                throw new AssertionError("seed "+seed+": "+e.getMessage(), e);
+            }
+        }
+    }
+
+    @Test
+    public void restrictDataTypes() throws IOException, ODDLParseException, ODDLFormatException {
+        String text = new CorpusGenerator(3)
+            .setSize(1 << 14)
+            .setMaxDepth(0)
+            .setDataTypes(EnumSet.of(DataType.FLOAT))
+            .setArrayLists(1, 3)
+            .generate();
+
+        Counter counter = new Counter();
+        new ODDLReader(new StringReader(text)).read(counter);
+        assertEquals(0, counter.custom);
+        assertEquals(counter.lists, counter.floatArrayLists);
+    }
+
+    /**
+     * Streams a large generated document through the reader. Enabled by setting <tt>oddl.stress.size</tt> to a size
+     * in bytes, e.g. <tt>-Doddl.stress.size=1073741824</tt>.
+     */
+    @Test
+    public void readLargeGeneratedDocument() throws IOException, ODDLParseException, ODDLFormatException {
+        long size = Long.getLong("oddl.stress.size", 0);
+        assumeTrue(size > 0);
+
+        Counter counter = new Counter();
+        new ODDLReader(new CorpusGenerator(size).setSize(size).setCommentDensity(0.05).reader()).read(counter);
+        assertTrue(counter.lists > 0);
+    }
+
+    private static String drain(Reader in) throws IOException {
+        StringWriter ret = new StringWriter();
+        char[] buf = new char[1000];
+        int n;
+        while ((n = in.read(buf)) != -1) {
+            ret.write(buf, 0, n);
+        }
+        return ret.toString();
+    }
+
+    private static final class Counter extends NoopListener<Void> {
+        int custom;
+        int lists;
+        int floatArrayLists;
+
+        @Override public void beginListStructure(DataTypeToken dataType, NameToken name) { lists++; }
+        @Override public void beginCustomStructure(IdentifierToken identifier, NameToken name, PropertyMap properties) { custom++; }
+
+        @Override
+        public void beginArrayListStructure(DataTypeToken dataType, int subarraySize, NameToken name) {
+            lists++;
+            if (dataType.getValue() == DataType.FLOAT && subarraySize == 3) {
+                floatArrayLists++;
+            }
+        }
+    }
+}
@@ -0,0 +1,229 @@
+/*
+ * Jiggatech OpenDDL Parser
+ *
+ * Copyright (c) 2019 Nikita Leonidov
+ *
+ * MIT License
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package com.jiggawatt.jt.oddl;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.*;
+
+public class DocumentCacheTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final AtomicInteger parses = new AtomicInteger();
+
+    @Test
+    public void returnCachedDocument() throws Exception {
+        Path a = write("a.oddl", "A {} B {}", 1);
+        DocumentCache<Integer> cache = new DocumentCache<>(this::counter, 1 << 20);
+
+        assertEquals(2, (int) cache.get(a));
+        assertEquals(2, (int) cache.get(a));
+        assertEquals(1, parses.get());
+        assertEquals(1, cache.getHitCount());
+        assertEquals(1, cache.getMissCount());
+        assertEquals(Files.size(a), cache.getWeight());
+    }
+
+    @Test
+    public void reparseChangedFile() throws Exception {
+        Path a = write("a.oddl", "A {}", 1);
+        DocumentCache<Integer> cache = new DocumentCache<>(this::counter, 1 << 20);
+
+        assertEquals(1, (int) cache.get(a));
+        write("a.oddl", "A {} B {} C {}", 2);
+        assertEquals(3, (int) cache.get(a));
+        assertEquals(2, parses.get());
+        assertEquals(1, cache.getInvalidationCount());
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    public void evictLeastRecentlyUsed() throws Exception {
+        Path a = write("a.oddl", "A {}", 1);
+        Path b = write("b.oddl", "A {} B {}", 1);
+        Path c = write("c.oddl", "A {} B {} C {}", 1);
+        DocumentCache<Integer> cache = new DocumentCache<>(this::counter, 5, n -> n);
+
+        cache.get(a);
+        cache.get(b);
+        cache.get(a);
+        cache.get(c);
+
+        assertEquals(1, cache.getEvictionCount());
+        assertEquals(4, cache.getWeight());
+        cache.get(a);
+        assertEquals(3, parses.get());
+        cache.get(b);
+        assertEquals(4, parses.get());
+    }
+
+    @Test
+    public void doNotRetainOversizedDocument() throws Exception {
+        Path a = write("a.oddl", "A {} B {}", 1);
+        DocumentCache<Integer> cache = new DocumentCache<>(this::counter, 1, n -> n);
+
+        assertEquals(2, (int) cache.get(a));
+        assertEquals(0, cache.size());
+        assertEquals(0, cache.getWeight());
+    }
+
+    @Test
+    public void parseOnceForConcurrentRequests() throws Exception {
+        Path a = write("a.oddl", "A {}", 1);
+        final int threads = 4;
+        final AtomicReference<DocumentCache<Integer>> holder = new AtomicReference<>();
+        holder.set(new DocumentCache<>(() -> {
+            // hold the parse until every thread has missed, so that they all wait on it
+            long deadline = System.nanoTime() + 10_000_000_000L;
+            while (holder.get().getMissCount() < threads && System.nanoTime() < deadline) {
+                Thread.yield();
+            }
+            return counter();
+        }, 1 << 20));
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<Integer>> results = new ArrayList<>();
+            for (int i=0; i<threads; i++) {
+                results.add(executor.submit(() -> holder.get().get(a)));
+            }
+            for (Future<Integer> f : results) {
+                assertEquals(1, (int) f.get());
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        assertEquals(1, parses.get());
+        assertEquals(threads, holder.get().getMissCount());
+    }
+
+    @Test
+    public void keepNewerVersionWhenOlderLoadFinishesLast() throws Exception {
+        Path a = write("a.oddl", "A {}", 1);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger  calls   = new AtomicInteger();
+        DocumentCache<Integer> cache = new DocumentCache<>(() -> {
+            if (calls.getAndIncrement() == 0) {
+                // hold the load of the first version until the second version is cached
+                started.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    throw new IllegalStateException(e);
+                }
+            }
+            return counter();
+        }, 1 << 20);
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<Integer> older = executor.submit(() -> cache.get(a));
+            started.await();
+            write("a.oddl", "A {} B {} C {}", 2);
+            assertEquals(3, (int) cache.get(a));
+
+            release.countDown();
+            older.get();
+        } finally {
+            executor.shutdown();
+        }
+
+        assertEquals(3, (int) cache.get(a));
+        assertEquals(2, parses.get());
+        assertEquals(1, cache.getHitCount());
+    }
+
+    @Test
+    public void doNotCacheFailures() throws Exception {
+        Path a = write("a.oddl", "A {", 1);
+        DocumentCache<Integer> cache = new DocumentCache<>(this::counter, 1 << 20);
+
+        for (int i=0; i<2; i++) {
+            try {
+                cache.get(a);
+                fail();
+            } catch (UnexpectedEOFException e) {
+                // expected
+            }
+        }
+        assertEquals(2, cache.getLoadFailureCount());
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void invalidateOnRequest() throws Exception {
+        Path a = write("a.oddl", "A {}", 1);
+        DocumentCache<Integer> cache = new DocumentCache<>(this::counter, 1 << 20);
+
+        cache.get(a);
+        cache.invalidate(a);
+        cache.get(a);
+        assertEquals(2, parses.get());
+        cache.invalidateAll();
+        assertEquals(0, cache.size());
+        assertEquals(0, cache.getWeight());
+    }
+
+    private Path write(String name, String text, long time) throws IOException {
+        Path p = Files.write(folder.getRoot().toPath().resolve(name), text.getBytes(StandardCharsets.UTF_8));
+        return Files.setLastModifiedTime(p, FileTime.fromMillis(time * 1000));
+    }
+
+    /** counts top-level structures */
+    private ODDLListener<Integer> counter() {
+        parses.incrementAndGet();
+        return new NoopListener<Integer>() {
+            int depth;
+            int count;
+
+            @Override public Integer end(int row, int col) { return count; }
+            @Override public void beginCustomStructure(IdentifierToken identifier, NameToken name, PropertyMap properties) { if (depth++ == 0) count++; }
+            @Override public void endCustomStructure(IdentifierToken identifier, NameToken name, PropertyMap properties) { depth--; }
+        };
+    }
+}
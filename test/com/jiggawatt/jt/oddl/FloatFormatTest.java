@@ -0,0 +1,137 @@
+/*
+ * Jiggatech OpenDDL Parser
+ *
+ * Copyright (c) 2019 Nikita Leonidov
+ *
+ * MIT License
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.jiggawatt.jt.oddl;
+
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.math.RoundingMode;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class FloatFormatTest {
+
+    @Test
+    public void formatLikeDoubleToString() {
+        assertEquals("0.0", format(0.0));
+        assertEquals("-0.0", format(-0.0));
+        assertEquals("0.1", format(0.1));
+        assertEquals("100.0", format(100));
+        assertEquals("1234567.0", format(1234567));
+        assertEquals("1.0E7", format(1e7));
+        assertEquals("0.001", format(0.001));
+        assertEquals("1.0E-4", format(1e-4));
+        assertEquals("1.0E23", format(1e23));
+        assertEquals("4.9E-324", format(Double.MIN_VALUE));
+        assertEquals("1.7976931348623157E308", format(Double.MAX_VALUE));
+        assertEquals("1.4E-45", format(Float.MIN_VALUE));
+        assertEquals("3.4028235E38", format(Float.MAX_VALUE));
+        assertEquals("0.3", format(0.3f));
+    }
+
+    @Test
+    public void writeShortestRoundTripDoubles() {
+        Random rnd = new Random(2019);
+        for (int i=0; i<20_000; i++) {
+            double v = Double.longBitsToDouble(rnd.nextLong());
+            if (Double.isNaN(v) || Double.isInfinite(v)) {
+                continue;
+            }
+            String s = format(v);
+            assertEquals(s, v, Double.parseDouble(s), 0.0);
+            assertEquals(s, shortestDoubleDigits(v), digits(s));
+        }
+    }
+
+    @Test
+    public void writeShortestRoundTripFloats() {
+        Random rnd = new Random(2019);
+        for (int i=0; i<20_000; i++) {
+            float v = Float.intBitsToFloat(rnd.nextInt());
+            if (Float.isNaN(v) || Float.isInfinite(v)) {
+                continue;
+            }
+            String s = format(v);
+            assertEquals(s, v, Float.parseFloat(s), 0.0f);
+            assertEquals(s, shortestFloatDigits(v), digits(s));
+        }
+    }
+
+    @Test
+    public void convertAllHalfValues() {
+        for (int h=0; h<0x10000; h++) {
+            float f = FloatFormat.fromHalfBits(h);
+            if (!Float.isNaN(f)) {
+                assertEquals(Integer.toHexString(h), h, FloatFormat.toHalfBits(f));
+            }
+        }
+        assertEquals(0x3c00, FloatFormat.toHalfBits(1.0f + 0x1p-11f));  // tie rounds to even
+        assertEquals(0x3c02, FloatFormat.toHalfBits(1.0f + 0x1p-10f + 0x1p-11f));
+        assertEquals(0x7c00, FloatFormat.toHalfBits(70000f));
+    }
+
+    private static String format(double v) {
+        byte[] buf = new byte[FloatFormat.MAX_LENGTH];
+        return new String(buf, 0, FloatFormat.writeDouble(v, buf, 0), StandardCharsets.US_ASCII);
+    }
+
+    private static String format(float v) {
+        byte[] buf = new byte[FloatFormat.MAX_LENGTH];
+        return new String(buf, 0, FloatFormat.writeFloat(v, buf, 0), StandardCharsets.US_ASCII);
+    }
+
+    private static int shortestDoubleDigits(double v) {
+        BigDecimal exact = new BigDecimal(v);
+        for (int p=1; ; p++) {
+            if (exact.round(new MathContext(p, RoundingMode.HALF_EVEN)).doubleValue() == v) {
+                return p;
+            }
+        }
+    }
+
+    private static int shortestFloatDigits(float v) {
+        BigDecimal exact = new BigDecimal(v);
+        for (int p=1; ; p++) {
+            if (exact.round(new MathContext(p, RoundingMode.HALF_EVEN)).floatValue() == v) {
+                return p;
+            }
+        }
+    }
+
+    /**
+     * @return the number of significant digits in a formatted value
+     */
+    private static int digits(String s) {
+        int e = s.indexOf('E');
+        String m = (e < 0 ? s : s.substring(0, e)).replace("-", "").replace(".", "");
+        m = m.replaceAll("^0+", "").replaceAll("0+$", "");
+        return Math.max(1, m.length());
+    }
+}
@@ -0,0 +1,159 @@
+/*
+ * Jiggatech OpenDDL Parser
+ *
+ * Copyright (c) 2019 Nikita Leonidov
+ *
+ * MIT License
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package com.jiggawatt.jt.oddl;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class InterningListenerTest {
+
+    @Test
+    public void shareIdenticalStructuresAcrossDocuments() throws IOException, ODDLParseException, ODDLFormatException {
+        StructureInterner interner = new StructureInterner();
+        List<Object> a = build("Mesh $a { float {1, 2, 3} }", interner);
+        List<Object> b = build("Mesh $b { float {1.0, 2.0, 0x40400000} }", interner);
+
+        assertSame(a.get(0), b.get(0));
+        assertEquals(2, interner.getHitCount());
+    }
+
+    @Test
+    public void shareIdenticalStructuresWithinDocument() throws IOException, ODDLParseException, ODDLFormatException {
+        StructureInterner interner = new StructureInterner();
+        List<Object> r = build("Mesh { float[2] {{1, 2}, {3, 4}} } Other {} Mesh { float[2] {{1, 2}, {3, 4}} }", interner);
+
+        assertSame(r.get(0), r.get(2));
+        assertNotSame(r.get(0), r.get(1));
+    }
+
+    @Test
+    public void ignorePropertyOrder() throws IOException, ODDLParseException, ODDLFormatException {
+        assertEquals(digests("M (x=1, y=\"s\") {}"), digests("M (y=\"s\", x=1) {}"));
+    }
+
+    @Test
+    public void distinguishDifferentContent() throws IOException, ODDLParseException, ODDLFormatException {
+        List<Long> d = digests(
+            "M {float {1, 2}} M {float {2, 1}} M {double {1, 2}} M {float[1] {{1}, {2}}} M (x=1) {float {1, 2}} " +
+            "M {float %a {1, 2}} N {float {1, 2}}"
+        );
+
+        List<Long> tops = new ArrayList<>();
+        for (int i=1; i<d.size(); i+=2) {
+            tops.add(d.get(i));
+        }
+        assertEquals(7, tops.size());
+        assertEquals(7, tops.stream().distinct().count());
+    }
+
+    @Test
+    public void ignoreOwnName() throws IOException, ODDLParseException, ODDLFormatException {
+        List<Long> d = digests("M $one {float {1}} M $two {float {1}}");
+        assertEquals(d.get(1), d.get(3));
+    }
+
+    @Test
+    public void keepUnequalObjectsWithSameDigest() {
+        StructureInterner interner = new StructureInterner();
+        assertEquals("a", interner.intern(7, "a"));
+        assertEquals("b", interner.intern(7, "b"));
+        assertSame(interner.intern(7, new String("a")), interner.intern(7, "a"));
+        assertEquals(2, interner.size());
+    }
+
+    @Test(expected=IllegalStateException.class)
+    public void rejectDigestOutsideEnd() {
+        new InterningListener<>(new DigestCollector(), new StructureInterner()).digest();
+    }
+
+    private static List<Object> build(String text, StructureInterner interner) throws IOException, ODDLParseException, ODDLFormatException {
+        Builder builder = new Builder();
+        builder.interning = new InterningListener<>(builder, interner);
+        return new ODDLReader(new StringReader(text)).read(builder.interning);
+    }
+
+    private static List<Long> digests(String text) throws IOException, ODDLParseException, ODDLFormatException {
+        DigestCollector collector = new DigestCollector();
+        collector.interning = new InterningListener<>(collector, new StructureInterner());
+        return new ODDLReader(new StringReader(text)).read(collector.interning);
+    }
+
+    /** builds a list per custom structure and an array per data list, interning both */
+    private static final class Builder extends NoopListener<List<Object>> {
+        InterningListener<List<Object>> interning;
+
+        final Deque<List<Object>> stack  = new ArrayDeque<>();
+        final List<Object>        top    = new ArrayList<>();
+        final List<Double>        values = new ArrayList<>();
+
+        private List<Object> current() {
+            return stack.isEmpty() ? top : stack.peek();
+        }
+
+        private void endData() {
+            double[] data = new double[values.size()];
+            for (int i=0; i<data.length; i++) {
+                data[i] = values.get(i);
+            }
+            values.clear();
+            current().add(interning.intern(data));
+        }
+
+        @Override public List<Object> end(int row, int col) { return top; }
+        @Override public void value(FloatToken value) { values.add(value.getValue()); }
+        @Override public void endListStructure(DataTypeToken dataType, NameToken name) { endData(); }
+        @Override public void endArrayListStructure(DataTypeToken dataType, int subarraySize, NameToken name) { endData(); }
+        @Override public void beginCustomStructure(IdentifierToken identifier, NameToken name, PropertyMap properties) { stack.push(new ArrayList<>()); }
+
+        @Override
+        public void endCustomStructure(IdentifierToken identifier, NameToken name, PropertyMap properties) {
+            List<Object> children = stack.pop();
+            current().add(interning.intern(children));
+        }
+    }
+
+    /** records the digest of every structure as it ends */
+    private static final class DigestCollector extends NoopListener<List<Long>> {
+        InterningListener<List<Long>> interning;
+        final List<Long> digests = new ArrayList<>();
+
+        @Override public void begin() { digests.clear(); }
+        @Override public List<Long> end(int row, int col) { return new ArrayList<>(digests); }
+        @Override public void endListStructure(DataTypeToken dataType, NameToken name) { digests.add(interning.digest()); }
+        @Override public void endArrayListStructure(DataTypeToken dataType, int subarraySize, NameToken name) { digests.add(interning.digest()); }
+        @Override public void endCustomStructure(IdentifierToken identifier, NameToken name, PropertyMap properties) { digests.add(interning.digest()); }
+    }
+}
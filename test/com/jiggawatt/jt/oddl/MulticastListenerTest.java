@@ -0,0 +1,174 @@
+/*
+ * Jiggatech OpenDDL Parser
+ *
+ * Copyright (c) 2019 Nikita Leonidov
+ *
+ * MIT License
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package com.jiggawatt.jt.oddl;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.Assert.*;
+
+public class MulticastListenerTest {
+
+    @Test
+    public void passEventsToEveryListener() throws IOException, ODDLParseException, ODDLFormatException {
+        String text = new CorpusGenerator(5).setSize(20_000).generate();
+        StringWriter a = new StringWriter();
+        StringWriter b = new StringWriter();
+        ODDLWriter wa = new ODDLWriter(a);
+        ODDLWriter wb = new ODDLWriter(b);
+
+        List<Object> results = new ODDLReader(new StringReader(text)).read(new MulticastListener(wa.asListener(), wb.asListener()));
+        wa.flush();
+        wb.flush();
+
+        assertEquals(Arrays.asList(null, null), results);
+        assertEquals(rewrite(text), a.toString());
+        assertEquals(rewrite(text), b.toString());
+    }
+
+    @Test
+    public void callListenersInOrder() throws IOException, ODDLParseException, ODDLFormatException {
+        List<String> log = new ArrayList<>();
+        List<Object> results = new ODDLReader(new StringReader("A {} B {}")).read(
+            new MulticastListener(new Recorder("1", log), new Recorder("2", log))
+        );
+        assertEquals(Arrays.asList("1:A", "2:A", "1:B", "2:B"), log);
+        assertEquals(Arrays.asList("1", "2"), results);
+    }
+
+    @Test
+    public void matchSerialResultsWhenConcurrent() throws IOException, ODDLParseException, ODDLFormatException {
+        String text = new CorpusGenerator(9).setSize(100_000).generate();
+        List<StringWriter> outs    = new ArrayList<>();
+        List<ODDLWriter>   writers = new ArrayList<>();
+        List<ODDLListener<?>> listeners = new ArrayList<>();
+        for (int i=0; i<3; i++) {
+            StringWriter sw = new StringWriter();
+            ODDLWriter w = new ODDLWriter(sw);
+            outs.add(sw);
+            writers.add(w);
+            listeners.add(w.asListener());
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(3);
+        try (MulticastListener all = new MulticastListener(listeners, executor, 64)) {
+            assertTrue(all.isConcurrent());
+            new ODDLReader(new StringReader(text)).read(all);
+        } finally {
+            executor.shutdown();
+        }
+
+        String expected = rewrite(text);
+        for (int i=0; i<3; i++) {
+            writers.get(i).flush();
+            assertEquals(expected, outs.get(i).toString());
+        }
+    }
+
+    @Test
+    public void returnConcurrentResultsInOrder() throws IOException, ODDLParseException, ODDLFormatException {
+        List<String> log1 = new ArrayList<>();
+        List<String> log2 = new ArrayList<>();
+        ExecutorService executor = Executors.newCachedThreadPool();
+        try (MulticastListener all = new MulticastListener(Arrays.asList(new Recorder("1", log1), new Recorder("2", log2)), executor, 2)) {
+            assertEquals(Arrays.asList("1", "2"), new ODDLReader(new StringReader("A {} B {} C {}")).read(all));
+        } finally {
+            executor.shutdown();
+        }
+        assertEquals(Arrays.asList("1:A", "1:B", "1:C"), log1);
+        assertEquals(Arrays.asList("2:A", "2:B", "2:C"), log2);
+    }
+
+    @Test
+    public void abortReadWhenConcurrentListenerFails() throws IOException, ODDLParseException {
+        String text = new CorpusGenerator(3).setSize(500_000).generate();
+        ExecutorService executor = Executors.newCachedThreadPool();
+        try (MulticastListener all = new MulticastListener(
+            Arrays.asList(new ODDLWriter(new StringWriter()).asListener(), new Recorder("fail", new ArrayList<>())),
+            executor,
+            16
+        )) {
+            new ODDLReader(new StringReader(text)).read(all);
+            fail();
+        } catch (ODDLFormatException e) {
+            assertEquals("at line 0, column 0: fail", e.getMessage());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test(expected=IllegalArgumentException.class)
+    public void rejectEmptyQueue() {
+        new MulticastListener(Arrays.asList(new Recorder("1", new ArrayList<>())), Runnable::run, 0);
+    }
+
+    private static String rewrite(String text) throws IOException, ODDLParseException, ODDLFormatException {
+        StringWriter sw = new StringWriter();
+        ODDLWriter out = new ODDLWriter(sw);
+        new ODDLReader(new StringReader(text)).read(out.asListener());
+        out.flush();
+        return sw.toString();
+    }
+
+    /** logs the top-level custom structures it sees; a recorder named "fail" throws on the first one */
+    private static final class Recorder extends NoopListener<String> {
+        final String       id;
+        final List<String> log;
+        int depth;
+
+        Recorder(String id, List<String> log) {
+            this.id  = id;
+            this.log = log;
+        }
+
+        @Override public String end(int row, int col) { return id; }
+
+        @Override
+        public void beginCustomStructure(IdentifierToken identifier, NameToken name, PropertyMap properties) throws ODDLFormatException {
+            if ("fail".equals(id)) {
+                throw new ODDLFormatException(0, 0, "fail");
+            }
+            if (depth++ == 0) {
+                log.add(id + ":" + identifier.getText());
+            }
+        }
+
+        @Override
+        public void endCustomStructure(IdentifierToken identifier, NameToken name, PropertyMap properties) {
+            depth--;
+        }
+    }
+}
@@ -0,0 +1,53 @@
+/*
+ * Jiggatech OpenDDL Parser
+ *
+ * Copyright (c) 2019 Nikita Leonidov
+ *
+ * MIT License
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.jiggawatt.jt.oddl;
+
+/**
+ * A listener that ignores every event and returns <tt>null</tt>. Test listeners extend it and override only the events
+ * they record.
+ *
+ * @param <T> the type of the result produced by the listener
+ */
+class NoopListener<T> implements ODDLListener<T> {
+
+    @Override public void begin() throws ODDLFormatException {}
+    @Override public T end(int row, int col) throws ODDLFormatException { return null; }
+    @Override public void value(BoolToken value) throws ODDLFormatException {}
+    @Override public void value(IntToken value) throws ODDLFormatException {}
+    @Override public void value(FloatToken value) throws ODDLFormatException {}
+    @Override public void value(StringToken value) throws ODDLFormatException {}
+    @Override public void value(RefToken value) throws ODDLFormatException {}
+    @Override public void value(DataTypeToken value) throws ODDLFormatException {}
+    @Override public void beginListStructure(DataTypeToken dataType, NameToken name) throws ODDLFormatException {}
+    @Override public void endListStructure(DataTypeToken dataType, NameToken name) throws ODDLFormatException {}
+    @Override public void beginArrayListStructure(DataTypeToken dataType, int subarraySize, NameToken name) throws ODDLFormatException {}
+    @Override public void endArrayListStructure(DataTypeToken dataType, int subarraySize, NameToken name) throws ODDLFormatException {}
+    @Override public void beginSubArray(DataTypeToken dataType, int subarraySize) throws ODDLFormatException {}
+    @Override public void endSubArray(DataTypeToken dataType, int subarraySize) throws ODDLFormatException {}
+    @Override public void beginCustomStructure(IdentifierToken identifier, NameToken name, PropertyMap properties) throws ODDLFormatException {}
+    @Override public void endCustomStructure(IdentifierToken identifier, NameToken name, PropertyMap properties) throws ODDLFormatException {}
+}
@@ -0,0 +1,180 @@
+/*
+ * Jiggatech OpenDDL Parser
+ *
+ * Copyright (c) 2019 Nikita Leonidov
+ *
+ * MIT License
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.jiggawatt.jt.oddl;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+public class ODDLBinaryTest {
+
+    private static final String DOCUMENT =
+        "Geometry $g (name = \"box\", scale = 0.5, count = 0x10, visible = true, mesh = $g%m, kind = u16)\n" +
+        "{\n" +
+        "\tMesh %m\n" +
+        "\t{\n" +
+        "\t\tfloat[3] %pos {{1.0, 2.0, 3.0}, {-4.5, 5.0, 6.0}}\n" +
+        "\t\tu16 {0, 65535, 7}\n" +
+        "\t\ti8 {-128, 127}\n" +
+        "\t\thalf {1.5, -2.0}\n" +
+        "\t\tdouble {0.1}\n" +
+        "\t\tu64 {18446744073709551615}\n" +
+        "\t}\n" +
+        "\tbool {true, false}\n" +
+        "\tstring {\"café\", \"\"}\n" +
+        "\tref {$g%m, null}\n" +
+        "\ttype {float, i32}\n" +
+        "\tEmpty {}\n" +
+        "\tint32[2] {}\n" +
+        "}\n";
+
+    @Test
+    public void replayMatchesTextReader() throws IOException, ODDLParseException, ODDLFormatException {
+        String expect = rewrite(DOCUMENT);
+
+        StringWriter sw = new StringWriter();
+        ODDLWriter out = new ODDLWriter(sw);
+        new ODDLBinaryReader(encode(DOCUMENT)).read(out.asListener());
+        out.close();
+
+        assertEquals(expect, sw.toString());
+    }
+
+    @Test
+    public void alignPackedLists() throws IOException, ODDLParseException, ODDLFormatException {
+        ByteBuffer data = encode("u8 {1, 2, 3} double %d {2.5, 3.5} i16[2] {{1, -1}}");
+
+        new ODDLBinaryReader(data).read(new ViewListener() {
+            @Override
+            public boolean dataList(DataTypeToken dataType, int subarraySize, NameToken name, ByteBuffer elements) {
+                if (dataType.getValue() == DataType.FLOAT) {
+                    assertEquals(ByteOrder.LITTLE_ENDIAN, elements.order());
+                    assertEquals("%d", name.getText());
+                    assertEquals(16, elements.remaining());
+                    assertEquals(0, offsetOf(elements, data) % 8);
+                    assertEquals(3.5, elements.getDouble(8), 0.0);
+                } else if (subarraySize == 2) {
+                    assertEquals(-1, elements.getShort(2));
+                } else {
+                    assertEquals(3, elements.remaining());
+                }
+                return true;
+            }
+        });
+    }
+
+    @Test
+    public void fallBackToEventsWhenViewDeclined() throws IOException, ODDLParseException, ODDLFormatException {
+        ByteBuffer data = encode("float {1.0, 2.0}");
+        StringBuilder sb = new StringBuilder();
+
+        new ODDLBinaryReader(data).read(new ViewListener() {
+            @Override
+            public boolean dataList(DataTypeToken dataType, int subarraySize, NameToken name, ByteBuffer elements) {
+                return false;
+            }
+
+            @Override
+            public void value(FloatToken value) {
+                sb.append(value.getValue()).append(' ');
+            }
+        });
+
+        assertEquals("1.0 2.0 ", sb.toString());
+    }
+
+    @Test
+    public void readMappedFile() throws IOException, ODDLParseException, ODDLFormatException {
+        Path path = Files.createTempFile("oddl", ".bin");
+        try {
+            ByteBuffer data = encode(DOCUMENT);
+            Files.write(path, Arrays.copyOf(data.array(), data.limit()));
+
+            StringWriter sw = new StringWriter();
+            ODDLWriter out = new ODDLWriter(sw);
+            ODDLBinaryReader.open(path).read(out.asListener());
+            out.close();
+
+            assertEquals(rewrite(DOCUMENT), sw.toString());
+        } finally {
+            Files.delete(path);
+        }
+    }
+
+    @Test(expected=BinaryFormatException.class)
+    public void failOnTruncatedDocument() throws IOException, ODDLParseException, ODDLFormatException {
+        ByteBuffer data = encode(DOCUMENT);
+        data.limit(data.limit() - 1);
+        new ODDLBinaryReader(data).read(new ViewListener());
+    }
+
+    @Test(expected=BinaryFormatException.class)
+    public void failOnTextInput() throws IOException, ODDLParseException, ODDLFormatException {
+        new ODDLBinaryReader(ByteBuffer.wrap(DOCUMENT.getBytes())).read(new ViewListener());
+    }
+
+    // test helpers
+    //==================================================================================================================
+    private static ByteBuffer encode(String text) throws IOException, ODDLParseException, ODDLFormatException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ODDLBinaryWriter out = new ODDLBinaryWriter(bytes)) {
+            new ODDLReader(new StringReader(text)).read(out);
+        }
+        return ByteBuffer.wrap(bytes.toByteArray());
+    }
+
+    private static String rewrite(String text) throws IOException, ODDLParseException, ODDLFormatException {
+        StringWriter sw = new StringWriter();
+        ODDLWriter out = new ODDLWriter(sw);
+        new ODDLReader(new StringReader(text)).read(out.asListener());
+        out.close();
+        return sw.toString();
+    }
+
+    private static int offsetOf(ByteBuffer view, ByteBuffer document) {
+        for (int i=0; i+view.remaining()<=document.limit(); i++) {
+            if (document.duplicate().position(i).limit(i+view.remaining()).equals(view)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static class ViewListener extends NoopListener<Void> implements ODDLDataListListener<Void> {
+        @Override public boolean dataList(DataTypeToken dataType, int subarraySize, NameToken name, ByteBuffer elements) { return true; }
+    }
+}
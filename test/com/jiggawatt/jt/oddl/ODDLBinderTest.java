@@ -0,0 +1,275 @@
+/*
+ * Jiggatech OpenDDL Parser
+ *
+ * Copyright (c) 2019 Nikita Leonidov
+ *
+ * MIT License
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package com.jiggawatt.jt.oddl;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.lang.invoke.MethodHandles;
+import java.nio.ByteBuffer;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class ODDLBinderTest {
+
+    private static final String DOCUMENT =
+            "Metric (key=\"distance\") { float {0.5} }\n" +
+            "GeometryNode $node (visible=false, lod=2, weight=0.25, layer=3, tag=\"box\", kind=float) {\n" +
+            "    Name { string {\"Box\"} }\n" +
+            "    Transform { float[4] {{1, 0, 0, 1}, {0, 1, 1, 0}} }\n" +
+            "    int32 %indices {0, 1, 2}\n" +
+            "    int32 %counts {3}\n" +
+            "    bool {true, false}\n" +
+            "    GeometryNode (link=$node) { Transform { float[4] {{2, 0, 0, 2}} } }\n" +
+            "}\n" +
+            "GeometryNode {}\n";
+
+    @ODDLStructure("Metric")
+    static final class Metric {
+        @ODDLProperty String  key;
+        @ODDLData     float[] value;
+    }
+
+    @ODDLStructure("Transform")
+    static final class Transform {
+        @ODDLData float[] matrix;
+    }
+
+    @ODDLStructure("GeometryNode")
+    static class GeometryNode {
+        @ODDLProperty          boolean  visible = true;
+        @ODDLProperty          long     lod;
+        @ODDLProperty          double   weight;
+        @ODDLProperty          short    layer;
+        @ODDLProperty("tag")   String   label;
+        @ODDLProperty          DataType kind;
+        @ODDLProperty          RefToken link;
+
+        @ODDLChild             Transform          transform;
+        @ODDLChild             List<GeometryNode> children;
+        @ODDLData("indices")   int[]              indices;
+        @ODDLData("counts")    long[]             counts;
+        @ODDLData              boolean[]          flags;
+
+        private GeometryNode() {
+        }
+    }
+
+    static final class Scene {
+        @ODDLChild Metric             metric;
+        @ODDLChild List<GeometryNode> nodes;
+    }
+
+    @Test
+    public void bindDocument() throws IOException, ODDLParseException, ODDLFormatException {
+        Scene scene = new ODDLReader(new StringReader(DOCUMENT)).read(binder().listener());
+        assertScene(scene);
+        assertEquals("$node", scene.nodes.get(0).children.get(0).link.getText());
+    }
+
+    @Test
+    public void bindBinaryDocument() throws IOException, ODDLParseException, ODDLFormatException {
+        Scene scene = new ODDLBinaryReader(encode(DOCUMENT)).read(binder().listener());
+        assertScene(scene);
+    }
+
+    @Test
+    public void convertNarrowBinaryLists() throws IOException, ODDLParseException, ODDLFormatException {
+        Scene scene = new ODDLBinaryReader(encode("GeometryNode { int16 %indices {-1, 7} double {1.5} }"))
+                .read(binder().listener());
+        assertArrayEquals(new int[] {-1, 7}, scene.nodes.get(0).indices);
+    }
+
+    @Test
+    public void reuseListener() throws IOException, ODDLParseException, ODDLFormatException {
+        ODDLDataListListener<Scene> listener = binder().listener();
+        Scene first  = new ODDLReader(new StringReader(DOCUMENT)).read(listener);
+        Scene second = new ODDLReader(new StringReader("GeometryNode { Transform { float {3} } }")).read(listener);
+
+        assertNotSame(first, second);
+        assertNull(second.metric);
+        assertEquals(1, second.nodes.size());
+        assertArrayEquals(new float[] {3}, second.nodes.get(0).transform.matrix, 0);
+        assertScene(first);
+    }
+
+    @Test
+    public void rejectMistypedProperties() throws IOException, ODDLParseException {
+        try {
+            new ODDLReader(new StringReader("GeometryNode (visible=1) {}")).read(binder().listener());
+            fail();
+        } catch (ODDLFormatException e) {
+            assertTrue(e.getMessage(), e.getMessage().endsWith("property visible of GeometryNode must be of type BOOL"));
+        }
+    }
+
+    @ODDLStructure("Packet")
+    static final class Packet {
+        @ODDLProperty("size") byte   sz;
+        @ODDLData             byte[] bytes;
+    }
+
+    static final class PacketHolder {
+        @ODDLChild Packet packet;
+    }
+
+    @Test
+    public void rejectOutOfRangeIntegers() throws IOException, ODDLParseException, ODDLFormatException {
+        assertFormatError("GeometryNode (layer=40000) {}", "property layer of GeometryNode is out of range for short");
+        assertFormatError("GeometryNode { int64 %indices {1, 5000000000} }",
+                "data list element of GeometryNode is out of range for int");
+        assertFormatError("Packet (size=300) {}", "property size of Packet is out of range for byte");
+        assertFormatError("Packet { unsigned_int8 {200} }", "data list element of Packet is out of range for byte");
+    }
+
+    @Test
+    public void rejectOutOfRangeBinaryIntegers() throws IOException, ODDLParseException, ODDLFormatException {
+        assertBinaryFormatError("GeometryNode { unsigned_int32 %indices {1, 3000000000} }",
+                "data list element of GeometryNode is out of range for int");
+        assertBinaryFormatError("Packet { unsigned_int8 {200} }", "data list element of Packet is out of range for byte");
+
+        PacketHolder holder = new ODDLBinaryReader(encode("Packet { unsigned_int8 {1, 127} int8 {-1, 7} }"))
+                .read(packetBinder().listener());
+        assertArrayEquals(new byte[] {-1, 7}, holder.packet.bytes);
+    }
+
+    private static void assertFormatError(String text, String message) throws IOException, ODDLParseException {
+        try {
+            new ODDLReader(new StringReader(text)).read(listener(text));
+            fail(text);
+        } catch (ODDLFormatException e) {
+            assertTrue(e.getMessage(), e.getMessage().endsWith(message));
+        }
+    }
+
+    private static void assertBinaryFormatError(String text, String message)
+            throws IOException, ODDLParseException, ODDLFormatException {
+        final ByteBuffer data = encode(text);
+        try {
+            new ODDLBinaryReader(data).read(listener(text));
+            fail(text);
+        } catch (ODDLFormatException e) {
+            assertTrue(e.getMessage(), e.getMessage().endsWith(message));
+        }
+    }
+
+    private static ODDLDataListListener<?> listener(String text) {
+        // each document names the structure of the class bound at its root
+        return text.startsWith("Packet") ? packetBinder().listener() : binder().listener();
+    }
+
+    @Test
+    public void cacheBindings() {
+        ClassBinding binding = ClassBinding.of(Scene.class, MethodHandles.lookup());
+        assertSame(binding, ClassBinding.of(Scene.class, MethodHandles.lookup()));
+        assertSame(binding.child("GeometryNode").binding, ClassBinding.of(GeometryNode.class, MethodHandles.lookup()));
+    }
+
+    static final class FinalField {
+        @ODDLChild final Metric metric = null;
+    }
+
+    static final class UnannotatedChild {
+        @ODDLChild Scene scene;
+    }
+
+    @ODDLStructure("Boxed")
+    static final class BoxedProperty {
+        @ODDLProperty Integer value;
+    }
+
+    static final class BoxedHolder {
+        @ODDLChild BoxedProperty boxed;
+    }
+
+    static final class UnnamedLists {
+        @ODDLData byte[] bytes;
+        @ODDLData int[]  ints;
+    }
+
+    @Test
+    public void rejectInvalidClasses() {
+        for (Class<?> c : List.of(FinalField.class, UnannotatedChild.class, BoxedHolder.class, UnnamedLists.class)) {
+            try {
+                ODDLBinder.of(c, MethodHandles.lookup());
+                fail(c.getName());
+            } catch (IllegalArgumentException expected) {
+            }
+        }
+    }
+
+    @Test(expected=IllegalArgumentException.class)
+    public void checkLookupOfCachedBindings() {
+        binder();
+        ODDLBinder.of(Scene.class, MethodHandles.publicLookup());
+    }
+
+    private static ODDLBinder<Scene> binder() {
+        return ODDLBinder.of(Scene.class, MethodHandles.lookup());
+    }
+
+    private static ODDLBinder<PacketHolder> packetBinder() {
+        return ODDLBinder.of(PacketHolder.class, MethodHandles.lookup());
+    }
+
+    private static void assertScene(Scene scene) {
+        assertEquals("distance", scene.metric.key);
+        assertArrayEquals(new float[] {0.5f}, scene.metric.value, 0);
+        assertEquals(2, scene.nodes.size());
+
+        GeometryNode node = scene.nodes.get(0);
+        assertFalse(node.visible);
+        assertEquals(2, node.lod);
+        assertEquals(0.25, node.weight, 0);
+        assertEquals(3, node.layer);
+        assertEquals("box", node.label);
+        assertEquals(DataType.FLOAT, node.kind);
+        assertArrayEquals(new float[] {1, 0, 0, 1, 0, 1, 1, 0}, node.transform.matrix, 0);
+        assertArrayEquals(new int[] {0, 1, 2}, node.indices);
+        assertArrayEquals(new long[] {3}, node.counts);
+        assertArrayEquals(new boolean[] {true, false}, node.flags);
+
+        assertEquals(1, node.children.size());
+        assertArrayEquals(new float[] {2, 0, 0, 2}, node.children.get(0).transform.matrix, 0);
+        assertNull(node.children.get(0).children);
+
+        assertTrue(scene.nodes.get(1).visible);
+        assertNull(scene.nodes.get(1).transform);
+    }
+
+    private static ByteBuffer encode(String text) throws IOException, ODDLParseException, ODDLFormatException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ODDLBinaryWriter out = new ODDLBinaryWriter(bytes)) {
+            new ODDLReader(new StringReader(text)).read(out);
+        }
+        return ByteBuffer.wrap(bytes.toByteArray());
+    }
+}
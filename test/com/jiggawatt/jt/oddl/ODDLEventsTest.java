@@ -0,0 +1,141 @@
+/*
+ * Jiggatech OpenDDL Parser
+ *
+ * Copyright (c) 2019 Nikita Leonidov
+ *
+ * MIT License
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package com.jiggawatt.jt.oddl;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.Test;
+
+import java.io.Reader;
+import java.io.StringReader;
+import java.lang.reflect.Proxy;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.jar.Attributes;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+import java.util.jar.Manifest;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.*;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * Checks the Flight Recorder events of the Java 11 {@link ODDLEvents}. Tests run against the compiled classes rather
+ * than the multi-release jar, so the test packs them into a jar of its own and reads a document with the classes
+ * loaded from it.
+ */
+public class ODDLEventsTest {
+
+    private static final String[] EVENTS = {
+        "com.jiggawatt.jt.oddl.Document", "com.jiggawatt.jt.oddl.Structure", "com.jiggawatt.jt.oddl.DataList",
+        "com.jiggawatt.jt.oddl.InputRead"
+    };
+
+    @Test
+    public void emitParseEvents() throws Exception {
+        assumeTrue(Runtime.version().version().get(0) >= 11);
+
+        Path dir  = Files.createTempDirectory("oddl-events");
+        Path jar  = multiReleaseJar(dir.resolve("jt-oddl.jar"));
+        Path dump = dir.resolve("events.jfr");
+
+        // the platform loader would delegate the package to this module, so only the bootstrap loader is a parent
+        try (URLClassLoader loader = new URLClassLoader(new URL[] {jar.toUri().toURL()}, null);
+             Recording recording = new Recording()) {
+            for (String name : EVENTS) {
+                recording.enable(name).withThreshold(Duration.ZERO);
+            }
+            recording.start();
+            read(loader, "Metric (key=\"distance\") { float {1.0} }");
+            recording.stop();
+            recording.dump(dump);
+        }
+
+        List<RecordedEvent> events = RecordingFile.readAllEvents(dump);
+        for (String name : EVENTS) {
+            assertTrue(name, events.stream().anyMatch(e -> e.getEventType().getName().equals(name)));
+        }
+        for (RecordedEvent e : events) {
+            if (e.getEventType().getName().equals("com.jiggawatt.jt.oddl.Structure")) {
+                assertEquals("Metric", e.getString("identifier"));
+            }
+            // the document is read from a java.io.Reader, which has no byte count
+            if (e.getEventType().getName().equals("com.jiggawatt.jt.oddl.InputRead") && e.getInt("characters") > 0) {
+                assertEquals(-1, e.getLong("bytes"));
+            }
+        }
+
+        try (Stream<Path> files = Files.walk(dir)) {
+            for (Path p : files.sorted((a, b) -> b.compareTo(a)).collect(Collectors.toList())) {
+                Files.delete(p);
+            }
+        }
+    }
+
+    /**
+     * Reads a document with a reader loaded by the given class loader and a listener that ignores every event.
+     */
+    private static void read(ClassLoader loader, String text) throws Exception {
+        Class<?> readerClass   = loader.loadClass("com.jiggawatt.jt.oddl.ODDLReader");
+        Class<?> listenerClass = loader.loadClass("com.jiggawatt.jt.oddl.ODDLListener");
+
+        Object listener = Proxy.newProxyInstance(loader, new Class<?>[] {listenerClass}, (proxy, method, args) -> null);
+        Object reader   = readerClass.getConstructor(Reader.class).newInstance(new StringReader(text));
+        readerClass.getMethod("read", listenerClass).invoke(reader, listener);
+    }
+
+    private static Path multiReleaseJar(Path jar) throws Exception {
+        Path classes = Paths.get(ODDLReader.class.getProtectionDomain().getCodeSource().getLocation().toURI());
+
+        Manifest manifest = new Manifest();
+        manifest.getMainAttributes().put(Attributes.Name.MANIFEST_VERSION, "1.0");
+        manifest.getMainAttributes().put(new Attributes.Name("Multi-Release"), "true");
+
+        List<Path> files = new ArrayList<>();
+        try (Stream<Path> walk = Files.walk(classes)) {
+            walk.filter(Files::isRegularFile).forEach(files::add);
+        }
+        try (JarOutputStream out = new JarOutputStream(Files.newOutputStream(jar), manifest)) {
+            for (Path p : files) {
+                out.putNextEntry(new JarEntry(classes.relativize(p).toString().replace('\\', '/')));
+                Files.copy(p, out);
+                out.closeEntry();
+            }
+        }
+        return jar;
+    }
+}
@@ -0,0 +1,124 @@
+/*
+ * Jiggatech OpenDDL Parser
+ *
+ * Copyright (c) 2019 Nikita Leonidov
+ *
+ * MIT License
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package com.jiggawatt.jt.oddl;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.*;
+
+public class ODDLInputStreamTest {
+
+    @Test
+    public void normalizeLineEndings() throws IOException {
+        assertEquals("a\nb\nc\n\nd", readAll(new ODDLInputStream(new StringReader("a\r\nb\rc\n\r\nd"))));
+    }
+
+    @Test
+    public void normalizeCarriageReturnAtEnd() throws IOException {
+        ODDLInputStream in = new ODDLInputStream(new StringReader("a\r"));
+        assertEquals('a', in.read());
+        assertEquals('\n', in.read());
+        assertEquals(-1, in.read());
+        assertEquals(-1, in.read());
+    }
+
+    @Test
+    public void normalizeLineEndingAcrossBlocks() throws IOException {
+        StringBuilder sb = new StringBuilder();
+        for (int i=0; i<8191; i++) {
+            sb.append('x');
+        }
+        String text = sb.append("\r\ny").toString();
+
+        String read = readAll(new ODDLInputStream(new StringReader(text)));
+        assertEquals(8193, read.length());
+        assertEquals("x\ny", read.substring(8190));
+    }
+
+    @Test
+    public void peekAcrossBlocks() throws IOException {
+        StringBuilder sb = new StringBuilder();
+        for (int i=0; i<8190; i++) {
+            sb.append('x');
+        }
+        ODDLInputStream in = new ODDLInputStream(new StringReader(sb.append("abc").toString()));
+        for (int i=0; i<8189; i++) {
+            in.read();
+        }
+        assertEquals('x', in.peek(0));
+        assertEquals('a', in.peek(1));
+        assertEquals('b', in.peek(2));
+        assertEquals('x', in.read());
+        assertEquals("abc", readAll(in));
+    }
+
+    @Test
+    public void readInBlocks() throws IOException {
+        final int[] calls = new int[1];
+        Reader counting = new StringReader(new CorpusGenerator(1).setSize(100_000).generate()) {
+            @Override
+            public int read() {
+                throw new AssertionError("single-character read");
+            }
+
+            @Override
+            public int read(char[] cbuf, int off, int len) throws IOException {
+                calls[0]++;
+                return super.read(cbuf, off, len);
+            }
+        };
+        String text = readAll(new ODDLInputStream(counting));
+        assertTrue(text.length() > 90_000);
+        assertTrue(calls[0] < 20);
+    }
+
+    @Test
+    public void trackPositionAndCounts() throws IOException {
+        byte[] data = "ab\r\nc".getBytes(StandardCharsets.US_ASCII);
+        ODDLInputStream in = new ODDLInputStream(new ByteArrayInputStream(data));
+        readAll(in);
+        assertEquals(1, in.getRow());
+        assertEquals(1, in.getCol());
+        assertEquals(4, in.getCharacterCount());
+        assertEquals(data.length, in.getByteCount());
+    }
+
+    private static String readAll(ODDLInputStream in) throws IOException {
+        StringBuilder sb = new StringBuilder();
+        for (int c; (c = in.read()) != -1; ) {
+            sb.append((char) c);
+        }
+        return sb.toString();
+    }
+}
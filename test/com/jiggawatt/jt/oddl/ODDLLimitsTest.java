@@ -0,0 +1,200 @@
+/*
+ * Jiggatech OpenDDL Parser
+ *
+ * Copyright (c) 2019 Nikita Leonidov
+ *
+ * MIT License
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package com.jiggawatt.jt.oddl;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.StringWriter;
+
+import static org.junit.Assert.*;
+
+public class ODDLLimitsTest {
+
+    @Test
+    public void acceptDocumentWithinLimits() throws IOException, ODDLParseException, ODDLFormatException {
+        ODDLLimits limits = new ODDLLimits()
+                .setMaxTokenLength(8)
+                .setMaxStringLength(6)
+                .setMaxListLength(4)
+                .setMaxDepth(2)
+                .setMaxProperties(2)
+                .setMaxTokens(40);
+        read("A (x=1, y=2) { float[2] {{1, 2}, {3, 4}} string {\"abc\" \"def\"} }", limits);
+    }
+
+    @Test
+    public void limitTokenLength() throws IOException, ODDLParseException, ODDLFormatException {
+        ODDLLimits limits = new ODDLLimits().setMaxTokenLength(8);
+        assertLimit(ODDLLimits.Limit.TOKEN_LENGTH, "Identifier {}", limits);
+        assertLimit(ODDLLimits.Limit.TOKEN_LENGTH, "A { int32 {123456789} }", limits);
+        assertLimit(ODDLLimits.Limit.TOKEN_LENGTH, "A { int32 {0x123456789} }", limits);
+        assertLimit(ODDLLimits.Limit.TOKEN_LENGTH, "A { string {\"12345678\"} }", limits);
+        read("A { float {1234.567} }", limits);
+    }
+
+    @Test
+    public void limitStringLength() throws IOException, ODDLFormatException {
+        ODDLLimits limits = new ODDLLimits().setMaxStringLength(4);
+        assertLimit(ODDLLimits.Limit.STRING_LENGTH, "A { string {\"12345\"} }", limits);
+        assertLimit(ODDLLimits.Limit.STRING_LENGTH, "A { string {\"123\" \"45\"} }", limits);
+        assertLimit(ODDLLimits.Limit.STRING_LENGTH, "A (name=\"12\" \"345\") {}", limits);
+    }
+
+    @Test
+    public void limitListLength() throws IOException, ODDLFormatException {
+        ODDLLimits limits = new ODDLLimits().setMaxListLength(3);
+        assertLimit(ODDLLimits.Limit.LIST_LENGTH, "float {1, 2, 3, 4}", limits);
+        assertLimit(ODDLLimits.Limit.LIST_LENGTH, "float[2] {{1, 2}, {3, 4}}", limits);
+        try {
+            read("float {1, 2} float {3, 4} float {5, 6, 7}", limits);
+        } catch (ODDLParseException e) {
+            fail(e.getMessage());
+        }
+    }
+
+    @Test
+    public void limitDepth() throws IOException, ODDLFormatException {
+        ODDLLimits limits = new ODDLLimits().setMaxDepth(2);
+        assertLimit(ODDLLimits.Limit.DEPTH, "A { B { C {} } }", limits);
+        assertLimit(ODDLLimits.Limit.DEPTH, "A { B { float {1} } }", limits);
+    }
+
+    @Test
+    public void limitProperties() throws IOException, ODDLFormatException {
+        assertLimit(ODDLLimits.Limit.PROPERTIES, "A (x=1, y=2, z=3) {}", new ODDLLimits().setMaxProperties(2));
+    }
+
+    @Test
+    public void limitTokenCount() throws IOException, ODDLFormatException {
+        ODDLLimits limits = new ODDLLimits().setMaxTokens(6);
+        assertLimit(ODDLLimits.Limit.TOKENS, "A {} B {} C {}", limits);
+        try {
+            read("A {} B {}", limits);
+        } catch (ODDLParseException e) {
+            fail(e.getMessage());
+        }
+    }
+
+    @Test
+    public void reportPositionOfViolation() throws IOException, ODDLFormatException {
+        try {
+            read("A {\n  float {1, 2, 3}\n}", new ODDLLimits().setMaxListLength(2));
+            fail();
+        } catch (ODDLParseException e) {
+            LimitExceededException l = (LimitExceededException) e;
+            assertEquals(2, l.getMaximum());
+            assertEquals(1, l.getRow());
+            assertEquals(16, l.getCol());
+            assertEquals("list length exceeds limit of 2 at 1, 16", l.getMessage());
+        }
+    }
+
+    @Test
+    public void rejectDeepNestingWithoutExhaustingStack() throws IOException, ODDLFormatException {
+        assertLimit(ODDLLimits.Limit.DEPTH, new Repeating("A {", Long.MAX_VALUE), ODDLLimits.untrusted());
+    }
+
+    @Test
+    public void rejectHugeStringWithoutBufferingIt() throws IOException, ODDLFormatException {
+        Reader in = new Repeating("x", 1L << 31) {
+            @Override
+            public int read(char[] cbuf, int off, int len) {
+                if (position == 0) {
+                    cbuf[off] = '"';
+                    position++;
+                    return 1;
+                }
+                return super.read(cbuf, off, len);
+            }
+        };
+        try {
+            new ODDLReader(in).setLimits(new ODDLLimits().setMaxTokenLength(1 << 16)).read(new ODDLWriter(new StringWriter()).asListener());
+            fail();
+        } catch (LimitExceededException e) {
+            assertEquals(ODDLLimits.Limit.TOKEN_LENGTH, e.getLimit());
+        } catch (ODDLParseException e) {
+            fail(e.getMessage());
+        }
+    }
+
+    @Test(expected=IllegalArgumentException.class)
+    public void rejectNonPositiveLimit() {
+        new ODDLLimits().setMaxDepth(0);
+    }
+
+    private static void read(String text, ODDLLimits limits) throws IOException, ODDLParseException, ODDLFormatException {
+        new ODDLReader(new StringReader(text)).setLimits(limits).read(new ODDLWriter(new StringWriter()).asListener());
+    }
+
+    private static void assertLimit(ODDLLimits.Limit limit, String text, ODDLLimits limits) throws IOException, ODDLFormatException {
+        assertLimit(limit, new StringReader(text), limits);
+    }
+
+    private static void assertLimit(ODDLLimits.Limit limit, Reader in, ODDLLimits limits) throws IOException, ODDLFormatException {
+        try {
+            new ODDLReader(in).setLimits(limits).read(new ODDLWriter(new StringWriter()).asListener());
+            fail("expected " + limit);
+        } catch (LimitExceededException e) {
+            assertEquals(limit, e.getLimit());
+        } catch (ODDLParseException e) {
+            fail(e.getMessage());
+        }
+    }
+
+    /** a reader repeating a string up to a given number of characters */
+    private static class Repeating extends Reader {
+        private final String unit;
+        private final long   length;
+        long position;
+
+        Repeating(String unit, long length) {
+            this.unit   = unit;
+            this.length = length;
+        }
+
+        @Override
+        public int read(char[] cbuf, int off, int len) {
+            if (position >= length) {
+                return -1;
+            }
+            int n = (int) Math.min(len, length - position);
+            for (int i=0; i<n; i++) {
+                cbuf[off + i] = unit.charAt((int) ((position + i) % unit.length()));
+            }
+            position += n;
+            return n;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
@@ -0,0 +1,118 @@
+/*
+ * Jiggatech OpenDDL Parser
+ *
+ * Copyright (c) 2019 Nikita Leonidov
+ *
+ * MIT License
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.jiggawatt.jt.oddl;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class ODDLMetricsTest {
+
+    private static final String DOC =
+            "Mesh $m (lod=1) {\n" +
+            "    float[3] {{1, 2, 3}, {4, 5, 6}}\n" +
+            "    Indices { int32 {0, 1, 2, 3} }\n" +
+            "}\n" +
+            "// trailing comment\n" +
+            "string {\"a\", \"b\"}\n";
+
+    @Test
+    public void countTokensByType() throws IOException, ODDLParseException, ODDLFormatException {
+        ODDLMetricsRecorder m = read(DOC);
+        Map<ODDLToken.Type, Long> tokens = m.getTokenCounts();
+        assertEquals(3L, (long) tokens.get(ODDLToken.Type.IDENTIFIER)); // Mesh, lod, Indices
+        assertEquals(3L, (long) tokens.get(ODDLToken.Type.DATA_TYPE));
+        assertEquals(2L, (long) tokens.get(ODDLToken.Type.STRING));
+        assertEquals(1L, (long) tokens.get(ODDLToken.Type.NAME));
+        assertEquals(0L, (long) tokens.get(ODDLToken.Type.REF));
+    }
+
+    @Test
+    public void countStructuresAndElements() throws IOException, ODDLParseException, ODDLFormatException {
+        ODDLMetricsRecorder m = read(DOC);
+        assertEquals(Long.valueOf(1), m.getStructureCounts().get("Mesh"));
+        assertEquals(Long.valueOf(1), m.getStructureCounts().get("Indices"));
+        assertEquals(6L, (long) m.getElementCounts().get(DataType.FLOAT));
+        assertEquals(4L, (long) m.getElementCounts().get(DataType.INT));
+        assertEquals(2L, (long) m.getElementCounts().get(DataType.STRING));
+    }
+
+    @Test
+    public void trackDepthAndTopLevelTimings() throws IOException, ODDLParseException, ODDLFormatException {
+        ODDLMetricsRecorder m = read(DOC);
+        assertEquals(3, m.getMaxDepth());
+        assertEquals(1, m.getTopLevelTimings().get("Mesh").getCount());
+        assertEquals(1, m.getTopLevelTimings().get("string").getCount());
+        assertEquals(1, m.getDocumentCount());
+        assertTrue(m.getTotalNanos() >= m.getTopLevelTimings().get("Mesh").getTotalNanos());
+    }
+
+    @Test
+    public void countCharactersAndBytes() throws IOException, ODDLParseException, ODDLFormatException {
+        String text = "string {\"e\"}\r\n";
+        byte[] bytes = text.getBytes(StandardCharsets.US_ASCII);
+
+        ODDLMetricsRecorder fromReader = read(text);
+        assertEquals(text.length() - 1, fromReader.getCharacterCount()); // \r\n counts once
+        assertEquals(0, fromReader.getByteCount());
+
+        ODDLMetricsRecorder fromStream = new ODDLMetricsRecorder();
+        new ODDLReader(new ByteArrayInputStream(bytes))
+                .setMetrics(fromStream)
+                .read(new DiscardListener());
+        assertEquals(bytes.length, fromStream.getByteCount());
+    }
+
+    @Test
+    public void aggregateAcrossDocumentsUntilReset() throws IOException, ODDLParseException, ODDLFormatException {
+        ODDLMetricsRecorder m = new ODDLMetricsRecorder();
+        new ODDLReader(new StringReader(DOC)).setMetrics(m).read(new DiscardListener());
+        new ODDLReader(new StringReader(DOC)).setMetrics(m).read(new DiscardListener());
+        assertEquals(2, m.getDocumentCount());
+        assertEquals(Long.valueOf(2), m.getStructureCounts().get("Mesh"));
+
+        m.reset();
+        assertEquals(0, m.getDocumentCount());
+        assertTrue(m.getStructureCounts().isEmpty());
+        assertEquals(0L, (long) m.getTokenCounts().get(ODDLToken.Type.IDENTIFIER));
+    }
+
+    private static ODDLMetricsRecorder read(String text) throws IOException, ODDLParseException, ODDLFormatException {
+        ODDLMetricsRecorder ret = new ODDLMetricsRecorder();
+        new ODDLReader(new StringReader(text)).setMetrics(ret).read(new DiscardListener());
+        return ret;
+    }
+
+    private static final class DiscardListener extends NoopListener<Void> {
+    }
+}
@@ -0,0 +1,142 @@
+/*
+ * Jiggatech OpenDDL Parser
+ *
+ * Copyright (c) 2019 Nikita Leonidov
+ *
+ * MIT License
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.jiggawatt.jt.oddl;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class ODDLParsePlanTest {
+
+    private static ODDLParsePlan plan() {
+        ODDLSchema schema = new ODDLSchema();
+        schema.root().child("Metric", "GeometryNode");
+        schema.structure("Metric").requiredProperty("key", DataType.STRING).list(DataType.FLOAT).list(DataType.STRING);
+        schema.structure("GeometryNode").property("visible", DataType.BOOL).property("lod", DataType.FLOAT)
+                .child("Transform", "GeometryNode");
+        schema.structure("Transform").list(DataType.FLOAT, -1, 16);
+        return schema.compile();
+    }
+
+    @Test
+    public void acceptMatchingDocument() throws IOException, ODDLParseException, ODDLFormatException {
+        List<String> seen = read(
+                "Metric (key=\"distance\") { float {1.0} }\n" +
+                "GeometryNode (visible=true, lod=2) {\n" +
+                "    Transform { float[16] {{1, 0, 0, 0, 0, 1, 0, 0, 0, 0, 1, 0, 0, 0, 0, 1}} }\n" +
+                "    GeometryNode { Transform { float {1, 2, 3} } }\n" +
+                "}");
+        assertEquals(List.of("Metric", "GeometryNode", "Transform", "GeometryNode", "Transform"), seen);
+    }
+
+    @Test
+    public void rejectUnexpectedStructures() throws IOException, ODDLParseException {
+        assertRejected("Transform {}", "structure Transform is not allowed in the document");
+        assertRejected("Metric (key=\"k\") { Transform {} }", "structure Transform is not allowed in Metric");
+        assertRejected("GeometryNode { Unknown {} }", "structure Unknown is not allowed in GeometryNode");
+    }
+
+    @Test
+    public void rejectUnexpectedLists() throws IOException, ODDLParseException {
+        assertRejected("float {1}", "float list is not allowed in the document");
+        assertRejected("Metric (key=\"k\") { int32 {1} }", "int32 list is not allowed in Metric");
+        assertRejected("GeometryNode { Transform { float[3] {{1, 2, 3}} } }", "float[3] list is not allowed in Transform");
+    }
+
+    @Test
+    public void checkProperties() throws IOException, ODDLParseException {
+        assertRejected("Metric {}", "missing required property key of Metric");
+        assertRejected("Metric (key=1) {}", "property key of Metric must be of type STRING");
+        assertRejected("Metric (key=\"k\", other=1) {}", "unknown property other of Metric");
+        assertRejected("GeometryNode (lod=true) {}", "property lod of GeometryNode must be of type FLOAT");
+    }
+
+    @Test
+    public void shareCompiledPlans() throws IOException, ODDLParseException, ODDLFormatException {
+        ODDLSchema schema = new ODDLSchema();
+        schema.root().child("A");
+        schema.structure("A");
+        ODDLParsePlan plan = schema.compile();
+        schema.structure("A").child("A");
+
+        for (int i=0; i<2; i++) {
+            assertEquals(List.of("A"), read("A {}", plan));
+        }
+        try {
+            read("A { A {} }", plan);
+            fail();
+        } catch (ODDLFormatException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("structure A is not allowed in A"));
+        }
+        assertEquals(List.of("A", "A"), read("A { A {} }", schema.compile()));
+    }
+
+    @Test(expected=IllegalStateException.class)
+    public void rejectUndefinedChildren() {
+        ODDLSchema schema = new ODDLSchema();
+        schema.root().child("Missing");
+        schema.compile();
+    }
+
+    @Test(expected=IllegalStateException.class)
+    public void rejectDocumentProperties() {
+        new ODDLSchema().root().property("key", DataType.STRING);
+    }
+
+    private static void assertRejected(String text, String message) throws IOException, ODDLParseException {
+        try {
+            read(text, plan());
+            fail("accepted " + text);
+        } catch (ODDLFormatException e) {
+            assertTrue(e.getMessage(), e.getMessage().endsWith(message));
+        }
+    }
+
+    private static List<String> read(String text) throws IOException, ODDLParseException, ODDLFormatException {
+        return read(text, plan());
+    }
+
+    private static List<String> read(String text, ODDLParsePlan plan) throws IOException, ODDLParseException, ODDLFormatException {
+        return new ODDLReader(new StringReader(text)).setPlan(plan).read(new StructureCollector());
+    }
+
+    private static final class StructureCollector extends NoopListener<List<String>> {
+        final List<String> identifiers = new ArrayList<>();
+
+        @Override public List<String> end(int row, int col) { return identifiers; }
+
+        @Override
+        public void beginCustomStructure(IdentifierToken identifier, NameToken name, PropertyMap properties) {
+            identifiers.add(identifier.getText());
+        }
+    }
+}
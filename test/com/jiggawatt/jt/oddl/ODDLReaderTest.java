@@ -33,6 +33,8 @@ import java.io.IOException;
 import java.util.*;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 public class ODDLReaderTest {
 
@@ -84,6 +86,14 @@ public class ODDLReaderTest {
         assertEquals(List.of(1.0, 2.0, 3.0), parseSingle(text).data);
     }
 
+    @Test
+    public void readSignedBitPatternsInFloatLists() throws IOException, ODDLParseException, ODDLFormatException {
+        assertEquals(List.of(1.0, -1.0), parseSingle("half {0x3C00, -0x3C00}").data);
+        assertEquals(List.of(1.0, -1.0), parseSingle("float {0x3f800000, -0x3f800000}").data);
+        assertEquals(List.of(1.0, -1.0), parseSingle("double {0x3ff0000000000000, -0x3ff0000000000000}").data);
+        assertEquals(List.of(-2.0), parseSingle("float {-0b01000000000000000000000000000000}").data);
+    }
+
     @Test
     public void parseConcatStringListElements() throws IOException, ODDLParseException, ODDLFormatException {
         String text = "string {\"foo\" \"bar\", \"baz\"}";
@@ -236,6 +246,31 @@ public class ODDLReaderTest {
         parseSingle("float { Child {}}");
     }
 
+    @Test(expected=UnexpectedEOFException.class, timeout=5000)
+    public void failOnUnterminatedStructure() throws IOException, ODDLParseException, ODDLFormatException {
+        parseSingle("Parent { Child {}");
+    }
+
+    @Test
+    public void throwWithoutStackTraces() throws ODDLFormatException {
+        String[] broken = { "Parent { Child {}", "Parent ]", "float {true}", "float[2] {{1}}", "int32 {1x}" };
+        for (String text : broken) {
+            ODDLReader reader = new ODDLReader(new ByteArrayInputStream(text.getBytes())).setStackTraces(false);
+            try {
+                reader.read(new TestListener());
+                fail(text);
+            } catch (IOException | ODDLParseException e) {
+                assertEquals(text, 0, e.getStackTrace().length);
+            }
+        }
+        try {
+            parse("Parent ]");
+            fail();
+        } catch (IOException | ODDLParseException e) {
+            assertTrue(e.getStackTrace().length > 0);
+        }
+    }
+
     // test helpers
     //==================================================================================================================
     private static List<Structure> parse(String text) throws IOException, ODDLParseException, ODDLFormatException {
@@ -0,0 +1,158 @@
+/*
+ * Jiggatech OpenDDL Parser
+ *
+ * Copyright (c) 2019 Nikita Leonidov
+ *
+ * MIT License
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.jiggawatt.jt.oddl;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class ODDLStringListenerTest {
+
+    @Test
+    public void deliverStringsInChunks() throws IOException, ODDLParseException, ODDLFormatException {
+        ChunkCollector c = read("string {\"abc\", \"de\" /* comment */ \"f\\n\", \"\"}");
+        assertEquals(Arrays.asList("abc", "def\n", ""), c.strings);
+        assertEquals(0, c.tokens);
+    }
+
+    @Test
+    public void boundChunkSize() throws IOException, ODDLParseException, ODDLFormatException {
+        StringBuilder big = new StringBuilder();
+        for (int i=0; i<10000; i++) {
+            big.append((char) ('a' + i % 26));
+        }
+        ChunkCollector c = read("Text { string {\"" + big + "\"} }");
+        assertEquals(Arrays.asList(big.toString()), c.strings);
+        assertTrue(c.chunks >= 3);
+        assertTrue(c.maxChunk <= 4096);
+    }
+
+    @Test
+    public void neverSplitSurrogatePairs() throws IOException, ODDLParseException, ODDLFormatException {
+        StringBuilder text = new StringBuilder();
+        StringBuilder expected = new StringBuilder();
+        for (int i=0; i<3000; i++) {
+            text.append("\\U01F600");
+            expected.appendCodePoint(0x1F600);
+        }
+        ChunkCollector c = read("string {\"" + text + "\"}");
+        assertEquals(expected.toString(), c.strings.get(0));
+        assertFalse(c.splitSurrogate);
+    }
+
+    @Test
+    public void neverSplitSurrogatePairsReadAhead() throws ODDLFormatException {
+        // a string already read ahead as a token is sliced by the reader rather than the tokenizer
+        StringBuilder text = new StringBuilder();
+        for (int i=0; i<4095; i++) {
+            text.append('a');
+        }
+        text.appendCodePoint(0x1F600).append("bc");
+
+        ChunkCollector c = new ChunkCollector();
+        ODDLReader.sliceString(text.toString(), new char[4096], c);
+        assertEquals(Arrays.asList(text.toString()), c.strings);
+        assertEquals(2, c.chunks);
+        assertFalse(c.splitSurrogate);
+    }
+
+    @Test
+    public void readEmptyAndArrayLists() throws IOException, ODDLParseException, ODDLFormatException {
+        ChunkCollector c = read("string {} string[2] {{\"a\", \"b\"}, {\"c\", \"d\"}}");
+        assertEquals(Arrays.asList("a", "b", "c", "d"), c.strings);
+    }
+
+    @Test
+    public void deliverPropertyStringsAsTokens() throws IOException, ODDLParseException, ODDLFormatException {
+        ChunkCollector c = read("A (name=\"x\") { string {\"y\"} }");
+        assertEquals(Arrays.asList("y"), c.strings);
+    }
+
+    @Test(expected=ListElementTypeMismatchException.class)
+    public void rejectMismatchedElement() throws IOException, ODDLParseException, ODDLFormatException {
+        read("string {\"a\", 1}");
+    }
+
+    @Test(expected=IllegalSubarraySizeException.class)
+    public void rejectShortSubarray() throws IOException, ODDLParseException, ODDLFormatException {
+        read("string[2] {{\"a\"}}");
+    }
+
+    @Test
+    public void enforceLimits() throws IOException, ODDLFormatException {
+        assertLimit(ODDLLimits.Limit.STRING_LENGTH, new ODDLLimits().setMaxStringLength(4), "string {\"123\" \"45\"}");
+        assertLimit(ODDLLimits.Limit.LIST_LENGTH, new ODDLLimits().setMaxListLength(2), "string {\"a\", \"b\", \"c\"}");
+    }
+
+    private static void assertLimit(ODDLLimits.Limit limit, ODDLLimits limits, String text) throws IOException, ODDLFormatException {
+        try {
+            new ODDLReader(new StringReader(text)).setLimits(limits).read(new ChunkCollector());
+            fail("expected " + limit);
+        } catch (LimitExceededException e) {
+            assertEquals(limit, e.getLimit());
+        } catch (ODDLParseException e) {
+            fail(e.getMessage());
+        }
+    }
+
+    private static ChunkCollector read(String text) throws IOException, ODDLParseException, ODDLFormatException {
+        ChunkCollector c = new ChunkCollector();
+        new ODDLReader(new StringReader(text)).read(c);
+        return c;
+    }
+
+    private static final class ChunkCollector extends NoopListener<List<String>> implements ODDLStringListener<List<String>> {
+        final List<String>  strings = new ArrayList<>();
+        final StringBuilder current = new StringBuilder();
+        int     tokens;
+        int     chunks;
+        int     maxChunk;
+        boolean splitSurrogate;
+
+        @Override public void beginString() { current.setLength(0); }
+        @Override public void endString() { strings.add(current.toString()); }
+
+        @Override
+        public void stringChunk(char[] chars, int offset, int length) {
+            chunks++;
+            maxChunk = Math.max(maxChunk, length);
+            if (length > 0 && Character.isHighSurrogate(chars[offset + length - 1])) {
+                splitSurrogate = true;
+            }
+            current.append(chars, offset, length);
+        }
+
+        @Override public List<String> end(int row, int col) { return strings; }
+        @Override public void value(StringToken value) { tokens++; }
+    }
+}
@@ -39,7 +39,7 @@ public class ODDLTokenizerTest {
     // eof
     //==================================================================================================================
     @Test
-    public void readEofToken() throws IOException {
+    public void readEofToken() throws IOException, ODDLParseException {
         final String text = "";
         assertTrue(readToken(text).isEOF());
     }
@@ -47,13 +47,13 @@ public class ODDLTokenizerTest {
     // comments
     //==================================================================================================================
     @Test
-    public void ignoreSingleLineComments() throws IOException {
+    public void ignoreSingleLineComments() throws IOException, ODDLParseException {
         final String text = "// nothing here";
         assertTrue(readToken(text).isEOF());
     }
 
     @Test
-    public void ignoreBlockComments() throws IOException {
+    public void ignoreBlockComments() throws IOException, ODDLParseException {
         final String text =
                 "/* Line one \n " +
                 " * Line two \n " +
@@ -62,24 +62,35 @@ public class ODDLTokenizerTest {
         assertTrue(readToken(text).isEOF());
     }
 
+    @Test
+    public void readCommentFollowingDelimiter() throws IOException, ODDLParseException {
+        ODDLTokenizer lexer = getTokenizer("{/* block */1,// line\n'*'}'['");
+        assertTrue(lexer.read().isDelimiter('{'));
+        assertEquals(1, lexer.read().asInt().getValue());
+        assertTrue(lexer.read().isDelimiter(','));
+        assertEquals('*', lexer.read().asInt().getValue());
+        assertTrue(lexer.read().isDelimiter('}'));
+        assertEquals('[', lexer.read().asInt().getValue());
+    }
+
     // identifiers
     //==================================================================================================================
     @Test
-    public void identifyIdentifierToken() throws IOException {
+    public void identifyIdentifierToken() throws IOException, ODDLParseException {
         final String text = "ABCDEFGHIJKLMNOPQRSTUVWXYZ_abcdefghijklmnopqrstuvwxyz_0123456789";
         ODDLToken token = readToken(text);
         assertTrue(token.isIdentifier());
     }
 
     @Test
-    public void readIdentifierToken() throws IOException {
+    public void readIdentifierToken() throws IOException, ODDLParseException {
         final String text = "ABCDEFGHIJKLMNOPQRSTUVWXYZ_abcdefghijklmnopqrstuvwxyz_0123456789";
         IdentifierToken token = readToken(text).asIdentifier();
         assertEquals(text, token.getText());
     }
 
     @Test(expected=UnexpectedCharacterException.class)
-    public void identifyUnexpectedIdentifierCharacter() throws IOException {
+    public void identifyUnexpectedIdentifierCharacter() throws IOException, ODDLParseException {
         final String text = "ABCDEFG_abcdefg^0123456789";
         ODDLTokenizer lexer = getTokenizer(text);
         lexer.read();
@@ -87,13 +98,13 @@ public class ODDLTokenizerTest {
     }
 
     @Test
-    public void identifyIdentifierTokenFollowingSingleLineComment() throws IOException {
+    public void identifyIdentifierTokenFollowingSingleLineComment() throws IOException, ODDLParseException {
         final String text = "// nothing here\nABCDEFGHIJKLMNOPQRSTUVWXYZ_abcdefghijklmnopqrstuvwxyz_0123456789";
         assertTrue(readToken(text).isIdentifier());
     }
 
     @Test
-    public void readIdentifierTokenFollowingSingleLineComment() throws IOException {
+    public void readIdentifierTokenFollowingSingleLineComment() throws IOException, ODDLParseException {
         final String ident = "ABCDEFGHIJKLMNOPQRSTUVWXYZ_abcdefghijklmnopqrstuvwxyz_0123456789";
         final String text  = "// nothing here\n"+ident;
         assertEquals(ident, readToken(text).asIdentifier().getText());
@@ -102,13 +113,13 @@ public class ODDLTokenizerTest {
     // bools
     //==================================================================================================================
     @Test
-    public void identifyBoolLiteral() throws IOException {
+    public void identifyBoolLiteral() throws IOException, ODDLParseException {
         assertTrue (readToken("true").asBool().getValue());
         assertFalse(readToken("false").asBool().getValue());
     }
 
     @Test
-    public void readBoolLiteral() throws IOException {
+    public void readBoolLiteral() throws IOException, ODDLParseException {
         assertTrue(readToken("true").asBool().getValue());
         assertFalse(readToken("false").asBool().getValue());
     }
@@ -118,37 +129,37 @@ public class ODDLTokenizerTest {
     // hex
     //------------------------------------------------------------------------------------------------------------------
     @Test
-    public void identifyHexLiteral() throws IOException {
+    public void identifyHexLiteral() throws IOException, ODDLParseException {
         identifyIntLiteral("0x41_42_43_44", IntToken.Format.HEX);
         identifyIntLiteral("0X41_42_43_44", IntToken.Format.HEX);
     }
 
     @Test
-    public void readHexLiteral() throws IOException {
+    public void readHexLiteral() throws IOException, ODDLParseException {
         readIntLiteral("0x41_42_43_44", 1094861636);
         readIntLiteral("0X41_42_43_44", 1094861636);
     }
 
     @Test
-    public void identifyPositiveHexLiteral() throws IOException {
+    public void identifyPositiveHexLiteral() throws IOException, ODDLParseException {
         identifyIntLiteral("+0x41_42_43_44", IntToken.Format.HEX);
         identifyIntLiteral("+0X41_42_43_44", IntToken.Format.HEX);
     }
 
     @Test
-    public void readPositiveHexLiteral() throws IOException {
+    public void readPositiveHexLiteral() throws IOException, ODDLParseException {
         readIntLiteral("+0x41_42_43_44", +1094861636);
         readIntLiteral("+0X41_42_43_44", +1094861636);
     }
 
     @Test
-    public void identifyNegativeHexLiteral() throws IOException {
+    public void identifyNegativeHexLiteral() throws IOException, ODDLParseException {
         identifyIntLiteral("-0x41_42_43_44", IntToken.Format.HEX);
         identifyIntLiteral("-0X41_42_43_44", IntToken.Format.HEX);
     }
 
     @Test
-    public void readNegativeHexLiteral() throws IOException {
+    public void readNegativeHexLiteral() throws IOException, ODDLParseException {
         readIntLiteral("-0x41_42_43_44", -1094861636);
         readIntLiteral("-0X41_42_43_44", -1094861636);
     }
@@ -156,172 +167,172 @@ public class ODDLTokenizerTest {
     //------------------------------------------------------------------------------------------------------------------
     // NB: no "o" in java -- leading 0 = octal
     @Test
-    public void identifyOctLiteral() throws IOException {
+    public void identifyOctLiteral() throws IOException, ODDLParseException {
         identifyIntLiteral("0o101_2044_1504", IntToken.Format.OCT);
         identifyIntLiteral("0O101_2044_1504", IntToken.Format.OCT);
     }
 
     @Test
-    public void readOctLiteral() throws IOException {
+    public void readOctLiteral() throws IOException, ODDLParseException {
         readIntLiteral("0o101_2044_1504", 1094861636);
         readIntLiteral("0O101_2044_1504", 1094861636);
     }
 
     @Test
-    public void identifyPositiveOctLiteral() throws IOException {
+    public void identifyPositiveOctLiteral() throws IOException, ODDLParseException {
         identifyIntLiteral("+0o101_2044_1504", IntToken.Format.OCT);
         identifyIntLiteral("+0O101_2044_1504", IntToken.Format.OCT);
     }
 
     @Test
-    public void readPositiveOctLiteral() throws IOException {
+    public void readPositiveOctLiteral() throws IOException, ODDLParseException {
         readIntLiteral("+0o101_2044_1504", +1094861636);
         readIntLiteral("+0O101_2044_1504", +1094861636);
     }
 
     @Test
-    public void identifyNegativeOctLiteral() throws IOException {
+    public void identifyNegativeOctLiteral() throws IOException, ODDLParseException {
         identifyIntLiteral("-0o101_2044_1504", IntToken.Format.OCT);
         identifyIntLiteral("-0O101_2044_1504", IntToken.Format.OCT);
     }
 
     @Test
-    public void readNegativeOctLiteral() throws IOException {
+    public void readNegativeOctLiteral() throws IOException, ODDLParseException {
         readIntLiteral("-0o101_2044_1504", -1094861636);
         readIntLiteral("-0O101_2044_1504", -1094861636);
     }
     // bin
     //------------------------------------------------------------------------------------------------------------------
     @Test
-    public void identifyBinLiteral() throws IOException {
+    public void identifyBinLiteral() throws IOException, ODDLParseException {
         identifyIntLiteral("0b0100_0001_0100_0010_0100_0011_0100_0100", IntToken.Format.BIN);
         identifyIntLiteral("0B0100_0001_0100_0010_0100_0011_0100_0100", IntToken.Format.BIN);
     }
 
     @Test
-    public void readBinLiteral() throws IOException {
+    public void readBinLiteral() throws IOException, ODDLParseException {
         readIntLiteral("0b0100_0001_0100_0010_0100_0011_0100_0100", 1094861636);
         readIntLiteral("0B0100_0001_0100_0010_0100_0011_0100_0100", 1094861636);
     }
 
     @Test
-    public void identifyPositiveBinLiteral() throws IOException {
+    public void identifyPositiveBinLiteral() throws IOException, ODDLParseException {
         identifyIntLiteral("+0b0100_0001_0100_0010_0100_0011_0100_0100", IntToken.Format.BIN);
         identifyIntLiteral("+0B0100_0001_0100_0010_0100_0011_0100_0100", IntToken.Format.BIN);
     }
 
     @Test
-    public void readPositiveBinLiteral() throws IOException {
+    public void readPositiveBinLiteral() throws IOException, ODDLParseException {
         readIntLiteral("+0b0100_0001_0100_0010_0100_0011_0100_0100", +1094861636);
         readIntLiteral("+0B0100_0001_0100_0010_0100_0011_0100_0100", +1094861636);
     }
 
     @Test
-    public void identifyNegativeBinLiteral() throws IOException {
+    public void identifyNegativeBinLiteral() throws IOException, ODDLParseException {
         identifyIntLiteral("-0b0100_0001_0100_0010_0100_0011_0100_0100", IntToken.Format.BIN);
         identifyIntLiteral("-0B0100_0001_0100_0010_0100_0011_0100_0100", IntToken.Format.BIN);
     }
 
     @Test
-    public void readNegativeBinLiteral() throws IOException {
+    public void readNegativeBinLiteral() throws IOException, ODDLParseException {
         readIntLiteral("-0b0100_0001_0100_0010_0100_0011_0100_0100", -1094861636);
         readIntLiteral("-0B0100_0001_0100_0010_0100_0011_0100_0100", -1094861636);
     }
     // dec
     //------------------------------------------------------------------------------------------------------------------
     @Test
-    public void identifyDecLiteral() throws IOException {
+    public void identifyDecLiteral() throws IOException, ODDLParseException {
         identifyIntLiteral("1_094_861_636", IntToken.Format.DEC);
     }
 
     @Test
-    public void readDecLiteral() throws IOException {
+    public void readDecLiteral() throws IOException, ODDLParseException {
         readIntLiteral("1_094_861_636", 1094861636);
     }
 
     @Test
-    public void identifyPositiveDecLiteral() throws IOException {
+    public void identifyPositiveDecLiteral() throws IOException, ODDLParseException {
         identifyIntLiteral("+1_094_861_636", IntToken.Format.DEC);
     }
 
     @Test
-    public void readPositiveDecLiteral() throws IOException {
+    public void readPositiveDecLiteral() throws IOException, ODDLParseException {
         readIntLiteral("+1_094_861_636", +1094861636);
     }
 
     @Test
-    public void identifyNegativeDecLiteral() throws IOException {
+    public void identifyNegativeDecLiteral() throws IOException, ODDLParseException {
         identifyIntLiteral("-1_094_861_636", IntToken.Format.DEC);
     }
 
     @Test
-    public void readNegativeDecLiteral() throws IOException {
+    public void readNegativeDecLiteral() throws IOException, ODDLParseException {
         readIntLiteral("-1_094_861_636", -1094861636);
     }
 
     // char
     //------------------------------------------------------------------------------------------------------------------
     @Test
-    public void identifyCharLiteral() throws IOException {
+    public void identifyCharLiteral() throws IOException, ODDLParseException {
         identifyIntLiteral("'ABCD'", IntToken.Format.CHAR);
     }
 
     @Test
-    public void readCharLiteral() throws IOException {
+    public void readCharLiteral() throws IOException, ODDLParseException {
         readIntLiteral("'ABCD'", 1094861636);
     }
 
     @Test
-    public void identifyPositiveCharLiteral() throws IOException {
+    public void identifyPositiveCharLiteral() throws IOException, ODDLParseException {
         identifyIntLiteral("+'ABCD'", IntToken.Format.CHAR);
     }
 
     @Test
-    public void readPositiveCharLiteral() throws IOException {
+    public void readPositiveCharLiteral() throws IOException, ODDLParseException {
         readIntLiteral("+'ABCD'", +1094861636);
     }
 
     @Test
-    public void identifyNegativeCharLiteral() throws IOException {
+    public void identifyNegativeCharLiteral() throws IOException, ODDLParseException {
         identifyIntLiteral("-'ABCD'", IntToken.Format.CHAR);
     }
 
     @Test
-    public void readNegativeCharLiteral() throws IOException {
+    public void readNegativeCharLiteral() throws IOException, ODDLParseException {
         readIntLiteral("-'ABCD'", -1094861636);
     }
 
     // float
     //==================================================================================================================
     @Test
-    public void identifyFloatLiteral() throws IOException {
+    public void identifyFloatLiteral() throws IOException, ODDLParseException {
         assertTrue(readToken("1_280.1_024").isFloat());
     }
 
     @Test
-    public void readFloatLiteral() throws IOException {
+    public void readFloatLiteral() throws IOException, ODDLParseException {
         assertEquals(1280.1024, readToken("1_280.1_024").asFloat().getValue(), 0.0001);
     }
 
     @Test
-    public void identifyLeadingPeriodFloatLiteral() throws IOException {
+    public void identifyLeadingPeriodFloatLiteral() throws IOException, ODDLParseException {
         assertTrue(readToken(".1_024").isFloat());
     }
 
     @Test
-    public void readLeadingPeriodFloatLiteral() throws IOException {
+    public void readLeadingPeriodFloatLiteral() throws IOException, ODDLParseException {
         assertEquals(.1024, readToken(".1_024").asFloat().getValue(), 0.0001);
     }
 
     @Test
-    public void identifyExponentFloatLiteral() throws IOException {
+    public void identifyExponentFloatLiteral() throws IOException, ODDLParseException {
         assertTrue(readToken("1.234567E3").isFloat());
         assertTrue(readToken("1.234567E+3").isFloat());
         assertTrue(readToken("1.234567E-3").isFloat());
     }
 
     @Test
-    public void readExponentFloatLiteral() throws IOException {
+    public void readExponentFloatLiteral() throws IOException, ODDLParseException {
         assertEquals(1.234567E3,  readToken("1.234567E3").asFloat().getValue(),  0.0001);
         assertEquals(1.234567E+3, readToken("1.234567E+3").asFloat().getValue(), 0.0001);
         assertEquals(1.234567E-3, readToken("1.234567E-3").asFloat().getValue(), 0.0001);
@@ -330,12 +341,12 @@ public class ODDLTokenizerTest {
     // name
     //==================================================================================================================
     @Test
-    public void readNullName() throws IOException {
+    public void readNullName() throws IOException, ODDLParseException {
         assertTrue(readToken("null").isNullName());
     }
 
     @Test
-    public void identifyGlobalName() throws IOException {
+    public void identifyGlobalName() throws IOException, ODDLParseException {
         String text = "$some_name_0";
         ODDLToken token = readToken(text);
         assertTrue(token.isName());
@@ -343,7 +354,7 @@ public class ODDLTokenizerTest {
     }
 
     @Test
-    public void readGlobalName() throws IOException {
+    public void readGlobalName() throws IOException, ODDLParseException {
         String text = "$some_name_0";
         ODDLToken token = readToken(text);
         assertEquals(text, token.getText());
@@ -351,7 +362,7 @@ public class ODDLTokenizerTest {
     }
 
     @Test
-    public void identifyLocalName() throws IOException {
+    public void identifyLocalName() throws IOException, ODDLParseException {
         String text = "%some_name_0";
         ODDLToken token = readToken(text);
         assertTrue(token.isName());
@@ -359,7 +370,7 @@ public class ODDLTokenizerTest {
     }
 
     @Test
-    public void readLocalName() throws IOException {
+    public void readLocalName() throws IOException, ODDLParseException {
         String text = "%some_name_0";
         ODDLToken token = readToken(text);
         assertEquals(text, token.getText());
@@ -369,61 +380,61 @@ public class ODDLTokenizerTest {
     // data types
     //==================================================================================================================
     @Test
-    public void readBoolType() throws IOException {
+    public void readBoolType() throws IOException, ODDLParseException {
         assertDataType("b",    isType(DataType.BOOL));
         assertDataType("bool", isType(DataType.BOOL));
     }
 
     @Test
-    public void readInt8Type() throws IOException {
+    public void readInt8Type() throws IOException, ODDLParseException {
         assertDataType("i8",   isInt(8));
         assertDataType("int8", isInt(8));
     }
 
     @Test
-    public void readInt16Type() throws IOException {
+    public void readInt16Type() throws IOException, ODDLParseException {
         assertDataType("i16",   isInt(16));
         assertDataType("int16", isInt(16));
     }
 
     @Test
-    public void readInt32Type() throws IOException {
+    public void readInt32Type() throws IOException, ODDLParseException {
         assertDataType("i32",   isInt(32));
         assertDataType("int32", isInt(32));
     }
 
     @Test
-    public void readInt64Type() throws IOException {
+    public void readInt64Type() throws IOException, ODDLParseException {
         assertDataType("i64",   isInt(64));
         assertDataType("int64", isInt(64));
     }
 
     @Test
-    public void readUInt8Type() throws IOException {
+    public void readUInt8Type() throws IOException, ODDLParseException {
         assertDataType("u8",            isUint(8));
         assertDataType("unsigned_int8", isUint(8));
     }
 
     @Test
-    public void readUInt16Type() throws IOException {
+    public void readUInt16Type() throws IOException, ODDLParseException {
         assertDataType("u16",            isUint(16));
         assertDataType("unsigned_int16", isUint(16));
     }
 
     @Test
-    public void readUInt32Type() throws IOException {
+    public void readUInt32Type() throws IOException, ODDLParseException {
         assertDataType("u32",            isUint(32));
         assertDataType("unsigned_int32", isUint(32));
     }
 
     @Test
-    public void readUInt64Type() throws IOException {
+    public void readUInt64Type() throws IOException, ODDLParseException {
         assertDataType("u64",            isUint(64));
         assertDataType("unsigned_int64", isUint(64));
     }
 
     @Test
-    public void readHalfType() throws IOException {
+    public void readHalfType() throws IOException, ODDLParseException {
         assertDataType("h",       isFloat(16));
         assertDataType("f16",     isFloat(16));
         assertDataType("half",    isFloat(16));
@@ -431,7 +442,7 @@ public class ODDLTokenizerTest {
     }
 
     @Test
-    public void readFloatType() throws IOException {
+    public void readFloatType() throws IOException, ODDLParseException {
         assertDataType("f",       isFloat(32));
         assertDataType("f32",     isFloat(32));
         assertDataType("float",   isFloat(32));
@@ -439,7 +450,7 @@ public class ODDLTokenizerTest {
     }
 
     @Test
-    public void readDoubleType() throws IOException {
+    public void readDoubleType() throws IOException, ODDLParseException {
         assertDataType("d",       isFloat(64));
         assertDataType("f64",     isFloat(64));
         assertDataType("double",  isFloat(64));
@@ -447,19 +458,19 @@ public class ODDLTokenizerTest {
     }
 
     @Test
-    public void readStringType() throws IOException {
+    public void readStringType() throws IOException, ODDLParseException {
         assertDataType("s",      isType(DataType.STRING));
         assertDataType("string", isType(DataType.STRING));
     }
 
     @Test
-    public void readRefType() throws IOException {
+    public void readRefType() throws IOException, ODDLParseException {
         assertDataType("r",   isType(DataType.REF));
         assertDataType("ref", isType(DataType.REF));
     }
 
     @Test
-    public void readLongType() throws IOException {
+    public void readLongType() throws IOException, ODDLParseException {
         assertDataType("t",    isType(DataType.TYPE));
         assertDataType("type", isType(DataType.TYPE));
     }
@@ -467,31 +478,31 @@ public class ODDLTokenizerTest {
     // strings
     //==================================================================================================================
     @Test
-    public void identifyString() throws IOException {
+    public void identifyString() throws IOException, ODDLParseException {
         assertTrue(readToken("\"ABCDEFG abcdefg 0123456789\"").isString());
     }
 
     @Test
-    public void readString() throws IOException {
+    public void readString() throws IOException, ODDLParseException {
         String text = "\"ABCDEFG abcdefg 0123456789\"";
         assertEquals("ABCDEFG abcdefg 0123456789", readToken(text).asString().getValue());
         assertEquals("\"ABCDEFG abcdefg 0123456789\"", readToken(text).asString().getText());
     }
 
     @Test(expected=UnexpectedCharacterException.class)
-    public void readIllegalString() throws IOException {
+    public void readIllegalString() throws IOException, ODDLParseException {
         readToken(new StringBuilder().appendCodePoint(0xfffe).toString());
     }
 
     @Test
-    public void readEscapeCharacterString() throws IOException {
+    public void readEscapeCharacterString() throws IOException, ODDLParseException {
         assertEquals("\uD83D\uDC80", readToken("\"\\uD83D\\uDC80\"").asString().getValue());
     }
 
     // delimiters
     //==================================================================================================================
     @Test
-    public void identifyDelimiters() throws IOException {
+    public void identifyDelimiters() throws IOException, ODDLParseException {
         testDelimiter('{');
         testDelimiter('}');
         testDelimiter('[');
@@ -508,28 +519,28 @@ public class ODDLTokenizerTest {
         return new ODDLTokenizer(new ODDLInputStream(new ByteArrayInputStream(oddlText.getBytes())));
     }
 
-    private static void readIntLiteral(String text, long value) throws IOException {
+    private static void readIntLiteral(String text, long value) throws IOException, ODDLParseException {
         ODDLToken token = readToken(text);
         assertEquals(value, token.asInt().getValue());
     }
 
-    private static void identifyIntLiteral(String text, IntToken.Format format) throws IOException {
+    private static void identifyIntLiteral(String text, IntToken.Format format) throws IOException, ODDLParseException {
         ODDLToken token = readToken(text);
         assertTrue(token.isInt());
         assertEquals(format, token.asInt().getFormat());
     }
 
-    private static ODDLToken readToken(String text) throws IOException {
+    private static ODDLToken readToken(String text) throws IOException, ODDLParseException {
         return getTokenizer(text).read();
     }
 
-    private static void assertDataType(String text, Predicate<DataTypeToken> getter) throws IOException {
+    private static void assertDataType(String text, Predicate<DataTypeToken> getter) throws IOException, ODDLParseException {
         ODDLToken tok = readToken(text);
         assertTrue(tok instanceof DataTypeToken);
         assertTrue(getter.test((DataTypeToken)tok));
     }
 
-    private static void testDelimiter(char token) throws IOException {
+    private static void testDelimiter(char token) throws IOException, ODDLParseException {
         assertTrue(readToken(Character.toString(token)).isDelimiter(token));
     }
 
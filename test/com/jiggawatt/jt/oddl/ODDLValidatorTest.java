@@ -0,0 +1,200 @@
+/*
+ * Jiggatech OpenDDL Parser
+ *
+ * Copyright (c) 2019 Nikita Leonidov
+ *
+ * MIT License
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.jiggawatt.jt.oddl;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.EnumSet;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.Assert.*;
+
+public class ODDLValidatorTest {
+
+    private static final Pattern POSITION = Pattern.compile("at (\\d+), (\\d+)");
+
+    private static final String[] VALID = {
+        "",
+        "// comment only",
+        "Empty {}",
+        "Named $a (x=1, y=2.5, z=\"s\" \"t\", w=true, v=float, u=$a%b, n=null,) { float {} }",
+        "float[2] %n {{1, 2.0}, {0x3f800000, -0b0}, {}}",
+        "int32 {-1, +0x_ff, 0o17, 0b1_0, 'ab', -'c', '\\x41', 1_000, 18446744073709551615}",
+        "string {\"a\\n\\u00e9\\U01F600\\\"\" /* between */ \"b\", \"\"}",
+        "ref {$a, %b%c, $d%e%f, null} type {float, i8, unsigned_int64} bool {true, false}",
+        "double {1., .5, -1e5, 2.5E-3, 1_0.0_1}",
+        "A { B { C { D {} } } }",
+    };
+
+    private static final String[] INVALID = {
+        "{",
+        "A",
+        "A {",
+        "A { B }",
+        "A (x=) {}",
+        "A (x 1) {}",
+        "A (x=1 y=2) {}",
+        "A (x=Ident) {}",
+        "float {1, }",
+        "float {1 2}",
+        "float {true}",
+        "int32 {1.5}",
+        "string {1}",
+        "ref {$a$b}",
+        "ref {null%a}",
+        "type {int32, Foo}",
+        "float[2] {{1}}",
+        "float[2] {{1, 2, 3}}",
+        "float[x] {}",
+        "float[-2] {{1, 2}}",
+        "float[2 {}",
+        "int32 {12a}",
+        "int32 {0x}",
+        "int32 {0xg}",
+        "int32 {18446744073709551616}",
+        "int32 {''}",
+        "int32 {'a",
+        "int32 {'\\q'}",
+        "string {\"abc}",
+        "string {\"a\\u00g0\"}",
+        "string {\"\\U110000\"}",
+        "string {\"tab\there\"}",
+        "A { # }",
+        "-",
+        "double {1e}",
+        "double {.}",
+        "} {",
+    };
+
+    @Test
+    public void acceptValidDocuments() throws IOException {
+        for (String text : VALID) {
+            assertNull(text, validate(text, new ODDLLimits()));
+            assertReads(text);
+        }
+    }
+
+    @Test
+    public void acceptGeneratedDocuments() throws IOException {
+        CorpusGenerator generator = new CorpusGenerator(42)
+                .setSize(1 << 16)
+                .setCommentDensity(0.1)
+                .setDigitSeparators(true)
+                .setIntFormats(EnumSet.allOf(IntToken.Format.class))
+                .setArrayLists(0.3, 2, 3, 4);
+        assertNull(validate(generator.generate(), new ODDLLimits()));
+    }
+
+    @Test
+    public void rejectInvalidDocuments() throws IOException {
+        for (String text : INVALID) {
+            ODDLError error = validate(text, new ODDLLimits());
+            assertNotNull(text, error);
+            try {
+                new ODDLReader(new StringReader(text)).read(new DiscardingListener());
+                fail("reader accepted " + text);
+            } catch (IOException | ODDLParseException | ODDLFormatException | RuntimeException e) {
+                // the reader fails too; where it reports a position, it must agree
+                Matcher m = POSITION.matcher(String.valueOf(e.getMessage()));
+                if (m.find()) {
+                    assertEquals(text, Integer.parseInt(m.group(1)), error.getRow());
+                    assertEquals(text, Integer.parseInt(m.group(2)), error.getCol());
+                }
+            }
+        }
+    }
+
+    @Test
+    public void reportPositionOfFirstError() throws IOException {
+        ODDLError error = validate("A {}\nB { float {1, 2} int32 {3, x} }", new ODDLLimits());
+        assertNotNull(error);
+        assertEquals(1, error.getRow());
+        assertEquals(28, error.getCol());
+        assertTrue(error.getMessage(), error.getMessage().endsWith("at 1, 28"));
+    }
+
+    @Test
+    public void describeErrors() throws IOException {
+        assertError("A ]", ODDLError.Kind.UNEXPECTED_TOKEN, "']'", "'{'");
+        assertError("A (x=Ident) {}", ODDLError.Kind.UNEXPECTED_TOKEN, "IdentifierToken", "PropertyValueToken");
+        assertError("A { # }", ODDLError.Kind.UNEXPECTED_CHARACTER, "#", null);
+        assertError("A {", ODDLError.Kind.UNEXPECTED_EOF, "end of file", null);
+        assertError("float {true}", ODDLError.Kind.ELEMENT_TYPE_MISMATCH, "BoolToken", "FloatToken");
+        assertError("float[3] {{1, 2}}", ODDLError.Kind.SUBARRAY_SIZE, "2", "3");
+        assertError("int32 {0x1_0000_0000_0000_0000}", ODDLError.Kind.INVALID_LITERAL, null, null);
+
+        ODDLError error = validate("float {1, 2}", new ODDLLimits().setMaxListLength(1));
+        assertEquals(ODDLError.Kind.LIMIT_EXCEEDED, error.getKind());
+        assertEquals(ODDLLimits.Limit.LIST_LENGTH, error.getLimit());
+        assertEquals("1", error.getExpected());
+    }
+
+    private static void assertError(String text, ODDLError.Kind kind, String actual, String expected) throws IOException {
+        ODDLError error = validate(text, new ODDLLimits());
+        assertNotNull(text, error);
+        assertEquals(text, kind, error.getKind());
+        assertEquals(text, actual, error.getActual());
+        assertEquals(text, expected, error.getExpected());
+        assertNull(text, error.getLimit());
+    }
+
+    @Test
+    public void enforceLimits() throws IOException {
+        assertLimit("A { B { C {} } }", new ODDLLimits().setMaxDepth(2), "depth");
+        assertLimit("float {1, 2, 3}", new ODDLLimits().setMaxListLength(2), "list length");
+        assertLimit("float[2] {{1, 2}, {3, 4}}", new ODDLLimits().setMaxListLength(3), "list length");
+        assertLimit("A (x=1, y=2) {}", new ODDLLimits().setMaxProperties(1), "properties");
+        assertLimit("string {\"abc\" \"de\"}", new ODDLLimits().setMaxStringLength(4), "string length");
+        assertLimit("A { int32 {123456789} }", new ODDLLimits().setMaxTokenLength(8), "token length");
+        assertLimit("A {} B {}", new ODDLLimits().setMaxTokens(5), "tokens");
+        assertNull(validate("A { B {} }", new ODDLLimits().setMaxDepth(2)));
+    }
+
+    private static void assertLimit(String text, ODDLLimits limits, String limit) throws IOException {
+        ODDLError error = validate(text, limits);
+        assertNotNull(text, error);
+        assertTrue(error.getMessage(), error.getMessage().startsWith(limit + " exceeds limit"));
+    }
+
+    private static void assertReads(String text) {
+        try {
+            new ODDLReader(new StringReader(text)).read(new DiscardingListener());
+        } catch (IOException | ODDLParseException | ODDLFormatException e) {
+            fail(text + ": " + e.getMessage());
+        }
+    }
+
+    private static ODDLError validate(String text, ODDLLimits limits) throws IOException {
+        return new ODDLReader(new StringReader(text)).setLimits(limits).validate();
+    }
+
+    private static final class DiscardingListener extends NoopListener<Void> {
+    }
+}
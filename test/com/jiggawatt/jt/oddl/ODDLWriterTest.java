@@ -0,0 +1,264 @@
+/*
+ * Jiggatech OpenDDL Parser
+ *
+ * Copyright (c) 2019 Nikita Leonidov
+ *
+ * MIT License
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.jiggawatt.jt.oddl;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class ODDLWriterTest {
+
+    // layout
+    //==================================================================================================================
+    @Test
+    public void writeEmptyStructure() throws IOException {
+        assertEquals("Empty {}\n", write(out -> out.beginCustomStructure("Empty").endCustomStructure()));
+    }
+
+    @Test
+    public void writeNestedStructures() throws IOException {
+        String expect =
+            "Node $node (visible = true, scale = 2.5, label = \"box\", target = $a%b, kind = float)\n" +
+            "{\n" +
+            "\tName\n" +
+            "\t{\n" +
+            "\t\tstring {\"Box001\"}\n" +
+            "\t}\n" +
+            "\tfloat[3] %pos\n" +
+            "\t{\n" +
+            "\t\t{1.0, 2.0, 3.0},\n" +
+            "\t\t{4.0, 5.0, 6.0}\n" +
+            "\t}\n" +
+            "}\n" +
+            "ref {$node, null}\n";
+
+        assertEquals(expect, write(out -> out
+            .beginCustomStructure("Node", "$node")
+                .property("visible", true)
+                .property("scale", 2.5)
+                .property("label", "box")
+                .refProperty("target", "$a", "%b")
+                .typeProperty("kind", "float")
+                .beginCustomStructure("Name")
+                    .beginListStructure("string").value("Box001").endListStructure()
+                .endCustomStructure()
+                .beginArrayListStructure("float", 3, "%pos")
+                    .beginSubArray().value(1.0).value(2.0).value(3.0).endSubArray()
+                    .beginSubArray().value(4.0).value(5.0).value(6.0).endSubArray()
+                .endArrayListStructure()
+            .endCustomStructure()
+            .beginListStructure("ref").ref("$node").ref().endListStructure()
+        ));
+    }
+
+    @Test
+    public void writeEmptyArrayList() throws IOException {
+        assertEquals("int32[2] {}\n", write(out -> out.beginArrayListStructure("int32", 2).endArrayListStructure()));
+    }
+
+    // literals
+    //==================================================================================================================
+    @Test
+    public void roundTripEscapedStrings() throws IOException, ODDLParseException, ODDLFormatException {
+        String value = "quote\" backslash\\ tab\t nl\n bell\u0007 del\u007f latin\u00e9 cjk\u4e2d emoji\ud83d\ude00 lone\ud800 end";
+        String text  = write(out -> out.beginListStructure("string").value(value).endListStructure());
+        assertEquals(List.of(value), read(text));
+    }
+
+    @Test
+    public void formatValuesByListType() throws IOException {
+        assertEquals("float {0.1, 3.0}\n", write(out -> out.beginListStructure("float").value(0.1).value(3).endListStructure()));
+        assertEquals("double {0.1}\n", write(out -> out.beginListStructure("double").value(0.1).endListStructure()));
+        assertEquals("u64 {18446744073709551615}\n", write(out -> out.beginListStructure("u64").value(-1L).endListStructure()));
+        assertEquals("i64 {-9223372036854775808}\n", write(out -> out.beginListStructure("i64").value(Long.MIN_VALUE).endListStructure()));
+    }
+
+    @Test
+    public void writeNonFiniteFloatsAsBitPatterns() throws IOException {
+        assertEquals("float {0x7F800000}\n", write(out -> out.beginListStructure("float").value(Double.POSITIVE_INFINITY).endListStructure()));
+        assertEquals("half {0xFC00}\n", write(out -> out.beginListStructure("half").value(Double.NEGATIVE_INFINITY).endListStructure()));
+    }
+
+    @Test(expected=IllegalArgumentException.class)
+    public void failOnIntegerOutOfRange() throws IOException {
+        write(out -> out.beginListStructure("u8").value(256));
+    }
+
+    @Test(expected=IllegalArgumentException.class)
+    public void failOnElementTypeMismatch() throws IOException {
+        write(out -> out.beginListStructure("int32").value(1.5));
+    }
+
+    @Test(expected=IllegalArgumentException.class)
+    public void failOnInvalidName() throws IOException {
+        write(out -> out.beginCustomStructure("Node", "name"));
+    }
+
+    // bulk elements
+    //==================================================================================================================
+    @Test
+    public void writeFlatArrayAsSubArrays() throws IOException {
+        float[] pos = {9, 1, 2, 3, 4, 5, 6.5f, 9};
+        assertEquals("float[3]\n{\n\t{1.0, 2.0, 3.0},\n\t{4.0, 5.0, 6.5}\n}\n",
+            write(out -> out.beginArrayListStructure("float", 3).subArrays(pos, 1, 6).endArrayListStructure()));
+    }
+
+    @Test
+    public void appendBulkValuesToList() throws IOException {
+        assertEquals("u8 {1, 2, 3, 255}\n",
+            write(out -> out.beginListStructure("u8").value(1).values(new int[] {2, 3}).values(new long[] {255}).endListStructure()));
+        assertEquals("double {1.0E-7, 1.0E7}\n",
+            write(out -> out.beginListStructure("double").values(new double[] {1e-7, 1e7}).endListStructure()));
+    }
+
+    @Test
+    public void roundTripFloatsInDecimalAndHex() throws IOException, ODDLParseException, ODDLFormatException {
+        Random rnd = new Random(29);
+        double[] values = new double[1000];
+        for (int i=0; i<values.length; i++) {
+            values[i] = Double.longBitsToDouble(rnd.nextLong());
+        }
+        values[0] = Double.NaN;
+        values[1] = Double.MIN_VALUE;
+        values[2] = -0.0;
+
+        for (boolean hex : new boolean[] {false, true}) {
+            String text = write(out -> out.setHexFloats(hex).beginListStructure("double").values(values).endListStructure());
+            List<Object> read = read(text);
+            for (int i=0; i<values.length; i++) {
+                assertEquals(Double.doubleToLongBits(values[i]), Double.doubleToLongBits((Double) read.get(i)));
+            }
+        }
+    }
+
+    @Test
+    public void writeHexFloatsAndIntegers() throws IOException, ODDLParseException, ODDLFormatException {
+        assertEquals("float {0x3F800000, 0xBF800000}\n",
+            write(out -> out.setHexFloats(true).beginListStructure("float").values(new float[] {1, -1}).endListStructure()));
+        assertEquals("half {0x3C00}\n",
+            write(out -> out.setHexFloats(true).beginListStructure("half").value(1.0).endListStructure()));
+
+        String text = write(out -> out.setHexIntegers(true).beginListStructure("i8").values(new int[] {10, -128}).endListStructure());
+        assertEquals("i8 {0x0A, -0x80}\n", text);
+        assertEquals(List.of(10L, -128L), read(text));
+
+        text = write(out -> out.setHexIntegers(true).beginListStructure("u64").value(-1L).endListStructure());
+        assertEquals("u64 {0xFFFFFFFFFFFFFFFF}\n", text);
+        assertEquals(List.of(-1L), read(text));
+    }
+
+    @Test(expected=IllegalArgumentException.class)
+    public void failOnPartialSubArray() throws IOException {
+        write(out -> out.beginArrayListStructure("int32", 3).subArrays(new int[] {1, 2, 3, 4}, 0, 4));
+    }
+
+    @Test(expected=IllegalStateException.class)
+    public void failOnSubArrayOverflow() throws IOException {
+        write(out -> out.beginArrayListStructure("int32", 2).beginSubArray().values(new int[] {1, 2, 3}));
+    }
+
+    // structure
+    //==================================================================================================================
+    @Test(expected=IllegalStateException.class)
+    public void enforceSubarraySize() throws IOException {
+        write(out -> out.beginArrayListStructure("float", 3).beginSubArray().value(1.0).endSubArray());
+    }
+
+    @Test(expected=IllegalStateException.class)
+    public void forbidPropertiesAfterChildren() throws IOException {
+        write(out -> out.beginCustomStructure("A").beginCustomStructure("B").endCustomStructure().property("late", 1));
+    }
+
+    @Test(expected=IllegalStateException.class)
+    public void forbidStructuresInLists() throws IOException {
+        write(out -> out.beginListStructure("float").beginCustomStructure("A"));
+    }
+
+    // destinations
+    //==================================================================================================================
+    @Test
+    public void writeToStreamAndChannel() throws IOException {
+        Script script = out -> out.beginListStructure("string").value("caf\u00e9").endListStructure();
+        String expect = write(script);
+
+        ByteArrayOutputStream stream = new ByteArrayOutputStream();
+        try (ODDLWriter out = new ODDLWriter(stream)) {
+            script.run(out);
+        }
+        assertEquals(expect, new String(stream.toByteArray(), StandardCharsets.UTF_8));
+
+        ByteArrayOutputStream channel = new ByteArrayOutputStream();
+        try (ODDLWriter out = new ODDLWriter(Channels.newChannel(channel))) {
+            script.run(out);
+        }
+        assertEquals(expect, new String(channel.toByteArray(), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void rewriteParsedDocument() throws IOException, ODDLParseException, ODDLFormatException {
+        String text = "Node $n (k = 1)\n{\n\tint32[2] {{1, 2}}\n\tref {$n%x}\n}\n";
+        StringWriter sw = new StringWriter();
+        ODDLWriter out = new ODDLWriter(sw);
+        new ODDLReader(new StringReader(text)).read(out.asListener());
+        out.close();
+        assertEquals(text.replace("int32[2] {{1, 2}}", "int32[2]\n\t{\n\t\t{1, 2}\n\t}"), sw.toString());
+    }
+
+    // test helpers
+    //==================================================================================================================
+    private interface Script {
+        void run(ODDLWriter out) throws IOException;
+    }
+
+    private static String write(Script script) throws IOException {
+        StringWriter sw = new StringWriter();
+        ODDLWriter out = new ODDLWriter(sw);
+        script.run(out);
+        out.close();
+        return sw.toString();
+    }
+
+    private static List<Object> read(String text) throws IOException, ODDLParseException, ODDLFormatException {
+        List<Object> ret = new ArrayList<>();
+        new ODDLReader(new StringReader(text)).read(new NoopListener<Void>() {
+            @Override public void value(IntToken value) { ret.add(value.getValue()); }
+            @Override public void value(FloatToken value) { ret.add(value.getValue()); }
+            @Override public void value(StringToken value) { ret.add(value.getValue()); }
+        });
+        return ret;
+    }
+}
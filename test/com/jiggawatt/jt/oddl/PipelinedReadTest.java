@@ -0,0 +1,173 @@
+/*
+ * Jiggatech OpenDDL Parser
+ *
+ * Copyright (c) 2019 Nikita Leonidov
+ *
+ * MIT License
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.jiggawatt.jt.oddl;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class PipelinedReadTest {
+
+    @Test
+    public void matchSerialRead() throws IOException, ODDLParseException, ODDLFormatException {
+        String text = new CorpusGenerator(7).setSize(200_000).generate();
+        assertEquals(rewrite(text, false), rewrite(text, true));
+    }
+
+    @Test
+    public void wrapAroundSmallRing() throws IOException, ODDLParseException, ODDLFormatException {
+        String text = new CorpusGenerator(11).setSize(50_000).generate();
+
+        StringWriter sw = new StringWriter();
+        ODDLWriter out = new ODDLWriter(sw);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            new PipelinedRead(new ODDLReader(new StringReader(text)), 3).read(out.asListener(), executor);
+        } finally {
+            executor.shutdown();
+        }
+        out.flush();
+
+        assertEquals(rewrite(text, false), sw.toString());
+    }
+
+    @Test
+    public void reportMetricsBeforeReturning() throws IOException, ODDLParseException, ODDLFormatException {
+        ODDLMetricsRecorder metrics = new ODDLMetricsRecorder();
+        new ODDLReader(new StringReader("A { float {1, 2, 3} }")).setMetrics(metrics).readPipelined(new ODDLWriter(new StringWriter()).asListener());
+        assertEquals(1, metrics.getDocumentCount());
+        assertEquals(3L, (long) metrics.getElementCounts().get(DataType.FLOAT));
+    }
+
+    @Test(expected=ListElementTypeMismatchException.class)
+    public void rethrowParseErrorOnCallingThread() throws IOException, ODDLParseException, ODDLFormatException {
+        new ODDLReader(new StringReader("A { float {1, 2, } }")).readPipelined(new ODDLWriter(new StringWriter()).asListener());
+    }
+
+    @Test
+    public void stopTokenizerWhenListenerFails() throws IOException, ODDLParseException {
+        String text = new CorpusGenerator(3).setSize(1_000_000).generate();
+        ODDLListener<Void> listener = new ODDLWriter(new StringWriter()).asListener();
+
+        try {
+            new ODDLReader(new StringReader(text)).readPipelined(new FailingListener(listener, 100));
+            fail();
+        } catch (ODDLFormatException e) {
+            assertEquals("at line 0, column 0: enough", e.getMessage());
+        }
+    }
+
+    @Test
+    public void releaseInputBeforeRethrowing() throws IOException, ODDLParseException, InterruptedException {
+        String text = new CorpusGenerator(5).setSize(1_000_000).generate();
+        AtomicInteger reads = new AtomicInteger();
+        StringReader in = new StringReader(text) {
+            @Override
+            public int read(char[] cbuf, int off, int len) throws IOException {
+                reads.incrementAndGet();
+                return super.read(cbuf, off, len);
+            }
+        };
+
+        try {
+            new ODDLReader(in).readPipelined(new FailingListener(new ODDLWriter(new StringWriter()).asListener(), 100));
+            fail();
+        } catch (ODDLFormatException e) {
+            // the tokenizer has stopped, so the caller may close or reuse the input
+            int before = reads.get();
+            Thread.sleep(50);
+            assertEquals(before, reads.get());
+        }
+    }
+
+    @Test(expected=IllegalArgumentException.class)
+    public void rejectSameThreadExecutor() throws IOException, ODDLParseException, ODDLFormatException {
+        new ODDLReader(new StringReader("A {}")).readPipelined(new ODDLWriter(new StringWriter()).asListener(), Runnable::run);
+    }
+
+    @Test
+    public void roundCapacityToPowerOfTwo() {
+        assertEquals(1, new EventRing(1).capacity());
+        assertEquals(4, new EventRing(3).capacity());
+        assertEquals(4096, new EventRing(4096).capacity());
+        assertEquals(8192, new EventRing(4097).capacity());
+    }
+
+    private static String rewrite(String text, boolean pipelined) throws IOException, ODDLParseException, ODDLFormatException {
+        StringWriter sw = new StringWriter();
+        ODDLWriter out = new ODDLWriter(sw);
+        ODDLReader reader = new ODDLReader(new StringReader(text));
+        if (pipelined) {
+            reader.readPipelined(out.asListener());
+        } else {
+            reader.read(out.asListener());
+        }
+        out.flush();
+        return sw.toString();
+    }
+
+    /** passes events through to another listener, failing after a given number of values */
+    private static final class FailingListener implements ODDLListener<Void> {
+        private final ODDLListener<Void> delegate;
+        private int remaining;
+
+        FailingListener(ODDLListener<Void> delegate, int remaining) {
+            this.delegate  = delegate;
+            this.remaining = remaining;
+        }
+
+        private void count() throws ODDLFormatException {
+            if (--remaining < 0) {
+                throw new ODDLFormatException(0, 0, "enough");
+            }
+        }
+
+        @Override public void begin() throws ODDLFormatException { delegate.begin(); }
+        @Override public Void end(int row, int col) throws ODDLFormatException { return delegate.end(row, col); }
+        @Override public void value(BoolToken value) throws ODDLFormatException { count(); delegate.value(value); }
+        @Override public void value(IntToken value) throws ODDLFormatException { count(); delegate.value(value); }
+        @Override public void value(FloatToken value) throws ODDLFormatException { count(); delegate.value(value); }
+        @Override public void value(StringToken value) throws ODDLFormatException { count(); delegate.value(value); }
+        @Override public void value(RefToken value) throws ODDLFormatException { count(); delegate.value(value); }
+        @Override public void value(DataTypeToken value) throws ODDLFormatException { count(); delegate.value(value); }
+        @Override public void beginListStructure(DataTypeToken dataType, NameToken name) throws ODDLFormatException { delegate.beginListStructure(dataType, name); }
+        @Override public void endListStructure(DataTypeToken dataType, NameToken name) throws ODDLFormatException { delegate.endListStructure(dataType, name); }
+        @Override public void beginArrayListStructure(DataTypeToken dataType, int subarraySize, NameToken name) throws ODDLFormatException { delegate.beginArrayListStructure(dataType, subarraySize, name); }
+        @Override public void endArrayListStructure(DataTypeToken dataType, int subarraySize, NameToken name) throws ODDLFormatException { delegate.endArrayListStructure(dataType, subarraySize, name); }
+        @Override public void beginSubArray(DataTypeToken dataType, int subarraySize) throws ODDLFormatException { delegate.beginSubArray(dataType, subarraySize); }
+        @Override public void endSubArray(DataTypeToken dataType, int subarraySize) throws ODDLFormatException { delegate.endSubArray(dataType, subarraySize); }
+        @Override public void beginCustomStructure(IdentifierToken identifier, NameToken name, PropertyMap properties) throws ODDLFormatException { delegate.beginCustomStructure(identifier, name, properties); }
+        @Override public void endCustomStructure(IdentifierToken identifier, NameToken name, PropertyMap properties) throws ODDLFormatException { delegate.endCustomStructure(identifier, name, properties); }
+    }
+}
@@ -0,0 +1,137 @@
+/*
+ * Jiggatech OpenDDL Parser
+ *
+ * Copyright (c) 2019 Nikita Leonidov
+ *
+ * MIT License
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.jiggawatt.jt.oddl;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class ReferenceResolverTest {
+
+    @Test
+    public void resolveGlobalReference() throws IOException, ODDLParseException, ODDLFormatException {
+        Result r = resolve("Target $a {} Source (link=$a) {}");
+        assertEquals("Target", r.target(0).getIdentifier().getText());
+    }
+
+    @Test
+    public void resolveForwardReference() throws IOException, ODDLParseException, ODDLFormatException {
+        Result r = resolve("Source (link=$a) {} Target $a {}");
+        assertEquals("Target", r.target(0).getIdentifier().getText());
+    }
+
+    @Test
+    public void resolveGlobalPath() throws IOException, ODDLParseException, ODDLFormatException {
+        Result r = resolve("A $a { B %b { C %c {} } } ref {$a%b%c}");
+        assertEquals("C", r.target(0).getIdentifier().getText());
+    }
+
+    @Test
+    public void resolveLocalReferenceInEnclosingScope() throws IOException, ODDLParseException, ODDLFormatException {
+        Result r = resolve("Outer { float %data {1.0} Inner { ref {%data} } }");
+        assertEquals(DataType.FLOAT, r.target(0).getDataType().getValue());
+    }
+
+    @Test
+    public void preferNearestLocalScope() throws IOException, ODDLParseException, ODDLFormatException {
+        Result r = resolve("Outer { X %x {} Inner (link=%x) { Y %x {} } }");
+        assertEquals("Y", r.target(0).getIdentifier().getText());
+    }
+
+    @Test
+    public void reportUnresolvedReferences() throws IOException, ODDLParseException, ODDLFormatException {
+        Result r = resolve("A $a {} ref {$a%missing, $gone, null}");
+        assertEquals(List.of("$a%missing", "$gone"), texts(r.resolver.getUnresolved()));
+    }
+
+    @Test(expected=ODDLFormatException.class)
+    public void failOnUnresolvedWhenRequired() throws IOException, ODDLParseException, ODDLFormatException {
+        new ODDLReader(new StringReader("ref {$gone}")).read(new ReferenceResolver<>(new RefCollector(), true));
+    }
+
+    @Test(expected=ODDLFormatException.class)
+    public void failOnDuplicateGlobalName() throws IOException, ODDLParseException, ODDLFormatException {
+        resolve("A $a {} B { C $a {} }");
+    }
+
+    @Test
+    public void allowSameLocalNameInDifferentScopes() throws IOException, ODDLParseException, ODDLFormatException {
+        Result r = resolve("A { X %x {} } B { Y %x {} ref {%x} }");
+        assertEquals("Y", r.target(0).getIdentifier().getText());
+    }
+
+    private static Result resolve(String text) throws IOException, ODDLParseException, ODDLFormatException {
+        RefCollector collector = new RefCollector();
+        ReferenceResolver<List<RefToken>> resolver = new ReferenceResolver<>(collector);
+        new ODDLReader(new StringReader(text)).read(resolver);
+        return new Result(resolver, collector.refs);
+    }
+
+    private static List<String> texts(List<RefToken> refs) {
+        List<String> ret = new ArrayList<>();
+        for (RefToken k : refs) {
+            ret.add(k.getText());
+        }
+        return ret;
+    }
+
+    private static final class Result {
+        final ReferenceResolver<?> resolver;
+        final List<RefToken>       refs;
+
+        Result(ReferenceResolver<?> resolver, List<RefToken> refs) {
+            this.resolver = resolver;
+            this.refs     = refs;
+        }
+
+        StructureNode target(int i) {
+            StructureNode ret = resolver.getTarget(refs.get(i));
+            assertNotNull(ret);
+            return ret;
+        }
+    }
+
+    private static final class RefCollector extends NoopListener<List<RefToken>> {
+        final List<RefToken> refs = new ArrayList<>();
+
+        @Override public List<RefToken> end(int row, int col) { return refs; }
+        @Override public void value(RefToken value) { refs.add(value); }
+
+        @Override
+        public void beginCustomStructure(IdentifierToken identifier, NameToken name, PropertyMap properties) {
+            PropertyValueToken ref = properties.get("link");
+            if (ref != null) {
+                refs.add(ref.asRef());
+            }
+        }
+    }
+}
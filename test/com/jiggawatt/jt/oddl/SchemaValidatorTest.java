@@ -0,0 +1,179 @@
+/*
+ * Jiggatech OpenDDL Parser
+ *
+ * Copyright (c) 2019 Nikita Leonidov
+ *
+ * MIT License
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package com.jiggawatt.jt.oddl;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class SchemaValidatorTest {
+
+    private static final String SCHEMA =
+            "Document { Children {string {\"Metric\", \"GeometryNode\"}} }\n" +
+            "Structure (identifier=\"Metric\") {\n" +
+            "    Property (name=\"key\", datatype=string, required=true) {}\n" +
+            "    List (datatype=float) {}\n" +
+            "    List (datatype=string) {}\n" +
+            "}\n" +
+            "Structure (identifier=\"GeometryNode\") {\n" +
+            "    Property (name=\"visible\", datatype=bool) {}\n" +
+            "    Children {string {\"Transform\", \"GeometryNode\"}}\n" +
+            "}\n" +
+            "Structure (identifier=\"Transform\") { List (datatype=float) {int32 {-1, 16}} }\n";
+
+    private static final String DOCUMENT =
+            "Metric (key=\"distance\") { float {1.0} }\n" +
+            "GeometryNode (visible=true) {\n" +
+            "    Transform { float[16] {{1, 0, 0, 0, 0, 1, 0, 0, 0, 0, 1, 0, 0, 0, 0, 1}} }\n" +
+            "    GeometryNode { Transform { float {1, 2, 3} } }\n" +
+            "}";
+
+    @Test
+    public void parseSchemaDocument() throws IOException, ODDLParseException, ODDLFormatException {
+        ODDLSchema schema = parse(SCHEMA);
+        assertEquals(List.of("Metric", "GeometryNode", "Transform"), new ArrayList<>(schema.getIdentifiers()));
+
+        ODDLParsePlan plan = schema.compile();
+        assertEquals(5, new ODDLReader(new StringReader(DOCUMENT)).setPlan(plan).read(new StructureCollector()).size());
+    }
+
+    @Test
+    public void rejectInvalidSchemaDocuments() throws IOException, ODDLParseException {
+        assertInvalidSchema("Structure {}", "missing required property identifier of Structure");
+        assertInvalidSchema("Document { Property (name=\"a\", datatype=int32) {} }", "structure Property is not allowed in Document");
+        assertInvalidSchema("Structure (identifier=\"A\") { List (datatype=\"float\") {} }", "property datatype of List must be of type TYPE");
+        assertInvalidSchema("Structure (identifier=\"A\") { List (datatype=float) {int32 {-2}} }", "invalid sub-array size: -2");
+    }
+
+    @Test
+    public void validateWhileReading() throws IOException, ODDLParseException, ODDLFormatException {
+        List<String> seen = new ODDLReader(new StringReader(DOCUMENT)).read(validator());
+        assertEquals(List.of("Metric", "GeometryNode", "Transform", "GeometryNode", "Transform"), seen);
+    }
+
+    @Test
+    public void rejectMismatchesBeforeForwarding() throws IOException, ODDLParseException {
+        assertRejected("Transform {}", "structure Transform is not allowed in the document");
+        assertRejected("GeometryNode { Metric (key=\"k\") {} }", "structure Metric is not allowed in GeometryNode");
+        assertRejected("Metric {}", "missing required property key of Metric");
+        assertRejected("Metric (key=1) {}", "property key of Metric must be of type STRING");
+        assertRejected("GeometryNode (lod=1) {}", "unknown property lod of GeometryNode");
+        assertRejected("Metric (key=\"k\") { int32 {1} }", "int32 list is not allowed in Metric");
+        assertRejected("GeometryNode { Transform { float[3] {{1, 2, 3}} } }", "float[3] list is not allowed in Transform");
+    }
+
+    @Test
+    public void validateBinaryDocuments() throws IOException, ODDLParseException, ODDLFormatException {
+        List<String> seen = new ODDLBinaryReader(encode(DOCUMENT)).read(validator());
+        assertEquals(5, seen.size());
+
+        try {
+            new ODDLBinaryReader(encode("GeometryNode { float {1} }")).read(validator());
+            fail();
+        } catch (ODDLFormatException e) {
+            assertTrue(e.getMessage(), e.getMessage().endsWith("float list is not allowed in GeometryNode"));
+        }
+    }
+
+    @Test
+    public void reuseForSeveralDocuments() throws IOException, ODDLParseException, ODDLFormatException {
+        SchemaValidator<List<String>> validator = validator();
+        try {
+            new ODDLReader(new StringReader("GeometryNode { GeometryNode { Transform { int32 {1} } } }")).read(validator);
+            fail();
+        } catch (ODDLFormatException expected) {
+        }
+        assertEquals(5, new ODDLReader(new StringReader(DOCUMENT)).read(validator).size());
+    }
+
+    @Test
+    public void trackDeepNesting() throws IOException, ODDLParseException, ODDLFormatException {
+        StringBuilder sb = new StringBuilder();
+        for (int i=0; i<100; i++) {
+            sb.append("GeometryNode {");
+        }
+        sb.append("Transform {}");
+        for (int i=0; i<100; i++) {
+            sb.append('}');
+        }
+        assertEquals(101, new ODDLReader(new StringReader(sb.toString())).read(validator()).size());
+    }
+
+    private static SchemaValidator<List<String>> validator() throws IOException, ODDLParseException, ODDLFormatException {
+        return new SchemaValidator<>(new StructureCollector(), parse(SCHEMA).compile());
+    }
+
+    private static ODDLSchema parse(String text) throws IOException, ODDLParseException, ODDLFormatException {
+        return ODDLSchema.parse(new StringReader(text));
+    }
+
+    private static ByteBuffer encode(String text) throws IOException, ODDLParseException, ODDLFormatException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ODDLBinaryWriter out = new ODDLBinaryWriter(bytes)) {
+            new ODDLReader(new StringReader(text)).read(out);
+        }
+        return ByteBuffer.wrap(bytes.toByteArray());
+    }
+
+    private static void assertInvalidSchema(String text, String message) throws IOException, ODDLParseException {
+        try {
+            parse(text);
+            fail("accepted " + text);
+        } catch (ODDLFormatException e) {
+            assertTrue(e.getMessage(), e.getMessage().endsWith(message));
+        }
+    }
+
+    private static void assertRejected(String text, String message) throws IOException, ODDLParseException {
+        try {
+            new ODDLReader(new StringReader(text)).read(validator());
+            fail("accepted " + text);
+        } catch (ODDLFormatException e) {
+            assertTrue(e.getMessage(), e.getMessage().endsWith(message));
+        }
+    }
+
+    private static final class StructureCollector extends NoopListener<List<String>> {
+        final List<String> identifiers = new ArrayList<>();
+
+        @Override public void begin() { identifiers.clear(); }
+        @Override public List<String> end(int row, int col) { return new ArrayList<>(identifiers); }
+
+        @Override
+        public void beginCustomStructure(IdentifierToken identifier, NameToken name, PropertyMap properties) {
+            identifiers.add(identifier.getText());
+        }
+    }
+}
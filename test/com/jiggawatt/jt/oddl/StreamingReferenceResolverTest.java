@@ -0,0 +1,148 @@
+/*
+ * Jiggatech OpenDDL Parser
+ *
+ * Copyright (c) 2019 Nikita Leonidov
+ *
+ * MIT License
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.jiggawatt.jt.oddl;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class StreamingReferenceResolverTest {
+
+    @Test
+    public void resolveBackwardReferenceImmediately() throws IOException, ODDLParseException, ODDLFormatException {
+        Recorder r = resolve("Target $a {} Source (link=$a) {}");
+        assertEquals(List.of("resolved $a -> Target at Source"), r.events);
+    }
+
+    @Test
+    public void resolveForwardReferenceWhenTargetBegins() throws IOException, ODDLParseException, ODDLFormatException {
+        Recorder r = resolve("Source (link=$a%b) {} Target $a { Child %b {} Other {} }");
+        assertEquals(List.of("begin Source", "begin Target", "begin Child", "resolved $a%b -> Child at Source", "begin Other"), r.log);
+    }
+
+    @Test
+    public void preferNearestLocalScope() throws IOException, ODDLParseException, ODDLFormatException {
+        Recorder r = resolve("Outer { X %x {} Inner (link=%x) { Y %x {} } }");
+        assertEquals(List.of("resolved %x -> Y at Inner"), r.events);
+    }
+
+    @Test
+    public void fallBackToEnclosingScopeOnClose() throws IOException, ODDLParseException, ODDLFormatException {
+        Recorder r = resolve("Outer { Inner (link=%x) {} X %x {} }");
+        assertEquals(List.of("resolved %x -> X at Inner"), r.events);
+    }
+
+    @Test
+    public void reportUnresolvedWhenContainerCloses() throws IOException, ODDLParseException, ODDLFormatException {
+        Recorder r = resolve("A $a { Source (link=$a%missing) {} } B {}");
+        assertEquals(List.of("begin A", "begin Source", "unresolved $a%missing at Source", "begin B"), r.log);
+    }
+
+    @Test
+    public void reportUnresolvedAtEnd() throws IOException, ODDLParseException, ODDLFormatException {
+        Recorder r = resolve("Source (link=$gone) {} ref {%nothing, null}");
+        assertEquals(List.of("unresolved $gone at Source", "unresolved %nothing at ref"), r.events);
+        assertEquals(0, r.resolver.getPendingCount());
+    }
+
+    @Test
+    public void releasedStructuresAreNoLongerTargets() throws IOException, ODDLParseException, ODDLFormatException {
+        Recorder r = new Recorder() {
+            @Override
+            public void endCustomStructure(IdentifierToken identifier, NameToken name, PropertyMap properties) {
+                if (identifier.getText().equals("Target")) {
+                    released.add(resolver.current());
+                }
+            }
+        };
+        r.run("Target $a {} Release {} Source (link=$a) {}");
+        assertEquals(List.of("unresolved $a at Source"), r.events);
+    }
+
+    @Test
+    public void forgetParentsOfClosedUnnamedStructures() throws IOException, ODDLParseException, ODDLFormatException {
+        Recorder r = resolve("Outer { Inner $in {} }");
+        assertNull(r.nodes.get(1).getParent());
+        assertFalse(r.nodes.get(1).isOpen());
+    }
+
+    private static Recorder resolve(String text) throws IOException, ODDLParseException, ODDLFormatException {
+        Recorder ret = new Recorder();
+        ret.run(text);
+        return ret;
+    }
+
+    private static String label(StructureNode node) {
+        return node.getIdentifier() != null ? node.getIdentifier().getText() : node.getDataType().getText();
+    }
+
+    private static class Recorder extends NoopListener<Void> implements StreamingReferenceResolver.FixupHandler {
+        final List<String>        events   = new ArrayList<>();
+        final List<String>        log      = new ArrayList<>();
+        final List<StructureNode> nodes    = new ArrayList<>();
+        final List<StructureNode> released = new ArrayList<>();
+
+        StreamingReferenceResolver<Void> resolver;
+
+        void run(String text) throws IOException, ODDLParseException, ODDLFormatException {
+            resolver = new StreamingReferenceResolver<>(this, this);
+            new ODDLReader(new StringReader(text)).read(resolver);
+        }
+
+        @Override
+        public void resolved(RefToken ref, StructureNode source, StructureNode target) {
+            event("resolved "+ref.getText()+" -> "+label(target)+" at "+label(source));
+        }
+
+        @Override
+        public void unresolved(RefToken ref, StructureNode source) {
+            event("unresolved "+ref.getText()+" at "+label(source));
+        }
+
+        private void event(String text) {
+            events.add(text);
+            log.add(text);
+        }
+
+        @Override
+        public void beginCustomStructure(IdentifierToken identifier, NameToken name, PropertyMap properties) {
+            log.add("begin "+identifier.getText());
+            nodes.add(resolver.current());
+
+            if (identifier.getText().equals("Release")) {
+                for (StructureNode k : released) {
+                    resolver.release(k);
+                }
+            }
+        }
+    }
+}
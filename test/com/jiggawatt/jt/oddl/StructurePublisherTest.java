@@ -0,0 +1,201 @@
+/*
+ * Jiggatech OpenDDL Parser
+ *
+ * Copyright (c) 2019 Nikita Leonidov
+ *
+ * MIT License
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.jiggawatt.jt.oddl;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+
+import static org.junit.Assert.*;
+
+public class StructurePublisherTest {
+
+    private static final Executor SAME_THREAD = Runnable::run;
+
+    @Test
+    public void publishAllStructuresInOrder() {
+        Recorder r = subscribe(publisher("A {} float {1} B { C {} }"), Long.MAX_VALUE);
+        assertEquals(List.of("A", "float", "B"), r.items);
+        assertTrue(r.completed);
+        assertNull(r.error);
+    }
+
+    @Test
+    public void pauseInputWithoutDemand() throws IOException {
+        StringBuilder sb = new StringBuilder();
+        for (int i=0; i<10_000; i++) {
+            sb.append("S { int32 {").append(i).append("} }\n");
+        }
+        CountingReader in = new CountingReader(sb.toString());
+        Flow.Publisher<String> publisher = new ODDLReader(in).publisher(IdentifierListener::new, SAME_THREAD);
+
+        // input is read in blocks, so up to one block may be read ahead of the structures emitted
+        Recorder r = subscribe(publisher, 2);
+        assertEquals(List.of("S", "S"), r.items);
+        assertFalse(r.completed);
+        assertTrue(in.count <= 8192);
+
+        r.subscription.request(3);
+        assertEquals(5, r.items.size());
+        assertTrue(in.count <= 8192);
+
+        r.subscription.request(Long.MAX_VALUE);
+        assertEquals(10_000, r.items.size());
+        assertTrue(r.completed);
+    }
+
+    @Test
+    public void stopAfterCancel() {
+        Recorder r = subscribe(publisher("A {} B {} C {}"), 1);
+        r.subscription.cancel();
+        r.subscription.request(10);
+        assertEquals(List.of("A"), r.items);
+        assertFalse(r.completed);
+    }
+
+    @Test
+    public void signalParseError() {
+        Recorder r = subscribe(publisher("A {} B { float {1,} }"), Long.MAX_VALUE);
+        assertEquals(List.of("A"), r.items);
+        assertTrue(r.error instanceof ODDLParseException);
+        assertFalse(r.completed);
+    }
+
+    @Test
+    public void rejectNonPositiveRequest() {
+        Recorder r = subscribe(publisher("A {}"), 0);
+        r.subscription.request(0);
+        assertTrue(r.error instanceof IllegalArgumentException);
+        assertTrue(r.items.isEmpty());
+    }
+
+    @Test
+    public void rejectSecondSubscriber() {
+        Flow.Publisher<String> publisher = publisher("A {}");
+        subscribe(publisher, 0);
+        Recorder second = subscribe(publisher, 1);
+        assertTrue(second.error instanceof IllegalStateException);
+    }
+
+    @Test
+    public void completeEmptyDocumentWithoutDemand() {
+        Recorder r = subscribe(publisher("// nothing here"), 0);
+        assertTrue(r.completed);
+    }
+
+    private static Flow.Publisher<String> publisher(String text) {
+        return new ODDLReader(new StringReader(text)).publisher(IdentifierListener::new, SAME_THREAD);
+    }
+
+    private static Recorder subscribe(Flow.Publisher<String> publisher, long initialDemand) {
+        Recorder ret = new Recorder(initialDemand);
+        publisher.subscribe(ret);
+        return ret;
+    }
+
+    private static final class Recorder implements Flow.Subscriber<String> {
+        final List<String> items = new ArrayList<>();
+        final long initialDemand;
+
+        Flow.Subscription subscription;
+        Throwable         error;
+        boolean           completed;
+
+        Recorder(long initialDemand) {
+            this.initialDemand = initialDemand;
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription;
+            if (initialDemand > 0) {
+                subscription.request(initialDemand);
+            }
+        }
+
+        @Override
+        public void onNext(String item) {
+            items.add(item);
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            error = throwable;
+        }
+
+        @Override
+        public void onComplete() {
+            completed = true;
+        }
+    }
+
+    /** maps a structure to its identifier or data type */
+    private static final class IdentifierListener extends NoopListener<String> {
+        private String head;
+
+        private void head(ODDLToken token) {
+            if (head == null) {
+                head = token.getText();
+            }
+        }
+
+        @Override public String end(int row, int col) { return head; }
+        @Override public void beginListStructure(DataTypeToken dataType, NameToken name) { head(dataType); }
+        @Override public void beginArrayListStructure(DataTypeToken dataType, int subarraySize, NameToken name) { head(dataType); }
+        @Override public void beginCustomStructure(IdentifierToken identifier, NameToken name, PropertyMap properties) { head(identifier); }
+    }
+
+    private static final class CountingReader extends Reader {
+        private final String text;
+        int count;
+
+        CountingReader(String text) {
+            this.text = text;
+        }
+
+        @Override
+        public int read(char[] cbuf, int off, int len) {
+            if (count >= text.length()) {
+                return -1;
+            }
+            int n = Math.min(len, text.length() - count);
+            text.getChars(count, count + n, cbuf, off);
+            count += n;
+            return n;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
@@ -0,0 +1,155 @@
+/*
+ * Jiggatech OpenDDL Parser
+ *
+ * Copyright (c) 2019 Nikita Leonidov
+ *
+ * MIT License
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.jiggawatt.jt.oddl;
+
+import org.junit.Test;
+
+import java.io.StringReader;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.*;
+
+public class StructureStreamTest {
+
+    private static final String TRICKY =
+        "// leading comment with a brace }\r\n" +
+        "A $a (text = \"}{\\\"}\", chr = '}') {\r\n" +
+        "  string {\"/* not a comment */\", \"// nor this\"}\r" +
+        "  int8 {'{', '\\''}\n" +
+        "}\n" +
+        "/* block } comment\n spanning lines { */ float {1.5} B { C { D {} } }\n" +
+        "// trailing comment\n";
+
+    @Test
+    public void streamStructuresFromReader() {
+        List<String> items = new ODDLReader(new StringReader("A {} float {1} B { C {} }"))
+                .structures(PositionListener::new)
+                .map(s -> s.substring(0, s.indexOf('@')))
+                .collect(Collectors.toList());
+        assertEquals(List.of("A", "float", "B"), items);
+    }
+
+    @Test
+    public void matchSequentialReadOnTrickyInput() {
+        List<String> expected = new ODDLReader(new StringReader(TRICKY)).structures(PositionListener::new).collect(Collectors.toList());
+        assertEquals(3, expected.size());
+        assertEquals(expected, ODDLReader.structures(TRICKY, PositionListener::new).collect(Collectors.toList()));
+        assertEquals(expected, ODDLReader.structures(TRICKY, PositionListener::new).parallel().collect(Collectors.toList()));
+    }
+
+    @Test
+    public void matchSequentialReadOnGeneratedCorpus() {
+        String text = new CorpusGenerator(5).setSize(500_000).setCommentDensity(0.2).generate();
+        List<String> expected = new ODDLReader(new StringReader(text)).structures(PositionListener::new).collect(Collectors.toList());
+        List<String> actual   = ODDLReader.structures(text, PositionListener::new).parallel().collect(Collectors.toList());
+        assertEquals(expected, actual);
+    }
+
+    @Test
+    public void splitAtStructureBoundaries() {
+        Spliterator<String> a = ODDLReader.structures("A {} B {} C {} D {}", PositionListener::new).spliterator();
+        assertEquals(4, a.estimateSize());
+        Spliterator<String> b = a.trySplit();
+        assertNotNull(b);
+        assertEquals(2, a.estimateSize());
+        assertEquals(2, b.estimateSize());
+        assertTrue(a.hasCharacteristics(Spliterator.SUBSIZED));
+    }
+
+    @Test
+    public void countWithoutTrailingComments() {
+        assertEquals(2, ODDLReader.structures("A {} B {}\n// done\n", PositionListener::new).count());
+        assertEquals(0, ODDLReader.structures("/* empty */", PositionListener::new).count());
+    }
+
+    @Test(expected=UncheckedODDLException.class)
+    public void failOnUnmatchedBrace() {
+        ODDLReader.structures("A {} }", PositionListener::new).forEach(s -> {});
+    }
+
+    @Test
+    public void failOnUnterminatedStructure() {
+        try {
+            ODDLReader.structures("A {} B { C {}", PositionListener::new).forEach(s -> {});
+            fail();
+        } catch (java.io.UncheckedIOException e) {
+            assertTrue(e.getCause() instanceof UnexpectedEOFException);
+        }
+    }
+
+    @Test
+    public void reportPositionsOfLaterStructures() {
+        UncheckedODDLException e = assertThrows(() -> ODDLReader.structures("A {}\nB {}\n  C { float {1,} }", PositionListener::new).forEach(s -> {}));
+        assertTrue(e.getCause() instanceof ODDLParseException);
+        assertEquals(
+            assertThrowsSequential("A {}\nB {}\n  C { float {1,} }").getMessage(),
+            e.getCause().getMessage()
+        );
+    }
+
+    private static UncheckedODDLException assertThrows(Runnable r) {
+        try {
+            r.run();
+        } catch (UncheckedODDLException e) {
+            return e;
+        }
+        throw new AssertionError("expected UncheckedODDLException");
+    }
+
+    private static Exception assertThrowsSequential(String text) {
+        try {
+            new ODDLReader(new StringReader(text)).read(new PositionListener());
+        } catch (Exception e) {
+            return e;
+        }
+        throw new AssertionError("expected an exception");
+    }
+
+    /** maps a structure to its identifier followed by the text and position of every token it contains */
+    private static final class PositionListener extends NoopListener<String> {
+        private final StringBuilder sb = new StringBuilder();
+
+        private void add(ODDLToken token) {
+            if (token != null) {
+                sb.append(sb.length() == 0 ? token.getText() + "@" : " ").append(token.getText()).append(':').append(token.getRow()).append(':').append(token.getCol());
+            }
+        }
+
+        @Override public String end(int row, int col) { return sb.toString(); }
+        @Override public void value(BoolToken value) { add(value); }
+        @Override public void value(IntToken value) { add(value); }
+        @Override public void value(FloatToken value) { add(value); }
+        @Override public void value(StringToken value) { add(value); }
+        @Override public void value(RefToken value) { add(value); }
+        @Override public void value(DataTypeToken value) { add(value); }
+        @Override public void beginListStructure(DataTypeToken dataType, NameToken name) { add(dataType); add(name); }
+        @Override public void beginArrayListStructure(DataTypeToken dataType, int subarraySize, NameToken name) { add(dataType); add(name); }
+        @Override public void beginCustomStructure(IdentifierToken identifier, NameToken name, PropertyMap properties) { add(identifier); add(name); }
+    }
+}